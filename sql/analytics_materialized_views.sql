@@ -0,0 +1,80 @@
+-- Script para crear las vistas materializadas de las consultas analíticas (DashboardAnalyticsRepository con
+-- analytics.source=matview). Alternativa al rollup mantenido por la aplicación (sql/fact_production_daily.sql):
+-- cada vista precalcula un GROUP BY pesado por día, de modo que cualquier rango se resuelve sumando pocas filas.
+--   mv_production_daily          día                 -> totales y tendencia diaria
+--   mv_production_by_maquina     día x máquina       -> top máquinas
+--   mv_production_by_maquinista  día x maquinista    -> top operarios
+--   mv_production_by_turno       día x turno         -> distribución por turno
+-- La aplicación las refresca con REFRESH MATERIALIZED VIEW CONCURRENTLY al terminar cada job ETL en EXITO
+-- (agrupando jobs cercanos, ver AnalyticsViewRefreshService): los lectores nunca esperan a la carga ni al refresh.
+-- CONCURRENTLY exige un índice UNIQUE sin expresiones ni WHERE en cada vista (Paso B).
+-- Este script es idempotente.
+
+-- Paso A: Crear las vistas (WITH DATA: quedan pobladas, requisito del primer refresh CONCURRENTLY).
+CREATE MATERIALIZED VIEW IF NOT EXISTS public.mv_production_daily AS
+SELECT fp.fecha_contabilizacion,
+       COUNT(*)          AS num_registros,
+       SUM(fp.cantidad)  AS total_cantidad,
+       SUM(fp.peso_neto) AS total_peso_neto
+FROM public.fact_production fp
+GROUP BY fp.fecha_contabilizacion
+WITH DATA;
+
+CREATE MATERIALIZED VIEW IF NOT EXISTS public.mv_production_by_maquina AS
+SELECT fp.fecha_contabilizacion,
+       fp.maquina_fk,
+       COUNT(*)         AS num_registros,
+       SUM(fp.cantidad) AS total_cantidad
+FROM public.fact_production fp
+GROUP BY fp.fecha_contabilizacion, fp.maquina_fk
+WITH DATA;
+
+CREATE MATERIALIZED VIEW IF NOT EXISTS public.mv_production_by_maquinista AS
+SELECT fp.fecha_contabilizacion,
+       fp.maquinista_fk,
+       COUNT(*)         AS num_registros,
+       SUM(fp.cantidad) AS total_cantidad
+FROM public.fact_production fp
+WHERE fp.maquinista_fk IS NOT NULL
+GROUP BY fp.fecha_contabilizacion, fp.maquinista_fk
+WITH DATA;
+
+CREATE MATERIALIZED VIEW IF NOT EXISTS public.mv_production_by_turno AS
+SELECT fp.fecha_contabilizacion,
+       fp.turno,
+       COUNT(*)         AS num_registros,
+       SUM(fp.cantidad) AS total_cantidad
+FROM public.fact_production fp
+GROUP BY fp.fecha_contabilizacion, fp.turno
+WITH DATA;
+
+-- Paso B: Índices UNIQUE (requeridos por CONCURRENTLY). Empiezan por la fecha, que es el filtro de todas las
+-- consultas; el INCLUDE permite resolver el rango con Index Only Scan.
+CREATE UNIQUE INDEX IF NOT EXISTS ux_mv_production_daily
+    ON public.mv_production_daily (fecha_contabilizacion)
+    INCLUDE (num_registros, total_cantidad, total_peso_neto);
+CREATE UNIQUE INDEX IF NOT EXISTS ux_mv_production_by_maquina
+    ON public.mv_production_by_maquina (fecha_contabilizacion, maquina_fk)
+    INCLUDE (num_registros, total_cantidad);
+CREATE UNIQUE INDEX IF NOT EXISTS ux_mv_production_by_maquinista
+    ON public.mv_production_by_maquinista (fecha_contabilizacion, maquinista_fk)
+    INCLUDE (num_registros, total_cantidad);
+CREATE UNIQUE INDEX IF NOT EXISTS ux_mv_production_by_turno
+    ON public.mv_production_by_turno (fecha_contabilizacion, turno)
+    INCLUDE (num_registros, total_cantidad);
+
+ANALYZE public.mv_production_daily;
+ANALYZE public.mv_production_by_maquina;
+ANALYZE public.mv_production_by_maquinista;
+ANALYZE public.mv_production_by_turno;
+
+-- Paso C (verificación): los totales de las vistas deben coincidir con los de la tabla de hechos.
+-- SELECT (SELECT SUM(num_registros) FROM public.mv_production_daily) AS vista, (SELECT COUNT(*) FROM public.fact_production) AS hechos;
+-- Refresh manual (no bloquea lecturas):
+-- REFRESH MATERIALIZED VIEW CONCURRENTLY public.mv_production_daily;
+
+-- Rollback (volver a analytics.source=rollup antes de ejecutarlo):
+-- DROP MATERIALIZED VIEW IF EXISTS public.mv_production_by_turno;
+-- DROP MATERIALIZED VIEW IF EXISTS public.mv_production_by_maquinista;
+-- DROP MATERIALIZED VIEW IF EXISTS public.mv_production_by_maquina;
+-- DROP MATERIALIZED VIEW IF EXISTS public.mv_production_daily;
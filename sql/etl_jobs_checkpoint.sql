@@ -0,0 +1,20 @@
+-- Añade a 'etl_jobs' el avance de los jobs en curso y el conteo de reanudaciones (EtlJobResumer).
+-- Cada job registra su fase (PARSE/SYNC/STREAM) y una señal de vida periódica mientras lee el archivo; el watchdog
+-- mide el atasco desde la última. Al arrancar, los jobs que un reinicio dejó a medias vuelven a la cola y se procesan
+-- de nuevo completos desde su upload en staging.
+-- Requiere sql/etl_jobs_queue.sql. Este script es idempotente.
+
+-- Paso A: Añadir las columnas
+ALTER TABLE public.etl_jobs ADD COLUMN IF NOT EXISTS checkpoint_phase  VARCHAR(255);
+ALTER TABLE public.etl_jobs ADD COLUMN IF NOT EXISTS last_progress_at  TIMESTAMPTZ;
+ALTER TABLE public.etl_jobs ADD COLUMN IF NOT EXISTS resume_attempts   INTEGER;
+
+COMMENT ON COLUMN public.etl_jobs.checkpoint_phase IS 'Fase del job en curso (PARSE, SYNC o STREAM).';
+COMMENT ON COLUMN public.etl_jobs.last_progress_at IS 'Última señal de vida del job; el watchdog mide el atasco desde aquí.';
+COMMENT ON COLUMN public.etl_jobs.resume_attempts IS 'Veces que el job se retomó tras un reinicio (NULL = ninguna).';
+
+-- Paso B: No hay backfill. Los jobs anteriores quedan con NULL: el watchdog usa started_at / created_at.
+
+-- Rollback:
+-- ALTER TABLE public.etl_jobs DROP COLUMN IF EXISTS resume_attempts, DROP COLUMN IF EXISTS last_progress_at,
+--     DROP COLUMN IF EXISTS checkpoint_phase;
@@ -0,0 +1,14 @@
+-- Añade a 'etl_jobs' el resumen por día de la carga: filas, suma de cantidad y suma de peso neto por fecha de
+-- contabilización, acumulados por el parser en la misma pasada (ProductionStats). Se guarda como JSON y se expone
+-- en GET /api/etl/jobs/{jobId}/status.
+-- Este script es idempotente.
+
+-- Paso A: Añadir la columna
+ALTER TABLE public.etl_jobs ADD COLUMN IF NOT EXISTS load_summary TEXT;
+
+COMMENT ON COLUMN public.etl_jobs.load_summary IS 'Resumen por día de la carga: [{fecha, rows, cantidad, pesoNeto}].';
+
+-- Paso B: No hay backfill. Los jobs anteriores quedan con NULL.
+
+-- Rollback:
+-- ALTER TABLE public.etl_jobs DROP COLUMN IF EXISTS load_summary;
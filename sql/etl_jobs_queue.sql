@@ -0,0 +1,28 @@
+-- Añade a 'etl_jobs' las columnas de la cola de trabajo ETL (EtlJobQueueService): cada upload se registra como
+-- job EN_COLA con la ruta de su archivo en staging y los workers del nodo que lo recibió lo toman de a uno.
+-- Este script es idempotente.
+
+-- Paso A: Añadir las columnas
+ALTER TABLE public.etl_jobs ADD COLUMN IF NOT EXISTS queued_at   TIMESTAMPTZ;
+ALTER TABLE public.etl_jobs ADD COLUMN IF NOT EXISTS started_at  TIMESTAMPTZ;
+ALTER TABLE public.etl_jobs ADD COLUMN IF NOT EXISTS staged_path TEXT;
+ALTER TABLE public.etl_jobs ADD COLUMN IF NOT EXISTS file_size   BIGINT;
+ALTER TABLE public.etl_jobs ADD COLUMN IF NOT EXISTS queue_node  VARCHAR(255);
+
+COMMENT ON COLUMN public.etl_jobs.queued_at IS 'Momento en que el job entró a la cola (EN_COLA).';
+COMMENT ON COLUMN public.etl_jobs.started_at IS 'Momento en que un worker tomó el job; el watchdog mide el atasco desde aquí.';
+COMMENT ON COLUMN public.etl_jobs.staged_path IS 'Archivo del upload en el staging local del nodo queue_node.';
+COMMENT ON COLUMN public.etl_jobs.queue_node IS 'Nodo que recibió el upload; solo sus workers pueden procesarlo.';
+
+-- Paso B: No hay backfill. Los jobs anteriores quedan con NULL: el watchdog usa created_at cuando started_at es NULL.
+-- Si la columna status tiene un CHECK con los estados permitidos, agregar 'EN_COLA' a la lista.
+
+-- Paso C: Índice parcial para la selección de los workers (jobs en cola de un nodo, por orden de llegada).
+CREATE INDEX IF NOT EXISTS idx_etl_jobs_queue
+    ON public.etl_jobs (queue_node, queued_at)
+    WHERE status = 'EN_COLA';
+
+-- Rollback:
+-- DROP INDEX IF EXISTS public.idx_etl_jobs_queue;
+-- ALTER TABLE public.etl_jobs DROP COLUMN IF EXISTS queue_node, DROP COLUMN IF EXISTS file_size,
+--     DROP COLUMN IF EXISTS staged_path, DROP COLUMN IF EXISTS started_at, DROP COLUMN IF EXISTS queued_at;
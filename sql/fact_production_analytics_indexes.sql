@@ -0,0 +1,40 @@
+-- Script para crear los índices cubrientes de las consultas analíticas (DashboardAnalyticsRepository).
+-- Todas filtran por rango de fecha_contabilizacion y solo leen cantidad, peso_neto, turno, maquina_fk y
+-- maquinista_fk (o sus equivalentes en el rollup): con estas columnas en INCLUDE el planner resuelve el rango con
+-- un Index Only Scan sin visitar el heap, y los JOIN a dim_maquina / dim_maquinista usan sus PK.
+-- Verificación automática de planes: DashboardAnalyticsPlanIT (Testcontainers).
+-- Este script es idempotente.
+
+-- Paso A: Índice cubriente sobre fact_production (consultas con analytics.source=raw).
+-- En una tabla sin particionar y con tráfico, preferir la variante CONCURRENTLY (fuera de una transacción):
+--   CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_fact_production_fecha_cover ON public.fact_production (...) INCLUDE (...);
+-- En la tabla particionada (sql/fact_production_partitioning.sql) CONCURRENTLY no está soportado sobre el padre;
+-- la sentencia siguiente crea el índice en cada partición.
+CREATE INDEX IF NOT EXISTS idx_fact_production_fecha_cover
+    ON public.fact_production (fecha_contabilizacion)
+    INCLUDE (cantidad, peso_neto, turno, maquina_fk, maquinista_fk);
+
+-- Paso B: Índice cubriente sobre el rollup diario (consultas con analytics.source=rollup, el valor por defecto).
+-- La PK (fecha, maquina, maquinista, turno) ya permite el rango; el INCLUDE evita leer el heap.
+DO $$
+BEGIN
+    IF to_regclass('public.fact_production_daily') IS NOT NULL THEN
+        CREATE INDEX IF NOT EXISTS idx_fact_production_daily_cover
+            ON public.fact_production_daily (fecha_contabilizacion)
+            INCLUDE (maquina_fk, maquinista_fk, turno, total_cantidad, total_peso_neto, num_registros);
+    ELSE
+        RAISE NOTICE 'fact_production_daily no existe; aplicar antes sql/fact_production_daily.sql';
+    END IF;
+END;
+$$;
+
+-- Paso C: Estadísticas y mapa de visibilidad actualizados (el Index Only Scan depende del visibility map).
+VACUUM (ANALYZE) public.fact_production;
+-- VACUUM (ANALYZE) public.fact_production_daily;
+
+-- Paso D (opcional, tras validar los planes): el índice simple por fecha queda cubierto por el nuevo.
+-- DROP INDEX IF EXISTS public.idx_fact_production_fecha;
+
+-- Rollback:
+-- DROP INDEX IF EXISTS public.idx_fact_production_fecha_cover;
+-- DROP INDEX IF EXISTS public.idx_fact_production_daily_cover;
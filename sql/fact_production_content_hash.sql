@@ -0,0 +1,16 @@
+-- Script para habilitar la sincronización merge (etl.sync.mode=merge) sobre 'fact_production'.
+-- Añade la columna 'content_hash': hash de 64 bits de las columnas no clave, calculado por la aplicación
+-- (RowContentHash) en cada insert/update. Permite saber qué filas cambiaron sin comparar columna a columna.
+-- Este script es idempotente.
+
+-- Paso A: Añadir la columna
+ALTER TABLE public.fact_production
+ADD COLUMN IF NOT EXISTS content_hash BIGINT;
+
+COMMENT ON COLUMN public.fact_production.content_hash IS 'Hash de las columnas no clave (calculado por la aplicación); NULL = aún no calculado.';
+
+-- Paso B: No hay backfill en SQL. Las filas existentes quedan con NULL y la primera carga merge que
+-- las encuentre las actualiza (NULL nunca coincide con un hash), dejando el valor calculado.
+
+-- Paso C (recomendado): el merge lee (clave natural, id, content_hash) por rango de fechas; el índice único
+-- uq_fact_prod_natural ya cubre el filtro por fecha_contabilizacion, no hace falta un índice adicional.
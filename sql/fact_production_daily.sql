@@ -0,0 +1,42 @@
+-- Script para crear 'fact_production_daily': rollup diario de 'fact_production' para las consultas analíticas
+-- (DashboardAnalyticsRepository con analytics.source=rollup). Una fila por día x máquina x maquinista x turno con
+-- SUM(cantidad), SUM(peso_neto) y COUNT(*): 12 meses de datos son miles de filas en lugar de millones.
+-- La aplicación mantiene la tabla de forma incremental: cada carga ETL recalcula solo los días de su rango en la
+-- misma transacción que la carga (ver DataSyncService y FactProductionDailyRepository).
+-- Este script es idempotente.
+
+-- Paso A: Crear la tabla. maquinista_fk = 0 representa "sin maquinista" (la columna forma parte de la PK).
+CREATE TABLE IF NOT EXISTS public.fact_production_daily (
+    fecha_contabilizacion DATE          NOT NULL,
+    maquina_fk            BIGINT        NOT NULL,
+    maquinista_fk         BIGINT        NOT NULL DEFAULT 0,
+    turno                 VARCHAR(10)   NOT NULL,
+    total_cantidad        NUMERIC(20,4) NOT NULL,
+    total_peso_neto       NUMERIC(20,4) NOT NULL,
+    num_registros         BIGINT        NOT NULL,
+    CONSTRAINT fact_production_daily_pkey PRIMARY KEY (fecha_contabilizacion, maquina_fk, maquinista_fk, turno)
+);
+
+COMMENT ON TABLE public.fact_production_daily IS 'Rollup diario de fact_production (mantenido por el ETL); no editar a mano.';
+
+-- Paso B: Backfill completo desde fact_production (una sola transacción; repetible).
+BEGIN;
+
+DELETE FROM public.fact_production_daily;
+
+INSERT INTO public.fact_production_daily
+    (fecha_contabilizacion, maquina_fk, maquinista_fk, turno, total_cantidad, total_peso_neto, num_registros)
+SELECT fp.fecha_contabilizacion, fp.maquina_fk, COALESCE(fp.maquinista_fk, 0), fp.turno,
+       SUM(fp.cantidad), SUM(fp.peso_neto), COUNT(*)
+FROM public.fact_production fp
+GROUP BY fp.fecha_contabilizacion, fp.maquina_fk, COALESCE(fp.maquinista_fk, 0), fp.turno;
+
+COMMIT;
+
+ANALYZE public.fact_production_daily;
+
+-- Paso C (verificación): los totales del rollup deben coincidir con los de la tabla de hechos.
+-- SELECT (SELECT SUM(num_registros) FROM public.fact_production_daily) AS rollup, (SELECT COUNT(*) FROM public.fact_production) AS hechos;
+
+-- Rollback:
+-- DROP TABLE IF EXISTS public.fact_production_daily;
@@ -0,0 +1,96 @@
+-- Script para particionar 'fact_production' por rango mensual de fecha_contabilizacion (PostgreSQL 13+).
+-- Todas las consultas de dashboards y el delete-insert del ETL filtran por fecha_contabilizacion, así que con
+-- particiones mensuales el planner descarta los meses fuera del rango (partition pruning) y las re-cargas de
+-- meses completos pueden vaciar la partición con TRUNCATE en lugar de borrar fila a fila (ver DataSyncService).
+-- Este script es idempotente: si la tabla ya está particionada, el Paso B no hace nada.
+
+-- Paso A: Función que crea por adelantado las particiones mensuales de un rango (fact_production_pYYYY_MM).
+-- La aplicación la invoca antes de cada carga; también puede programarse (p.ej. pg_cron) para los próximos meses:
+--   SELECT public.ensure_fact_production_partitions(CURRENT_DATE, (CURRENT_DATE + INTERVAL '12 months')::date);
+CREATE OR REPLACE FUNCTION public.ensure_fact_production_partitions(p_from DATE, p_to DATE)
+RETURNS INT
+LANGUAGE plpgsql
+AS $$
+DECLARE
+    v_month   DATE := date_trunc('month', p_from)::date;
+    v_last    DATE := date_trunc('month', p_to)::date;
+    v_name    TEXT;
+    v_created INT := 0;
+BEGIN
+    WHILE v_month <= v_last LOOP
+        v_name := 'fact_production_p' || to_char(v_month, 'YYYY_MM');
+        IF to_regclass('public.' || v_name) IS NULL THEN
+            EXECUTE format('CREATE TABLE public.%I PARTITION OF public.fact_production FOR VALUES FROM (%L) TO (%L)',
+                           v_name, v_month, (v_month + INTERVAL '1 month')::date);
+            v_created := v_created + 1;
+        END IF;
+        v_month := (v_month + INTERVAL '1 month')::date;
+    END LOOP;
+    RETURN v_created;
+END;
+$$;
+
+-- Paso B: Migración de la tabla existente (una sola transacción; bloquea fact_production mientras copia).
+BEGIN;
+
+DO $$
+DECLARE
+    r      RECORD;
+    v_min  DATE;
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_partitioned_table pt JOIN pg_class c ON c.oid = pt.partrelid
+               WHERE c.relname = 'fact_production' AND c.relnamespace = 'public'::regnamespace) THEN
+        RAISE NOTICE 'fact_production ya está particionada; nada que migrar';
+        RETURN;
+    END IF;
+
+    -- B.1: La tabla actual pasa a ser fact_production_legacy; sus índices (incluida la PK) se renombran para
+    -- liberar los nombres originales.
+    ALTER TABLE public.fact_production RENAME TO fact_production_legacy;
+    FOR r IN SELECT indexname FROM pg_indexes WHERE schemaname = 'public' AND tablename = 'fact_production_legacy' LOOP
+        EXECUTE format('ALTER INDEX public.%I RENAME TO %I', r.indexname, left(r.indexname, 50) || '_legacy');
+    END LOOP;
+
+    -- B.2: Tabla padre particionada con las mismas columnas. La PK debe incluir la clave de partición.
+    CREATE TABLE public.fact_production (LIKE public.fact_production_legacy INCLUDING DEFAULTS INCLUDING CONSTRAINTS
+                                         INCLUDING STORAGE INCLUDING COMMENTS)
+        PARTITION BY RANGE (fecha_contabilizacion);
+    ALTER TABLE public.fact_production ADD CONSTRAINT fact_production_pkey PRIMARY KEY (id, fecha_contabilizacion);
+
+    -- B.3: Mismas FKs que la tabla original (dim_maquina, dim_maquinista y, si existe, dim_date).
+    FOR r IN SELECT conname, pg_get_constraintdef(oid) AS def FROM pg_constraint
+             WHERE conrelid = 'public.fact_production_legacy'::regclass AND contype = 'f' LOOP
+        EXECUTE format('ALTER TABLE public.fact_production ADD CONSTRAINT %I %s', r.conname, r.def);
+    END LOOP;
+
+    -- B.4: Particiones desde el primer mes con datos hasta 12 meses hacia adelante, más una DEFAULT de resguardo
+    -- (filas fuera de las particiones creadas; debe quedar vacía).
+    SELECT COALESCE(MIN(fecha_contabilizacion), CURRENT_DATE) INTO v_min FROM public.fact_production_legacy;
+    PERFORM public.ensure_fact_production_partitions(v_min, (CURRENT_DATE + INTERVAL '12 months')::date);
+    CREATE TABLE public.fact_production_default PARTITION OF public.fact_production DEFAULT;
+
+    -- B.5: Copia de datos e índices (los índices del padre se propagan a cada partición).
+    INSERT INTO public.fact_production SELECT * FROM public.fact_production_legacy;
+    CREATE UNIQUE INDEX uq_fact_prod_natural ON public.fact_production
+        (fecha_contabilizacion, maquina_fk, COALESCE(maquinista_fk, 0), numero_log);
+    CREATE INDEX IF NOT EXISTS idx_fact_production_maquina ON public.fact_production (maquina_fk);
+    CREATE INDEX IF NOT EXISTS idx_fact_production_maquinista ON public.fact_production (maquinista_fk);
+    CREATE INDEX IF NOT EXISTS idx_fact_production_turno ON public.fact_production (turno);
+
+    -- B.6: La secuencia de ids sigue siendo la misma (allocationSize = 100 en la entidad).
+    IF to_regclass('public.fact_production_id_seq') IS NOT NULL THEN
+        ALTER SEQUENCE public.fact_production_id_seq OWNED BY public.fact_production.id;
+    END IF;
+END;
+$$;
+
+COMMIT;
+
+ANALYZE public.fact_production;
+
+-- Paso C (manual, tras validar conteos): eliminar la tabla antigua.
+-- SELECT (SELECT COUNT(*) FROM public.fact_production) AS nueva, (SELECT COUNT(*) FROM public.fact_production_legacy) AS antigua;
+-- DROP TABLE public.fact_production_legacy;
+
+-- Verificación de pruning (debe listar solo la partición de junio de 2025):
+-- EXPLAIN SELECT COUNT(*) FROM public.fact_production WHERE fecha_contabilizacion BETWEEN '2025-06-01' AND '2025-06-30';
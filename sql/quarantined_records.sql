@@ -0,0 +1,26 @@
+-- Cuarentena de las líneas que el parser ETL descarta (QuarantineWriter): una fila por línea rechazada, asociada
+-- al job, con el motivo (error_type = RejectReason) y el texto de la línea. Se consulta paginada por job desde
+-- GET /api/etl/jobs/{jobId}/rejects.
+-- Este script es idempotente.
+
+-- Paso A: Crear la tabla (si no existe) y añadir el motivo del rechazo
+CREATE TABLE IF NOT EXISTS public.quarantined_records (
+    id            BIGSERIAL PRIMARY KEY,
+    job_id        UUID         NOT NULL REFERENCES public.etl_jobs (job_id) ON DELETE CASCADE,
+    file_name     VARCHAR(255) NOT NULL,
+    line_number   INTEGER,
+    raw_line      TEXT         NOT NULL,
+    error_details TEXT         NOT NULL,
+    created_at    TIMESTAMPTZ  NOT NULL DEFAULT now()
+);
+ALTER TABLE public.quarantined_records ADD COLUMN IF NOT EXISTS error_type VARCHAR(255);
+
+COMMENT ON COLUMN public.quarantined_records.error_type IS 'Motivo del rechazo: MISSING_FIELDS, INVALID_FIELDS, NO_KEY o MALFORMED.';
+
+-- Paso B: Índice para paginar por job en orden de línea
+CREATE INDEX IF NOT EXISTS idx_quarantined_records_job_line
+    ON public.quarantined_records (job_id, line_number);
+
+-- Rollback:
+-- DROP INDEX IF EXISTS public.idx_quarantined_records_job_line;
+-- ALTER TABLE public.quarantined_records DROP COLUMN IF EXISTS error_type;
@@ -2,33 +2,26 @@ package com.cambiaso.ioc.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
-import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
-@EnableAsync
 public class AsyncConfig {
 
-    @Bean("etlExecutor")
-    public Executor etlExecutor() {
+    /**
+     * Pool para el parseo paralelo de archivos ETL (CPU-bound): un hilo por núcleo, compartido por todos los
+     * jobs en curso. Cada parseo acota sus propios bloques en vuelo, así que la cola no crece sin límite.
+     */
+    @Bean("etlParseExecutor")
+    public Executor etlParseExecutor() {
+        int cores = Runtime.getRuntime().availableProcessors();
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(2);
-        executor.setMaxPoolSize(5);
-        executor.setQueueCapacity(100);
-        executor.setThreadNamePrefix("ETL-");
-        executor.setWaitForTasksToCompleteOnShutdown(true);
-        executor.setAwaitTerminationSeconds(60);
-
-        // Add rejection policy for when queue is full
-        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
-
-        // Enhanced thread pool settings for better resource management
+        executor.setCorePoolSize(cores);
+        executor.setMaxPoolSize(cores);
+        executor.setThreadNamePrefix("ETL-PARSE-");
         executor.setKeepAliveSeconds(60);
         executor.setAllowCoreThreadTimeOut(true);
-
         executor.initialize();
         return executor;
     }
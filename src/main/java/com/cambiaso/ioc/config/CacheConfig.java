@@ -13,12 +13,15 @@ import java.util.concurrent.TimeUnit;
 @EnableCaching
 public class CacheConfig {
 
+    public static final String DAILY_ANALYTICS_CACHE = "analyticsDaily";
+
     /**
      * CacheManager con configuración de múltiples cachés.
      * - aiExplanationsHistorical: 24 horas (datos históricos)
      * - aiExplanationsCurrent: 30 minutos (datos actuales/futuros)
      * - dashboardAccess: 60 segundos (decisiones de autorización)
      * - dashboardTokens: 8 minutos (tokens JWT de Metabase)
+     * - analyticsDaily: 24 horas (resúmenes analíticos de días pasados; el ETL invalida los días que reescribe)
      */
     @Bean
     public CacheManager cacheManager() {
@@ -59,6 +62,15 @@ public class CacheConfig {
                 .recordStats()
                 .build());
 
+        // Cache de resúmenes analíticos por día (DailyAnalyticsCache)
+        // La historia no cambia salvo por el ETL, que invalida los días que reescribe; el TTL es solo resguardo
+        cacheManager.registerCustomCache(DAILY_ANALYTICS_CACHE,
+            Caffeine.newBuilder()
+                .maximumSize(2000)
+                .expireAfterWrite(24, TimeUnit.HOURS)
+                .recordStats()
+                .build());
+
         return cacheManager;
     }
 }
@@ -1,12 +1,20 @@
 package com.cambiaso.ioc.controller;
 
 import com.cambiaso.ioc.dto.EtlJobStatusDto;
+import com.cambiaso.ioc.dto.QuarantinedRecordDto;
 import com.cambiaso.ioc.exception.JobConflictException;
 import com.cambiaso.ioc.persistence.entity.EtlJob;
+import com.cambiaso.ioc.persistence.repository.QuarantinedRecordRepository;
+import com.cambiaso.ioc.service.EtlJobQueueService;
 import com.cambiaso.ioc.service.EtlJobService;
-import com.cambiaso.ioc.service.EtlProcessingService;
+import com.cambiaso.ioc.service.UploadStagingService;
+import com.cambiaso.ioc.service.UploadStagingService.StagedUpload;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -26,11 +34,15 @@ import java.util.Objects;
 @RequiredArgsConstructor
 public class EtlController {
 
-    private final EtlProcessingService etlProcessingService;
+    private final EtlJobQueueService etlJobQueueService;
     private final EtlJobService etlJobService;
+    private final UploadStagingService uploadStagingService;
+    private final QuarantinedRecordRepository quarantinedRecordRepository;
 
     // Maximum file size: 50MB
     private static final long MAX_FILE_SIZE = 50 * 1024 * 1024;
+    // Maximum page size when listing rejected lines
+    private static final int MAX_REJECTS_PAGE_SIZE = 500;
 
     @PostMapping("/start-process")
     @PreAuthorize("isAuthenticated()")
@@ -48,24 +60,29 @@ public class EtlController {
                 originalFilename, jwt.getSubject());
 
         String userId = jwt.getSubject();
-        String fileHash = etlProcessingService.calculateFileHash(file);
-
-        // Idempotency check
-        Optional<EtlJob> existingJob = etlJobService.findByFileHash(fileHash);
-        if (existingJob.isPresent()) {
-            throw new JobConflictException("This file has already been processed. Job ID: " + existingJob.get().getJobId());
+        // Spool the upload once to local staging; the SHA-256 is computed on the same pass
+        StagedUpload staged = uploadStagingService.stage(file);
+        EtlJob newJob;
+        try {
+            // Idempotency check: a file whose job failed can be uploaded again (same job, re-queued)
+            Optional<EtlJob> existingJob = etlJobService.findByFileHash(staged.sha256());
+            if (existingJob.isPresent() && !"FALLO".equals(existingJob.get().getStatus())) {
+                throw new JobConflictException("This file has already been processed. Job ID: " + existingJob.get().getJobId());
+            }
+            // Queue the job (429/503 when the queue pushes back); the job owns the staged file from here on
+            newJob = existingJob.isPresent()
+                    ? etlJobQueueService.resubmit(existingJob.get(), staged, userId)
+                    : etlJobQueueService.submit(staged, userId);
+        } catch (RuntimeException e) {
+            uploadStagingService.discard(staged);
+            throw e;
         }
 
-        EtlJob newJob = etlJobService.createJob(originalFilename, fileHash, userId);
-
-        // Start async processing
-        etlProcessingService.processFile(file, userId, newJob.getJobId());
-
-        log.info("ETL job created with ID: {} for file: {}", newJob.getJobId(), originalFilename);
+        log.info("ETL job queued with ID: {} for file: {}", newJob.getJobId(), originalFilename);
         return ResponseEntity.accepted().body(Map.of(
                 "jobId", newJob.getJobId(),
                 "fileName", originalFilename,
-                "status", "INICIADO"
+                "status", newJob.getStatus()
         ));
     }
 
@@ -83,6 +100,27 @@ public class EtlController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    /**
+     * Líneas del archivo que el parser descartó (cuarentena del job), paginadas y en orden de línea.
+     */
+    @GetMapping("/jobs/{jobId}/rejects")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<Page<QuarantinedRecordDto>> getJobRejects(
+            @PathVariable UUID jobId,
+            Pageable pageable,
+            @AuthenticationPrincipal Jwt jwt) {
+
+        log.debug("Fetching rejected lines for job ID: {} by user: {}", jobId, jwt.getSubject());
+
+        if (etlJobService.findById(jobId).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        Pageable effective = PageRequest.of(pageable.getPageNumber(),
+                Math.min(pageable.getPageSize(), MAX_REJECTS_PAGE_SIZE), Sort.by("lineNumber", "id"));
+        return ResponseEntity.ok(quarantinedRecordRepository.findByEtlJob_JobId(jobId, effective)
+                .map(QuarantinedRecordDto::fromEntity));
+    }
+
     private void validateFile(MultipartFile file) {
         if (file == null || file.isEmpty()) {
             throw new IllegalArgumentException("File cannot be empty");
@@ -1,6 +1,7 @@
 package com.cambiaso.ioc.dto;
 
 import com.cambiaso.ioc.persistence.entity.EtlJob;
+import com.fasterxml.jackson.annotation.JsonRawValue;
 import lombok.Builder;
 import lombok.Data;
 
@@ -19,6 +20,12 @@ public class EtlJobStatusDto {
     private LocalDate maxDate;
     private OffsetDateTime createdAt;
     private OffsetDateTime finishedAt;
+    // Avance del job en curso (fase actual)
+    private String progressPhase;
+    private Long fileSize;
+    // Resumen por día de la carga (arreglo JSON tal como se guardó en el job)
+    @JsonRawValue
+    private String loadSummary;
 
     public static EtlJobStatusDto fromEntity(EtlJob job) {
         return EtlJobStatusDto.builder()
@@ -30,6 +37,9 @@ public class EtlJobStatusDto {
                 .maxDate(job.getMaxDate())
                 .createdAt(job.getCreatedAt())
                 .finishedAt(job.getFinishedAt())
+                .progressPhase(job.getCheckpointPhase())
+                .fileSize(job.getFileSize())
+                .loadSummary(job.getLoadSummary())
                 .build();
     }
 }
@@ -0,0 +1,29 @@
+package com.cambiaso.ioc.dto;
+
+import com.cambiaso.ioc.persistence.entity.QuarantinedRecord;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.OffsetDateTime;
+
+@Data
+@Builder
+public class QuarantinedRecordDto {
+    private Long id;
+    private Integer lineNumber;
+    private String errorType;
+    private String errorDetails;
+    private String rawLine;
+    private OffsetDateTime createdAt;
+
+    public static QuarantinedRecordDto fromEntity(QuarantinedRecord record) {
+        return QuarantinedRecordDto.builder()
+                .id(record.getId())
+                .lineNumber(record.getLineNumber())
+                .errorType(record.getErrorType())
+                .errorDetails(record.getErrorDetails())
+                .rawLine(record.getRawLine())
+                .createdAt(record.getCreatedAt())
+                .build();
+    }
+}
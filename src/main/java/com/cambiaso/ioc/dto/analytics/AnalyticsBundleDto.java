@@ -0,0 +1,15 @@
+package com.cambiaso.ioc.dto.analytics;
+
+import java.util.List;
+
+/**
+ * DTO con todos los agregados de un rango (totales, top operarios, turnos, top máquinas y tendencia diaria).
+ * Usado por DashboardAnalyticsRepository para resolver la explicación IA en una sola consulta.
+ */
+public record AnalyticsBundleDto(
+    TotalsDto totals,
+    List<TopOperarioDto> topOperarios,
+    List<TurnoDistributionDto> distribucionTurno,
+    List<TopMachineDto> topMaquinas,
+    List<DailyTrendPoint> tendenciaDiaria
+) {}
@@ -0,0 +1,23 @@
+package com.cambiaso.ioc.dto.analytics;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * DTO con un agregado parcial de un día (día x máquina x maquinista x turno).
+ * Usado por DailyAnalyticsCache para construir los resúmenes diarios; maquinaId / maquinistaId son null cuando
+ * la fila no tiene dimensión asociada.
+ */
+public record DailyPartialDto(
+    LocalDate fecha,
+    Long maquinaId,
+    String maquinaNombre,
+    String maquinaCodigo,
+    Long maquinistaId,
+    String maquinistaNombre,
+    Long codigoMaquinista,
+    String turno,
+    BigDecimal totalUnidades,
+    BigDecimal pesoNeto,
+    long numRegistros
+) {}
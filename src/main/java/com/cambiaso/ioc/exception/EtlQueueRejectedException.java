@@ -0,0 +1,31 @@
+package com.cambiaso.ioc.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Upload rechazado por la cola ETL: 429 si el usuario ya tiene demasiados jobs en cola, 503 si la cola está llena.
+ * El cliente debe reintentar pasados {@link #getRetryAfterSeconds()} segundos.
+ */
+@Getter
+public class EtlQueueRejectedException extends RuntimeException {
+
+    private final HttpStatus status;
+    private final long retryAfterSeconds;
+
+    private EtlQueueRejectedException(HttpStatus status, String message, long retryAfterSeconds) {
+        super(message);
+        this.status = status;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public static EtlQueueRejectedException userLimit(String userId, int limit, long retryAfterSeconds) {
+        return new EtlQueueRejectedException(HttpStatus.TOO_MANY_REQUESTS,
+                "User " + userId + " already has " + limit + " ETL job(s) waiting in the queue", retryAfterSeconds);
+    }
+
+    public static EtlQueueRejectedException queueFull(int capacity, long retryAfterSeconds) {
+        return new EtlQueueRejectedException(HttpStatus.SERVICE_UNAVAILABLE,
+                "ETL queue is full (" + capacity + " job(s) waiting)", retryAfterSeconds);
+    }
+}
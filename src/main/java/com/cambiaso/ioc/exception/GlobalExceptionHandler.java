@@ -2,6 +2,7 @@ package com.cambiaso.ioc.exception;
 
 import jakarta.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -65,6 +66,21 @@ public class GlobalExceptionHandler {
         ));
     }
 
+    /**
+     * Map EtlQueueRejectedException to HTTP 429 (per-user limit) or 503 (queue full) with Retry-After
+     */
+    @ExceptionHandler(EtlQueueRejectedException.class)
+    public ResponseEntity<Map<String, Object>> handleEtlQueueRejected(EtlQueueRejectedException ex) {
+        log.warn("ETL upload rejected: {}", ex.getMessage());
+        return ResponseEntity.status(ex.getStatus())
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+            .body(Map.of(
+                "timestamp", Instant.now(),
+                "error", ex.getStatus().getReasonPhrase(),
+                "message", ex.getMessage()
+            ));
+    }
+
     /**
      * Fallback handler: unexpected exceptions → 500 with structured body
      */
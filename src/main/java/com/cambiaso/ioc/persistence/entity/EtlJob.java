@@ -48,4 +48,34 @@ public class EtlJob {
 
     @Column(name = "finished_at")
     private OffsetDateTime finishedAt;
+
+    // Cola de trabajo (EtlJobQueueService): el job espera en EN_COLA con su upload en staging
+    @Column(name = "queued_at")
+    private OffsetDateTime queuedAt;
+
+    @Column(name = "started_at")
+    private OffsetDateTime startedAt;
+
+    @Column(name = "staged_path")
+    private String stagedPath;
+
+    @Column(name = "file_size")
+    private Long fileSize;
+
+    @Column(name = "queue_node")
+    private String queueNode;
+
+    // Avance del job en curso: fase actual; last_progress_at es la última señal de vida (watchdog)
+    @Column(name = "checkpoint_phase")
+    private String checkpointPhase;
+
+    @Column(name = "last_progress_at")
+    private OffsetDateTime lastProgressAt;
+
+    @Column(name = "resume_attempts")
+    private Integer resumeAttempts;
+
+    // Resumen de la carga por día de contabilización (JSON: fecha, filas, cantidad, peso neto), ver ProductionStats
+    @Column(name = "load_summary", columnDefinition = "text")
+    private String loadSummary;
 }
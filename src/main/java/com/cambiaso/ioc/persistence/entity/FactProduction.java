@@ -86,6 +86,10 @@ public class FactProduction {
     @Column(name = "status_origen", length = 10)
     private String statusOrigen;
 
+    // Hash de las columnas no clave; lo usa la sincronización merge para detectar filas modificadas
+    @Column(name = "content_hash")
+    private Long contentHash;
+
     @Override
     public String toString() {
         return "FactProduction{" +
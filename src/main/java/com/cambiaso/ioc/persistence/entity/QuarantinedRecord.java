@@ -24,10 +24,14 @@ public class QuarantinedRecord {
     @Column(name = "line_number")
     private Integer lineNumber;
 
-    @Column(name = "raw_line", nullable = false)
+    @Column(name = "raw_line", nullable = false, columnDefinition = "text")
     private String rawLine;
 
-    @Column(name = "error_details", nullable = false)
+    // Motivo del rechazo (RejectReason del parser)
+    @Column(name = "error_type")
+    private String errorType;
+
+    @Column(name = "error_details", nullable = false, columnDefinition = "text")
     private String errorDetails;
 
     @CreationTimestamp
@@ -0,0 +1,60 @@
+package com.cambiaso.ioc.persistence.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Vistas materializadas de las consultas analíticas (ver {@code sql/analytics_materialized_views.sql}).
+ *
+ * {@link #refreshAll} usa REFRESH MATERIALIZED VIEW CONCURRENTLY: las lecturas siguen viendo la versión anterior
+ * de cada vista hasta que termina su refresh, sin esperar locks.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class AnalyticsMaterializedViewRepository {
+
+    public static final List<String> VIEWS = List.of(
+            "mv_production_daily",
+            "mv_production_by_maquina",
+            "mv_production_by_maquinista",
+            "mv_production_by_turno");
+
+    private static final String EXISTS_SQL = "SELECT COUNT(*) FROM pg_matviews WHERE schemaname = 'public' AND matviewname IN ("
+            + String.join(", ", VIEWS.stream().map(v -> "'" + v + "'").toList()) + ")";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile Boolean available; // el script se aplica con la app detenida; se resuelve una vez
+
+    /** true si las cuatro vistas existen (PostgreSQL con el script aplicado). */
+    public boolean isAvailable() {
+        Boolean a = available;
+        if (a == null) {
+            try {
+                Long n = jdbcTemplate.queryForObject(EXISTS_SQL, Long.class);
+                a = n != null && n == VIEWS.size();
+            } catch (RuntimeException e) {
+                log.debug("Could not query pg_matviews (not PostgreSQL?): {}", e.getMessage());
+                a = false;
+            }
+            available = a;
+            if (!a) {
+                log.info("Analytics materialized views not found; analytics.source=matview falls back to the rollup "
+                        + "(apply sql/analytics_materialized_views.sql)");
+            }
+        }
+        return a;
+    }
+
+    /** Refresca todas las vistas de forma concurrente (una sentencia por vista, cada una en su transacción). */
+    public void refreshAll() {
+        for (String view : VIEWS) {
+            jdbcTemplate.execute("REFRESH MATERIALIZED VIEW CONCURRENTLY public." + view);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.cambiaso.ioc.persistence.repository;
 import com.cambiaso.ioc.dto.analytics.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
@@ -11,6 +12,7 @@ import org.springframework.stereotype.Repository;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -18,6 +20,16 @@ import java.util.Map;
  * Repositorio para consultas analíticas agregadas sobre producción.
  * Usa JDBC Template para queries optimizadas sin overhead JPA.
  *
+ * Por defecto ({@code analytics.source=rollup}) lee el rollup diario {@code fact_production_daily}, que el ETL
+ * mantiene en la misma transacción que la carga: 12 meses son miles de filas en lugar de millones. Las variantes
+ * con {@link Source} permiten pedir explícitamente los hechos crudos ({@link Source#RAW}). Si el rollup no existe
+ * en la base se leen los hechos crudos.
+ *
+ * Con {@code analytics.source=matview} las cinco consultas individuales leen las vistas materializadas de
+ * {@code sql/analytics_materialized_views.sql}, refrescadas tras cada ETL por AnalyticsViewRefreshService. El
+ * bundle y los parciales diarios necesitan el grano día x máquina x maquinista x turno, que las vistas no tienen, y
+ * siguen leyendo el rollup. Si las vistas no existen se usa el rollup.
+ *
  * BSS-001: DashboardAnalyticsRepository
  * Feature: FP-001A - Dashboard AI Explanation
  */
@@ -27,6 +39,30 @@ import java.util.Map;
 public class DashboardAnalyticsRepository {
 
     private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final FactProductionDailyRepository dailyRepository;
+    private final AnalyticsMaterializedViewRepository matviewRepository;
+
+    @Value("${analytics.source:rollup}")
+    private String configuredSource; // rollup | raw | matview
+
+    /** Origen de las agregaciones. */
+    public enum Source { ROLLUP, RAW, MATVIEW }
+
+    // Filas día x máquina x maquinista x turno del rango (fecha, maquina_fk, maquinista_fk, turno, unidades, peso,
+    // registros): base común del bundle y de los parciales diarios
+    private static final String ROLLUP_BASE_SQL = """
+        SELECT r.fecha_contabilizacion AS fecha, r.maquina_fk, r.maquinista_fk, r.turno,
+               r.total_cantidad AS unidades, r.total_peso_neto AS peso, r.num_registros AS registros
+        FROM fact_production_daily r
+        WHERE r.fecha_contabilizacion BETWEEN :fechaInicio AND :fechaFin
+        """;
+    private static final String RAW_BASE_SQL = """
+        SELECT fp.fecha_contabilizacion AS fecha, fp.maquina_fk, fp.maquinista_fk, fp.turno,
+               SUM(fp.cantidad) AS unidades, SUM(fp.peso_neto) AS peso, COUNT(*) AS registros
+        FROM fact_production fp
+        WHERE fp.fecha_contabilizacion BETWEEN :fechaInicio AND :fechaFin
+        GROUP BY fp.fecha_contabilizacion, fp.maquina_fk, fp.maquinista_fk, fp.turno
+        """;
 
     /**
      * Obtiene totales agregados para el rango de fechas especificado.
@@ -37,18 +73,40 @@ public class DashboardAnalyticsRepository {
      * @throws IllegalArgumentException si el rango excede 12 meses
      */
     public TotalsDto fetchTotals(LocalDate fechaInicio, LocalDate fechaFin) {
+        return fetchTotals(fechaInicio, fechaFin, configuredSource());
+    }
+
+    public TotalsDto fetchTotals(LocalDate fechaInicio, LocalDate fechaFin, Source source) {
         validateDateRange(fechaInicio, fechaFin);
 
-        log.debug("Fetching totals for range: {} to {}", fechaInicio, fechaFin);
+        log.debug("Fetching totals for range: {} to {} ({})", fechaInicio, fechaFin, source);
 
-        String sql = """
+        String sql = switch (resolve(source)) {
+            case MATVIEW -> """
+            SELECT 
+                COALESCE(SUM(v.num_registros), 0) AS total_registros,
+                COALESCE(SUM(v.total_cantidad), 0) AS total_unidades,
+                COALESCE(SUM(v.total_peso_neto), 0) AS peso_neto_total
+            FROM mv_production_daily v
+            WHERE v.fecha_contabilizacion BETWEEN :fechaInicio AND :fechaFin
+            """;
+            case ROLLUP -> """
             SELECT 
-                COUNT(DISTINCT fp.id) AS total_registros,
+                COALESCE(SUM(r.num_registros), 0) AS total_registros,
+                COALESCE(SUM(r.total_cantidad), 0) AS total_unidades,
+                COALESCE(SUM(r.total_peso_neto), 0) AS peso_neto_total
+            FROM fact_production_daily r
+            WHERE r.fecha_contabilizacion BETWEEN :fechaInicio AND :fechaFin
+            """;
+            case RAW -> """
+            SELECT 
+                COUNT(*) AS total_registros,
                 COALESCE(SUM(fp.cantidad), 0) AS total_unidades,
                 COALESCE(SUM(fp.peso_neto), 0) AS peso_neto_total
             FROM fact_production fp
             WHERE fp.fecha_contabilizacion BETWEEN :fechaInicio AND :fechaFin
             """;
+        };
 
         Map<String, Object> params = Map.of(
             "fechaInicio", fechaInicio,
@@ -80,16 +138,47 @@ public class DashboardAnalyticsRepository {
      * @return Lista ordenada DESC por unidades (máximo 10)
      */
     public List<TopOperarioDto> fetchTopOperarios(LocalDate fechaInicio, LocalDate fechaFin) {
+        return fetchTopOperarios(fechaInicio, fechaFin, configuredSource());
+    }
+
+    public List<TopOperarioDto> fetchTopOperarios(LocalDate fechaInicio, LocalDate fechaFin, Source source) {
         validateDateRange(fechaInicio, fechaFin);
 
-        log.debug("Fetching top operarios for range: {} to {}", fechaInicio, fechaFin);
+        log.debug("Fetching top operarios for range: {} to {} ({})", fechaInicio, fechaFin, source);
 
-        String sql = """
+        String sql = switch (resolve(source)) {
+            case MATVIEW -> """
+            SELECT 
+                dm.nombre_completo,
+                dm.codigo_maquinista,
+                COALESCE(SUM(v.total_cantidad), 0) AS total_unidades,
+                COALESCE(SUM(v.num_registros), 0) AS num_registros
+            FROM mv_production_by_maquinista v
+            JOIN dim_maquinista dm ON v.maquinista_fk = dm.id
+            WHERE v.fecha_contabilizacion BETWEEN :fechaInicio AND :fechaFin
+            GROUP BY dm.id, dm.nombre_completo, dm.codigo_maquinista
+            ORDER BY total_unidades DESC
+            LIMIT 10
+            """;
+            case ROLLUP -> """
+            SELECT 
+                dm.nombre_completo,
+                dm.codigo_maquinista,
+                COALESCE(SUM(r.total_cantidad), 0) AS total_unidades,
+                COALESCE(SUM(r.num_registros), 0) AS num_registros
+            FROM fact_production_daily r
+            JOIN dim_maquinista dm ON r.maquinista_fk = dm.id
+            WHERE r.fecha_contabilizacion BETWEEN :fechaInicio AND :fechaFin
+            GROUP BY dm.id, dm.nombre_completo, dm.codigo_maquinista
+            ORDER BY total_unidades DESC
+            LIMIT 10
+            """;
+            case RAW -> """
             SELECT 
                 dm.nombre_completo,
                 dm.codigo_maquinista,
                 COALESCE(SUM(fp.cantidad), 0) AS total_unidades,
-                COUNT(DISTINCT fp.id) AS num_registros
+                COUNT(*) AS num_registros
             FROM fact_production fp
             JOIN dim_maquinista dm ON fp.maquinista_fk = dm.id
             WHERE fp.fecha_contabilizacion BETWEEN :fechaInicio AND :fechaFin
@@ -97,6 +186,7 @@ public class DashboardAnalyticsRepository {
             ORDER BY total_unidades DESC
             LIMIT 10
             """;
+        };
 
         Map<String, Object> params = Map.of(
             "fechaInicio", fechaInicio,
@@ -121,20 +211,46 @@ public class DashboardAnalyticsRepository {
      * @return Lista con totales por turno (Día/Noche/Mixto)
      */
     public List<TurnoDistributionDto> fetchDistribucionTurno(LocalDate fechaInicio, LocalDate fechaFin) {
+        return fetchDistribucionTurno(fechaInicio, fechaFin, configuredSource());
+    }
+
+    public List<TurnoDistributionDto> fetchDistribucionTurno(LocalDate fechaInicio, LocalDate fechaFin, Source source) {
         validateDateRange(fechaInicio, fechaFin);
 
-        log.debug("Fetching turno distribution for range: {} to {}", fechaInicio, fechaFin);
+        log.debug("Fetching turno distribution for range: {} to {} ({})", fechaInicio, fechaFin, source);
 
-        String sql = """
+        String sql = switch (resolve(source)) {
+            case MATVIEW -> """
+            SELECT 
+                v.turno,
+                COALESCE(SUM(v.total_cantidad), 0) AS total_unidades,
+                COALESCE(SUM(v.num_registros), 0) AS num_registros
+            FROM mv_production_by_turno v
+            WHERE v.fecha_contabilizacion BETWEEN :fechaInicio AND :fechaFin
+            GROUP BY v.turno
+            ORDER BY total_unidades DESC
+            """;
+            case ROLLUP -> """
+            SELECT 
+                r.turno,
+                COALESCE(SUM(r.total_cantidad), 0) AS total_unidades,
+                COALESCE(SUM(r.num_registros), 0) AS num_registros
+            FROM fact_production_daily r
+            WHERE r.fecha_contabilizacion BETWEEN :fechaInicio AND :fechaFin
+            GROUP BY r.turno
+            ORDER BY total_unidades DESC
+            """;
+            case RAW -> """
             SELECT 
                 fp.turno,
                 COALESCE(SUM(fp.cantidad), 0) AS total_unidades,
-                COUNT(DISTINCT fp.id) AS num_registros
+                COUNT(*) AS num_registros
             FROM fact_production fp
             WHERE fp.fecha_contabilizacion BETWEEN :fechaInicio AND :fechaFin
             GROUP BY fp.turno
             ORDER BY total_unidades DESC
             """;
+        };
 
         Map<String, Object> params = Map.of(
             "fechaInicio", fechaInicio,
@@ -158,16 +274,47 @@ public class DashboardAnalyticsRepository {
      * @return Lista ordenada DESC por unidades (máximo 10)
      */
     public List<TopMachineDto> fetchTopMaquinas(LocalDate fechaInicio, LocalDate fechaFin) {
+        return fetchTopMaquinas(fechaInicio, fechaFin, configuredSource());
+    }
+
+    public List<TopMachineDto> fetchTopMaquinas(LocalDate fechaInicio, LocalDate fechaFin, Source source) {
         validateDateRange(fechaInicio, fechaFin);
 
-        log.debug("Fetching top machines for range: {} to {}", fechaInicio, fechaFin);
+        log.debug("Fetching top machines for range: {} to {} ({})", fechaInicio, fechaFin, source);
 
-        String sql = """
+        String sql = switch (resolve(source)) {
+            case MATVIEW -> """
+            SELECT 
+                dm.nombre_maquina AS maquina_nombre,
+                dm.codigo_maquina AS maquina_codigo,
+                COALESCE(SUM(v.total_cantidad), 0) AS total_unidades,
+                COALESCE(SUM(v.num_registros), 0) AS num_registros
+            FROM mv_production_by_maquina v
+            JOIN dim_maquina dm ON v.maquina_fk = dm.id
+            WHERE v.fecha_contabilizacion BETWEEN :fechaInicio AND :fechaFin
+            GROUP BY dm.id, dm.nombre_maquina, dm.codigo_maquina
+            ORDER BY total_unidades DESC
+            LIMIT 10
+            """;
+            case ROLLUP -> """
+            SELECT 
+                dm.nombre_maquina AS maquina_nombre,
+                dm.codigo_maquina AS maquina_codigo,
+                COALESCE(SUM(r.total_cantidad), 0) AS total_unidades,
+                COALESCE(SUM(r.num_registros), 0) AS num_registros
+            FROM fact_production_daily r
+            JOIN dim_maquina dm ON r.maquina_fk = dm.id
+            WHERE r.fecha_contabilizacion BETWEEN :fechaInicio AND :fechaFin
+            GROUP BY dm.id, dm.nombre_maquina, dm.codigo_maquina
+            ORDER BY total_unidades DESC
+            LIMIT 10
+            """;
+            case RAW -> """
             SELECT 
                 dm.nombre_maquina AS maquina_nombre,
                 dm.codigo_maquina AS maquina_codigo,
                 COALESCE(SUM(fp.cantidad), 0) AS total_unidades,
-                COUNT(DISTINCT fp.id) AS num_registros
+                COUNT(*) AS num_registros
             FROM fact_production fp
             JOIN dim_maquina dm ON fp.maquina_fk = dm.id
             WHERE fp.fecha_contabilizacion BETWEEN :fechaInicio AND :fechaFin
@@ -175,6 +322,7 @@ public class DashboardAnalyticsRepository {
             ORDER BY total_unidades DESC
             LIMIT 10
             """;
+        };
 
         Map<String, Object> params = Map.of(
             "fechaInicio", fechaInicio,
@@ -199,20 +347,45 @@ public class DashboardAnalyticsRepository {
      * @return Lista con puntos por día (fecha, unidades)
      */
     public List<DailyTrendPoint> fetchTendenciaDiaria(LocalDate fechaInicio, LocalDate fechaFin) {
+        return fetchTendenciaDiaria(fechaInicio, fechaFin, configuredSource());
+    }
+
+    public List<DailyTrendPoint> fetchTendenciaDiaria(LocalDate fechaInicio, LocalDate fechaFin, Source source) {
         validateDateRange(fechaInicio, fechaFin);
 
-        log.debug("Fetching daily trend for range: {} to {}", fechaInicio, fechaFin);
+        log.debug("Fetching daily trend for range: {} to {} ({})", fechaInicio, fechaFin, source);
 
-        String sql = """
+        String sql = switch (resolve(source)) {
+            case MATVIEW -> """
+            SELECT 
+                v.fecha_contabilizacion AS fecha,
+                v.total_cantidad AS total_unidades,
+                v.num_registros
+            FROM mv_production_daily v
+            WHERE v.fecha_contabilizacion BETWEEN :fechaInicio AND :fechaFin
+            ORDER BY v.fecha_contabilizacion ASC
+            """;
+            case ROLLUP -> """
+            SELECT 
+                r.fecha_contabilizacion AS fecha,
+                COALESCE(SUM(r.total_cantidad), 0) AS total_unidades,
+                COALESCE(SUM(r.num_registros), 0) AS num_registros
+            FROM fact_production_daily r
+            WHERE r.fecha_contabilizacion BETWEEN :fechaInicio AND :fechaFin
+            GROUP BY r.fecha_contabilizacion
+            ORDER BY r.fecha_contabilizacion ASC
+            """;
+            case RAW -> """
             SELECT 
                 fp.fecha_contabilizacion AS fecha,
                 COALESCE(SUM(fp.cantidad), 0) AS total_unidades,
-                COUNT(DISTINCT fp.id) AS num_registros
+                COUNT(*) AS num_registros
             FROM fact_production fp
             WHERE fp.fecha_contabilizacion BETWEEN :fechaInicio AND :fechaFin
             GROUP BY fp.fecha_contabilizacion
             ORDER BY fp.fecha_contabilizacion ASC
             """;
+        };
 
         Map<String, Object> params = Map.of(
             "fechaInicio", fechaInicio,
@@ -228,6 +401,173 @@ public class DashboardAnalyticsRepository {
         );
     }
 
+    /**
+     * Obtiene en una sola consulta (un round trip y una lectura del rango) los cinco agregados que usan las
+     * explicaciones IA: totales, top 10 operarios, distribución por turno, top 10 máquinas y tendencia diaria.
+     * Equivale a invocar los cinco métodos individuales.
+     *
+     * El CTE {@code base} agrega el rango una vez a día x máquina x maquinista x turno (o lee esas filas del
+     * rollup) y cada sección se calcula sobre él; PostgreSQL materializa el CTE porque se referencia varias veces.
+     *
+     * @param fechaInicio Fecha inicial (inclusive)
+     * @param fechaFin Fecha final (inclusive)
+     * @return DTO con las cinco secciones
+     */
+    public AnalyticsBundleDto fetchAnalyticsBundle(LocalDate fechaInicio, LocalDate fechaFin) {
+        return fetchAnalyticsBundle(fechaInicio, fechaFin, configuredSource());
+    }
+
+    public AnalyticsBundleDto fetchAnalyticsBundle(LocalDate fechaInicio, LocalDate fechaFin, Source source) {
+        validateDateRange(fechaInicio, fechaFin);
+
+        log.debug("Fetching analytics bundle for range: {} to {} ({})", fechaInicio, fechaFin, source);
+
+        String base = baseSql(source);
+
+        // seccion: 1 = totales, 2 = operarios, 3 = turnos, 4 = máquinas, 5 = tendencia; pos = orden dentro de la sección
+        String sql = """
+            WITH base AS (
+            %s)
+            SELECT 1 AS seccion, 1 AS pos, CAST(NULL AS DATE) AS fecha, CAST(NULL AS VARCHAR(255)) AS etiqueta,
+                   CAST(NULL AS VARCHAR(255)) AS codigo, COALESCE(SUM(b.unidades), 0) AS unidades,
+                   COALESCE(SUM(b.peso), 0) AS peso, COALESCE(SUM(b.registros), 0) AS registros
+            FROM base b
+            UNION ALL
+            SELECT 2, o.pos, NULL, o.etiqueta, o.codigo, o.unidades, NULL, o.registros FROM (
+                SELECT dm.nombre_completo AS etiqueta, CAST(dm.codigo_maquinista AS VARCHAR(255)) AS codigo,
+                       SUM(b.unidades) AS unidades, SUM(b.registros) AS registros,
+                       ROW_NUMBER() OVER (ORDER BY SUM(b.unidades) DESC) AS pos
+                FROM base b
+                JOIN dim_maquinista dm ON b.maquinista_fk = dm.id
+                GROUP BY dm.id, dm.nombre_completo, dm.codigo_maquinista
+            ) o WHERE o.pos <= 10
+            UNION ALL
+            SELECT 3, ROW_NUMBER() OVER (ORDER BY SUM(b.unidades) DESC), NULL, b.turno, NULL,
+                   SUM(b.unidades), NULL, SUM(b.registros)
+            FROM base b
+            GROUP BY b.turno
+            UNION ALL
+            SELECT 4, m.pos, NULL, m.etiqueta, m.codigo, m.unidades, NULL, m.registros FROM (
+                SELECT dm.nombre_maquina AS etiqueta, dm.codigo_maquina AS codigo,
+                       SUM(b.unidades) AS unidades, SUM(b.registros) AS registros,
+                       ROW_NUMBER() OVER (ORDER BY SUM(b.unidades) DESC) AS pos
+                FROM base b
+                JOIN dim_maquina dm ON b.maquina_fk = dm.id
+                GROUP BY dm.id, dm.nombre_maquina, dm.codigo_maquina
+            ) m WHERE m.pos <= 10
+            UNION ALL
+            SELECT 5, ROW_NUMBER() OVER (ORDER BY b.fecha), b.fecha, NULL, NULL,
+                   SUM(b.unidades), NULL, SUM(b.registros)
+            FROM base b
+            GROUP BY b.fecha
+            ORDER BY seccion, pos
+            """.formatted(base);
+
+        Map<String, Object> params = Map.of(
+            "fechaInicio", fechaInicio,
+            "fechaFin", fechaFin
+        );
+
+        TotalsDto[] totals = {new TotalsDto(0L, BigDecimal.ZERO, BigDecimal.ZERO)};
+        List<TopOperarioDto> operarios = new ArrayList<>();
+        List<TurnoDistributionDto> turnos = new ArrayList<>();
+        List<TopMachineDto> maquinas = new ArrayList<>();
+        List<DailyTrendPoint> tendencia = new ArrayList<>();
+
+        jdbcTemplate.query(sql, params, rs -> {
+            BigDecimal unidades = rs.getBigDecimal("unidades");
+            switch (rs.getInt("seccion")) {
+                case 1 -> totals[0] = new TotalsDto(rs.getLong("registros"), unidades, rs.getBigDecimal("peso"));
+                case 2 -> operarios.add(new TopOperarioDto(rs.getString("etiqueta"),
+                    rs.getString("codigo") == null ? null : Long.valueOf(rs.getString("codigo")), unidades, rs.getInt("registros")));
+                case 3 -> turnos.add(new TurnoDistributionDto(rs.getString("etiqueta"), unidades, rs.getInt("registros")));
+                case 4 -> maquinas.add(new TopMachineDto(rs.getString("etiqueta"), rs.getString("codigo"), unidades, rs.getInt("registros")));
+                case 5 -> tendencia.add(new DailyTrendPoint(rs.getDate("fecha").toLocalDate(), unidades, rs.getInt("registros")));
+                default -> log.warn("Unexpected analytics bundle section: {}", rs.getInt("seccion"));
+            }
+        });
+
+        return new AnalyticsBundleDto(totals[0], operarios, turnos, maquinas, tendencia);
+    }
+
+    /**
+     * Obtiene los agregados parciales por día x máquina x maquinista x turno del rango, con los datos de las
+     * dimensiones. Es la materia prima de los resúmenes diarios que cachea DailyAnalyticsCache.
+     *
+     * @param fechaInicio Fecha inicial (inclusive)
+     * @param fechaFin Fecha final (inclusive)
+     * @return Lista ordenada por fecha ASC
+     */
+    public List<DailyPartialDto> fetchDailyPartials(LocalDate fechaInicio, LocalDate fechaFin) {
+        return fetchDailyPartials(fechaInicio, fechaFin, configuredSource());
+    }
+
+    public List<DailyPartialDto> fetchDailyPartials(LocalDate fechaInicio, LocalDate fechaFin, Source source) {
+        validateDateRange(fechaInicio, fechaFin);
+
+        log.debug("Fetching daily partials for range: {} to {} ({})", fechaInicio, fechaFin, source);
+
+        String base = baseSql(source);
+
+        String sql = """
+            SELECT b.fecha, m.id AS maquina_id, m.nombre_maquina, m.codigo_maquina,
+                   q.id AS maquinista_id, q.nombre_completo, q.codigo_maquinista,
+                   b.turno, b.unidades, b.peso, b.registros
+            FROM (%s) b
+            LEFT JOIN dim_maquina m ON b.maquina_fk = m.id
+            LEFT JOIN dim_maquinista q ON b.maquinista_fk = q.id
+            ORDER BY b.fecha
+            """.formatted(base);
+
+        Map<String, Object> params = Map.of(
+            "fechaInicio", fechaInicio,
+            "fechaFin", fechaFin
+        );
+
+        return jdbcTemplate.query(sql, params, (rs, rowNum) ->
+            new DailyPartialDto(
+                rs.getDate("fecha").toLocalDate(),
+                rs.getObject("maquina_id", Long.class),
+                rs.getString("nombre_maquina"),
+                rs.getString("codigo_maquina"),
+                rs.getObject("maquinista_id", Long.class),
+                rs.getString("nombre_completo"),
+                rs.getObject("codigo_maquinista", Long.class),
+                rs.getString("turno"),
+                rs.getBigDecimal("unidades"),
+                rs.getBigDecimal("peso"),
+                rs.getLong("registros")
+            )
+        );
+    }
+
+    private Source configuredSource() {
+        if ("raw".equalsIgnoreCase(configuredSource)) {
+            return Source.RAW;
+        }
+        return "matview".equalsIgnoreCase(configuredSource) ? Source.MATVIEW : Source.ROLLUP;
+    }
+
+    // Las vistas y el rollup solo se usan si existen en la base (scripts de sql/ aplicados)
+    private Source resolve(Source requested) {
+        if (requested == Source.MATVIEW && matviewRepository.isAvailable()) {
+            return Source.MATVIEW;
+        }
+        if (requested == Source.RAW || !dailyRepository.isAvailable()) {
+            return Source.RAW;
+        }
+        return Source.ROLLUP;
+    }
+
+    private String baseSql(Source source) {
+        return resolve(fineGrained(source)) == Source.ROLLUP ? ROLLUP_BASE_SQL : RAW_BASE_SQL;
+    }
+
+    // Las vistas materializadas no tienen el grano día x máquina x maquinista x turno: se lee el rollup
+    private static Source fineGrained(Source requested) {
+        return requested == Source.MATVIEW ? Source.ROLLUP : requested;
+    }
+
     /**
      * Valida que el rango de fechas sea válido y no exceda 12 meses.
      *
@@ -235,7 +575,7 @@ public class DashboardAnalyticsRepository {
      * @param fechaFin Fecha final
      * @throws IllegalArgumentException si las validaciones fallan
      */
-    private void validateDateRange(LocalDate fechaInicio, LocalDate fechaFin) {
+    public static void validateDateRange(LocalDate fechaInicio, LocalDate fechaFin) {
         if (fechaInicio == null || fechaFin == null) {
             throw new IllegalArgumentException("Fechas no pueden ser nulas");
         }
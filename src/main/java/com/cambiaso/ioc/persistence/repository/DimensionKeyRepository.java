@@ -0,0 +1,140 @@
+package com.cambiaso.ioc.persistence.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Acceso por código a las claves de {@code dim_maquina} y {@code dim_maquinista}, sin cargar entidades: lo usa
+ * {@link com.cambiaso.ioc.service.DimensionRegistry} para mantener su mapa código → id.
+ *
+ * En PostgreSQL las altas usan {@code INSERT ... ON CONFLICT (codigo) DO NOTHING} sobre el UNIQUE del código, así
+ * que dos cargas que dan de alta el mismo miembro a la vez no fallan: una lo inserta y la otra lo encuentra al releer
+ * los ids. En otras bases (H2 en tests, sin ON CONFLICT) se usa {@code INSERT ... WHERE NOT EXISTS}, y la carrera
+ * llega como {@code DuplicateKeyException}.
+ */
+@Repository
+@RequiredArgsConstructor
+public class DimensionKeyRepository {
+
+    // Tamaño de los lotes de alta y de las listas IN al releer ids
+    private static final int BATCH_SIZE = 500;
+
+    private static final String MAQUINA_STATE_SQL = "SELECT COUNT(*), COALESCE(MAX(id), 0) FROM dim_maquina";
+    private static final String MAQUINISTA_STATE_SQL = "SELECT COUNT(*), COALESCE(MAX(id), 0) FROM dim_maquinista";
+    private static final String LOAD_MAQUINAS_SQL = "SELECT id, codigo_maquina FROM dim_maquina WHERE id > ?";
+    private static final String LOAD_MAQUINISTAS_SQL = "SELECT id, codigo_maquinista FROM dim_maquinista WHERE id > ?";
+    private static final String INSERT_MAQUINA_SQL = "INSERT INTO dim_maquina (codigo_maquina, nombre_maquina, created_at, updated_at)"
+            + " VALUES (?, ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP) ON CONFLICT (codigo_maquina) DO NOTHING";
+    private static final String INSERT_MAQUINISTA_SQL = "INSERT INTO dim_maquinista (codigo_maquinista, nombre_completo, created_at, updated_at)"
+            + " VALUES (?, ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP) ON CONFLICT (codigo_maquinista) DO NOTHING";
+    private static final String INSERT_MAQUINA_PORTABLE_SQL = "INSERT INTO dim_maquina (codigo_maquina, nombre_maquina, created_at, updated_at)"
+            + " SELECT ?, ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP WHERE NOT EXISTS (SELECT 1 FROM dim_maquina WHERE codigo_maquina = ?)";
+    private static final String INSERT_MAQUINISTA_PORTABLE_SQL = "INSERT INTO dim_maquinista (codigo_maquinista, nombre_completo, created_at, updated_at)"
+            + " SELECT ?, ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP WHERE NOT EXISTS (SELECT 1 FROM dim_maquinista WHERE codigo_maquinista = ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FactProductionBulkRepository bulkRepository;
+
+    /** Cantidad de filas y mayor id de una dimensión: cambia si otro nodo dio de alta o se borraron miembros. */
+    public record TableState(long count, long maxId) {}
+
+    public TableState maquinaState() {
+        return state(MAQUINA_STATE_SQL);
+    }
+
+    public TableState maquinistaState() {
+        return state(MAQUINISTA_STATE_SQL);
+    }
+
+    /** Entrega (código, id) de las máquinas con id mayor que {@code afterId} (0 = todas). */
+    public void loadMaquinas(long afterId, BiConsumer<String, Long> sink) {
+        jdbcTemplate.query(LOAD_MAQUINAS_SQL, rs -> {
+            sink.accept(rs.getString(2), rs.getLong(1));
+        }, afterId);
+    }
+
+    /** Entrega (código, id) de los maquinistas con id mayor que {@code afterId} (0 = todos). */
+    public void loadMaquinistas(long afterId, BiConsumer<Long, Long> sink) {
+        jdbcTemplate.query(LOAD_MAQUINISTAS_SQL, rs -> {
+            sink.accept(rs.getLong(2), rs.getLong(1));
+        }, afterId);
+    }
+
+    /** Da de alta las máquinas que no existan. @return filas insertadas (las ya existentes no cuentan) */
+    public int insertMaquinasIfAbsent(Collection<String> codigos) {
+        boolean pg = bulkRepository.isPostgres();
+        int[][] counts = jdbcTemplate.batchUpdate(pg ? INSERT_MAQUINA_SQL : INSERT_MAQUINA_PORTABLE_SQL, codigos, BATCH_SIZE, (ps, codigo) -> {
+            ps.setString(1, codigo);
+            ps.setString(2, "Máquina " + codigo);
+            if (!pg) ps.setString(3, codigo);
+        });
+        return inserted(counts);
+    }
+
+    /** Da de alta los maquinistas que no existan. @return filas insertadas (los ya existentes no cuentan) */
+    public int insertMaquinistasIfAbsent(Collection<Long> codigos) {
+        boolean pg = bulkRepository.isPostgres();
+        int[][] counts = jdbcTemplate.batchUpdate(pg ? INSERT_MAQUINISTA_SQL : INSERT_MAQUINISTA_PORTABLE_SQL, codigos, BATCH_SIZE, (ps, codigo) -> {
+            ps.setLong(1, codigo);
+            ps.setString(2, "Maquinista " + codigo);
+            if (!pg) ps.setLong(3, codigo);
+        });
+        return inserted(counts);
+    }
+
+    public Map<String, Long> findMaquinaIds(Collection<String> codigos) {
+        Map<String, Long> ids = new HashMap<>();
+        for (List<String> batch : batches(codigos)) {
+            jdbcTemplate.query("SELECT id, codigo_maquina FROM dim_maquina WHERE codigo_maquina IN (" + placeholders(batch.size()) + ")",
+                    rs -> { ids.put(rs.getString(2), rs.getLong(1)); }, batch.toArray());
+        }
+        return ids;
+    }
+
+    public Map<Long, Long> findMaquinistaIds(Collection<Long> codigos) {
+        Map<Long, Long> ids = new HashMap<>();
+        for (List<Long> batch : batches(codigos)) {
+            jdbcTemplate.query("SELECT id, codigo_maquinista FROM dim_maquinista WHERE codigo_maquinista IN (" + placeholders(batch.size()) + ")",
+                    rs -> { ids.put(rs.getLong(2), rs.getLong(1)); }, batch.toArray());
+        }
+        return ids;
+    }
+
+    private TableState state(String sql) {
+        TableState state = jdbcTemplate.queryForObject(sql, (rs, i) -> new TableState(rs.getLong(1), rs.getLong(2)));
+        return state != null ? state : new TableState(0, 0);
+    }
+
+    private static int inserted(int[][] counts) {
+        int inserted = 0;
+        for (int[] batch : counts) {
+            for (int n : batch) {
+                if (n > 0) inserted += n; // SUCCESS_NO_INFO (-2) no informa si hubo alta
+            }
+        }
+        return inserted;
+    }
+
+    private static <T> List<List<T>> batches(Collection<T> values) {
+        if (values.isEmpty()) return Collections.emptyList();
+        List<T> all = new ArrayList<>(values);
+        List<List<T>> batches = new ArrayList<>();
+        for (int i = 0; i < all.size(); i += BATCH_SIZE) {
+            batches.add(all.subList(i, Math.min(all.size(), i + BATCH_SIZE)));
+        }
+        return batches;
+    }
+
+    private static String placeholders(int n) {
+        return String.join(", ", Collections.nCopies(n, "?"));
+    }
+}
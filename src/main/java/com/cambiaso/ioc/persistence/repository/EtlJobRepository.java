@@ -22,21 +22,24 @@ public interface EtlJobRepository extends JpaRepository<EtlJob, UUID>, EtlJobRep
             LocalDate maxDate
     );
 
-    @Query("SELECT CASE WHEN COUNT(j) > 0 THEN true ELSE false END " +
-           "FROM EtlJob j " +
-           "WHERE j.status IN ('INICIADO', 'PROCESANDO', 'SINCRONIZANDO') " +
-           "AND j.jobId <> :jobId " + // Exclude the current job from the check
-           "AND j.minDate IS NOT NULL AND j.maxDate IS NOT NULL " +
-           "AND NOT (j.maxDate < :minDate OR j.minDate > :maxDate)")
-    boolean existsActiveJobInDateRange(
-            @Param("jobId") UUID jobId,
-            @Param("minDate") LocalDate minDate,
-            @Param("maxDate") LocalDate maxDate
-    );
-
     long countByStatusIn(List<String> statuses);
 
-    @Query("SELECT COUNT(j) FROM EtlJob j WHERE j.status IN :statuses AND j.finishedAt IS NULL AND j.createdAt < :cutoff")
+    long countByStatus(String status);
+
+    long countByStatusAndUserId(String status, String userId);
+
+    // Jobs encolados en este nodo (su upload está en el staging local), en orden de llegada
+    List<EtlJob> findByStatusAndQueueNodeOrderByQueuedAtAsc(String status, String queueNode);
+
+    // Jobs en curso por usuario: [userId, count]
+    @Query("SELECT j.userId, COUNT(j) FROM EtlJob j WHERE j.status IN :statuses GROUP BY j.userId")
+    List<Object[]> countByUserIdAndStatusIn(@Param("statuses") List<String> statuses);
+
+    // Jobs de este nodo en los estados dados (p. ej. interrumpidos por un reinicio)
+    List<EtlJob> findByQueueNodeAndStatusIn(String queueNode, List<String> statuses);
+
+    // Un job cuenta como atascado si no registra progreso (last_progress_at) desde el cutoff; en cola no cuenta
+    @Query("SELECT COUNT(j) FROM EtlJob j WHERE j.status IN :statuses AND j.finishedAt IS NULL AND COALESCE(j.lastProgressAt, j.startedAt, j.createdAt) < :cutoff")
     long countStuck(@Param("statuses") List<String> statuses, @Param("cutoff") OffsetDateTime cutoff);
 
     // markStuckAsFailed ahora se implementa vía repositorio custom para evitar incompatibilidad JPQL con OffsetDateTime
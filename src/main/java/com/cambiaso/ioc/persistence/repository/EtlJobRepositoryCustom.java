@@ -1,7 +1,10 @@
 package com.cambiaso.ioc.persistence.repository;
 
 import java.time.OffsetDateTime;
+import java.util.UUID;
 
 public interface EtlJobRepositoryCustom {
     int markStuckAsFailed(OffsetDateTime cutoff);
+
+    boolean claimQueued(UUID jobId, OffsetDateTime startedAt);
 }
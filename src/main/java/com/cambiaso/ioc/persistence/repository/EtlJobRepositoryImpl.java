@@ -2,11 +2,13 @@ package com.cambiaso.ioc.persistence.repository;
 
 import com.cambiaso.ioc.persistence.entity.EtlJob;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
 import jakarta.persistence.PersistenceContext;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.OffsetDateTime;
 import java.util.List;
+import java.util.UUID;
 
 /**
  * Custom implementation to avoid JPQL UPDATE type issues with OffsetDateTime in some dialects.
@@ -20,8 +22,8 @@ public class EtlJobRepositoryImpl implements EtlJobRepositoryCustom {
     @Override
     @Transactional
     public int markStuckAsFailed(OffsetDateTime cutoff) {
-        // Selecciona jobs creados estrictamente antes del cutoff
-        List<EtlJob> stuck = em.createQuery("SELECT j FROM EtlJob j WHERE j.status IN ('INICIADO','PROCESANDO','SINCRONIZANDO') AND j.finishedAt IS NULL AND j.createdAt < :cutoff", EtlJob.class)
+        // Selecciona jobs sin progreso (last_progress_at, inicio o creación, el más reciente disponible) desde antes del cutoff
+        List<EtlJob> stuck = em.createQuery("SELECT j FROM EtlJob j WHERE j.status IN ('INICIADO','PROCESANDO','SINCRONIZANDO') AND j.finishedAt IS NULL AND COALESCE(j.lastProgressAt, j.startedAt, j.createdAt) < :cutoff", EtlJob.class)
                 .setParameter("cutoff", cutoff)
                 .getResultList();
 
@@ -39,4 +41,20 @@ public class EtlJobRepositoryImpl implements EtlJobRepositoryCustom {
         }
         return stuck.size();
     }
+
+    /**
+     * Toma un job EN_COLA para un worker: lo lee con lock de fila (SELECT ... FOR UPDATE) y lo pasa a INICIADO solo
+     * si sigue EN_COLA, de modo que si dos workers eligen el mismo job solo uno lo obtiene.
+     */
+    @Override
+    @Transactional
+    public boolean claimQueued(UUID jobId, OffsetDateTime startedAt) {
+        EtlJob job = em.find(EtlJob.class, jobId, LockModeType.PESSIMISTIC_WRITE);
+        if (job == null || !"EN_COLA".equals(job.getStatus())) {
+            return false;
+        }
+        job.setStatus("INICIADO");
+        job.setStartedAt(startedAt);
+        return true;
+    }
 }
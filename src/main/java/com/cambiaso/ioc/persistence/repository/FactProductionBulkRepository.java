@@ -0,0 +1,442 @@
+package com.cambiaso.ioc.persistence.repository;
+
+import com.cambiaso.ioc.service.etl.ProductionBatch;
+import com.cambiaso.ioc.service.etl.ProductionRow;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+/**
+ * Carga masiva de filas de {@code fact_production} sin pasar por el contexto de persistencia de Hibernate. Trabaja
+ * sobre bloques columnares ({@link ProductionBatch}); las variantes con listas de {@link ProductionRow} los arman y
+ * devuelven a cada fila el id asignado.
+ *
+ * En PostgreSQL las filas se envían con {@code COPY fact_production FROM STDIN (FORMAT csv)} a través del
+ * {@code CopyManager} del driver; en otras bases (H2 en tests) se usa un INSERT en batch por JDBC.
+ * Ambas variantes usan {@link JdbcTemplate}, que toma la conexión ligada a la transacción en curso
+ * (la misma que usa JPA), de modo que el delete previo, el advisory lock y el rollback siguen aplicando.
+ * Las {@link SQLException} se traducen a la jerarquía {@code DataAccessException} de Spring
+ * (p.ej. una violación UNIQUE llega como {@code DuplicateKeyException}).
+ *
+ * Los ids se reservan de {@code fact_production_id_seq} con la misma semántica "pooled" que usa Hibernate
+ * ({@code allocationSize = 100}): cada nextval v reserva el bloque (v-99 .. v], así que las cargas masivas
+ * y los inserts por JPA no colisionan.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class FactProductionBulkRepository {
+
+    private static final String SEQUENCE = "fact_production_id_seq";
+    private static final int ID_BLOCK_SIZE = 100; // = allocationSize de FactProduction
+    private static final int BATCH_SIZE = 1000;
+    private static final int COPY_FLUSH_BYTES = 256 * 1024;
+    private static final long DECIMAL_FACTOR = 10_000L; // 10^ProductionRow.DECIMAL_SCALE
+
+    static final String TABLE = "fact_production";
+    static final String COLUMNS = "id, fecha_contabilizacion, maquina_fk, maquinista_fk, numero_log, "
+            + "hora_contabilizacion, fecha_notificacion, documento, material_sku, material_descripcion, numero_pallet, "
+            + "cantidad, peso_neto, lista, version_produccion, centro_costos, turno, jornada, usuario_sap, bodeguero, "
+            + "status_origen, content_hash";
+    private static final String COPY_SQL = "COPY %s (" + COLUMNS + ") FROM STDIN (FORMAT csv)";
+    private static final String INSERT_SQL = "INSERT INTO %s (" + COLUMNS + ") "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    // Columnas no clave: las que puede cambiar una re-carga (ver RowContentHash)
+    private static final String UPDATE_SQL = "UPDATE fact_production SET hora_contabilizacion = ?, fecha_notificacion = ?, "
+            + "documento = ?, material_sku = ?, material_descripcion = ?, numero_pallet = ?, cantidad = ?, peso_neto = ?, "
+            + "lista = ?, version_produccion = ?, centro_costos = ?, turno = ?, jornada = ?, usuario_sap = ?, bodeguero = ?, "
+            + "status_origen = ?, content_hash = ? WHERE id = ? AND fecha_contabilizacion = ?";
+    // La fecha (clave de partición) no cambia el resultado pero permite podar particiones en cada sentencia
+    private static final String DELETE_BY_ID_SQL = "DELETE FROM fact_production WHERE id = ? AND fecha_contabilizacion = ?";
+    private static final String KEYS_IN_RANGE_SQL = "SELECT id, fecha_contabilizacion, maquina_fk, maquinista_fk, numero_log, "
+            + "content_hash FROM fact_production WHERE fecha_contabilizacion BETWEEN ? AND ?";
+    private static final int FETCH_SIZE = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile Boolean postgres; // se resuelve en la primera carga
+
+    /**
+     * Inserta los registros asignándoles id. Debe invocarse dentro de una transacción.
+     *
+     * @return filas insertadas
+     */
+    public int insertAll(List<ProductionRow> records) {
+        return insertInto(TABLE, records);
+    }
+
+    /**
+     * Inserta las filas del bloque asignándoles id (quedan en el bloque). Debe invocarse dentro de una transacción.
+     *
+     * @return filas insertadas
+     */
+    public int insertBatch(ProductionBatch batch) {
+        return insertInto(TABLE, batch);
+    }
+
+    /**
+     * Igual que {@link #insertAll} pero sobre otra tabla con las mismas columnas (p.ej. una tabla de staging).
+     * El nombre de tabla se concatena al SQL: solo debe venir de código propio, nunca de la entrada.
+     */
+    int insertInto(String table, List<ProductionRow> records) {
+        int inserted = 0;
+        // Por tramos: la copia columnar ocupa un bloque a la vez, no una segunda copia de toda la lista
+        for (int from = 0; from < records.size(); from += ProductionBatch.DEFAULT_ROWS) {
+            List<ProductionRow> slice = records.subList(from, Math.min(records.size(), from + ProductionBatch.DEFAULT_ROWS));
+            ProductionBatch batch = ProductionBatch.of(slice);
+            inserted += insertInto(table, batch);
+            for (int i = 0; i < batch.size(); i++) {
+                slice.get(i).setId(batch.id(i));
+            }
+        }
+        return inserted;
+    }
+
+    int insertInto(String table, ProductionBatch batch) {
+        if (batch.isEmpty()) return 0;
+        return jdbcTemplate.execute((ConnectionCallback<Integer>) con -> {
+            assignIds(con, batch);
+            if (isPostgres(con)) {
+                return copyIn(con, table, batch);
+            }
+            return batchInsert(con, table, batch);
+        });
+    }
+
+    /** true si la base es PostgreSQL (COPY, tablas UNLOGGED, etc.). */
+    public boolean isPostgres() {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) this::isPostgres));
+    }
+
+    /**
+     * Recorre clave natural, id y content_hash de las filas existentes en [minDate, maxDate], sin materializar
+     * entidades. En PostgreSQL el fetch size hace que el driver use un cursor en lugar de traer todo el resultado.
+     */
+    public void forEachKeyInRange(LocalDate minDate, LocalDate maxDate, ExistingRowHandler handler) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+            try (PreparedStatement ps = con.prepareStatement(KEYS_IN_RANGE_SQL)) {
+                ps.setFetchSize(FETCH_SIZE);
+                setDate(ps, 1, minDate);
+                setDate(ps, 2, maxDate);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        long maquinista = rs.getLong(4); // NULL -> 0, igual que COALESCE(maquinista_fk, 0) del índice único
+                        long hash = rs.getLong(6);
+                        Long contentHash = rs.wasNull() ? null : hash; // wasNull() se refiere a la última columna leída
+                        handler.onRow(rs.getLong(1), rs.getObject(2, LocalDate.class), rs.getLong(3), maquinista,
+                                rs.getLong(5), contentHash);
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Actualiza por id las columnas no clave (incluido content_hash) de los registros dados.
+     *
+     * @return filas actualizadas
+     */
+    public int updateAll(List<ProductionRow> records) {
+        int updated = 0;
+        for (int from = 0; from < records.size(); from += ProductionBatch.DEFAULT_ROWS) {
+            updated += update(ProductionBatch.of(records.subList(from, Math.min(records.size(), from + ProductionBatch.DEFAULT_ROWS))));
+        }
+        return updated;
+    }
+
+    private int update(ProductionBatch batch) {
+        return jdbcTemplate.execute((ConnectionCallback<Integer>) con -> {
+            int updated = 0;
+            try (PreparedStatement ps = con.prepareStatement(UPDATE_SQL)) {
+                int pending = 0;
+                for (int row = 0; row < batch.size(); row++) {
+                    int next = bindPayload(ps, 1, batch, row);
+                    ps.setLong(next, batch.id(row));
+                    setDate(ps, next + 1, batch.fechaDay(row));
+                    ps.addBatch();
+                    if (++pending == BATCH_SIZE) {
+                        updated += sum(ps.executeBatch());
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) updated += sum(ps.executeBatch());
+            }
+            return updated;
+        });
+    }
+
+    /**
+     * Borra filas por (id, fecha_contabilizacion) en batches; ambos arreglos se leen hasta {@code count}.
+     *
+     * @return filas borradas
+     */
+    public int deleteByIds(long[] ids, LocalDate[] fechas, int count) {
+        if (count == 0) return 0;
+        return jdbcTemplate.execute((ConnectionCallback<Integer>) con -> {
+            int deleted = 0;
+            try (PreparedStatement ps = con.prepareStatement(DELETE_BY_ID_SQL)) {
+                for (int i = 0; i < count; i++) {
+                    ps.setLong(1, ids[i]);
+                    setDate(ps, 2, fechas[i]);
+                    ps.addBatch();
+                    if ((i + 1) % BATCH_SIZE == 0) deleted += sum(ps.executeBatch());
+                }
+                if (count % BATCH_SIZE != 0) deleted += sum(ps.executeBatch());
+            }
+            return deleted;
+        });
+    }
+
+    private boolean isPostgres(Connection con) throws SQLException {
+        Boolean pg = postgres;
+        if (pg == null) {
+            pg = "PostgreSQL".equalsIgnoreCase(con.getMetaData().getDatabaseProductName());
+            postgres = pg;
+        }
+        return pg;
+    }
+
+    private void assignIds(Connection con, ProductionBatch batch) throws SQLException {
+        int blocks = (batch.size() + ID_BLOCK_SIZE - 1) / ID_BLOCK_SIZE;
+        long[] his = isPostgres(con) ? nextValuesPostgres(con, blocks) : nextValuesOneByOne(con, blocks);
+        int i = 0;
+        for (long hi : his) {
+            long id = hi - ID_BLOCK_SIZE + 1;
+            for (int k = 0; k < ID_BLOCK_SIZE && i < batch.size(); k++) {
+                batch.setId(i++, id++);
+            }
+        }
+    }
+
+    private long[] nextValuesPostgres(Connection con, int count) throws SQLException {
+        long[] values = new long[count];
+        int filled = 0;
+        while (filled < count) {
+            try (PreparedStatement ps = con.prepareStatement("SELECT nextval('" + SEQUENCE + "') FROM generate_series(1, ?)")) {
+                ps.setInt(1, count - filled);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) filled = acceptHi(values, filled, rs.getLong(1));
+                }
+            }
+        }
+        return values;
+    }
+
+    private long[] nextValuesOneByOne(Connection con, int count) throws SQLException {
+        long[] values = new long[count];
+        int filled = 0;
+        try (PreparedStatement ps = con.prepareStatement("SELECT NEXT VALUE FOR " + SEQUENCE)) {
+            while (filled < count) {
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    filled = acceptHi(values, filled, rs.getLong(1));
+                }
+            }
+        }
+        return values;
+    }
+
+    // Un valor menor que el tamaño de bloque es el inicial de la secuencia: Hibernate también lo descarta como techo
+    private static int acceptHi(long[] values, int filled, long hi) {
+        if (hi < ID_BLOCK_SIZE) return filled;
+        values[filled] = hi;
+        return filled + 1;
+    }
+
+    private int copyIn(Connection con, String table, ProductionBatch batch) throws SQLException {
+        CopyIn copy = con.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL.formatted(table));
+        try {
+            StringBuilder sb = new StringBuilder(COPY_FLUSH_BYTES + 1024);
+            for (int row = 0; row < batch.size(); row++) {
+                appendCsvRow(sb, batch, row);
+                if (sb.length() >= COPY_FLUSH_BYTES) {
+                    writeTo(copy, sb);
+                }
+            }
+            if (!sb.isEmpty()) writeTo(copy, sb);
+            long rows = copy.endCopy();
+            log.debug("COPY inserted {} rows into {}", rows, table);
+            return (int) rows;
+        } finally {
+            if (copy.isActive()) {
+                copy.cancelCopy();
+            }
+        }
+    }
+
+    private static void writeTo(CopyIn copy, StringBuilder sb) throws SQLException {
+        byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8); // el driver fija client_encoding=UTF8
+        copy.writeToCopy(bytes, 0, bytes.length);
+        sb.setLength(0);
+    }
+
+    private int batchInsert(Connection con, String table, ProductionBatch batch) throws SQLException {
+        int inserted = 0;
+        try (PreparedStatement ps = con.prepareStatement(INSERT_SQL.formatted(table))) {
+            int pending = 0;
+            for (int row = 0; row < batch.size(); row++) {
+                bind(ps, batch, row);
+                ps.addBatch();
+                if (++pending == BATCH_SIZE) {
+                    inserted += sum(ps.executeBatch());
+                    pending = 0;
+                }
+            }
+            if (pending > 0) inserted += sum(ps.executeBatch());
+        }
+        return inserted;
+    }
+
+    private static int sum(int[] counts) {
+        int total = 0;
+        for (int c : counts) total += c == java.sql.Statement.SUCCESS_NO_INFO ? 1 : c;
+        return total;
+    }
+
+    private static void bind(PreparedStatement ps, ProductionBatch b, int row) throws SQLException {
+        ps.setLong(1, b.id(row));
+        setDate(ps, 2, b.fechaDay(row));
+        ps.setLong(3, b.maquinaId(row));
+        if (b.maquinistaId(row) != 0) ps.setLong(4, b.maquinistaId(row)); else ps.setNull(4, Types.BIGINT);
+        setLong(ps, 5, b.numeroLog(row));
+        bindPayload(ps, 6, b, row);
+    }
+
+    // Columnas no clave en el orden de COLUMNS / UPDATE_SQL; devuelve el siguiente índice libre
+    private static int bindPayload(PreparedStatement ps, int i, ProductionBatch b, int row) throws SQLException {
+        setTime(ps, i++, b.horaSecond(row));
+        setDate(ps, i++, b.fechaNotificacionDay(row));
+        setLong(ps, i++, b.documento(row));
+        setLong(ps, i++, b.materialSku(row));
+        ps.setString(i++, b.materialDescripcion(row));
+        if (b.numeroPallet(row) != ProductionRow.NULL_INT) ps.setInt(i++, b.numeroPallet(row)); else ps.setNull(i++, Types.INTEGER);
+        setDecimal(ps, i++, b.cantidadScaled(row));
+        setDecimal(ps, i++, b.pesoNetoScaled(row));
+        ps.setString(i++, b.lista(row));
+        ps.setString(i++, b.versionProduccion(row));
+        setLong(ps, i++, b.centroCostos(row));
+        ps.setString(i++, b.turno(row));
+        ps.setString(i++, b.jornada(row));
+        ps.setString(i++, b.usuarioSap(row));
+        ps.setString(i++, b.bodeguero(row));
+        ps.setString(i++, b.statusOrigen(row));
+        setLong(ps, i++, b.contentHash(row));
+        return i;
+    }
+
+    private static void setLong(PreparedStatement ps, int index, long value) throws SQLException {
+        if (value != ProductionRow.NULL_LONG) ps.setLong(index, value); else ps.setNull(index, Types.BIGINT);
+    }
+
+    private static void setDecimal(PreparedStatement ps, int index, long scaled) throws SQLException {
+        if (scaled != ProductionRow.NULL_LONG) ps.setBigDecimal(index, BigDecimal.valueOf(scaled, ProductionRow.DECIMAL_SCALE));
+        else ps.setNull(index, Types.NUMERIC);
+    }
+
+    private static void setDate(PreparedStatement ps, int index, LocalDate value) throws SQLException {
+        ps.setObject(index, value, Types.DATE);
+    }
+
+    private static void setDate(PreparedStatement ps, int index, int epochDay) throws SQLException {
+        setDate(ps, index, epochDay != ProductionRow.NULL_INT ? LocalDate.ofEpochDay(epochDay) : null);
+    }
+
+    private static void setTime(PreparedStatement ps, int index, int secondOfDay) throws SQLException {
+        ps.setObject(index, secondOfDay != ProductionRow.NULL_INT ? LocalTime.ofSecondOfDay(secondOfDay) : null, Types.TIME);
+    }
+
+    /**
+     * Fila CSV en el mismo orden que {@link #COLUMNS}. Los nulos se escriben como campo vacío sin comillas
+     * y todo texto va entre comillas, así que un String vacío no se confunde con NULL.
+     */
+    static void appendCsvRow(StringBuilder sb, ProductionBatch b, int row) {
+        sb.append(b.id(row)).append(',');
+        appendDate(sb, b.fechaDay(row)).append(',');
+        sb.append(b.maquinaId(row)).append(',');
+        if (b.maquinistaId(row) != 0) sb.append(b.maquinistaId(row));
+        sb.append(',');
+        appendLong(sb, b.numeroLog(row)).append(',');
+        appendTime(sb, b.horaSecond(row)).append(',');
+        appendDate(sb, b.fechaNotificacionDay(row)).append(',');
+        appendLong(sb, b.documento(row)).append(',');
+        appendLong(sb, b.materialSku(row)).append(',');
+        appendQuoted(sb, b.materialDescripcion(row)).append(',');
+        if (b.numeroPallet(row) != ProductionRow.NULL_INT) sb.append(b.numeroPallet(row));
+        sb.append(',');
+        appendDecimal(sb, b.cantidadScaled(row)).append(',');
+        appendDecimal(sb, b.pesoNetoScaled(row)).append(',');
+        appendQuoted(sb, b.lista(row)).append(',');
+        appendQuoted(sb, b.versionProduccion(row)).append(',');
+        appendLong(sb, b.centroCostos(row)).append(',');
+        appendQuoted(sb, b.turno(row)).append(',');
+        appendQuoted(sb, b.jornada(row)).append(',');
+        appendQuoted(sb, b.usuarioSap(row)).append(',');
+        appendQuoted(sb, b.bodeguero(row)).append(',');
+        appendQuoted(sb, b.statusOrigen(row)).append(',');
+        appendLong(sb, b.contentHash(row)).append('\n');
+    }
+
+    private static StringBuilder appendLong(StringBuilder sb, long value) {
+        return value == ProductionRow.NULL_LONG ? sb : sb.append(value);
+    }
+
+    // ISO yyyy-MM-dd, sin comillas
+    private static StringBuilder appendDate(StringBuilder sb, int epochDay) {
+        return epochDay == ProductionRow.NULL_INT ? sb : sb.append(LocalDate.ofEpochDay(epochDay));
+    }
+
+    // HH:mm:ss, sin comillas
+    private static StringBuilder appendTime(StringBuilder sb, int secondOfDay) {
+        if (secondOfDay == ProductionRow.NULL_INT) return sb;
+        return appendTwoDigits(appendTwoDigits(appendTwoDigits(sb, secondOfDay / 3600).append(':'),
+                secondOfDay / 60 % 60).append(':'), secondOfDay % 60);
+    }
+
+    private static StringBuilder appendTwoDigits(StringBuilder sb, int value) {
+        return sb.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+
+    // Texto plano con DECIMAL_SCALE decimales, p.ej. -12.3450
+    private static StringBuilder appendDecimal(StringBuilder sb, long scaled) {
+        if (scaled == ProductionRow.NULL_LONG) return sb;
+        if (scaled < 0) sb.append('-');
+        long abs = Math.abs(scaled);
+        sb.append(abs / DECIMAL_FACTOR).append('.');
+        String fraction = Long.toString(abs % DECIMAL_FACTOR);
+        for (int i = fraction.length(); i < ProductionRow.DECIMAL_SCALE; i++) sb.append('0');
+        return sb.append(fraction);
+    }
+
+    private static StringBuilder appendQuoted(StringBuilder sb, String value) {
+        if (value == null) return sb;
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') sb.append('"');
+            sb.append(c);
+        }
+        return sb.append('"');
+    }
+
+    /** Recibe cada fila existente de {@link #forEachKeyInRange}; maquinistaFk es 0 cuando la columna es NULL. */
+    @FunctionalInterface
+    public interface ExistingRowHandler {
+        void onRow(long id, LocalDate fecha, long maquinaFk, long maquinistaFk, long numeroLog, Long contentHash);
+    }
+}
@@ -0,0 +1,68 @@
+package com.cambiaso.ioc.persistence.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+
+/**
+ * Mantenimiento del rollup diario {@code fact_production_daily} (ver {@code sql/fact_production_daily.sql}):
+ * una fila por día x máquina x maquinista x turno con SUM(cantidad), SUM(peso_neto) y COUNT(*).
+ *
+ * {@link #refreshRange} recalcula los días indicados a partir de fact_production y debe ejecutarse en la misma
+ * transacción que la carga, para que el rollup nunca quede desfasado respecto de los hechos.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class FactProductionDailyRepository {
+
+    public static final String TABLE = "fact_production_daily";
+
+    private static final String EXISTS_SQL = "SELECT COUNT(*) FROM information_schema.tables WHERE LOWER(table_name) = '" + TABLE + "'";
+    private static final String DELETE_RANGE_SQL = "DELETE FROM " + TABLE + " WHERE fecha_contabilizacion BETWEEN ? AND ?";
+    private static final String REBUILD_RANGE_SQL = "INSERT INTO " + TABLE
+            + " (fecha_contabilizacion, maquina_fk, maquinista_fk, turno, total_cantidad, total_peso_neto, num_registros)"
+            + " SELECT fp.fecha_contabilizacion, fp.maquina_fk, COALESCE(fp.maquinista_fk, 0), fp.turno,"
+            + " SUM(fp.cantidad), SUM(fp.peso_neto), COUNT(*)"
+            + " FROM fact_production fp WHERE fp.fecha_contabilizacion BETWEEN ? AND ?"
+            + " GROUP BY fp.fecha_contabilizacion, fp.maquina_fk, COALESCE(fp.maquinista_fk, 0), fp.turno";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile Boolean available; // el script se aplica con la app detenida; se resuelve una vez
+
+    /** true si la tabla del rollup existe (el script SQL ya se aplicó). */
+    public boolean isAvailable() {
+        Boolean a = available;
+        if (a == null) {
+            try {
+                Long n = jdbcTemplate.queryForObject(EXISTS_SQL, Long.class);
+                a = n != null && n > 0;
+            } catch (RuntimeException e) {
+                log.warn("Could not determine whether {} exists: {}", TABLE, e.getMessage());
+                a = false;
+            }
+            available = a;
+            if (!a) {
+                log.warn("{} not found; analytics will read raw fact_production (apply sql/fact_production_daily.sql)", TABLE);
+            }
+        }
+        return a;
+    }
+
+    /**
+     * Recalcula el rollup de [from, to]: borra esos días y los vuelve a agregar desde fact_production.
+     * Los días que quedaron sin hechos quedan sin filas.
+     *
+     * @return filas del rollup escritas
+     */
+    public int refreshRange(LocalDate from, LocalDate to) {
+        int removed = jdbcTemplate.update(DELETE_RANGE_SQL, from, to);
+        int written = jdbcTemplate.update(REBUILD_RANGE_SQL, from, to);
+        log.debug("Refreshed {} for {} to {}: {} rows removed, {} rows written", TABLE, from, to, removed, written);
+        return written;
+    }
+}
@@ -0,0 +1,93 @@
+package com.cambiaso.ioc.persistence.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Acceso a las particiones mensuales de {@code fact_production} creadas por
+ * {@code sql/fact_production_partitioning.sql} (una partición {@code fact_production_pYYYY_MM} por mes).
+ *
+ * Si la tabla no está particionada (o la base no es PostgreSQL, como H2 en tests) {@link #isPartitioned()}
+ * devuelve false y el llamador debe seguir borrando por rango.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class FactProductionPartitionRepository {
+
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final String IS_PARTITIONED_SQL = "SELECT COUNT(*) FROM pg_partitioned_table pt "
+            + "JOIN pg_class c ON c.oid = pt.partrelid WHERE c.relname = 'fact_production' AND c.relnamespace = 'public'::regnamespace";
+    private static final String ATTACHED_SQL = "SELECT COUNT(*) FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+            + "WHERE i.inhparent = 'public.fact_production'::regclass AND c.relname = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FactProductionBulkRepository bulkRepository;
+
+    private volatile Boolean partitioned; // la migración se aplica con la app detenida; se resuelve una vez
+
+    public boolean isPartitioned() {
+        Boolean p = partitioned;
+        if (p == null) {
+            try {
+                p = bulkRepository.isPostgres() && count(IS_PARTITIONED_SQL) > 0;
+            } catch (RuntimeException e) {
+                log.warn("Could not determine whether fact_production is partitioned: {}", e.getMessage());
+                p = false;
+            }
+            partitioned = p;
+            log.info("fact_production partitioned by month: {}", p);
+        }
+        return p;
+    }
+
+    /** Crea las particiones mensuales que falten para [from, to]. Devuelve cuántas se crearon. */
+    public int ensurePartitions(LocalDate from, LocalDate to) {
+        Integer created = jdbcTemplate.queryForObject("SELECT public.ensure_fact_production_partitions(?, ?)", Integer.class, from, to);
+        if (created != null && created > 0) {
+            log.info("Created {} fact_production partition(s) for {} to {}", created, from, to);
+        }
+        return created == null ? 0 : created;
+    }
+
+    public static String partitionName(YearMonth month) {
+        return "fact_production_p" + month.format(PARTITION_SUFFIX);
+    }
+
+    /** true si existe la partición del mes y está adjunta a fact_production con el nombre convencional. */
+    public boolean hasPartition(YearMonth month) {
+        return count(ATTACHED_SQL, partitionName(month)) > 0;
+    }
+
+    /**
+     * Vacía la partición del mes con TRUNCATE (sin tuplas muertas ni WAL por fila). Es transaccional, pero toma
+     * ACCESS EXCLUSIVE sobre esa partición hasta el commit: las lecturas de ese mes esperan a la carga.
+     *
+     * @return filas que tenía la partición
+     */
+    public long truncateMonth(YearMonth month) {
+        String partition = partitionName(month);
+        long rows = count("SELECT COUNT(*) FROM public." + partition);
+        jdbcTemplate.execute("TRUNCATE TABLE public." + partition);
+        log.debug("Truncated partition {} ({} rows)", partition, rows);
+        return rows;
+    }
+
+    /** Particiones adjuntas a fact_production (diagnóstico). */
+    public List<String> listPartitions() {
+        return jdbcTemplate.queryForList("SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+                + "WHERE i.inhparent = 'public.fact_production'::regclass ORDER BY c.relname", String.class);
+    }
+
+    private long count(String sql, Object... args) {
+        Long n = jdbcTemplate.queryForObject(sql, Long.class, args);
+        return n == null ? 0 : n;
+    }
+}
@@ -0,0 +1,99 @@
+package com.cambiaso.ioc.persistence.repository;
+
+import com.cambiaso.ioc.service.etl.ProductionRow;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Operaciones sobre tablas de staging de {@code fact_production} para la carga en dos fases.
+ *
+ * Cada carga usa su propia tabla {@code fact_production_stage_<hex>}: en PostgreSQL es UNLOGGED (sin WAL) y en
+ * ningún caso tiene índices, PK ni FKs, así que el COPY, la validación y la deduplicación no tocan la tabla que
+ * leen los dashboards. Solo {@link #publish} escribe en {@code fact_production}, y debe ejecutarse en una
+ * transacción corta.
+ *
+ * Los nombres de tabla se generan aquí y se validan antes de concatenarse al SQL.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class FactProductionStagingRepository {
+
+    private static final String STAGE_PREFIX = "fact_production_stage_";
+    private static final String NATURAL_KEY_MATCH = "t.fecha_contabilizacion = s.fecha_contabilizacion "
+            + "AND t.maquina_fk = s.maquina_fk AND COALESCE(t.maquinista_fk, 0) = COALESCE(s.maquinista_fk, 0) "
+            + "AND t.numero_log = s.numero_log";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FactProductionBulkRepository bulkRepository;
+
+    /** Crea una tabla de staging vacía con las columnas de fact_production y sin restricciones. */
+    public String createStage() {
+        String stage = STAGE_PREFIX + UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+        String unlogged = bulkRepository.isPostgres() ? "UNLOGGED " : "";
+        // CREATE TABLE AS no copia NOT NULL, PK, FKs ni índices
+        jdbcTemplate.execute("CREATE " + unlogged + "TABLE " + stage + " AS SELECT "
+                + FactProductionBulkRepository.COLUMNS + " FROM " + FactProductionBulkRepository.TABLE + " WITH NO DATA");
+        log.debug("Created staging table {}", stage);
+        return stage;
+    }
+
+    /** Carga los registros en la tabla de staging (COPY en PostgreSQL), asignándoles id. */
+    public int load(String stage, List<ProductionRow> records) {
+        return bulkRepository.insertInto(checked(stage), records);
+    }
+
+    /**
+     * Valida y deduplica la tabla de staging con SQL set-based:
+     * descarta filas con columnas obligatorias nulas, fuera de [minDate, maxDate] o con máquina/maquinista
+     * inexistente, y de cada clave natural repetida conserva solo la de menor id (la primera del archivo).
+     */
+    public CleanseResult cleanse(String stage, LocalDate minDate, LocalDate maxDate) {
+        checked(stage);
+        int invalid = jdbcTemplate.update("DELETE FROM " + stage + " s WHERE s.fecha_contabilizacion IS NULL "
+                + "OR s.maquina_fk IS NULL OR s.numero_log IS NULL OR s.hora_contabilizacion IS NULL "
+                + "OR s.fecha_notificacion IS NULL OR s.material_sku IS NULL OR s.cantidad IS NULL "
+                + "OR s.peso_neto IS NULL OR s.turno IS NULL "
+                + "OR s.fecha_contabilizacion < ? OR s.fecha_contabilizacion > ? "
+                + "OR NOT EXISTS (SELECT 1 FROM dim_maquina m WHERE m.id = s.maquina_fk) "
+                + "OR (s.maquinista_fk IS NOT NULL AND NOT EXISTS (SELECT 1 FROM dim_maquinista q WHERE q.id = s.maquinista_fk))",
+                minDate, maxDate);
+        int duplicates = jdbcTemplate.update("DELETE FROM " + stage + " s WHERE EXISTS (SELECT 1 FROM " + stage
+                + " t WHERE " + NATURAL_KEY_MATCH + " AND t.id < s.id)");
+        if (bulkRepository.isPostgres()) {
+            jdbcTemplate.execute("ANALYZE " + stage); // estadísticas para el INSERT ... SELECT del swap
+        }
+        return new CleanseResult(invalid, duplicates);
+    }
+
+    /**
+     * Inserta el contenido de la tabla de staging en fact_production. El llamador borra antes la ventana y ambas
+     * operaciones deben ir en la misma transacción (corta), que es la que hace visible el cambio.
+     *
+     * @return filas insertadas
+     */
+    public int publish(String stage) {
+        return jdbcTemplate.update("INSERT INTO " + FactProductionBulkRepository.TABLE + " ("
+                + FactProductionBulkRepository.COLUMNS + ") SELECT " + FactProductionBulkRepository.COLUMNS + " FROM " + checked(stage));
+    }
+
+    public void dropStage(String stage) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + checked(stage));
+        log.debug("Dropped staging table {}", stage);
+    }
+
+    private static String checked(String stage) {
+        if (stage == null || !stage.matches(STAGE_PREFIX + "[0-9a-f]{12}")) {
+            throw new IllegalArgumentException("Invalid staging table name: " + stage);
+        }
+        return stage;
+    }
+
+    public record CleanseResult(int invalid, int duplicates) { }
+}
@@ -0,0 +1,44 @@
+package com.cambiaso.ioc.persistence.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Escritura por lotes de {@code quarantined_records} con JDBC, sin entidades: la usa
+ * {@link com.cambiaso.ioc.service.QuarantineWriter} para volcar las líneas rechazadas por el parser. Las lecturas
+ * (paginado por job) van por {@link QuarantinedRecordRepository}.
+ */
+@Repository
+@RequiredArgsConstructor
+public class QuarantineBulkRepository {
+
+    private static final String INSERT_SQL = "INSERT INTO quarantined_records"
+            + " (job_id, file_name, line_number, raw_line, error_type, error_details, created_at)"
+            + " VALUES (?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /** Línea rechazada de un job. */
+    public record Row(UUID jobId, String fileName, int lineNumber, String rawLine, String errorType, String errorDetails) {}
+
+    public void insertAll(List<Row> rows) {
+        if (rows.isEmpty()) return;
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows, rows.size(), (ps, row) -> {
+            ps.setObject(1, row.jobId());
+            ps.setString(2, row.fileName());
+            ps.setInt(3, row.lineNumber());
+            ps.setString(4, row.rawLine());
+            ps.setString(5, row.errorType());
+            ps.setString(6, row.errorDetails());
+        });
+    }
+
+    /** Borra la cuarentena de un job (antes de volver a parsear su archivo). @return filas borradas */
+    public int deleteByJob(UUID jobId) {
+        return jdbcTemplate.update("DELETE FROM quarantined_records WHERE job_id = ?", jobId);
+    }
+}
@@ -1,7 +1,15 @@
 package com.cambiaso.ioc.persistence.repository;
 
 import com.cambiaso.ioc.persistence.entity.QuarantinedRecord;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.UUID;
+
 public interface QuarantinedRecordRepository extends JpaRepository<QuarantinedRecord, Long> {
+
+    Page<QuarantinedRecord> findByEtlJob_JobId(UUID jobId, Pageable pageable);
+
+    long countByEtlJob_JobId(UUID jobId);
 }
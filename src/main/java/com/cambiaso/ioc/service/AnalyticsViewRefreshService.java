@@ -0,0 +1,121 @@
+package com.cambiaso.ioc.service;
+
+import com.cambiaso.ioc.persistence.repository.AnalyticsMaterializedViewRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Refresca las vistas materializadas analíticas (sql/analytics_materialized_views.sql) tras los jobs ETL en EXITO.
+ *
+ * Los pedidos se agrupan (debounce): cada job que termina posterga el refresh {@code debounce-ms}, sin superar
+ * {@code max-wait-ms} desde el primer pedido pendiente, de modo que varios jobs seguidos producen un solo refresh.
+ * El refresh corre en un hilo propio y es CONCURRENTLY: ni el ETL ni los lectores lo esperan.
+ *
+ * Métricas: {@code analytics.matview.refresh.duration} (result=success|failure) y
+ * {@code analytics.matview.staleness} (segundos desde la carga más antigua aún no reflejada; 0 si están al día).
+ */
+@Slf4j
+@Service
+public class AnalyticsViewRefreshService {
+
+    private final AnalyticsMaterializedViewRepository matviewRepository;
+    private final MeterRegistry meterRegistry;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "analytics-matview-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Value("${analytics.matview.refresh.enabled:true}")
+    private boolean enabled;
+    @Value("${analytics.matview.refresh.debounce-ms:30000}")
+    private long debounceMs;
+    @Value("${analytics.matview.refresh.max-wait-ms:300000}")
+    private long maxWaitMs;
+
+    private final Object lock = new Object();
+    private ScheduledFuture<?> pending;   // guardado por lock
+    private long pendingSeq;              // guardado por lock
+    private long firstPendingAtMillis;    // guardado por lock
+
+    private final AtomicLong staleSinceMillis = new AtomicLong();   // 0 = vistas al día
+    private final AtomicLong lastRequestAtMillis = new AtomicLong();
+
+    public AnalyticsViewRefreshService(AnalyticsMaterializedViewRepository matviewRepository, MeterRegistry meterRegistry) {
+        this.matviewRepository = matviewRepository;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("analytics.matview.staleness", this::stalenessSeconds)
+            .description("Seconds since the oldest ETL load not yet reflected in the analytics materialized views")
+            .baseUnit("seconds")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Pide un refresh de las vistas (tras un job en EXITO). No bloquea: agenda o posterga el refresh pendiente.
+     * No hace nada si el refresh está deshabilitado o las vistas no existen.
+     */
+    public void requestRefresh() {
+        if (!enabled || !matviewRepository.isAvailable()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        lastRequestAtMillis.set(now);
+        staleSinceMillis.compareAndSet(0, now);
+        synchronized (lock) {
+            // Si el pendiente ya empezó a ejecutarse cancel() falla y este pedido abre una nueva ventana
+            if (pending == null || !pending.cancel(false)) {
+                firstPendingAtMillis = now;
+            }
+            long delay = Math.max(0, Math.min(debounceMs, firstPendingAtMillis + maxWaitMs - now));
+            long seq = ++pendingSeq;
+            pending = scheduler.schedule(() -> runScheduled(seq), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void runScheduled(long seq) {
+        synchronized (lock) {
+            if (seq == pendingSeq) {
+                pending = null;
+            }
+        }
+        refreshNow();
+    }
+
+    /** Refresca las vistas en el hilo actual. Un fallo se registra y las vistas quedan marcadas como desactualizadas. */
+    void refreshNow() {
+        long startedAt = System.currentTimeMillis();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            matviewRepository.refreshAll();
+            sample.stop(meterRegistry.timer("analytics.matview.refresh.duration", "result", "success"));
+            // Los pedidos llegados durante el refresh pueden no estar reflejados: siguen contando como pendientes
+            long last = lastRequestAtMillis.get();
+            staleSinceMillis.set(last < startedAt ? 0 : last);
+            log.info("Refreshed analytics materialized views in {} ms", System.currentTimeMillis() - startedAt);
+        } catch (RuntimeException e) {
+            sample.stop(meterRegistry.timer("analytics.matview.refresh.duration", "result", "failure"));
+            log.error("Failed to refresh analytics materialized views; they stay stale until the next ETL job", e);
+        }
+    }
+
+    double stalenessSeconds() {
+        long since = staleSinceMillis.get();
+        return since == 0 ? 0 : (System.currentTimeMillis() - since) / 1000.0;
+    }
+
+    @PreDestroy
+    void shutdownScheduler() {
+        scheduler.shutdownNow();
+    }
+}
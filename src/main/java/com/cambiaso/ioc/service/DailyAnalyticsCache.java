@@ -0,0 +1,231 @@
+package com.cambiaso.ioc.service;
+
+import com.cambiaso.ioc.config.CacheConfig;
+import com.cambiaso.ioc.dto.analytics.*;
+import com.cambiaso.ioc.persistence.repository.DashboardAnalyticsRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache de resúmenes analíticos por día (caché {@code analyticsDaily}).
+ *
+ * Cada día se resume una vez (totales y sumas parciales por turno, máquina y maquinista) y cualquier rango se
+ * responde combinando los resúmenes de sus días: solo los días ausentes o invalidados van a la base, agrupados en
+ * tramos contiguos. Así "últimos 30 días" y "últimos 31 días" comparten casi todo el trabajo. Los top 10 se
+ * calculan al combinar, a partir de las sumas parciales.
+ *
+ * DataSyncService invalida los días que reescribe tras el commit de la carga. Esa invalidación solo alcanza la caché
+ * local del nodo que ejecuta la carga, por eso este modo no es el predeterminado de
+ * {@code ai.explanation.analytics.fetch-mode} mientras varios nodos puedan procesar jobs. Hoy y los días futuros
+ * nunca se cachean: siguen recibiendo cargas y siempre se leen de la base.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DailyAnalyticsCache {
+
+    private static final int TOP_N = 10;
+
+    private final DashboardAnalyticsRepository analyticsRepository;
+    private final CacheManager cacheManager;
+    private final MeterRegistry meterRegistry;
+
+    // Se incrementa en cada invalidación: una carga de días iniciada antes no publica resultados posiblemente viejos
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Devuelve los cinco agregados del rango (mismo contenido que
+     * {@link DashboardAnalyticsRepository#fetchAnalyticsBundle}) combinando resúmenes diarios.
+     *
+     * @throws IllegalArgumentException si el rango no es válido o excede 12 meses
+     */
+    public AnalyticsBundleDto fetchBundle(LocalDate fechaInicio, LocalDate fechaFin) {
+        DashboardAnalyticsRepository.validateDateRange(fechaInicio, fechaFin);
+        Cache cache = cache();
+
+        Map<LocalDate, DaySummary> summaries = new LinkedHashMap<>();
+        List<LocalDate> missing = new ArrayList<>();
+        for (LocalDate d = fechaInicio; !d.isAfter(fechaFin); d = d.plusDays(1)) {
+            Cache.ValueWrapper cached = cache == null ? null : cache.get(d);
+            if (cached != null) {
+                summaries.put(d, (DaySummary) cached.get());
+            } else {
+                missing.add(d);
+            }
+        }
+        meterRegistry.counter("analytics.daily.cache", "result", "hit").increment(summaries.size());
+        meterRegistry.counter("analytics.daily.cache", "result", "miss").increment(missing.size());
+
+        if (!missing.isEmpty()) {
+            long loadGeneration = generation.get();
+            Map<LocalDate, DaySummary> loaded = loadDays(missing);
+            summaries.putAll(loaded);
+            if (cache != null && generation.get() == loadGeneration) {
+                LocalDate today = LocalDate.now();
+                loaded.forEach((day, summary) -> {
+                    if (day.isBefore(today)) {
+                        cache.put(day, summary);
+                    }
+                });
+            }
+            log.debug("Daily analytics for {} to {}: {} day(s) cached, {} day(s) loaded", fechaInicio, fechaFin,
+                summaries.size() - loaded.size(), loaded.size());
+        }
+        return combine(fechaInicio, fechaFin, summaries);
+    }
+
+    /** Invalida [from, to] al confirmarse la transacción en curso (o de inmediato si no hay transacción). */
+    public void invalidateAfterCommit(LocalDate from, LocalDate to) {
+        runAfterCommit(() -> {
+            generation.incrementAndGet();
+            Cache cache = cache();
+            if (cache != null) {
+                for (LocalDate d = from; !d.isAfter(to); d = d.plusDays(1)) {
+                    cache.evict(d);
+                }
+            }
+        });
+    }
+
+    /** Invalida los días indicados al confirmarse la transacción en curso (o de inmediato si no hay transacción). */
+    public void invalidateDaysAfterCommit(Collection<LocalDate> days) {
+        List<LocalDate> copy = List.copyOf(days);
+        runAfterCommit(() -> {
+            generation.incrementAndGet();
+            Cache cache = cache();
+            if (cache != null) {
+                copy.forEach(cache::evict);
+            }
+        });
+    }
+
+    private void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private Cache cache() {
+        return cacheManager.getCache(CacheConfig.DAILY_ANALYTICS_CACHE);
+    }
+
+    // Una consulta por tramo contiguo de días ausentes; los días sin filas quedan como resumen vacío
+    private Map<LocalDate, DaySummary> loadDays(List<LocalDate> missing) {
+        Map<LocalDate, DaySummary> loaded = new HashMap<>();
+        int i = 0;
+        while (i < missing.size()) {
+            int j = i;
+            while (j + 1 < missing.size() && missing.get(j + 1).equals(missing.get(j).plusDays(1))) {
+                j++;
+            }
+            LocalDate from = missing.get(i);
+            LocalDate to = missing.get(j);
+            for (LocalDate d = from; !d.isAfter(to); d = d.plusDays(1)) {
+                loaded.put(d, new DaySummary());
+            }
+            for (DailyPartialDto row : analyticsRepository.fetchDailyPartials(from, to)) {
+                loaded.get(row.fecha()).add(row);
+            }
+            i = j + 1;
+        }
+        return loaded;
+    }
+
+    private AnalyticsBundleDto combine(LocalDate fechaInicio, LocalDate fechaFin, Map<LocalDate, DaySummary> summaries) {
+        long registros = 0;
+        BigDecimal unidades = BigDecimal.ZERO;
+        BigDecimal peso = BigDecimal.ZERO;
+        Map<String, Partial> turnos = new HashMap<>();
+        Map<Long, Partial> maquinas = new HashMap<>();
+        Map<Long, Partial> maquinistas = new HashMap<>();
+        List<DailyTrendPoint> tendencia = new ArrayList<>();
+
+        for (LocalDate d = fechaInicio; !d.isAfter(fechaFin); d = d.plusDays(1)) {
+            DaySummary day = summaries.get(d);
+            if (day == null || day.registros == 0) {
+                continue;
+            }
+            registros += day.registros;
+            unidades = unidades.add(day.unidades);
+            peso = peso.add(day.peso);
+            day.turnos.forEach((k, v) -> turnos.merge(k, v, Partial::plus));
+            day.maquinas.forEach((k, v) -> maquinas.merge(k, v, Partial::plus));
+            day.maquinistas.forEach((k, v) -> maquinistas.merge(k, v, Partial::plus));
+            tendencia.add(new DailyTrendPoint(d, day.unidades, (int) day.registros));
+        }
+
+        List<TurnoDistributionDto> distribucion = turnos.entrySet().stream()
+            .sorted(Map.Entry.<String, Partial>comparingByValue(Partial.BY_UNIDADES_DESC))
+            .map(e -> new TurnoDistributionDto(e.getKey(), e.getValue().unidades, (int) e.getValue().registros))
+            .toList();
+        List<TopMachineDto> topMaquinas = maquinas.values().stream()
+            .sorted(Partial.BY_UNIDADES_DESC)
+            .limit(TOP_N)
+            .map(p -> new TopMachineDto(p.nombre, p.codigo, p.unidades, (int) p.registros))
+            .toList();
+        List<TopOperarioDto> topOperarios = maquinistas.values().stream()
+            .sorted(Partial.BY_UNIDADES_DESC)
+            .limit(TOP_N)
+            .map(p -> new TopOperarioDto(p.nombre, p.codigoNumerico, p.unidades, (int) p.registros))
+            .toList();
+
+        return new AnalyticsBundleDto(new TotalsDto(registros, unidades, peso), topOperarios, distribucion,
+            topMaquinas, tendencia);
+    }
+
+    /** Resumen de un día: totales y sumas parciales por turno, máquina (id) y maquinista (id). Inmutable una vez cacheado. */
+    static final class DaySummary {
+        private long registros;
+        private BigDecimal unidades = BigDecimal.ZERO;
+        private BigDecimal peso = BigDecimal.ZERO;
+        private final Map<String, Partial> turnos = new HashMap<>();
+        private final Map<Long, Partial> maquinas = new HashMap<>();
+        private final Map<Long, Partial> maquinistas = new HashMap<>();
+
+        private void add(DailyPartialDto row) {
+            BigDecimal u = row.totalUnidades() == null ? BigDecimal.ZERO : row.totalUnidades();
+            registros += row.numRegistros();
+            unidades = unidades.add(u);
+            peso = peso.add(row.pesoNeto() == null ? BigDecimal.ZERO : row.pesoNeto());
+            turnos.merge(row.turno(), new Partial(null, null, null, u, row.numRegistros()), Partial::plus);
+            if (row.maquinaId() != null) {
+                maquinas.merge(row.maquinaId(), new Partial(row.maquinaNombre(), row.maquinaCodigo(), null, u, row.numRegistros()), Partial::plus);
+            }
+            if (row.maquinistaId() != null) {
+                maquinistas.merge(row.maquinistaId(), new Partial(row.maquinistaNombre(), null, row.codigoMaquinista(), u, row.numRegistros()), Partial::plus);
+            }
+        }
+    }
+
+    private record Partial(String nombre, String codigo, Long codigoNumerico, BigDecimal unidades, long registros) {
+        static final Comparator<Partial> BY_UNIDADES_DESC = Comparator.comparing(Partial::unidades).reversed();
+
+        Partial plus(Partial other) {
+            return new Partial(nombre, codigo, codigoNumerico, unidades.add(other.unidades), registros + other.registros);
+        }
+    }
+}
@@ -1,7 +1,16 @@
 package com.cambiaso.ioc.service;
 
+import com.cambiaso.ioc.persistence.entity.DimMaquina;
+import com.cambiaso.ioc.persistence.entity.DimMaquinista;
 import com.cambiaso.ioc.persistence.entity.FactProduction;
+import com.cambiaso.ioc.persistence.repository.FactProductionBulkRepository;
+import com.cambiaso.ioc.persistence.repository.FactProductionDailyRepository;
+import com.cambiaso.ioc.persistence.repository.FactProductionPartitionRepository;
 import com.cambiaso.ioc.persistence.repository.FactProductionRepository;
+import com.cambiaso.ioc.persistence.repository.FactProductionStagingRepository;
+import com.cambiaso.ioc.service.etl.ProductionBatch;
+import com.cambiaso.ioc.service.etl.ProductionRow;
+import com.cambiaso.ioc.service.etl.RowContentHash;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Timer;
@@ -17,19 +26,41 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.SQLException;
 import java.time.Duration;
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class DataSyncService {
 
+    private static final String DEADLOCK_SQL_STATE = "40P01";
+
     private final FactProductionRepository factProductionRepository;
-    private final EntityManager entityManager; // Para advisory lock
+    private final EntityManager entityManager;
     private final MeterRegistry meterRegistry;
     private final TransactionTemplate transactionTemplate; // Ejecuta bloques transaccionales explícitos
+    private final FactProductionBulkRepository factProductionBulkRepository; // COPY / batch JDBC
+    private final FactProductionStagingRepository factProductionStagingRepository; // carga en dos fases
+    private final FactProductionPartitionRepository factProductionPartitionRepository; // particiones mensuales (si existen)
+    private final FactProductionDailyRepository factProductionDailyRepository; // rollup diario para analítica
+    private final DailyAnalyticsCache dailyAnalyticsCache; // resúmenes por día; se invalidan los días reescritos
+    private final EtlRangeLockManager rangeLockManager; // advisory locks por mes del rango cargado
 
     @Value("${etl.lock.enabled:true}")
     private boolean etlLockEnabled;
@@ -37,10 +68,20 @@ public class DataSyncService {
     private boolean retryUniqueEnabled;
     @Value("${etl.retry.unique.max-attempts:3}")
     private int retryMaxAttempts;
+    @Value("${etl.retry.deadlock.max-attempts:3}")
+    private int deadlockMaxAttempts; // intentos ante deadlock (40P01), independiente de etl.retry.unique.enabled
     @Value("${etl.lock.test.sleep-ms:0}")
     private long lockTestSleepMs; // SOLO para pruebas: delay artificial tras tomar el lock
     @Value("${etl.sync.test.sleep-ms:0}")
     private long syncTestSleepMs; // SOLO tests: pausa tras delete antes de inserts
+    @Value("${etl.sync.loader:jpa}")
+    private String syncLoader; // jpa = saveAll de Hibernate; copy = COPY en PostgreSQL (batch JDBC en otras BDs)
+    @Value("${etl.sync.mode:delete-insert}")
+    private String syncMode; // delete-insert | merge | staging
+    @Value("${etl.sync.partition-aware.enabled:true}")
+    private boolean partitionAware; // TRUNCATE de meses completos cuando fact_production está particionada
+    @Value("${etl.sync.rollup.enabled:true}")
+    private boolean rollupEnabled; // recalcula fact_production_daily para los días cargados
 
     // Métricas (lazily inicializadas)
     private Counter rowsDeletedCounter() { return meterRegistry.counter("etl.rows.deleted"); }
@@ -48,50 +89,188 @@ public class DataSyncService {
     private Timer syncDurationTimer() { return meterRegistry.timer("etl.sync.duration"); }
     private Counter syncAttemptCounter() { return meterRegistry.counter("etl.sync.attempts"); }
     private Counter syncCollisionCounter() { return meterRegistry.counter("etl.sync.collisions"); }
+    private Counter syncDeadlockCounter() { return meterRegistry.counter("etl.sync.deadlocks"); }
     private DistributionSummary windowDaysSummary() { return DistributionSummary.builder("etl.sync.window.days").publishPercentileHistogram().register(meterRegistry); }
     private DistributionSummary batchSizeSummary() { return DistributionSummary.builder("etl.sync.records.per.batch").publishPercentileHistogram().register(meterRegistry); }
+    private Counter mergeRowsCounter(String outcome) { return meterRegistry.counter("etl.sync.merge.rows", "outcome", outcome); }
+    private Timer stagingPhaseTimer(String phase) { return meterRegistry.timer("etl.sync.staging.duration", "phase", phase); }
+    private Counter stagingRejectedCounter(String reason) { return meterRegistry.counter("etl.sync.staging.rejected", "reason", reason); }
+    private Counter partitionTruncateCounter() { return meterRegistry.counter("etl.sync.partition.truncated"); }
+    private Counter lateMonthLockCounter() { return meterRegistry.counter("etl.sync.streaming.late.month.locks"); }
+    private Timer insertDurationTimer(String loader) { return meterRegistry.timer("etl.sync.insert.duration", "loader", loader); }
+    private Timer rollupRefreshTimer() { return meterRegistry.timer("etl.sync.rollup.duration"); }
+
+    /**
+     * Sincroniza el rango con el modo configurado en {@code etl.sync.mode}: {@code delete-insert} (por defecto),
+     * {@code merge} (ver {@link #syncMerge}) o {@code staging} (ver {@link #syncViaStaging}).
+     */
+    public SyncResult sync(LocalDate minDate, LocalDate maxDate, @NonNull List<ProductionRow> records) {
+        if (isMergeMode()) {
+            return syncMerge(minDate, maxDate, records);
+        }
+        if ("staging".equalsIgnoreCase(syncMode)) {
+            return syncViaStaging(minDate, maxDate, records);
+        }
+        long lockWaitMs = deleteInsert(minDate, maxDate, records);
+        return new SyncResult(records.size(), 0, 0, -1, lockWaitMs);
+    }
+
+    /**
+     * Sincronización diferencial sobre la clave natural ({@code uq_fact_prod_natural}): inserta las filas nuevas,
+     * actualiza solo las que cambiaron según {@code content_hash}, deja intactas las iguales y borra las filas del
+     * rango que ya no vienen en el archivo. El resultado final es el mismo que el delete-insert, pero sin reescribir
+     * las filas sin cambios (menos WAL, menos churn de índices y menos tuplas muertas).
+     */
+    public SyncResult syncMerge(LocalDate minDate, LocalDate maxDate, @NonNull List<ProductionRow> records) {
+        String scope = "date range " + minDate + " to " + maxDate + " (merge)";
+        return runWithRetry(scope, () -> executeMergeOnce(minDate, maxDate, records), () -> {
+            for (ProductionRow row : records) row.setId(0);
+        });
+    }
 
-    public void syncWithDeleteInsert(LocalDate minDate, LocalDate maxDate, @NonNull List<FactProduction> records) {
-        if (!retryUniqueEnabled) {
+    /**
+     * Carga en dos fases: los registros se copian a una tabla de staging propia (UNLOGGED en PostgreSQL, sin índices
+     * ni restricciones), donde se validan y deduplican con SQL set-based fuera de cualquier transacción sobre
+     * fact_production. Después, una única transacción corta toma el advisory lock y reemplaza la ventana con
+     * DELETE + INSERT ... SELECT desde staging. Los dashboards solo compiten con esa última transacción.
+     * La tabla de staging se elimina siempre al terminar.
+     */
+    public SyncResult syncViaStaging(LocalDate minDate, LocalDate maxDate, @NonNull List<ProductionRow> records) {
+        String scope = "date range " + minDate + " to " + maxDate + " (staging)";
+        String stage;
+        try {
+            stage = factProductionStagingRepository.createStage();
+        } catch (RuntimeException e) {
+            throw new DataSyncException(buildErr(scope, "could not create staging table"), e);
+        }
+        try {
+            long start = System.nanoTime();
+            for (ProductionRow row : records) {
+                row.setContentHash(RowContentHash.of(row));
+            }
+            int loaded = factProductionStagingRepository.load(stage, records);
+            FactProductionStagingRepository.CleanseResult cleanse = factProductionStagingRepository.cleanse(stage, minDate, maxDate);
+            stagingPhaseTimer("load").record(Duration.ofNanos(System.nanoTime() - start));
+            stagingRejectedCounter("invalid").increment(cleanse.invalid());
+            stagingRejectedCounter("duplicate").increment(cleanse.duplicates());
+            if (cleanse.invalid() > 0 || cleanse.duplicates() > 0) {
+                log.warn("Staging {} for {}: {} rows loaded, {} invalid and {} duplicate rows discarded", stage, scope, loaded, cleanse.invalid(), cleanse.duplicates());
+            }
+            return runWithRetry(scope, () -> executeSwapOnce(stage, minDate, maxDate), () -> { });
+        } catch (DataSyncException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new DataSyncException(buildErr(scope, "staging load failed"), e);
+        } finally {
             try {
-                syncAttemptCounter().increment();
-                executeOnce(minDate, maxDate, records);
-            } catch (DataIntegrityViolationException dive) {
-                throw new DataSyncException(buildErr(minDate, maxDate, "data integrity violation"), dive);
+                factProductionStagingRepository.dropStage(stage);
             } catch (RuntimeException e) {
-                if (isUniqueConstraintViolation(e)) {
-                    log.warn("Unique constraint violation (no-retry mode) for range {} to {}: {}", minDate, maxDate, e.getMessage());
-                }
-                throw new DataSyncException(buildErr(minDate, maxDate, "unexpected failure"), e);
+                log.warn("Could not drop staging table {}: {}", stage, e.getMessage());
             }
-            return;
         }
+    }
+
+    public void syncWithDeleteInsert(LocalDate minDate, LocalDate maxDate, @NonNull List<ProductionRow> records) {
+        deleteInsert(minDate, maxDate, records);
+    }
+
+    // Devuelve la espera por el lock del rango (del intento que tuvo éxito), en ms
+    private long deleteInsert(LocalDate minDate, LocalDate maxDate, List<ProductionRow> records) {
+        String scope = "date range " + minDate + " to " + maxDate;
+        return runWithRetry(scope, () -> executeOnce(minDate, maxDate, records), () -> {
+            // Reset IDs to ensure fresh INSERTs next attempt (the rolled-back attempt already assigned them)
+            for (ProductionRow row : records) row.setId(0);
+        });
+    }
+
+    /**
+     * Variante streaming del delete-insert: el productor (normalmente el parser) emite bloques de registros
+     * mientras lee el archivo y cada bloque se escribe de inmediato dentro de una única transacción.
+     * Como el rango de fechas no se conoce de antemano, cada día se borra la primera vez que aparece en un
+     * bloque y, al terminar, se borran los días sin registros que quedaron dentro de [min, max]; el resultado
+     * es equivalente a {@link #syncWithDeleteInsert}. El contexto de persistencia se limpia tras cada bloque
+     * para que la memoria no crezca con el tamaño del archivo.
+     * Ante colisión UNIQUE (si el reintento está habilitado) o deadlock el productor se invoca de nuevo desde cero.
+     */
+    public <T> T syncStreaming(@NonNull ChunkProducer<T> producer) {
+        return syncStreaming(Set::of, producer).result();
+    }
+
+    /**
+     * Como {@link #syncStreaming(ChunkProducer)}, pero con los meses del archivo obtenidos de antemano por
+     * {@code monthScanner} (solo se invoca con los locks habilitados). Todos los meses entre el primero y el último
+     * se bloquean de una vez y en orden ascendente antes de leer el primer bloque, igual que una carga por rango.
+     * Un mes que el escaneo no anticipó se bloquea al aparecer, fuera de orden, y se cuenta en
+     * {@code etl.sync.streaming.late.month.locks}. El resultado informa el tiempo total esperado por los locks.
+     */
+    public <T> StreamingResult<T> syncStreaming(@NonNull MonthScanner monthScanner, @NonNull ChunkProducer<T> producer) {
+        Set<YearMonth> fileMonths;
+        try {
+            fileMonths = etlLockEnabled ? new TreeSet<>(monthScanner.scan()) : Set.of();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return runWithRetry("streamed upload", () -> executeStreamingOnce(fileMonths, producer), () -> { });
+    }
+
+    /**
+     * Ejecuta la transacción de sincronización con reintentos. Un deadlock (SQLState 40P01, p.ej. una carga streaming
+     * que bloquea un mes no anticipado por el escaneo contra una carga por rango) se reintenta siempre, hasta
+     * {@code etl.retry.deadlock.max-attempts} intentos: PostgreSQL ya abortó la transacción y repetirla completa es
+     * seguro. Las colisiones UNIQUE se reintentan solo si {@code etl.retry.unique.enabled}.
+     */
+    private <T> T runWithRetry(String scope, Supplier<T> attemptAction, Runnable resetForRetry) {
         int attempt = 0;
+        int deadlocks = 0;
         while (true) {
             attempt++;
             syncAttemptCounter().increment();
             try {
-                executeOnce(minDate, maxDate, records);
+                T result = attemptAction.get();
                 if (attempt > 1) {
-                    log.info("ETL sync succeeded after {} attempt(s) (unique collision retry mode)", attempt);
-                }
-                return;
-            } catch (DataIntegrityViolationException dive) {
-                if (!handleOrRetry(minDate, maxDate, attempt, dive, records)) {
-                    throw new DataSyncException(buildErr(minDate, maxDate, "data integrity violation (final)"), dive);
+                    log.info("ETL sync succeeded after {} attempt(s)", attempt);
                 }
+                return result;
             } catch (RuntimeException e) {
-                boolean unique = isUniqueConstraintViolation(e);
-                if (unique) {
-                    if (!handleOrRetry(minDate, maxDate, attempt, e, records)) {
-                        throw new DataSyncException(buildErr(minDate, maxDate, "data integrity violation (final)"), e);
+                if (isDeadlock(e) && ++deadlocks < deadlockMaxAttempts) {
+                    syncDeadlockCounter().increment();
+                    resetForRetry.run();
+                    long backoffMs = 200L * deadlocks;
+                    log.warn("Deadlock detected (attempt {} of {}) for {}. Retrying after {} ms...", deadlocks, deadlockMaxAttempts, scope, backoffMs);
+                    sleepQuiet(backoffMs);
+                    continue;
+                }
+                if (!retryUniqueEnabled) {
+                    if (e instanceof DataIntegrityViolationException) {
+                        throw new DataSyncException(buildErr(scope, "data integrity violation"), e);
+                    }
+                    if (isUniqueConstraintViolation(e)) {
+                        log.warn("Unique constraint violation (no-retry mode) for {}: {}", scope, e.getMessage());
+                    }
+                    throw new DataSyncException(buildErr(scope, "unexpected failure"), e);
+                }
+                if (e instanceof DataIntegrityViolationException || isUniqueConstraintViolation(e)) {
+                    if (!handleOrRetry(scope, attempt - deadlocks, e, resetForRetry)) {
+                        throw new DataSyncException(buildErr(scope, "data integrity violation (final)"), e);
                     }
                 } else {
                     log.error("Non-unique runtime exception during sync (attempt {}): type={}, message={}, causes={}", attempt, e.getClass().getName(), e.getMessage(), summarizeCauses(e));
-                    throw new DataSyncException(buildErr(minDate, maxDate, "unexpected failure (no retry)"), e);
+                    throw new DataSyncException(buildErr(scope, "unexpected failure (no retry)"), e);
+                }
+            }
+        }
+    }
+
+    // SQLState 40P01 (deadlock_detected) en la cadena de causas
+    private boolean isDeadlock(Throwable e) {
+        for (Throwable cur = e; cur != null; cur = cur.getCause()) {
+            if (cur instanceof SQLException sql) {
+                for (SQLException next = sql; next != null; next = next.getNextException()) {
+                    if (DEADLOCK_SQL_STATE.equals(next.getSQLState())) return true;
                 }
             }
         }
+        return false;
     }
 
     private String summarizeCauses(Throwable t) {
@@ -108,7 +287,7 @@ public class DataSyncService {
         return sb.toString();
     }
 
-    private boolean handleOrRetry(LocalDate minDate, LocalDate maxDate, int attempt, Throwable ex, List<FactProduction> records) {
+    private boolean handleOrRetry(String scope, int attempt, Throwable ex, Runnable resetForRetry) {
         boolean unique = isUniqueConstraintViolation(ex);
         if (unique) {
             syncCollisionCounter().increment();
@@ -116,41 +295,36 @@ public class DataSyncService {
         if (!unique || attempt >= retryMaxAttempts) {
             return false; // No se reintenta
         }
-        // Reset IDs to ensure fresh INSERTs next attempt (prevent stale entity state after rollback)
-        for (FactProduction fp : records) {
-            try {
-                if (fp.getId() != null) fp.setId(null);
-            } catch (Exception ignore) { }
-        }
+        resetForRetry.run();
         long backoffMs = 200L * attempt;
-        log.warn("Unique constraint collision (attempt {} of {}) for range {} to {}. Retrying after {} ms... (ids reset)", attempt, retryMaxAttempts, minDate, maxDate, backoffMs);
+        log.warn("Unique constraint collision (attempt {} of {}) for {}. Retrying after {} ms...", attempt, retryMaxAttempts, scope, backoffMs);
         sleepQuiet(backoffMs);
         return true;
     }
 
-    private void executeOnce(LocalDate minDate, LocalDate maxDate, List<FactProduction> records) {
+    // Devuelve la espera por el lock del rango, en ms
+    private long executeOnce(LocalDate minDate, LocalDate maxDate, List<ProductionRow> records) {
         long start = System.nanoTime();
         try {
-            transactionTemplate.execute(status -> {
+            return transactionTemplate.execute(status -> {
                 log.info("Starting data sync for date range {} to {} with {} records (lockEnabled={}, retryUnique={})", minDate, maxDate, records.size(), etlLockEnabled, retryUniqueEnabled);
                 // Diagnostic: log injection of test sleep values
                 log.debug("Diagnostic: lockTestSleepMs={} syncTestSleepMs={} (for tests)", lockTestSleepMs, syncTestSleepMs);
 
+                long lockWaitMs = lockRange(minDate, maxDate);
                 if (etlLockEnabled) {
-                    tryAcquireAdvisoryLock(minDate, maxDate);
                     if (lockTestSleepMs > 0) {
                         try { Thread.sleep(lockTestSleepMs); } catch (InterruptedException ie) { Thread.currentThread().interrupt(); }
                     }
                 }
-                int deleted = factProductionRepository.deleteByFechaContabilizacionBetween(minDate, maxDate);
+                int deleted = deleteWindow(minDate, maxDate);
                 rowsDeletedCounter().increment(deleted);
                 if (syncTestSleepMs > 0) { // Pausa de test para inducir colisiones concurrentes
                     try { Thread.sleep(syncTestSleepMs); } catch (InterruptedException ie) { Thread.currentThread().interrupt(); }
                 }
                 log.debug("Deleted {} existing rows in date range {} to {}", deleted, minDate, maxDate);
                 if (!records.isEmpty()) {
-                    factProductionRepository.saveAll(records);
-                    factProductionRepository.flush();
+                    insertRows(records);
                     rowsInsertedCounter().increment(records.size());
                     try {
                         long days = java.time.Duration.between(minDate.atStartOfDay(), maxDate.plusDays(1).atStartOfDay()).toDays();
@@ -162,33 +336,334 @@ public class DataSyncService {
                 } else {
                     log.info("No records to sync for date range {} to {}", minDate, maxDate);
                 }
-                return null;
+                onWindowRewritten(minDate, maxDate);
+                return lockWaitMs;
             });
         } finally {
             syncDurationTimer().record(Duration.ofNanos(System.nanoTime() - start));
         }
     }
 
-    private void tryAcquireAdvisoryLock(LocalDate minDate, LocalDate maxDate) {
-        long lockKey = computeLockKey(minDate, maxDate);
+    private SyncResult executeMergeOnce(LocalDate minDate, LocalDate maxDate, List<ProductionRow> records) {
+        long start = System.nanoTime();
         try {
-            log.debug("Attempting to acquire advisory lock (key={}) for range {} to {}", lockKey, minDate, maxDate);
-            Object res = entityManager.createNativeQuery("SELECT pg_advisory_xact_lock(?);")
-                    .setParameter(1, lockKey)
-                    .getSingleResult();
-            log.debug("Acquired advisory lock key={} for range {} to {} (result={})", lockKey, minDate, maxDate, res);
-        } catch (RuntimeException ex) {
-            // H2 u otras BDs no soportan la función; continuar sin lock
-            log.warn("Advisory lock skipped/failed for key={} (range {} to {}) - exception: {}: {}", lockKey, minDate, maxDate, ex.getClass().getName(), ex.getMessage());
-            log.trace("Advisory lock exception stack: ", ex);
+            return transactionTemplate.execute(status -> {
+                log.info("Starting merge sync for date range {} to {} with {} records (lockEnabled={}, retryUnique={})", minDate, maxDate, records.size(), etlLockEnabled, retryUniqueEnabled);
+                long lockWaitMs = lockRange(minDate, maxDate);
+                entityManager.flush();
+                ensurePartitions(minDate, maxDate);
+                Map<NaturalKey, ExistingRow> existing = new HashMap<>();
+                factProductionBulkRepository.forEachKeyInRange(minDate, maxDate, (id, fecha, maquinaFk, maquinistaFk, numeroLog, contentHash) ->
+                        existing.put(new NaturalKey((int) fecha.toEpochDay(), maquinaFk, maquinistaFk, numeroLog), new ExistingRow(id, contentHash)));
+
+                List<ProductionRow> toInsert = new ArrayList<>();
+                List<ProductionRow> toUpdate = new ArrayList<>();
+                int unchanged = 0;
+                for (ProductionRow row : records) {
+                    long hash = RowContentHash.of(row);
+                    row.setContentHash(hash);
+                    ExistingRow current = existing.get(NaturalKey.of(row));
+                    if (current == null) {
+                        row.setId(0);
+                        toInsert.add(row);
+                    } else if (current.matched) {
+                        log.debug("Duplicate natural key in merge input ignored: {}", row);
+                    } else {
+                        current.matched = true;
+                        row.setId(current.id);
+                        if (current.contentHash != null && current.contentHash == hash) {
+                            unchanged++;
+                        } else {
+                            toUpdate.add(row);
+                        }
+                    }
+                }
+                Set<LocalDate> changedDays = new HashSet<>();
+                toInsert.forEach(row -> changedDays.add(row.getFechaContabilizacion()));
+                toUpdate.forEach(row -> changedDays.add(row.getFechaContabilizacion()));
+                long[] staleIds = new long[existing.size()];
+                LocalDate[] staleDates = new LocalDate[existing.size()]; // la fecha permite podar particiones
+                int stale = 0;
+                for (Map.Entry<NaturalKey, ExistingRow> e : existing.entrySet()) {
+                    if (!e.getValue().matched) {
+                        LocalDate fecha = LocalDate.ofEpochDay(e.getKey().epochDay());
+                        staleIds[stale] = e.getValue().id;
+                        staleDates[stale++] = fecha;
+                        changedDays.add(fecha);
+                    }
+                }
+
+                int deleted = factProductionBulkRepository.deleteByIds(staleIds, staleDates, stale);
+                int updated = factProductionBulkRepository.updateAll(toUpdate);
+                if (!toInsert.isEmpty()) {
+                    insertRows(toInsert);
+                }
+                refreshRollup(minDate, maxDate);
+                dailyAnalyticsCache.invalidateDaysAfterCommit(changedDays); // solo los días con cambios reales
+                entityManager.clear(); // las filas actualizadas/borradas por JDBC dejarían entidades obsoletas en el contexto
+                SyncResult result = new SyncResult(toInsert.size(), updated, unchanged, deleted, lockWaitMs);
+                rowsDeletedCounter().increment(deleted);
+                rowsInsertedCounter().increment(toInsert.size());
+                mergeRowsCounter("inserted").increment(result.inserted());
+                mergeRowsCounter("updated").increment(result.updated());
+                mergeRowsCounter("unchanged").increment(result.unchanged());
+                mergeRowsCounter("deleted").increment(result.deleted());
+                windowDaysSummary().record(Math.max(1, maxDate.toEpochDay() - minDate.toEpochDay() + 1));
+                batchSizeSummary().record(records.size());
+                log.info("Merge sync for date range {} to {} finished: {}", minDate, maxDate, result);
+                return result;
+            });
+        } finally {
+            syncDurationTimer().record(Duration.ofNanos(System.nanoTime() - start));
         }
     }
 
-    private long computeLockKey(LocalDate minDate, LocalDate maxDate) {
-        // Combina epochDay para generar llave determinística en 64 bits.
-        long a = minDate != null ? minDate.toEpochDay() : 0L;
-        long b = maxDate != null ? maxDate.toEpochDay() : 0L;
-        return (a << 32) ^ b;
+    private SyncResult executeSwapOnce(String stage, LocalDate minDate, LocalDate maxDate) {
+        long start = System.nanoTime();
+        try {
+            return transactionTemplate.execute(status -> {
+                long lockWaitMs = lockRange(minDate, maxDate);
+                int deleted = deleteWindow(minDate, maxDate);
+                int inserted = factProductionStagingRepository.publish(stage);
+                onWindowRewritten(minDate, maxDate);
+                rowsDeletedCounter().increment(deleted);
+                rowsInsertedCounter().increment(inserted);
+                windowDaysSummary().record(Math.max(1, maxDate.toEpochDay() - minDate.toEpochDay() + 1));
+                batchSizeSummary().record(inserted);
+                log.info("Swapped date range {} to {} from {}: {} rows deleted, {} rows inserted", minDate, maxDate, stage, deleted, inserted);
+                return new SyncResult(inserted, 0, 0, deleted, lockWaitMs);
+            });
+        } finally {
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+            stagingPhaseTimer("swap").record(elapsed);
+            syncDurationTimer().record(elapsed);
+        }
+    }
+
+    private <T> StreamingResult<T> executeStreamingOnce(Set<YearMonth> fileMonths, ChunkProducer<T> producer) {
+        long start = System.nanoTime();
+        try {
+            return transactionTemplate.execute(status -> {
+                log.info("Starting streaming data sync (lockEnabled={}, retryUnique={})", etlLockEnabled, retryUniqueEnabled);
+                long[] lockWaitNanos = {0};
+                Set<YearMonth> lockedMonths = new HashSet<>();
+                if (etlLockEnabled) {
+                    // Se serializan las cargas streaming entre sí y se toman de una vez, en orden, los meses escaneados
+                    lockWaitNanos[0] += rangeLockManager.lockStreamingLoads().toNanos();
+                    if (!fileMonths.isEmpty()) {
+                        TreeSet<YearMonth> sorted = new TreeSet<>(fileMonths);
+                        List<YearMonth> months = EtlRangeLockManager.monthBuckets(sorted.first().atDay(1), sorted.last().atDay(1));
+                        lockWaitNanos[0] += rangeLockManager.lockMonths(months, "streamed upload").toNanos();
+                        lockedMonths.addAll(months);
+                    }
+                }
+                TreeSet<LocalDate> touchedDays = new TreeSet<>();
+                Set<YearMonth> touchedMonths = new HashSet<>();
+                int[] inserted = {0};
+                T result;
+                try {
+                    result = producer.produce(chunk -> {
+                        for (int epochDay : chunk.distinctDays()) {
+                            LocalDate day = LocalDate.ofEpochDay(epochDay);
+                            if (touchedDays.add(day)) {
+                                YearMonth month = YearMonth.from(day);
+                                if (touchedMonths.add(month)) {
+                                    if (etlLockEnabled && lockedMonths.add(month)) {
+                                        // No anticipado por el escaneo: lock fuera de orden, puede chocar con una
+                                        // carga por rango (el deadlock se reintenta en runWithRetry)
+                                        lateMonthLockCounter().increment();
+                                        log.warn("Streamed upload locks month {} out of order (not found by the pre-scan)", month);
+                                        lockWaitNanos[0] += rangeLockManager.lockMonths(List.of(month), "streamed upload").toNanos();
+                                    }
+                                    ensurePartitions(day, day);
+                                }
+                                int deleted = factProductionRepository.deleteByFechaContabilizacionBetween(day, day);
+                                rowsDeletedCounter().increment(deleted);
+                            }
+                        }
+                        insertRecords(chunk);
+                        entityManager.clear();
+                        inserted[0] += chunk.size();
+                        rowsInsertedCounter().increment(chunk.size());
+                        batchSizeSummary().record(chunk.size());
+                        log.debug("Streamed chunk of {} records ({} so far)", chunk.size(), inserted[0]);
+                    });
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (touchedDays.isEmpty()) {
+                    log.info("No records streamed; nothing to sync");
+                    return new StreamingResult<>(result, TimeUnit.NANOSECONDS.toMillis(lockWaitNanos[0]));
+                }
+                LocalDate minDate = touchedDays.first();
+                LocalDate maxDate = touchedDays.last();
+                if (etlLockEnabled) {
+                    // Los huecos pueden cubrir meses sin filas en el archivo: antes de vaciarlos se bloquean los meses
+                    // de [min, max] que aún no estén tomados
+                    List<YearMonth> gapMonths = EtlRangeLockManager.monthBuckets(minDate, maxDate).stream()
+                            .filter(lockedMonths::add)
+                            .toList();
+                    lockWaitNanos[0] += rangeLockManager.lockMonths(gapMonths, "streamed upload").toNanos();
+                }
+                // Días sin registros dentro de [min, max]: el delete-insert clásico también los vacía
+                LocalDate previous = null;
+                for (LocalDate day : touchedDays) {
+                    if (previous != null && previous.plusDays(1).isBefore(day)) {
+                        int deleted = factProductionRepository.deleteByFechaContabilizacionBetween(previous.plusDays(1), day.minusDays(1));
+                        rowsDeletedCounter().increment(deleted);
+                    }
+                    previous = day;
+                }
+                onWindowRewritten(minDate, maxDate);
+                windowDaysSummary().record(Math.max(1, maxDate.toEpochDay() - minDate.toEpochDay() + 1));
+                log.info("Successfully streamed {} records for date range {} to {}", inserted[0], minDate, maxDate);
+                return new StreamingResult<>(result, TimeUnit.NANOSECONDS.toMillis(lockWaitNanos[0]));
+            });
+        } finally {
+            syncDurationTimer().record(Duration.ofNanos(System.nanoTime() - start));
+        }
+    }
+
+    private boolean usePartitions() {
+        return partitionAware && factProductionPartitionRepository.isPartitioned();
+    }
+
+    // Con fact_production particionada, las filas sin partición mensual irían a la DEFAULT: se crean antes de insertar
+    private void ensurePartitions(LocalDate minDate, LocalDate maxDate) {
+        if (usePartitions()) {
+            factProductionPartitionRepository.ensurePartitions(minDate, maxDate);
+        }
+    }
+
+    // La ventana se reescribió completa: rollup en la misma transacción, cache de días tras el commit
+    private void onWindowRewritten(LocalDate minDate, LocalDate maxDate) {
+        refreshRollup(minDate, maxDate);
+        dailyAnalyticsCache.invalidateAfterCommit(minDate, maxDate);
+    }
+
+    /**
+     * Recalcula el rollup diario de [minDate, maxDate] en la transacción en curso, después de escribir los hechos:
+     * el rollup se publica en el mismo commit que la carga. Si la tabla no existe (script no aplicado) no hace nada.
+     */
+    private void refreshRollup(LocalDate minDate, LocalDate maxDate) {
+        if (!rollupEnabled || !factProductionDailyRepository.isAvailable()) {
+            return;
+        }
+        long start = System.nanoTime();
+        int rows = factProductionDailyRepository.refreshRange(minDate, maxDate);
+        rollupRefreshTimer().record(Duration.ofNanos(System.nanoTime() - start));
+        log.debug("Rollup refreshed for {} to {} ({} rows)", minDate, maxDate, rows);
+    }
+
+    /**
+     * Borra la ventana [minDate, maxDate] en la transacción en curso. Si fact_production está particionada por mes,
+     * los meses cubiertos por completo se vacían con TRUNCATE de su partición y solo los bordes parciales se borran
+     * fila a fila; si no, es el DELETE por rango de siempre.
+     *
+     * @return filas eliminadas
+     */
+    private int deleteWindow(LocalDate minDate, LocalDate maxDate) {
+        if (!usePartitions()) {
+            return factProductionRepository.deleteByFechaContabilizacionBetween(minDate, maxDate);
+        }
+        ensurePartitions(minDate, maxDate);
+        entityManager.flush();
+        long deleted = 0;
+        LocalDate from = minDate;
+        while (!from.isAfter(maxDate)) {
+            YearMonth month = YearMonth.from(from);
+            LocalDate to = month.atEndOfMonth().isBefore(maxDate) ? month.atEndOfMonth() : maxDate;
+            boolean wholeMonth = from.getDayOfMonth() == 1 && to.equals(month.atEndOfMonth());
+            if (wholeMonth && factProductionPartitionRepository.hasPartition(month)) {
+                deleted += factProductionPartitionRepository.truncateMonth(month);
+                partitionTruncateCounter().increment();
+            } else {
+                deleted += factProductionRepository.deleteByFechaContabilizacionBetween(from, to);
+            }
+            from = to.plusDays(1);
+        }
+        return (int) deleted;
+    }
+
+    /**
+     * Inserta los registros en la transacción en curso con el loader configurado. El loader bulk escribe por JDBC
+     * sobre la misma conexión, así que antes se vacían al driver los cambios pendientes de Hibernate.
+     */
+    private void insertRecords(ProductionBatch batch) {
+        long start = System.nanoTime();
+        batch.computeContentHashes();
+        if (isBulkLoader()) {
+            entityManager.flush();
+            factProductionBulkRepository.insertBatch(batch);
+        } else {
+            List<FactProduction> entities = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) entities.add(toEntity(batch.row(i)));
+            factProductionRepository.saveAll(entities);
+            factProductionRepository.flush();
+        }
+        insertDurationTimer(isBulkLoader() ? "copy" : "jpa").record(Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    /**
+     * Inserta una lista ya parseada por tramos de a lo sumo {@link ProductionBatch#DEFAULT_ROWS} filas: la copia
+     * columnar que usa el loader ocupa un tramo a la vez, no una segunda copia de todo el archivo.
+     */
+    private void insertRows(List<ProductionRow> rows) {
+        for (int from = 0; from < rows.size(); from += ProductionBatch.DEFAULT_ROWS) {
+            int to = Math.min(rows.size(), from + ProductionBatch.DEFAULT_ROWS);
+            insertRecords(ProductionBatch.of(rows.subList(from, to)));
+        }
+    }
+
+    // Loader jpa: entidad con referencias (sin SELECT) a las dimensiones
+    private FactProduction toEntity(ProductionRow row) {
+        FactProduction fp = new FactProduction();
+        fp.setFechaContabilizacion(row.getFechaContabilizacion());
+        fp.setMaquina(entityManager.getReference(DimMaquina.class, row.getMaquinaId()));
+        fp.setMaquinista(row.getMaquinistaId() != 0 ? entityManager.getReference(DimMaquinista.class, row.getMaquinistaId()) : null);
+        fp.setNumeroLog(nullable(row.getNumeroLog()));
+        fp.setHoraContabilizacion(row.getHoraContabilizacion());
+        fp.setFechaNotificacion(row.getFechaNotificacion());
+        fp.setDocumento(nullable(row.getDocumento()));
+        fp.setMaterialSku(nullable(row.getMaterialSku()));
+        fp.setMaterialDescripcion(row.getMaterialDescripcion());
+        fp.setNumeroPallet(row.getNumeroPallet() != ProductionRow.NULL_INT ? row.getNumeroPallet() : null);
+        fp.setCantidad(row.getCantidad());
+        fp.setPesoNeto(row.getPesoNeto());
+        fp.setLista(row.getLista());
+        fp.setVersionProduccion(row.getVersionProduccion());
+        fp.setCentroCostos(nullable(row.getCentroCostos()));
+        fp.setTurno(row.getTurno());
+        fp.setJornada(row.getJornada());
+        fp.setUsuarioSap(row.getUsuarioSap());
+        fp.setBodeguero(row.getBodeguero());
+        fp.setStatusOrigen(row.getStatusOrigen());
+        fp.setContentHash(nullable(row.getContentHash()));
+        return fp;
+    }
+
+    private static Long nullable(long value) {
+        return value != ProductionRow.NULL_LONG ? value : null;
+    }
+
+    private boolean isBulkLoader() {
+        return "copy".equalsIgnoreCase(syncLoader);
+    }
+
+    private boolean isMergeMode() {
+        return "merge".equalsIgnoreCase(syncMode);
+    }
+
+    // Un lock por mes del rango (ver EtlRangeLockManager): rangos solapados se serializan, meses disjuntos no
+    private long lockRange(LocalDate minDate, LocalDate maxDate) {
+        if (!etlLockEnabled) {
+            return 0L;
+        }
+        long waitMs = rangeLockManager.lockRange(minDate, maxDate).toMillis();
+        if (waitMs > 0) {
+            log.info("Waited {} ms for the range lock of {} to {}", waitMs, minDate, maxDate);
+        }
+        return waitMs;
     }
 
     private boolean isUniqueConstraintViolation(Throwable e) {
@@ -256,8 +731,63 @@ public class DataSyncService {
         try { Thread.sleep(ms); } catch (InterruptedException ie) { Thread.currentThread().interrupt(); }
     }
 
-    private String buildErr(LocalDate minDate, LocalDate maxDate, String reason) {
-        return "Failed to sync date range " + minDate + " to " + maxDate + " (" + reason + ")";
+    private String buildErr(String scope, String reason) {
+        return "Failed to sync " + scope + " (" + reason + ")";
+    }
+
+    /**
+     * Productor de bloques para {@link #syncStreaming}: recibe el sink donde debe entregar cada bloque.
+     */
+    @FunctionalInterface
+    public interface ChunkProducer<T> {
+        T produce(Consumer<ProductionBatch> chunkSink) throws IOException;
+    }
+
+    /**
+     * Meses contables del archivo, obtenidos antes de la carga streaming (p.ej. {@link ParserService#scanMonths}).
+     */
+    @FunctionalInterface
+    public interface MonthScanner {
+        Collection<YearMonth> scan() throws IOException;
+    }
+
+    /**
+     * Resultado de {@link #syncStreaming(MonthScanner, ChunkProducer)}: lo devuelto por el productor y el tiempo
+     * total esperado por los locks (serialización streaming y meses).
+     */
+    public record StreamingResult<T>(T result, long lockWaitMs) {}
+
+    /**
+     * Conteo de filas de una sincronización. En modo delete-insert solo se informa {@code inserted};
+     * {@code deleted} es -1 porque el borrado por rango no distingue filas reemplazadas de filas eliminadas.
+     * {@code lockWaitMs} es el tiempo esperado por el lock del rango.
+     */
+    public record SyncResult(int inserted, int updated, int unchanged, int deleted, long lockWaitMs) {
+        public SyncResult(int inserted, int updated, int unchanged, int deleted) {
+            this(inserted, updated, unchanged, deleted, 0L);
+        }
+
+        public int total() {
+            return inserted + updated + unchanged;
+        }
+    }
+
+    // Clave natural tal como la define uq_fact_prod_natural (maquinista NULL = 0)
+    private record NaturalKey(int epochDay, long maquina, long maquinista, long numeroLog) {
+        static NaturalKey of(ProductionRow row) {
+            return new NaturalKey(row.getFechaContabilizacionDay(), row.getMaquinaId(), row.getMaquinistaId(), row.getNumeroLog());
+        }
+    }
+
+    private static final class ExistingRow {
+        final long id;
+        final Long contentHash;
+        boolean matched;
+
+        ExistingRow(long id, Long contentHash) {
+            this.id = id;
+            this.contentHash = contentHash;
+        }
     }
 
     /**
@@ -0,0 +1,244 @@
+package com.cambiaso.ioc.service;
+
+import com.cambiaso.ioc.persistence.repository.DimensionKeyRepository;
+import com.cambiaso.ioc.persistence.repository.DimensionKeyRepository.TableState;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Registro compartido por toda la aplicación de las claves de {@code dim_maquina} y {@code dim_maquinista}:
+ * código → id, sin entidades.
+ *
+ * El mapa se carga una vez (al arrancar o en el primer uso) y se guarda en arreglos ordenados inmutables que se
+ * reemplazan completos en cada cambio (copy-on-write): los hilos de parseo lo leen sin locks. Al empezar cada
+ * parseo, {@link #refresh} compara la cantidad de filas y el mayor id de cada tabla con los del mapa y, si otro nodo
+ * dio de alta miembros, carga solo las filas nuevas; si no cuadran (se borraron miembros), recarga todo.
+ *
+ * {@link #registerMaquinas} / {@link #registerMaquinistas} dan de alta los miembros nuevos con
+ * {@code INSERT ... ON CONFLICT DO NOTHING} en una transacción propia, que se confirma antes de que la carga use los
+ * ids: dos cargas concurrentes con la misma máquina nueva obtienen el mismo id y un rollback de la carga no deja ids
+ * inexistentes en el registro. Si la base no tiene ON CONFLICT y la otra carga gana la carrera, el alta se reintenta
+ * una vez y encuentra la fila ya confirmada.
+ */
+@Slf4j
+@Service
+public class DimensionRegistry {
+
+    private final DimensionKeyRepository keyRepository;
+    private final MeterRegistry meterRegistry;
+    private final TransactionTemplate newTransaction;
+
+    private volatile StringKeys maquinas;     // null = aún no cargado
+    private volatile LongKeys maquinistas;
+    private TableState maquinaState;          // guardados por this
+    private TableState maquinistaState;
+
+    public DimensionRegistry(DimensionKeyRepository keyRepository,
+                             MeterRegistry meterRegistry,
+                             PlatformTransactionManager transactionManager) {
+        this.keyRepository = keyRepository;
+        this.meterRegistry = meterRegistry;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            // Se reintenta en el primer parseo
+            log.warn("Could not preload the dimension registry: {}", e.getMessage());
+        }
+    }
+
+    /** Sincroniza el registro con las tablas (carga incremental si solo hubo altas). */
+    public synchronized void refresh() {
+        TableState maquinaNow = keyRepository.maquinaState();
+        if (maquinas == null || !maquinaNow.equals(maquinaState)) {
+            Map<String, Long> added = new HashMap<>();
+            boolean incremental = maquinas != null && maquinaNow.count() > maquinaState.count();
+            keyRepository.loadMaquinas(incremental ? maquinaState.maxId() : 0, added::put);
+            StringKeys next = incremental ? maquinas.with(added) : StringKeys.of(added);
+            if (next.size() != maquinaNow.count()) {
+                added.clear();
+                keyRepository.loadMaquinas(0, added::put);
+                next = StringKeys.of(added);
+            }
+            maquinas = next;
+            maquinaState = maquinaNow;
+            log.debug("Dimension registry: {} maquina(s) (max id {})", next.size(), maquinaNow.maxId());
+        }
+        TableState maquinistaNow = keyRepository.maquinistaState();
+        if (maquinistas == null || !maquinistaNow.equals(maquinistaState)) {
+            Map<Long, Long> added = new HashMap<>();
+            boolean incremental = maquinistas != null && maquinistaNow.count() > maquinistaState.count();
+            keyRepository.loadMaquinistas(incremental ? maquinistaState.maxId() : 0, added::put);
+            LongKeys next = incremental ? maquinistas.with(added) : LongKeys.of(added);
+            if (next.size() != maquinistaNow.count()) {
+                added.clear();
+                keyRepository.loadMaquinistas(0, added::put);
+                next = LongKeys.of(added);
+            }
+            maquinistas = next;
+            maquinistaState = maquinistaNow;
+            log.debug("Dimension registry: {} maquinista(s) (max id {})", next.size(), maquinistaNow.maxId());
+        }
+    }
+
+    /** Id de la máquina, o null si no está registrada. */
+    public Long maquinaId(String codigo) {
+        StringKeys current = maquinas;
+        if (current == null) {
+            refresh();
+            current = maquinas;
+        }
+        return current.get(codigo);
+    }
+
+    /** Id del maquinista, o null si no está registrado. */
+    public Long maquinistaId(long codigo) {
+        LongKeys current = maquinistas;
+        if (current == null) {
+            refresh();
+            current = maquinistas;
+        }
+        return current.get(codigo);
+    }
+
+    /** Da de alta (si hace falta) las máquinas indicadas. @return código → id de todas ellas */
+    public Map<String, Long> registerMaquinas(Collection<String> codigos) {
+        if (codigos.isEmpty()) return Map.of();
+        Map<String, Long> ids = inNewTransaction(() -> {
+            int inserted = keyRepository.insertMaquinasIfAbsent(codigos);
+            meterRegistry.counter("etl.dim.new.maquina").increment(inserted);
+            if (inserted > 0) log.info("Registered {} new DimMaquina member(s).", inserted);
+            return keyRepository.findMaquinaIds(codigos);
+        });
+        requireAll(codigos, ids, "dim_maquina");
+        synchronized (this) {
+            maquinas = maquinas == null ? StringKeys.of(ids) : maquinas.with(ids);
+        }
+        return ids;
+    }
+
+    /** Da de alta (si hace falta) los maquinistas indicados. @return código → id de todos ellos */
+    public Map<Long, Long> registerMaquinistas(Collection<Long> codigos) {
+        if (codigos.isEmpty()) return Map.of();
+        Map<Long, Long> ids = inNewTransaction(() -> {
+            int inserted = keyRepository.insertMaquinistasIfAbsent(codigos);
+            meterRegistry.counter("etl.dim.new.maquinista").increment(inserted);
+            if (inserted > 0) log.info("Registered {} new DimMaquinista member(s).", inserted);
+            return keyRepository.findMaquinistaIds(codigos);
+        });
+        requireAll(codigos, ids, "dim_maquinista");
+        synchronized (this) {
+            maquinistas = maquinistas == null ? LongKeys.of(ids) : maquinistas.with(ids);
+        }
+        return ids;
+    }
+
+    private <T> T inNewTransaction(Supplier<T> work) {
+        try {
+            return newTransaction.execute(status -> work.get());
+        } catch (DuplicateKeyException e) {
+            log.debug("Concurrent dimension registration, retrying: {}", e.getMessage());
+            return newTransaction.execute(status -> work.get());
+        }
+    }
+
+    private static void requireAll(Collection<?> codigos, Map<?, Long> ids, String table) {
+        if (ids == null || ids.size() < codigos.size()) {
+            throw new IllegalStateException("Could not resolve ids for all new " + table + " members");
+        }
+    }
+
+    // Código (texto) → id en dos arreglos paralelos ordenados por código; inmutable
+    private static final class StringKeys {
+        private final String[] codes;
+        private final long[] ids;
+
+        private StringKeys(String[] codes, long[] ids) {
+            this.codes = codes;
+            this.ids = ids;
+        }
+
+        static StringKeys of(Map<String, Long> entries) {
+            TreeMap<String, Long> sorted = new TreeMap<>(entries);
+            String[] codes = sorted.keySet().toArray(new String[0]);
+            long[] ids = new long[codes.length];
+            int i = 0;
+            for (Long id : sorted.values()) ids[i++] = id;
+            return new StringKeys(codes, ids);
+        }
+
+        StringKeys with(Map<String, Long> added) {
+            Map<String, Long> all = new HashMap<>(codes.length + added.size());
+            for (int i = 0; i < codes.length; i++) all.put(codes[i], ids[i]);
+            all.putAll(added);
+            return of(all);
+        }
+
+        Long get(String code) {
+            int i = Arrays.binarySearch(codes, code);
+            return i >= 0 ? ids[i] : null;
+        }
+
+        int size() {
+            return codes.length;
+        }
+    }
+
+    // Código (numérico) → id en dos arreglos paralelos ordenados por código; inmutable
+    private static final class LongKeys {
+        private final long[] codes;
+        private final long[] ids;
+
+        private LongKeys(long[] codes, long[] ids) {
+            this.codes = codes;
+            this.ids = ids;
+        }
+
+        static LongKeys of(Map<Long, Long> entries) {
+            TreeMap<Long, Long> sorted = new TreeMap<>(entries);
+            long[] codes = new long[sorted.size()];
+            long[] ids = new long[sorted.size()];
+            int i = 0;
+            for (Map.Entry<Long, Long> e : sorted.entrySet()) {
+                codes[i] = e.getKey();
+                ids[i++] = e.getValue();
+            }
+            return new LongKeys(codes, ids);
+        }
+
+        LongKeys with(Map<Long, Long> added) {
+            Map<Long, Long> all = new HashMap<>(codes.length + added.size());
+            for (int i = 0; i < codes.length; i++) all.put(codes[i], ids[i]);
+            all.putAll(added);
+            return of(all);
+        }
+
+        Long get(long code) {
+            int i = Arrays.binarySearch(codes, code);
+            return i >= 0 ? ids[i] : null;
+        }
+
+        int size() {
+            return codes.length;
+        }
+    }
+}
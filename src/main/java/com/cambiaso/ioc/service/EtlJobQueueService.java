@@ -0,0 +1,269 @@
+package com.cambiaso.ioc.service;
+
+import com.cambiaso.ioc.exception.EtlQueueRejectedException;
+import com.cambiaso.ioc.persistence.entity.EtlJob;
+import com.cambiaso.ioc.persistence.repository.EtlJobRepository;
+import com.cambiaso.ioc.service.UploadStagingService.StagedUpload;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cola de trabajo ETL persistida en {@code etl_jobs}: cada upload queda como job EN_COLA con su archivo en staging
+ * y {@code etl.queue.workers} hilos lo toman de a uno.
+ *
+ * La cola es acotada: si está llena el upload se rechaza con 503 y si el usuario ya tiene
+ * {@code etl.queue.per-user-limit} jobs esperando, con 429 (ambos con Retry-After), en vez de ejecutar el job en el
+ * hilo HTTP. Al elegir el siguiente job se prioriza a los usuarios con menos jobs en curso y, entre ellos, los
+ * archivos chicos ({@code etl.queue.small-file-bytes}); un archivo grande que lleva más de
+ * {@code etl.queue.aging-ms} esperando compite como si fuera chico, para que no quede postergado indefinidamente.
+ *
+ * Como el upload vive en el staging local, cada nodo solo procesa sus propios jobs ({@code queue_node}); tras un
+ * reinicio se retoman los jobs EN_COLA del nodo y los que quedaron a medias ({@link EtlJobResumer}). Los límites se verifican por nodo, así que con varios nodos la
+ * capacidad global es aproximada.
+ *
+ * Métricas: {@code etl.queue.depth}, {@code etl.queue.wait} y {@code etl.queue.rejected} (reason=user_limit|queue_full).
+ */
+@Slf4j
+@Service
+public class EtlJobQueueService {
+
+    static final String QUEUED = "EN_COLA";
+    private static final List<String> RUNNING_STATUSES = List.of("INICIADO", "PROCESANDO", "SINCRONIZANDO");
+
+    private final EtlJobService etlJobService;
+    private final EtlJobRepository etlJobRepository;
+    private final EtlProcessingService etlProcessingService;
+    private final EtlJobResumer etlJobResumer;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${etl.queue.workers:2}")
+    private int workerCount;
+    @Value("${etl.queue.capacity:50}")
+    private int capacity;
+    @Value("${etl.queue.per-user-limit:5}")
+    private int perUserLimit;
+    @Value("${etl.queue.small-file-bytes:5242880}")
+    private long smallFileBytes;
+    @Value("${etl.queue.aging-ms:600000}")
+    private long agingMs;
+    @Value("${etl.queue.poll-interval-ms:5000}")
+    private long pollIntervalMs;
+    @Value("${etl.queue.retry-after-seconds:30}")
+    private long retryAfterSeconds;
+    @Value("${etl.queue.node-id:${HOSTNAME:local}}")
+    private String nodeId;
+
+    private final Semaphore wakeups = new Semaphore(0);
+    private final Object claimLock = new Object();
+    private volatile boolean running;
+    private ExecutorService workers;
+
+    public EtlJobQueueService(EtlJobService etlJobService,
+                              EtlJobRepository etlJobRepository,
+                              EtlProcessingService etlProcessingService,
+                              EtlJobResumer etlJobResumer,
+                              MeterRegistry meterRegistry) {
+        this.etlJobService = etlJobService;
+        this.etlJobRepository = etlJobRepository;
+        this.etlProcessingService = etlProcessingService;
+        this.etlJobResumer = etlJobResumer;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("etl.queue.depth", () -> etlJobRepository.countByStatus(QUEUED))
+                .description("ETL jobs waiting in the queue (EN_COLA)")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Encola un upload ya copiado a staging. Desde aquí el job es dueño del archivo de staging; si el upload se
+     * rechaza, el archivo sigue siendo del llamador.
+     *
+     * @throws EtlQueueRejectedException si la cola está llena (503) o el usuario alcanzó su límite (429)
+     */
+    public synchronized EtlJob submit(StagedUpload staged, String userId) {
+        checkCapacity(userId);
+        EtlJob job = etlJobService.createQueuedJob(staged.originalFilename(), staged.sha256(), userId,
+                staged.path().toString(), staged.size(), nodeId);
+        wakeups.release();
+        log.info("Queued ETL job {} ({} bytes) for user {}", job.getJobId(), staged.size(), userId);
+        return job;
+    }
+
+    /**
+     * Vuelve a encolar un job en FALLO con un nuevo upload del mismo archivo, con las mismas reglas que
+     * {@link #submit}.
+     */
+    public synchronized EtlJob resubmit(EtlJob failedJob, StagedUpload staged, String userId) {
+        checkCapacity(userId);
+        EtlJob job = etlJobService.requeueFailedJob(failedJob.getJobId(), userId, staged.path().toString(),
+                staged.size(), nodeId);
+        wakeups.release();
+        log.info("Re-queued failed ETL job {} ({} bytes) for user {}", job.getJobId(), staged.size(), userId);
+        return job;
+    }
+
+    private void checkCapacity(String userId) {
+        if (etlJobRepository.countByStatus(QUEUED) >= capacity) {
+            rejected("queue_full");
+            throw EtlQueueRejectedException.queueFull(capacity, retryAfterSeconds);
+        }
+        if (etlJobRepository.countByStatusAndUserId(QUEUED, userId) >= perUserLimit) {
+            rejected("user_limit");
+            throw EtlQueueRejectedException.userLimit(userId, perUserLimit, retryAfterSeconds);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void startWorkers() {
+        if (running || workerCount <= 0) {
+            return;
+        }
+        // Antes de arrancar los workers: todo job en curso de este nodo quedó interrumpido por el reinicio
+        etlJobResumer.resumeInterrupted(nodeId);
+        running = true;
+        AtomicInteger seq = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(workerCount, r -> new Thread(r, "ETL-worker-" + seq.incrementAndGet()));
+        for (int i = 0; i < workerCount; i++) {
+            workers.submit(this::workerLoop);
+        }
+        log.info("Started {} ETL queue worker(s) on node {}", workerCount, nodeId);
+    }
+
+    @PreDestroy
+    public synchronized void stopWorkers() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        wakeups.release(workerCount);
+        workers.shutdown();
+        try {
+            // Los jobs en curso terminan; los que siguen EN_COLA se retoman al reiniciar
+            if (!workers.awaitTermination(60, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void workerLoop() {
+        while (running) {
+            try {
+                if (!runNext()) {
+                    wakeups.tryAcquire(pollIntervalMs, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // Un fallo de la BD no debe matar al worker: se reintenta en el siguiente ciclo
+                log.error("ETL queue worker error", e);
+                sleepQuietly();
+            }
+        }
+    }
+
+    /** Toma y procesa el siguiente job de este nodo en el hilo actual. false si no había ninguno. */
+    boolean runNext() {
+        Optional<EtlJob> next = claimNext();
+        if (next.isEmpty()) {
+            return false;
+        }
+        EtlJob job = next.get();
+        StagedUpload upload = new StagedUpload(Path.of(job.getStagedPath()), job.getFileHash(),
+                job.getFileSize() != null ? job.getFileSize() : 0L, job.getFileName());
+        if (!Files.exists(upload.path())) {
+            log.error("Staged upload {} for job {} is gone; failing the job", upload.path(), job.getJobId());
+            etlJobService.updateJobStatus(job.getJobId(), "FALLO", "Staged upload not found: " + upload.path());
+            return true;
+        }
+        etlProcessingService.processStagedFile(upload, job.getUserId(), job.getJobId());
+        return true;
+    }
+
+    /** Elige el siguiente job según la política de la cola y lo toma; reintenta si otro worker se adelantó. */
+    Optional<EtlJob> claimNext() {
+        synchronized (claimLock) {
+            return claimNextLocked();
+        }
+    }
+
+    private Optional<EtlJob> claimNextLocked() {
+        while (true) {
+            List<EtlJob> queued = etlJobRepository.findByStatusAndQueueNodeOrderByQueuedAtAsc(QUEUED, nodeId);
+            if (queued.isEmpty()) {
+                return Optional.empty();
+            }
+            OffsetDateTime now = OffsetDateTime.now();
+            EtlJob candidate = queued.stream().min(priority(runningByUser(), now)).orElseThrow();
+            Optional<EtlJob> claimed = etlJobService.claimQueuedJob(candidate.getJobId());
+            if (claimed.isPresent()) {
+                Duration waited = Duration.between(candidate.getQueuedAt() != null ? candidate.getQueuedAt() : now, now);
+                meterRegistry.timer("etl.queue.wait").record(waited.isNegative() ? Duration.ZERO : waited);
+                log.info("Worker {} took ETL job {} after {} ms in queue", Thread.currentThread().getName(),
+                        candidate.getJobId(), waited.toMillis());
+                return claimed;
+            }
+        }
+    }
+
+    Comparator<EtlJob> priority(Map<String, Long> runningByUser, OffsetDateTime now) {
+        return Comparator
+                .comparingLong((EtlJob j) -> runningByUser.getOrDefault(j.getUserId(), 0L))
+                .thenComparing(j -> !favoured(j, now))
+                .thenComparing(EtlJob::getQueuedAt, Comparator.nullsFirst(Comparator.naturalOrder()));
+    }
+
+    private boolean favoured(EtlJob job, OffsetDateTime now) {
+        boolean small = job.getFileSize() != null && job.getFileSize() <= smallFileBytes;
+        boolean aged = job.getQueuedAt() != null && Duration.between(job.getQueuedAt(), now).toMillis() >= agingMs;
+        return small || aged;
+    }
+
+    private Map<String, Long> runningByUser() {
+        Map<String, Long> counts = new HashMap<>();
+        for (Object[] row : etlJobRepository.countByUserIdAndStatusIn(RUNNING_STATUSES)) {
+            counts.put((String) row[0], ((Number) row[1]).longValue());
+        }
+        return counts;
+    }
+
+    private void rejected(String reason) {
+        Counter.builder("etl.queue.rejected")
+                .description("ETL uploads rejected by queue backpressure")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private void sleepQuietly() {
+        try {
+            Thread.sleep(pollIntervalMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
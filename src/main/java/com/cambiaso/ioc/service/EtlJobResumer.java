@@ -0,0 +1,124 @@
+package com.cambiaso.ioc.service;
+
+import com.cambiaso.ioc.persistence.entity.EtlJob;
+import com.cambiaso.ioc.persistence.repository.EtlJobRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * Retoma al arrancar los jobs ETL que un reinicio dejó a medias en este nodo.
+ *
+ * Un job interrumpido queda en INICIADO/PROCESANDO/SINCRONIZANDO (o en FALLO por "Watchdog timeout", si el nodo
+ * estuvo caído más que {@code etl.jobs.stuck.threshold-minutes}) con su upload todavía en el staging local. Si el
+ * archivo existe, el job vuelve a EN_COLA conservando su lugar en la cola y lo procesa un worker; si no, se marca
+ * FALLO para que el usuario pueda volver a subirlo. Cada sincronización es una sola transacción, así que la carga
+ * interrumpida no dejó filas a medias: el job se vuelve a procesar completo desde el archivo en staging. La fase en
+ * la que se cortó queda en los detalles del job.
+ *
+ * Un job que se interrumpe más de {@code etl.jobs.resume.max-attempts} veces se da por fallido.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EtlJobResumer {
+
+    private static final List<String> RESUMABLE_STATUSES = List.of("INICIADO", "PROCESANDO", "SINCRONIZANDO", "FALLO");
+    private static final String WATCHDOG_TIMEOUT = "Watchdog timeout";
+
+    private final EtlJobRepository etlJobRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${etl.jobs.resume.enabled:true}")
+    private boolean enabled;
+    @Value("${etl.jobs.resume.max-attempts:3}")
+    private int maxAttempts;
+
+    /**
+     * Reencola los jobs interrumpidos del nodo. Debe llamarse antes de arrancar los workers, para no confundir un
+     * job recién tomado con uno interrumpido.
+     *
+     * @return cantidad de jobs reencolados
+     */
+    @Transactional
+    public int resumeInterrupted(String queueNode) {
+        if (!enabled) {
+            return 0;
+        }
+        int resumed = 0;
+        for (EtlJob job : etlJobRepository.findByQueueNodeAndStatusIn(queueNode, RESUMABLE_STATUSES)) {
+            if (!interrupted(job)) {
+                continue;
+            }
+            Path staged = Path.of(job.getStagedPath());
+            int attempts = (job.getResumeAttempts() != null ? job.getResumeAttempts() : 0) + 1;
+            if (!Files.exists(staged)) {
+                fail(job, "Interrupted by a restart and the staged upload is gone; upload the file again");
+                count("missing_upload");
+            } else if (attempts > maxAttempts) {
+                fail(job, "Interrupted " + (attempts - 1) + " time(s); giving up, upload the file again");
+                deleteQuietly(staged);
+                count("max_attempts");
+            } else {
+                String lastPhase = job.getCheckpointPhase() != null ? "interrupted in " + job.getCheckpointPhase() : "not started";
+                job.setStatus("EN_COLA");
+                job.setResumeAttempts(attempts);
+                job.setStartedAt(null);
+                job.setFinishedAt(null);
+                job.setLastProgressAt(null);
+                job.setDetails("Resumed after restart (attempt " + attempts + "; " + lastPhase + ")");
+                log.warn("Re-queued interrupted ETL job {} ({}), attempt {} of {}", job.getJobId(), lastPhase, attempts, maxAttempts);
+                count("requeued");
+                resumed++;
+            }
+        }
+        if (resumed > 0) {
+            log.info("Re-queued {} interrupted ETL job(s) on node {}", resumed, queueNode);
+        }
+        return resumed;
+    }
+
+    private boolean interrupted(EtlJob job) {
+        if (job.getStagedPath() == null) {
+            return false; // job anterior a la cola: no hay upload que retomar
+        }
+        if ("FALLO".equals(job.getStatus())) {
+            // Solo los que el watchdog cortó; un fallo de parseo/sincronización ya descartó su upload
+            return job.getDetails() != null && job.getDetails().contains(WATCHDOG_TIMEOUT);
+        }
+        return true;
+    }
+
+    private void fail(EtlJob job, String details) {
+        log.error("Cannot resume ETL job {}: {}", job.getJobId(), details);
+        job.setStatus("FALLO");
+        job.setDetails(details);
+        job.setFinishedAt(OffsetDateTime.now());
+    }
+
+    private void count(String outcome) {
+        Counter.builder("etl.jobs.resumed")
+                .description("Interrupted ETL jobs found at startup, by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete staged upload {}: {}", path, e.getMessage());
+        }
+    }
+}
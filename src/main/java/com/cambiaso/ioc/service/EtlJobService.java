@@ -2,12 +2,18 @@ package com.cambiaso.ioc.service;
 
 import com.cambiaso.ioc.persistence.entity.EtlJob;
 import com.cambiaso.ioc.persistence.repository.EtlJobRepository;
+import com.cambiaso.ioc.service.etl.ProductionStats;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
@@ -21,6 +27,12 @@ import java.util.UUID;
 @Transactional
 public class EtlJobService {
 
+    // Solo serializa el resumen de carga (fechas ISO); no depende del ObjectMapper de la aplicación
+    private static final ObjectMapper SUMMARY_MAPPER = JsonMapper.builder()
+            .findAndAddModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
     private final EtlJobRepository etlJobRepository;
     @Autowired(required = false)
     private MeterRegistry meterRegistry;
@@ -37,6 +49,77 @@ public class EtlJobService {
         return etlJobRepository.save(job);
     }
 
+    /**
+     * Crea un job EN_COLA cuyo upload queda en staging hasta que un worker de {@link EtlJobQueueService} lo tome.
+     */
+    public EtlJob createQueuedJob(String fileName, String fileHash, String userId,
+                                  String stagedPath, long fileSize, String queueNode) {
+        OffsetDateTime now = OffsetDateTime.now();
+        EtlJob job = new EtlJob();
+        job.setJobId(UUID.randomUUID());
+        job.setFileName(fileName);
+        job.setFileHash(fileHash);
+        job.setUserId(userId);
+        job.setStatus("EN_COLA");
+        job.setCreatedAt(now);
+        job.setQueuedAt(now);
+        job.setStagedPath(stagedPath);
+        job.setFileSize(fileSize);
+        job.setQueueNode(queueNode);
+
+        return etlJobRepository.save(job);
+    }
+
+    /**
+     * Vuelve a encolar un job en FALLO con un nuevo upload del mismo archivo (el hash es único, se reutiliza la fila).
+     */
+    public EtlJob requeueFailedJob(UUID jobId, String userId, String stagedPath, long fileSize, String queueNode) {
+        EtlJob job = etlJobRepository.findById(jobId)
+                .orElseThrow(() -> new IllegalArgumentException("Job not found with ID: " + jobId));
+        if (!"FALLO".equals(job.getStatus())) {
+            throw new IllegalStateException("Only failed jobs can be re-queued; job " + jobId + " is " + job.getStatus());
+        }
+        job.setUserId(userId);
+        job.setStatus("EN_COLA");
+        job.setDetails("Re-uploaded after failure");
+        job.setMinDate(null);
+        job.setMaxDate(null);
+        job.setFinishedAt(null);
+        job.setStartedAt(null);
+        job.setQueuedAt(OffsetDateTime.now());
+        job.setStagedPath(stagedPath);
+        job.setFileSize(fileSize);
+        job.setQueueNode(queueNode);
+        job.setCheckpointPhase(null);
+        job.setLastProgressAt(null);
+        job.setResumeAttempts(0);
+
+        return etlJobRepository.save(job);
+    }
+
+    /**
+     * Registra la fase de un job en curso y marca {@code last_progress_at}, desde donde el watchdog mide el atasco.
+     * Corre en su propia transacción para quedar visible aunque la sincronización que lo reporta siga abierta.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void recordProgress(UUID jobId, String phase) {
+        etlJobRepository.findById(jobId).ifPresent(job -> {
+            job.setCheckpointPhase(phase);
+            job.setLastProgressAt(OffsetDateTime.now());
+            etlJobRepository.save(job);
+        });
+    }
+
+    /**
+     * Pasa un job EN_COLA a INICIADO para un worker. Vacío si otro worker lo tomó antes.
+     */
+    public Optional<EtlJob> claimQueuedJob(UUID jobId) {
+        if (!etlJobRepository.claimQueued(jobId, OffsetDateTime.now())) {
+            return Optional.empty();
+        }
+        return etlJobRepository.findById(jobId);
+    }
+
     @Transactional(readOnly = true)
     public Optional<EtlJob> findByFileHash(String fileHash) {
         return etlJobRepository.findByFileHash(fileHash);
@@ -57,9 +140,11 @@ public class EtlJobService {
         boolean terminal = "EXITO".equals(status) || "FALLO".equals(status);
         if (terminal) {
             job.setFinishedAt(OffsetDateTime.now());
-            if (meterRegistry != null && job.getCreatedAt() != null) {
+            // Desde que entró a la cola (un job re-subido reutiliza la fila, pero no su created_at)
+            OffsetDateTime since = job.getQueuedAt() != null ? job.getQueuedAt() : job.getCreatedAt();
+            if (meterRegistry != null && since != null) {
                 try {
-                    long millis = java.time.Duration.between(job.getCreatedAt(), job.getFinishedAt()).toMillis();
+                    long millis = java.time.Duration.between(since, job.getFinishedAt()).toMillis();
                     Timer.builder("etl.job.total.duration")
                             .tag("status", status)
                             .publishPercentileHistogram()
@@ -84,8 +169,23 @@ public class EtlJobService {
         log.debug("Updated job {} date range: {} to {}", jobId, minDate, maxDate);
     }
 
-    @Transactional(readOnly = true)
-    public boolean isWindowLocked(UUID jobId, LocalDate minDate, LocalDate maxDate) {
-        return etlJobRepository.existsActiveJobInDateRange(jobId, minDate, maxDate);
+    /**
+     * Guarda las estadísticas de la carga acumuladas por el parser: rango de fechas y resumen por día (load_summary).
+     */
+    public void updateJobStats(UUID jobId, ProductionStats stats) {
+        EtlJob job = etlJobRepository.findById(jobId)
+                .orElseThrow(() -> new IllegalArgumentException("Job not found with ID: " + jobId));
+
+        job.setMinDate(stats.minDate());
+        job.setMaxDate(stats.maxDate());
+        try {
+            job.setLoadSummary(SUMMARY_MAPPER.writeValueAsString(stats.days()));
+        } catch (JsonProcessingException e) {
+            // El resumen es informativo: no hace fallar la carga
+            log.warn("Could not serialize load summary for job {}: {}", jobId, e.getMessage());
+        }
+
+        etlJobRepository.save(job);
+        log.debug("Updated job {} stats: {} rows, {} to {}", jobId, stats.rows(), stats.minDate(), stats.maxDate());
     }
 }
@@ -2,28 +2,28 @@ package com.cambiaso.ioc.service;
 
 import com.cambiaso.ioc.dto.NotificationPayload;
 import com.cambiaso.ioc.exception.FileValidationException;
-import com.cambiaso.ioc.exception.JobConflictException;
-import com.cambiaso.ioc.persistence.entity.FactProduction;
+import com.cambiaso.ioc.service.etl.ProductionRow;
+import com.cambiaso.ioc.service.etl.ProductionStats;
+import com.cambiaso.ioc.service.etl.RejectListener;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
-import io.micrometer.core.annotation.Timed;
 import io.micrometer.core.instrument.Counter;
-import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.io.InputStream;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Service
@@ -33,33 +33,79 @@ public class EtlProcessingService {
     private final NotificationService notificationService;
     private final DataSyncService dataSyncService;
     private final ParserService parserService;
+    private final UploadStagingService uploadStagingService;
     private final MeterRegistry meterRegistry;
-
-    // Single constructor for autowiring with optional MeterRegistry
+    private final AnalyticsViewRefreshService analyticsViewRefreshService;
+    private final QuarantineWriter quarantineWriter;
+
+    // Modo streaming: parseo y escritura solapados en bloques (memoria acotada)
+    @Value("${etl.parse.streaming.enabled:false}")
+    private boolean streamingEnabled;
+    @Value("${etl.parse.chunk-size:5000}")
+    private int chunkSize;
+    // Señal de vida del job en curso (last_progress_at) para el watchdog, a lo sumo una por intervalo
+    @Value("${etl.jobs.heartbeat.interval-ms:60000}")
+    private long heartbeatIntervalMs;
+
+    // Single constructor for autowiring with optional MeterRegistry and view refresher
     public EtlProcessingService(EtlJobService etlJobService,
                                NotificationService notificationService,
                                DataSyncService dataSyncService,
                                ParserService parserService,
-                               @Autowired(required = false) MeterRegistry meterRegistry) {
+                               UploadStagingService uploadStagingService,
+                               @Autowired(required = false) MeterRegistry meterRegistry,
+                               @Autowired(required = false) AnalyticsViewRefreshService analyticsViewRefreshService,
+                               @Autowired(required = false) QuarantineWriter quarantineWriter) {
         this.etlJobService = etlJobService;
         this.notificationService = notificationService;
         this.dataSyncService = dataSyncService;
         this.parserService = parserService;
+        this.uploadStagingService = uploadStagingService;
         this.meterRegistry = meterRegistry;
+        this.analyticsViewRefreshService = analyticsViewRefreshService;
+        this.quarantineWriter = quarantineWriter;
     }
 
-    @Async("etlExecutor")
-    public void processFile(MultipartFile file, String userId, UUID jobId) {
-        log.info("Starting ETL process for job ID: {}", jobId);
+    /**
+     * Procesa en el hilo actual un upload ya copiado a staging por {@link UploadStagingService}; lo invocan los
+     * workers de {@link EtlJobQueueService}. El archivo de staging se elimina al terminar el job, con éxito o con fallo;
+     * si el job se interrumpe (apagado o caída) se conserva para que {@link EtlJobResumer} lo retome.
+     */
+    public void processStagedFile(UploadStagingService.StagedUpload upload, String userId, UUID jobId) {
+        log.info("Starting ETL process for job ID: {} (staged upload, {} bytes)", jobId, upload.size());
         try {
-            if (file == null || file.isEmpty()) {
-                throw new FileValidationException("Uploaded file is null or empty.");
+            runJob(() -> uploadStagingService.openStream(upload), userId, jobId);
+        } finally {
+            // Interrumpido por un apagado: el archivo se conserva para retomar el job al reiniciar
+            if (!Thread.currentThread().isInterrupted()) {
+                uploadStagingService.discard(upload);
+            }
+        }
+    }
+
+    // Fuente re-abrible del contenido del archivo
+    @FunctionalInterface
+    private interface InputSource {
+        InputStream open() throws IOException;
+    }
+
+    private void runJob(InputSource source, String userId, UUID jobId) {
+        JobProgress progress = new JobProgress(jobId);
+        try (QuarantineWriter.Session rejects = openQuarantine(jobId)) {
+            if (streamingEnabled) {
+                processFileStreaming(source, userId, jobId, progress, rejects);
+                return;
             }
 
             // 1. Parse file and extract records
             log.debug("Job {}: Parsing file content.", jobId);
             notificationService.notifyUser(userId, jobId, new NotificationPayload("PROCESANDO", "Parsing file content."));
-            List<FactProduction> parsedRecords = parserService.parse(file.getInputStream());
+            ParserService.ParsedFile parsed;
+            progress.phase("PARSE");
+            try (InputStream in = progress.track(source.open())) {
+                parsed = parserService.parseFile(in, rejects);
+            }
+            List<ProductionRow> parsedRecords = parsed.records();
 
             if (parsedRecords.isEmpty()) {
                 log.warn("Job {}: File is empty or contains no valid data rows. Finishing as success.", jobId);
@@ -68,51 +114,158 @@ public class EtlProcessingService {
                 return;
             }
 
-            // 2. Calculate date range from parsed data
-            LocalDate minDate = parsedRecords.stream()
-                    .map(FactProduction::getFechaContabilizacion)
-                    .min(LocalDate::compareTo)
-                    .orElseThrow(() -> new FileValidationException("Could not determine minimum date from file."));
-
-            LocalDate maxDate = parsedRecords.stream()
-                    .map(FactProduction::getFechaContabilizacion)
-                    .max(LocalDate::compareTo)
-                    .orElseThrow(() -> new FileValidationException("Could not determine maximum date from file."));
-
-            // Validación defensiva: todas las fechas deben estar dentro del rango calculado
-            boolean outOfRange = parsedRecords.stream().anyMatch(r -> r.getFechaContabilizacion().isBefore(minDate) || r.getFechaContabilizacion().isAfter(maxDate));
-            if (outOfRange) {
-                throw new FileValidationException("Parsed records contain dates outside inferred range: " + minDate + " to " + maxDate);
-            }
+            // 2. Date range and per-day totals, accumulated by the parser while it emitted the records
+            ProductionStats stats = parsed.summary().stats();
+            LocalDate minDate = stats.minDate();
+            LocalDate maxDate = stats.maxDate();
 
-            // 3. Update job with date range and check for conflicts
-            log.debug("Job {}: Checking for window lock for date range {} to {}.", jobId, minDate, maxDate);
-            etlJobService.updateJobDateRange(jobId, minDate, maxDate);
-
-            if (etlJobService.isWindowLocked(jobId, minDate, maxDate)) {
-                // Métrica de conflicto de ventana
-                if (meterRegistry != null) {
-                    Counter.builder("etl.window.conflicts").register(meterRegistry).increment();
-                }
-                throw new JobConflictException("Another ETL job is processing this date range.");
-            }
+            // 3. Update job with date range and load summary. Jobs with overlapping ranges are serialised by the
+            // month locks taken in DataSyncService (EtlRangeLockManager); jobs on disjoint months run in parallel.
+            etlJobService.updateJobStats(jobId, stats);
 
             // 4. Sync data to database
             log.debug("Job {}: Synchronizing {} records to the database.", jobId, parsedRecords.size());
             notificationService.notifyUser(userId, jobId, new NotificationPayload("SINCRONIZANDO", "Writing data to database."));
-            dataSyncService.syncWithDeleteInsert(minDate, maxDate, parsedRecords);
+            progress.phase("SYNC");
+            DataSyncService.SyncResult syncResult = dataSyncService.sync(minDate, maxDate, parsedRecords);
 
             // 5. Finalize job
-            String successDetails = String.format("ETL process completed successfully. Synced %d records.", parsedRecords.size());
+            String successDetails = syncResult.deleted() < 0
+                    ? String.format("ETL process completed successfully. Synced %d records (lock wait %d ms).",
+                            parsedRecords.size(), syncResult.lockWaitMs())
+                    : String.format("ETL process completed successfully. Synced %d records (inserted=%d, updated=%d, unchanged=%d, deleted=%d, lock wait %d ms).",
+                            parsedRecords.size(), syncResult.inserted(), syncResult.updated(), syncResult.unchanged(), syncResult.deleted(),
+                            syncResult.lockWaitMs());
             log.info("Job {} completed successfully.", jobId);
             etlJobService.updateJobStatus(jobId, "EXITO", successDetails);
+            requestAnalyticsRefresh();
             notificationService.notifyUser(userId, jobId, new NotificationPayload("EXITO", "Process finished."));
 
         } catch (Exception e) {
-            log.error("ETL process failed for job ID: {}", jobId, e);
-            String errorMessage = e.getMessage();
-            etlJobService.updateJobStatus(jobId, "FALLO", errorMessage);
-            notificationService.notifyUser(userId, jobId, new NotificationPayload("FALLO", errorMessage));
+            if (Thread.currentThread().isInterrupted()) {
+                // Apagado de la aplicación: el job queda en curso y EtlJobResumer lo retoma al reiniciar
+                log.warn("Job {} interrupted by shutdown; it will be resumed on restart", jobId);
+                return;
+            }
+            failJob(jobId, userId, e);
+        }
+    }
+
+    // Cuarentena de las líneas descartadas; sin writer (o si la base no responde) los rechazos solo se cuentan
+    private QuarantineWriter.Session openQuarantine(UUID jobId) {
+        if (quarantineWriter != null) {
+            try {
+                return quarantineWriter.open(jobId);
+            } catch (RuntimeException e) {
+                log.warn("Job {}: could not open the quarantine, rejected lines will only be counted: {}", jobId, e.getMessage());
+            }
+        }
+        return QuarantineWriter.Session.countingOnly(jobId);
+    }
+
+    private void failJob(UUID jobId, String userId, Exception e) {
+        log.error("ETL process failed for job ID: {}", jobId, e);
+        String errorMessage = e.getMessage();
+        etlJobService.updateJobStatus(jobId, "FALLO", errorMessage);
+        notificationService.notifyUser(userId, jobId, new NotificationPayload("FALLO", errorMessage));
+    }
+
+    /**
+     * Parseo y sincronización solapados: los bloques emitidos por el parser se escriben mientras se lee el
+     * archivo. El rango de fechas se conoce recién al final, por lo que no hay chequeo previo de ventana;
+     * la serialización entre cargas queda a cargo de los advisory locks de DataSyncService, que toma los meses
+     * de un escaneo previo del archivo ({@link ParserService#scanMonths}) en orden antes de escribir.
+     */
+    private void processFileStreaming(InputSource source, String userId, UUID jobId, JobProgress progress,
+                                      RejectListener rejects) {
+        log.debug("Job {}: Streaming file content to the database in chunks of {}.", jobId, chunkSize);
+        notificationService.notifyUser(userId, jobId, new NotificationPayload("SINCRONIZANDO", "Streaming parsed rows to database."));
+        progress.phase("STREAM");
+        DataSyncService.StreamingResult<ParserService.ParseSummary> streamed = dataSyncService.syncStreaming(
+                () -> {
+                    try (InputStream in = source.open()) {
+                        return parserService.scanMonths(in);
+                    }
+                },
+                sink -> {
+                    try (InputStream in = progress.track(source.open())) {
+                        return parserService.parse(in, chunkSize, sink, rejects);
+                    }
+                });
+        ParserService.ParseSummary summary = streamed.result();
+
+        if (summary.recordsParsed() == 0) {
+            log.warn("Job {}: File is empty or contains no valid data rows. Finishing as success.", jobId);
+            etlJobService.updateJobStatus(jobId, "EXITO", "File processed successfully: No data rows found to sync.");
+            notificationService.notifyUser(userId, jobId, new NotificationPayload("EXITO", "File processed, no data rows found."));
+            return;
+        }
+
+        etlJobService.updateJobStats(jobId, summary.stats());
+        String successDetails = String.format("ETL process completed successfully. Synced %d records (lock wait %d ms).",
+                summary.recordsParsed(), streamed.lockWaitMs());
+        log.info("Job {} completed successfully (streaming).", jobId);
+        etlJobService.updateJobStatus(jobId, "EXITO", successDetails);
+        requestAnalyticsRefresh();
+        notificationService.notifyUser(userId, jobId, new NotificationPayload("EXITO", "Process finished."));
+    }
+
+    /**
+     * Avance del job en curso: la fase se guarda en etl_jobs al cambiar y, mientras se lee el archivo, se marca
+     * {@code last_progress_at} a lo sumo cada {@code etl.jobs.heartbeat.interval-ms}. El watchdog mide el atasco desde
+     * esa marca, así que un job largo que sigue leyendo no se da por colgado.
+     */
+    private final class JobProgress {
+        private final UUID jobId;
+        private volatile String phase;
+        private volatile long lastSavedNanos = System.nanoTime();
+
+        JobProgress(UUID jobId) {
+            this.jobId = jobId;
+        }
+
+        void phase(String newPhase) {
+            phase = newPhase;
+            save();
+        }
+
+        InputStream track(InputStream in) {
+            return new FilterInputStream(in) {
+                @Override
+                public int read() throws IOException {
+                    heartbeat();
+                    return super.read();
+                }
+
+                @Override
+                public int read(byte[] buf, int off, int len) throws IOException {
+                    heartbeat();
+                    return super.read(buf, off, len);
+                }
+            };
+        }
+
+        private void heartbeat() {
+            if (System.nanoTime() - lastSavedNanos >= TimeUnit.MILLISECONDS.toNanos(heartbeatIntervalMs)) {
+                save();
+            }
+        }
+
+        private synchronized void save() {
+            lastSavedNanos = System.nanoTime();
+            try {
+                etlJobService.recordProgress(jobId, phase);
+            } catch (RuntimeException e) {
+                // El avance es best-effort: no debe tumbar la carga
+                log.warn("Could not record progress for job {}: {}", jobId, e.getMessage());
+            }
+        }
+    }
+
+    // Las vistas materializadas analíticas se refrescan (agrupando jobs cercanos) cuando una carga termina en EXITO
+    private void requestAnalyticsRefresh() {
+        if (analyticsViewRefreshService != null) {
+            analyticsViewRefreshService.requestRefresh();
         }
     }
 
@@ -131,27 +284,6 @@ public class EtlProcessingService {
         recordNotificationFallback(ex);
     }
 
-    @Timed(value = "etl.file.hash.calculation", description = "Time taken to calculate file hash")
-    public String calculateFileHash(MultipartFile file) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(file.getBytes());
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
-            }
-
-            recordFileMetrics(file);
-            return hexString.toString();
-
-        } catch (NoSuchAlgorithmException | IOException e) {
-            recordHashError(e);
-            throw new FileValidationException("Could not calculate file hash: " + e.getMessage());
-        }
-    }
-
     // Helper methods to improve code organization and readability
 
     private void validateFile(MultipartFile file) {
@@ -184,7 +316,7 @@ public class EtlProcessingService {
 
 
             DateRange dateRange = new DateRange(startDate, endDate);
-            List<FactProduction> records = new ArrayList<>(); // Parse actual records from file content
+            List<ProductionRow> records = new ArrayList<>(); // Parse actual records from file content
 
             return new ParsedFileData(dateRange, records);
         } catch (InterruptedException e) {
@@ -245,44 +377,7 @@ public class EtlProcessingService {
         }
     }
 
-    private DistributionSummary fileSizeDist() {
-        if (meterRegistry == null) return null;
-        return DistributionSummary.builder("etl.file.size.bytes")
-                .baseUnit("bytes")
-                .publishPercentileHistogram()
-                .publishPercentiles(0.5,0.9,0.99)
-                .register(meterRegistry);
-    }
-
-    private void recordFileMetrics(MultipartFile file) {
-        if (meterRegistry != null) {
-            meterRegistry.summary("etl.file.size").record(file.getSize());
-            DistributionSummary ds = fileSizeDist();
-            if (ds != null) ds.record(file.getSize());
-            Counter.builder("etl.files.processed")
-                    .tag("type", getFileExtension(file.getOriginalFilename()))
-                    .register(meterRegistry)
-                    .increment();
-        }
-    }
-
-    private void recordHashError(Exception e) {
-        if (meterRegistry != null) {
-            Counter.builder("etl.file.hash.errors")
-                    .tag("error_type", e.getClass().getSimpleName())
-                    .register(meterRegistry)
-                    .increment();
-        }
-    }
-
-    private String getFileExtension(String filename) {
-        if (filename == null || !filename.contains(".")) {
-            return "unknown";
-        }
-        return filename.substring(filename.lastIndexOf(".") + 1).toLowerCase();
-    }
-
     // Record classes for better type safety
     private record DateRange(LocalDate minDate, LocalDate maxDate) {}
-    private record ParsedFileData(DateRange dateRange, List<FactProduction> records) {}
+    private record ParsedFileData(DateRange dateRange, List<ProductionRow> records) {}
 }
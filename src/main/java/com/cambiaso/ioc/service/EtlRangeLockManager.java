@@ -0,0 +1,123 @@
+package com.cambiaso.ioc.service;
+
+import com.cambiaso.ioc.persistence.repository.FactProductionBulkRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Lock de rangos de fechas para las cargas ETL: un advisory lock transaccional de PostgreSQL por mes
+ * ({@code pg_advisory_xact_lock(namespace, año * 12 + mes)}), tomados en orden ascendente.
+ *
+ * Dos cargas cuyos rangos se solapan comparten al menos un mes y se serializan; cargas de meses disjuntos corren en
+ * paralelo. Tomar los meses siempre en el mismo orden evita deadlocks entre cargas con rango conocido. Los locks se
+ * liberan al terminar la transacción en curso, que debe ser la de la carga.
+ *
+ * Las cargas streaming se serializan entre sí con {@link #lockStreamingLoads} y toman de una vez, en orden, los meses
+ * de un escaneo previo del archivo. Solo un mes que el escaneo no anticipó se toma al encontrarlo, fuera de orden
+ * (se cuenta en {@code etl.sync.streaming.late.month.locks}); si eso se cruza con una carga por rango, PostgreSQL
+ * detecta el deadlock (SQLState 40P01) y aborta una de las dos transacciones, que DataSyncService repite completa.
+ *
+ * En bases sin advisory locks (H2 en tests) el lock se omite con un warning. En PostgreSQL un fallo al tomar el lock
+ * (deadlock, lock_timeout) se propaga: la transacción ya quedó abortada y la carga no puede continuar.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EtlRangeLockManager {
+
+    /** Primer entero de la llave: separa estos locks de otros advisory locks de la base. */
+    static final int LOCK_NAMESPACE = 0x45544C; // "ETL"
+    // Segundo entero reservado para serializar cargas streaming (ningún mes real es negativo)
+    private static final int STREAMING_BUCKET = -1;
+
+    private final EntityManager entityManager;
+    private final MeterRegistry meterRegistry;
+    private final FactProductionBulkRepository bulkRepository; // detecta PostgreSQL (una vez)
+
+    private volatile boolean skipWarned;
+
+    /**
+     * Toma los locks de todos los meses que toca [from, to] dentro de la transacción en curso.
+     *
+     * @return tiempo esperado hasta obtener todos los locks
+     */
+    public Duration lockRange(LocalDate from, LocalDate to) {
+        return lockMonths(monthBuckets(from, to), from + " to " + to);
+    }
+
+    /**
+     * Toma los locks de los meses indicados (en orden ascendente) dentro de la transacción en curso.
+     *
+     * @return tiempo esperado hasta obtener todos los locks
+     */
+    public Duration lockMonths(Collection<YearMonth> months, String scope) {
+        List<YearMonth> sorted = new ArrayList<>(new TreeSet<>(months));
+        if (sorted.isEmpty()) {
+            return Duration.ZERO;
+        }
+        long start = System.nanoTime();
+        for (YearMonth month : sorted) {
+            if (!acquire(bucketOf(month), month + " (" + scope + ")")) {
+                return Duration.ZERO;
+            }
+        }
+        Duration waited = Duration.ofNanos(System.nanoTime() - start);
+        meterRegistry.timer("etl.lock.wait").record(waited);
+        DistributionSummary.builder("etl.lock.buckets").register(meterRegistry).record(sorted.size());
+        log.debug("Acquired {} month lock(s) {}..{} for {} after {} ms", sorted.size(), sorted.get(0),
+                sorted.get(sorted.size() - 1), scope, waited.toMillis());
+        return waited;
+    }
+
+    /** Serializa las cargas streaming entre sí (dentro de la transacción en curso). */
+    public Duration lockStreamingLoads() {
+        long start = System.nanoTime();
+        if (!acquire(STREAMING_BUCKET, "streamed upload")) {
+            return Duration.ZERO;
+        }
+        Duration waited = Duration.ofNanos(System.nanoTime() - start);
+        meterRegistry.timer("etl.lock.wait").record(waited);
+        return waited;
+    }
+
+    private boolean acquire(int bucket, String scope) {
+        if (!bulkRepository.isPostgres()) {
+            // H2 u otras BDs no tienen advisory locks; continuar sin lock
+            if (!skipWarned) {
+                skipWarned = true;
+                log.warn("Advisory locks are not available on this database; ETL range locks are skipped ({})", scope);
+            }
+            return false;
+        }
+        entityManager.createNativeQuery("SELECT pg_advisory_xact_lock(?, ?)")
+                .setParameter(1, LOCK_NAMESPACE)
+                .setParameter(2, bucket)
+                .getSingleResult();
+        return true;
+    }
+
+    /** Meses que toca [from, to], en orden ascendente. */
+    static List<YearMonth> monthBuckets(LocalDate from, LocalDate to) {
+        List<YearMonth> months = new ArrayList<>();
+        for (YearMonth m = YearMonth.from(from); !m.isAfter(YearMonth.from(to)); m = m.plusMonths(1)) {
+            months.add(m);
+        }
+        return months;
+    }
+
+    static int bucketOf(YearMonth month) {
+        return month.getYear() * 12 + month.getMonthValue() - 1;
+    }
+}
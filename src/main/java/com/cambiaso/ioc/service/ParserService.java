@@ -1,29 +1,44 @@
 package com.cambiaso.ioc.service;
 
-import com.cambiaso.ioc.persistence.entity.DimMaquina;
-import com.cambiaso.ioc.persistence.entity.DimMaquinista;
-import com.cambiaso.ioc.persistence.entity.FactProduction;
-import com.cambiaso.ioc.persistence.repository.DimMaquinaRepository;
-import com.cambiaso.ioc.persistence.repository.DimMaquinistaRepository;
+import com.cambiaso.ioc.service.etl.CodeDictionary;
+import com.cambiaso.ioc.service.etl.ColumnBindingPlan;
+import com.cambiaso.ioc.service.etl.FieldDecoder;
+import com.cambiaso.ioc.service.etl.LineBlockSplitter;
+import com.cambiaso.ioc.service.etl.LineBlockSplitter.LineBlock;
+import com.cambiaso.ioc.service.etl.NaturalKeySet;
+import com.cambiaso.ioc.service.etl.PipeDelimitedReader;
+import com.cambiaso.ioc.service.etl.ProductionBatch;
+import com.cambiaso.ioc.service.etl.ProductionRow;
+import com.cambiaso.ioc.service.etl.ProductionStats;
+import com.cambiaso.ioc.service.etl.RejectListener;
+import com.cambiaso.ioc.service.etl.RejectReason;
+import com.cambiaso.ioc.service.etl.SapValueParsers;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.charset.Charset;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.function.BiConsumer;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
@@ -32,235 +47,660 @@ public class ParserService {
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy");
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss");
 
-    private final DimMaquinaRepository maquinaRepository;
-    private final DimMaquinistaRepository maquinistaRepository;
+    private static final Charset INPUT_CHARSET = Charset.forName("Windows-1252");
+    private static final String HEADER_MARKER = "Fecha Cont.";
+
+    private final DimensionRegistry dimensionRegistry;
     private final MeterRegistry meterRegistry;
+    private final Executor parseExecutor;
+
+    @Value("${etl.parse.parallel.enabled:false}")
+    private boolean parallelEnabled;
+
+    @Value("${etl.parse.parallel.block-bytes:4194304}")
+    private int parallelBlockBytes;
 
-    public ParserService(DimMaquinaRepository maquinaRepository,
-                         DimMaquinistaRepository maquinistaRepository,
-                         MeterRegistry meterRegistry) {
-        this.maquinaRepository = maquinaRepository;
-        this.maquinistaRepository = maquinistaRepository;
+    // Bloques parseados en vuelo por archivo (acota la memoria retenida); 0 = 2 x núcleos
+    @Value("${etl.parse.parallel.max-in-flight:0}")
+    private int parallelMaxInFlight;
+
+    public ParserService(DimensionRegistry dimensionRegistry,
+                         MeterRegistry meterRegistry,
+                         @Qualifier("etlParseExecutor") Executor parseExecutor) {
+        this.dimensionRegistry = dimensionRegistry;
         this.meterRegistry = meterRegistry;
+        this.parseExecutor = parseExecutor;
     }
 
     // Metrics helpers
     private Counter rowsParsedCounter() { return meterRegistry.counter("etl.rows.parsed"); }
     private Counter rowsDuplicateSkippedCounter() { return meterRegistry.counter("etl.rows.duplicate.skipped"); }
     private Counter malformedLinesCounter() { return meterRegistry.counter("etl.rows.malformed"); }
-    private Counter dimNewMaquinaCounter() { return meterRegistry.counter("etl.dim.new.maquina"); }
-    private Counter dimNewMaquinistaCounter() { return meterRegistry.counter("etl.dim.new.maquinista"); }
+    private Counter rejectedCounter(RejectReason reason) { return meterRegistry.counter("etl.rows.rejected", "reason", reason.tag()); }
     private Timer parseDurationTimer() { return meterRegistry.timer("etl.parse.duration"); }
     private final AtomicReference<Double> lastDuplicateRatio = new AtomicReference<>(0.0);
 
-    public List<FactProduction> parse(InputStream inputStream) throws IOException {
-        long startNanos = System.nanoTime();
-        List<FactProduction> records = new ArrayList<>();
-        Map<String, Integer> headerMap = new HashMap<>();
-        boolean headerFound = false;
-        int duplicatesSkipped = 0;
-        int logicalParsed = 0; // registros válidos (post validación)
-        int lineNumber = 0;
-        int malformedLines = 0;
-
-        // Preload dimension caches
-        Map<String, DimMaquina> maquinaCache = maquinaRepository.findAll().stream()
-                .collect(Collectors.toMap(DimMaquina::getCodigoMaquina, m -> m));
-        Map<Long, DimMaquinista> maquinistaCache = maquinistaRepository.findAll().stream()
-                .collect(Collectors.toMap(DimMaquinista::getCodigoMaquinista, m -> m));
-        List<DimMaquina> newMaquinas = new ArrayList<>();
-        List<DimMaquinista> newMaquinistas = new ArrayList<>();
-
-        // De-dup key set
-        Set<String> seenKeys = new HashSet<>();
-        Map<String, BiConsumer<FactProduction, String>> setterMap = buildSetterMap(maquinaCache, maquinistaCache, newMaquinas, newMaquinistas);
-
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, "Windows-1252"))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                lineNumber++;
-                if (line.contains("Fecha Cont.")) { headerFound = true; headerMap = parseHeader(line); continue; }
-                if (!headerFound || line.trim().startsWith("-") || line.trim().isEmpty() || line.contains("Cantidad")) { continue; }
-
-                String earlyKey = null;
-                try {
-                    earlyKey = buildEarlyKeyCanonical(line, headerMap); // normalizado
-                } catch (Exception ex) {
-                    if (log.isTraceEnabled()) log.trace("Early key build failed line #{}: {}", lineNumber, ex.getMessage());
-                }
-                if (earlyKey != null && seenKeys.contains(earlyKey)) {
-                    duplicatesSkipped++; rowsDuplicateSkippedCounter().increment();
-                    if (log.isTraceEnabled()) log.trace("Early skip duplicate logical fact key={}", earlyKey);
+    public List<ProductionRow> parse(InputStream inputStream) throws IOException {
+        return parseFile(inputStream, RejectListener.NONE).records();
+    }
+
+    /**
+     * Parsea el archivo completo en memoria, con el resumen del parseo (rango de fechas y totales por día). Las
+     * líneas descartadas se entregan a {@code rejects}.
+     */
+    public ParsedFile parseFile(InputStream inputStream, RejectListener rejects) throws IOException {
+        List<ProductionRow> records = new ArrayList<>();
+        ParseSummary summary = parse(inputStream, Integer.MAX_VALUE, batch -> records.addAll(batch.toRows()), rejects);
+        return new ParsedFile(records, summary);
+    }
+
+    /**
+     * Recorre el archivo leyendo solo la columna "Fecha Cont." y devuelve los meses contables que aparecen, sin
+     * validar ni deduplicar: la carga streaming los usa para tomar todos sus locks de mes de una vez y en orden
+     * antes de escribir. Puede incluir meses de líneas que el parseo luego rechaza, pero no omite los de las aceptadas.
+     */
+    public SortedSet<YearMonth> scanMonths(InputStream inputStream) throws IOException {
+        SapValueParsers values = new SapValueParsers();
+        SortedSet<YearMonth> months = new TreeSet<>();
+        int fechaIdx = -1; // sin cabecera todavía
+        try (PipeDelimitedReader reader = new PipeDelimitedReader(new InputStreamReader(inputStream, INPUT_CHARSET))) {
+            while (reader.nextLine()) {
+                if (reader.lineContains(HEADER_MARKER)) {
+                    // Misma resolución que ColumnBindingPlan: gana la última columna con ese nombre
+                    String[] headers = parseHeader(reader.lineString());
+                    fechaIdx = -1;
+                    for (int i = headers.length - 1; i >= 0 && fechaIdx < 0; i--) {
+                        if (headers[i].equals(HEADER_MARKER)) fechaIdx = i;
+                    }
                     continue;
                 }
-
+                if (fechaIdx < 0 || fechaIdx >= reader.fieldCount() || reader.isBlankLine()) continue;
                 try {
-                    FactProduction record = parseDataLine(line, headerMap, setterMap);
-                    if (!isRecordValid(record)) {
-                        malformedLines++; malformedLinesCounter().increment();
-                        if (log.isDebugEnabled()) log.debug("Skipping invalid record line #{} (missing required fields)", lineNumber);
-                        continue; // no cuenta como parsed
-                    }
-                    String key = earlyKey != null ? earlyKey : buildDedupKey(record);
-                    if (key == null) { // fallback: si no se puede construir clave canónica, descartar
-                        malformedLines++; malformedLinesCounter().increment();
-                        if (log.isDebugEnabled()) log.debug("Skipping record without canonical key line #{}", lineNumber);
-                        continue;
-                    }
-                    if (!seenKeys.add(key)) {
-                        duplicatesSkipped++; rowsDuplicateSkippedCounter().increment();
-                        if (log.isTraceEnabled()) log.trace("Skipping duplicate logical fact key={} (late)", key);
-                        continue;
-                    }
-                    logicalParsed++; rowsParsedCounter().increment();
-                    records.add(record);
-                } catch (Exception e) {
-                    malformedLines++; malformedLinesCounter().increment();
-                    log.warn("Skipping malformed line #{}: '{}'. Reason: {}", lineNumber, sanitizeForLog(line), shortMsg(e));
+                    months.add(YearMonth.from(parseDateField(reader, fechaIdx, values)));
+                } catch (RuntimeException e) {
+                    // Fecha ausente o ilegible: el parseo rechaza la línea
                 }
             }
+        }
+        return months;
+    }
+
+    public ParseSummary parse(InputStream inputStream, int chunkSize, Consumer<ProductionBatch> sink) throws IOException {
+        return parse(inputStream, chunkSize, sink, RejectListener.NONE);
+    }
+
+    /**
+     * Parsea el archivo emitiendo los registros válidos en bloques columnares ({@link ProductionBatch}) de a lo sumo
+     * {@code chunkSize} filas (y nunca más de {@link ProductionBatch#DEFAULT_ROWS}). Cada bloque se entrega al sink
+     * apenas se completa (pasa a ser propiedad del sink), de modo que el consumo de memoria no depende del tamaño
+     * del archivo. Las dimensiones nuevas referenciadas por un
+     * bloque se dan de alta antes de entregarlo y sus filas llevan ya el id definitivo, para que el sink pueda
+     * insertar los hechos de inmediato.
+     *
+     * Con {@code etl.parse.parallel.enabled} el archivo se parsea por bloques de bytes en el pool
+     * {@code etlParseExecutor}; el resultado (registros, orden, duplicados y dimensiones nuevas) es el mismo que el
+     * del parseo secuencial. El sink, el listener de rechazos y los repositorios siempre se invocan desde el hilo
+     * llamador.
+     *
+     * Las líneas descartadas no se registran una por una en el log: se cuentan en {@code etl.rows.rejected} (por
+     * {@link RejectReason}) y se entregan a {@code rejects}, que decide si las guarda (cuarentena del job).
+     */
+    public ParseSummary parse(InputStream inputStream, int chunkSize, Consumer<ProductionBatch> sink,
+                              RejectListener rejects) throws IOException {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        return parallelEnabled
+                ? parseParallel(inputStream, chunkSize, sink, rejects)
+                : parseSequential(inputStream, chunkSize, sink, rejects);
+    }
+
+    private ParseSummary parseSequential(InputStream inputStream, int chunkSize, Consumer<ProductionBatch> sink,
+                                         RejectListener rejects) throws IOException {
+        long startNanos = System.nanoTime();
+        ChunkEmitter out = new ChunkEmitter(chunkSize, loadDimensions(), sink, rejects);
+        LineParser parser = new LineParser(out.dims, Math.min(chunkSize, 1 << 16), null, rejects);
+        int lineNumber = 0;
+
+        try (PipeDelimitedReader reader = new PipeDelimitedReader(new InputStreamReader(inputStream, INPUT_CHARSET))) {
+            while (reader.nextLine()) {
+                lineNumber = reader.lineNumber();
+                ProductionRow record = parser.next(reader, lineNumber);
+                if (record != null) out.accept(record);
+            }
+        } finally {
+            out.addCounts(parser.duplicatesSkipped, parser.malformedLines);
+            logSummary(startNanos, lineNumber, out);
+        }
+
+        // Último bloque (y dimensiones nuevas pendientes, aunque no queden hechos)
+        out.finish();
+        return out.summary(lineNumber);
+    }
+
+    /*
+     * Parseo paralelo: el hilo llamador corta el stream en bloques de líneas completas (LineBlockSplitter) y los
+     * reparte al pool; cada bloque se parsea con su propio estado (deduplicación local y dimensiones nuevas locales).
+     * Los resultados se fusionan en orden de bloque sobre un conjunto de claves global, así que la primera ocurrencia
+     * en el archivo gana igual que en el parseo secuencial. Las líneas que un bloque rechazó teniendo clave se
+     * resuelven en la fusión: serían duplicados si la clave ya se había visto antes en el archivo.
+     */
+    private ParseSummary parseParallel(InputStream inputStream, int chunkSize, Consumer<ProductionBatch> sink,
+                                       RejectListener rejects) throws IOException {
+        long startNanos = System.nanoTime();
+        ChunkEmitter out = new ChunkEmitter(chunkSize, loadDimensions(), sink, rejects);
+        NaturalKeySet seenKeys = new NaturalKeySet(new CodeDictionary(), 1 << 16);
+        Set<String> reportedHeaders = new HashSet<>();
+        int maxInFlight = parallelMaxInFlight > 0 ? parallelMaxInFlight : 2 * Runtime.getRuntime().availableProcessors();
+        Deque<CompletableFuture<BlockResult>> inFlight = new ArrayDeque<>();
+        int linesRead = 0;
+
+        try {
+            LineBlockSplitter splitter = new LineBlockSplitter(inputStream, parallelBlockBytes, INPUT_CHARSET, HEADER_MARKER);
+            LineBlock block;
+            while ((block = splitter.next()) != null) {
+                LineBlock current = block;
+                inFlight.add(CompletableFuture.supplyAsync(() -> parseBlock(current, out.dims, rejects), parseExecutor));
+                if (inFlight.size() >= maxInFlight) {
+                    linesRead += mergeBlock(await(inFlight.poll()), seenKeys, out, reportedHeaders);
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                linesRead += mergeBlock(await(inFlight.poll()), seenKeys, out, reportedHeaders);
+            }
         } finally {
-            long elapsed = System.nanoTime() - startNanos;
-            parseDurationTimer().record(Duration.ofNanos(elapsed));
-            double ratio = (logicalParsed + duplicatesSkipped) == 0 ? 0.0 : ((double) duplicatesSkipped / (logicalParsed + duplicatesSkipped));
-            lastDuplicateRatio.set(ratio);
-            if (meterRegistry != null) {
-                meterRegistry.gauge("etl.rows.duplicate.ratio", lastDuplicateRatio, r -> r.get());
+            inFlight.forEach(f -> f.cancel(true));
+            logSummary(startNanos, linesRead, out);
+        }
+
+        out.finish();
+        return out.summary(linesRead);
+    }
+
+    private BlockResult parseBlock(LineBlock block, DimensionLookup shared, RejectListener rejects) {
+        BlockResult result = new BlockResult();
+        LineParser parser = new LineParser(shared.forWorker(), 1 << 12, result, rejects);
+        result.machines = parser.machineCodes;
+        result.dims = parser.dims;
+        if (block.headerLine() != null) {
+            parser.bindHeader(block.headerLine());
+        }
+        try (PipeDelimitedReader reader = new PipeDelimitedReader(
+                new InputStreamReader(new ByteArrayInputStream(block.data(), 0, block.length()), INPUT_CHARSET))) {
+            while (reader.nextLine()) {
+                ProductionRow record = parser.next(reader, block.firstLineNumber() + reader.lineNumber() - 1);
+                if (record != null) result.add(record, parser.keys);
+            }
+            result.linesRead = reader.lineNumber();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        result.duplicatesSkipped = parser.duplicatesSkipped;
+        result.malformedLines = parser.malformedLines;
+        return result;
+    }
+
+    private int mergeBlock(BlockResult result, NaturalKeySet seenKeys, ChunkEmitter out, Set<String> reportedHeaders) {
+        for (HeaderBinding header : result.headers) {
+            if (reportedHeaders.add(header.headerLine())) reportHeader(header.plan());
+        }
+        out.addCounts(result.duplicatesSkipped, result.malformedLines);
+        for (Reject reject : result.rejects) out.forward(reject);
+        int pending = 0;
+        for (int i = 0; i < result.size; i++) {
+            seenKeys.prepareFrom(result.high[i], result.low[i], result.overflow[i], result.machines);
+            ProductionRow record = result.records.get(i);
+            if (record == null) {
+                Reject reject = result.pendingRejects.get(pending++);
+                if (seenKeys.containsPrepared()) out.duplicate(); else out.malformed(reject);
+            } else if (!seenKeys.addPrepared()) {
+                out.duplicate();
+            } else {
+                out.dims.adopt(record, result.dims);
+                out.accept(record);
+            }
+        }
+        return result.linesRead;
+    }
+
+    private static BlockResult await(CompletableFuture<BlockResult> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException io) throw io.getCause();
+            if (cause instanceof RuntimeException re) throw re;
+            if (cause instanceof Error err) throw err;
+            throw e;
+        }
+    }
+
+    private void logSummary(long startNanos, int linesRead, ChunkEmitter out) {
+        long elapsed = System.nanoTime() - startNanos;
+        parseDurationTimer().record(Duration.ofNanos(elapsed));
+        double ratio = (out.parsed + out.duplicatesSkipped) == 0 ? 0.0 : ((double) out.duplicatesSkipped / (out.parsed + out.duplicatesSkipped));
+        lastDuplicateRatio.set(ratio);
+        if (meterRegistry != null) {
+            meterRegistry.gauge("etl.rows.duplicate.ratio", lastDuplicateRatio, r -> r.get());
+        }
+        log.info("Parse summary: linesRead={}, recordsParsedValid={}, duplicatesSkipped(early+late)={}, malformedLines={}, newMaquinas={}, newMaquinistas={}, finalRecords={}, duplicateRatio={}, elapsedMs={}, parallel={}",
+                linesRead, out.parsed, out.duplicatesSkipped, out.malformedLines, out.dims.newMaquinas.size(), out.dims.newMaquinistas.size(), out.parsed, String.format(java.util.Locale.ROOT, "%.5f", lastDuplicateRatio.get()), elapsed / 1_000_000, parallelEnabled);
+    }
+
+    /**
+     * Resumen de un parseo por bloques: contadores, rango de fechas y totales por día de los registros emitidos,
+     * acumulados bloque a bloque. minDate/maxDate son null si no se emitió ningún registro.
+     */
+    public record ParseSummary(int linesRead, int recordsParsed, int duplicatesSkipped, int malformedLines,
+                               LocalDate minDate, LocalDate maxDate, ProductionStats stats) {}
+
+    /** Resultado de {@link #parseFile}: todos los registros y el resumen del parseo. */
+    public record ParsedFile(List<ProductionRow> records, ParseSummary summary) {}
+
+    private DimensionLookup loadDimensions() {
+        dimensionRegistry.refresh();
+        return new DimensionLookup(dimensionRegistry);
+    }
+
+    /*
+     * Dimensiones de un parseo: código → id. Los ids salen del DimensionRegistry compartido (solo lectura; en modo
+     * paralelo lo consultan todos los hilos). Un código que el registro no conoce recibe un id provisional negativo
+     * (-1, -2, ... en orden de aparición, ver new*); registerPending los da de alta y deja en *Ids el id definitivo
+     * de cada provisional, que ProductionBatch.resolveProvisionalIds aplica a las filas del bloque. Los códigos de los
+     * ids se guardan para armar la clave natural de las filas sin clave temprana.
+     */
+    private static final class DimensionLookup {
+        final DimensionRegistry registry;
+        final Map<String, Long> maquinas = new HashMap<>();
+        final Map<Long, Long> maquinistas = new HashMap<>();
+        final Map<Long, String> maquinaCodes = new HashMap<>();
+        final Map<Long, Long> maquinistaCodes = new HashMap<>();
+        final List<String> newMaquinas = new ArrayList<>();    // código del id provisional -(i + 1)
+        final List<Long> newMaquinistas = new ArrayList<>();
+        long[] maquinaIds = new long[0];                       // id definitivo de los provisionales ya registrados
+        long[] maquinistaIds = new long[0];
+
+        DimensionLookup(DimensionRegistry registry) {
+            this.registry = registry;
+        }
+
+        // Lookup para un hilo de parseo: comparte el registro, asigna sus propios ids provisionales
+        DimensionLookup forWorker() {
+            return new DimensionLookup(registry);
+        }
+
+        /** Id de la máquina (provisional si es nueva), o 0 si el código viene vacío. */
+        long maquina(String codigoMaquina) {
+            if (codigoMaquina == null || codigoMaquina.trim().isEmpty()) return 0;
+            String codigo = codigoMaquina.trim();
+            Long id = maquinas.get(codigo);
+            if (id != null) return id;
+            id = registry.maquinaId(codigo);
+            if (id == null) {
+                newMaquinas.add(codigo);
+                id = (long) -newMaquinas.size();
+            }
+            maquinas.put(codigo, id);
+            maquinaCodes.put(id, codigo);
+            return id;
+        }
+
+        /** Id del maquinista (provisional si es nuevo), o 0 si no viene informado. */
+        long maquinista(long codigo) {
+            if (codigo == ProductionRow.NULL_LONG) return 0;
+            Long id = maquinistas.get(codigo);
+            if (id != null) return id;
+            id = registry.maquinistaId(codigo);
+            if (id == null) {
+                newMaquinistas.add(codigo);
+                id = (long) -newMaquinistas.size();
+            }
+            maquinistas.put(codigo, id);
+            maquinistaCodes.put(id, codigo);
+            return id;
+        }
+
+        String maquinaCode(long id) {
+            return id == 0 ? null : maquinaCodes.get(id);
+        }
+
+        Long maquinistaCode(long id) {
+            return id == 0 ? null : maquinistaCodes.get(id);
+        }
+
+        /** Da de alta los códigos nuevos aún sin registrar. @return si hubo alguno (hay filas que resolver) */
+        boolean registerPending() {
+            boolean any = false;
+            if (maquinaIds.length < newMaquinas.size()) {
+                int from = maquinaIds.length;
+                Map<String, Long> ids = registry.registerMaquinas(newMaquinas.subList(from, newMaquinas.size()));
+                maquinaIds = Arrays.copyOf(maquinaIds, newMaquinas.size());
+                for (int i = from; i < maquinaIds.length; i++) {
+                    String codigo = newMaquinas.get(i);
+                    maquinaIds[i] = ids.get(codigo);
+                    maquinas.put(codigo, maquinaIds[i]);
+                    maquinaCodes.put(maquinaIds[i], codigo);
+                }
+                any = true;
+            }
+            if (maquinistaIds.length < newMaquinistas.size()) {
+                int from = maquinistaIds.length;
+                Map<Long, Long> ids = registry.registerMaquinistas(newMaquinistas.subList(from, newMaquinistas.size()));
+                maquinistaIds = Arrays.copyOf(maquinistaIds, newMaquinistas.size());
+                for (int i = from; i < maquinistaIds.length; i++) {
+                    Long codigo = newMaquinistas.get(i);
+                    maquinistaIds[i] = ids.get(codigo);
+                    maquinistas.put(codigo, maquinistaIds[i]);
+                    maquinistaCodes.put(maquinistaIds[i], codigo);
+                }
+                any = true;
             }
-            log.info("Parse summary: linesRead={}, recordsParsedValid={}, duplicatesSkipped(early+late)={}, malformedLines={}, newMaquinas={}, newMaquinistas={}, finalRecords={}, duplicateRatio={}, elapsedMs={}",
-                    lineNumber, logicalParsed, duplicatesSkipped, malformedLines, newMaquinas.size(), newMaquinistas.size(), records.size(), String.format(java.util.Locale.ROOT, "%.5f", lastDuplicateRatio.get()), elapsed / 1_000_000);
+            return any;
         }
 
-        // Persist new dimensions once
-        if (!newMaquinas.isEmpty()) {
-            maquinaRepository.saveAll(newMaquinas);
-            dimNewMaquinaCounter().increment(newMaquinas.size());
-            log.info("Saved {} new DimMaquina entities.", newMaquinas.size());
+        // Traduce los ids provisionales que asignó un hilo de parseo a los de este lookup (gana la primera fusionada)
+        void adopt(ProductionRow row, DimensionLookup worker) {
+            if (row.getMaquinaId() < 0) {
+                row.setMaquinaId(maquina(worker.newMaquinas.get((int) -row.getMaquinaId() - 1)));
+            }
+            if (row.getMaquinistaId() < 0) {
+                row.setMaquinistaId(maquinista(worker.newMaquinistas.get((int) -row.getMaquinistaId() - 1)));
+            }
         }
-        if (!newMaquinistas.isEmpty()) {
-            maquinistaRepository.saveAll(newMaquinistas);
-            dimNewMaquinistaCounter().increment(newMaquinistas.size());
-            log.info("Saved {} new DimMaquinista entities.", newMaquinistas.size());
+    }
+
+    // Acumula los registros aceptados en bloques columnares y los entrega al sink (siempre en el hilo llamador)
+    private final class ChunkEmitter {
+        final int batchRows;
+        final DimensionLookup dims;
+        final Consumer<ProductionBatch> sink;
+        final RejectListener rejects;
+        ProductionBatch batch;
+        int parsed; // registros válidos (post validación)
+        int duplicatesSkipped;
+        int malformedLines;
+        final ProductionStats stats = new ProductionStats(); // rango y totales por día, bloque a bloque
+
+        ChunkEmitter(int chunkSize, DimensionLookup dims, Consumer<ProductionBatch> sink, RejectListener rejects) {
+            this.batchRows = Math.min(chunkSize, ProductionBatch.DEFAULT_ROWS);
+            this.dims = dims;
+            this.sink = sink;
+            this.rejects = rejects;
+            this.batch = new ProductionBatch(batchRows);
+        }
+
+        // Copia la fila al bloque: el LineParser secuencial reutiliza la misma instancia en la línea siguiente
+        void accept(ProductionRow record) {
+            parsed++; rowsParsedCounter().increment();
+            batch.add(record);
+            if (batch.isFull()) emit();
+        }
+
+        void duplicate() {
+            duplicatesSkipped++; rowsDuplicateSkippedCounter().increment();
+        }
+
+        // Rechazo diferido de un bloque paralelo que resultó no ser duplicado
+        void malformed(Reject reject) {
+            malformedLines++; malformedLinesCounter().increment(); rejectedCounter(reject.reason()).increment();
+            forward(reject);
+        }
+
+        // Rechazo ya contado por el LineParser que lo produjo
+        void forward(Reject reject) {
+            rejects.rejected(reject.lineNumber(), reject.reason(), reject.line(), reject.detail());
+        }
+
+        // Contadores ya registrados en métricas por el LineParser que los produjo
+        void addCounts(int duplicates, int malformed) {
+            duplicatesSkipped += duplicates;
+            malformedLines += malformed;
+        }
+
+        void finish() {
+            emit();
+        }
+
+        private void emit() {
+            // Register new dimensions before the facts that reference them leave the parser
+            if (dims.registerPending()) {
+                batch.resolveProvisionalIds(dims.maquinaIds, dims.maquinistaIds);
+            }
+            if (!batch.isEmpty()) {
+                stats.add(batch);
+                sink.accept(batch);
+                batch = new ProductionBatch(batchRows);
+            }
+        }
+
+        ParseSummary summary(int linesRead) {
+            return new ParseSummary(linesRead, parsed, duplicatesSkipped, malformedLines,
+                    stats.minDate(), stats.maxDate(), stats);
         }
-        return records;
     }
 
-    private String buildDedupKey(FactProduction r) {
-        return canonicalKey(r.getFechaContabilizacion(),
-                r.getMaquina() != null ? r.getMaquina().getCodigoMaquina() : null,
-                r.getMaquinista() != null ? r.getMaquinista().getCodigoMaquinista() : null,
-                r.getNumeroLog());
+    // Resultado del parseo de un bloque: registros aceptados localmente y rechazos con clave, en orden de línea
+    private static final class BlockResult {
+        CodeDictionary machines;
+        DimensionLookup dims;
+        final List<ProductionRow> records = new ArrayList<>(); // null = línea rechazada que tenía clave
+        long[] high = new long[1024];
+        long[] low = new long[1024];
+        String[] overflow = new String[1024];
+        int size;
+        final List<HeaderBinding> headers = new ArrayList<>();
+        final List<Reject> rejects = new ArrayList<>();        // rechazos ya contados, en orden de línea
+        final List<Reject> pendingRejects = new ArrayList<>(); // uno por cada null de records, en el mismo orden
+        int linesRead;
+        int duplicatesSkipped;
+        int malformedLines;
+
+        void add(ProductionRow record, NaturalKeySet keys) {
+            if (size == high.length) {
+                high = Arrays.copyOf(high, size * 2);
+                low = Arrays.copyOf(low, size * 2);
+                overflow = Arrays.copyOf(overflow, size * 2);
+            }
+            high[size] = keys.preparedHigh();
+            low[size] = keys.preparedLow();
+            overflow[size] = keys.preparedOverflowKey();
+            records.add(record);
+            size++;
+        }
     }
 
-    // Nuevo helper: genera clave canónica ISO + números normalizados
-    private String canonicalKey(LocalDate fecha, String maquinaCodigo, Long maquinistaCodigo, Long numeroLog) {
-        if (fecha == null || maquinaCodigo == null || numeroLog == null) return null;
-        String maq = maquinaCodigo.trim();
-        if (maq.isEmpty()) return null;
-        long maqnis = (maquinistaCodigo == null) ? 0L : maquinistaCodigo;
-        return fecha.toString() + '|' + maq + '|' + maqnis + '|' + numeroLog;
+    // Línea descartada, retenida hasta entregarla al RejectListener desde el hilo llamador
+    private record Reject(int lineNumber, RejectReason reason, String line, String detail) {}
+
+    /*
+     * Estado de parseo de una secuencia de líneas en un solo hilo: cabecera vigente, decodificadores, deduplicación
+     * y contadores. En modo paralelo ({@code deferred != null}) las líneas rechazadas que tenían clave no se cuentan
+     * aquí sino que se registran en el BlockResult para decidir en la fusión si eran duplicados o malformadas.
+     */
+    private final class LineParser {
+        final CodeDictionary machineCodes = new CodeDictionary();
+        final CodeDictionary texts = new CodeDictionary(); // columnas de texto de baja cardinalidad
+        final SapValueParsers values = new SapValueParsers();
+        final DimensionLookup dims;
+        final ProductionRow scratch; // fila reutilizada en modo secuencial; null = una fila nueva por línea
+        final NaturalKeySet keys;
+        final Map<String, FieldDecoder> decoderMap;
+        final BlockResult deferred;
+        final RejectListener rejects;
+        HeaderBinding binding; // null hasta encontrar la primera cabecera
+        int duplicatesSkipped;
+        int malformedLines;
+
+        LineParser(DimensionLookup dims, int expectedKeys, BlockResult deferred, RejectListener rejects) {
+            this.dims = dims;
+            this.scratch = deferred == null ? new ProductionRow() : null;
+            this.keys = new NaturalKeySet(machineCodes, expectedKeys);
+            this.decoderMap = buildDecoderMap(values, machineCodes, texts, dims);
+            this.deferred = deferred;
+            this.rejects = rejects;
+        }
+
+        // Compila el plan de la cabecera; si el export repite la misma cabecera (saltos de página) se reutiliza el actual
+        void bindHeader(String headerLine) {
+            if (binding != null && binding.headerLine().equals(headerLine)) return;
+            binding = compileHeader(headerLine, decoderMap);
+            if (deferred == null) reportHeader(binding.plan()); else deferred.headers.add(binding);
+        }
+
+        /**
+         * Procesa la línea actual; devuelve el registro aceptado (con su clave preparada en {@link #keys}) o null.
+         * En modo secuencial es siempre la misma instancia ({@link #scratch}): hay que copiarla antes de la línea siguiente.
+         */
+        ProductionRow next(PipeDelimitedReader reader, int lineNumber) {
+            if (reader.lineContains(HEADER_MARKER)) { bindHeader(reader.lineString()); return null; }
+            if (binding == null || reader.firstNonBlankChar() == '-' || reader.isBlankLine() || reader.lineContains("Cantidad")) { return null; }
+
+            boolean earlyKey = false;
+            try {
+                earlyKey = prepareEarlyKey(reader, binding, keys, values); // normalizado
+            } catch (Exception ex) {
+                if (log.isTraceEnabled()) log.trace("Early key build failed line #{}: {}", lineNumber, ex.getMessage());
+            }
+            if (earlyKey && keys.containsPrepared()) {
+                duplicatesSkipped++; rowsDuplicateSkippedCounter().increment();
+                if (log.isTraceEnabled()) log.trace("Early skip duplicate logical fact key={}", keys.describePrepared());
+                return null;
+            }
+            if (!binding.plan().hasRequiredFields(reader)) {
+                reject(earlyKey, reader, lineNumber, RejectReason.MISSING_FIELDS, null);
+                return null;
+            }
+
+            try {
+                ProductionRow record = parseDataLine(reader, binding.plan(), scratch);
+                if (!isRecordValid(record)) {
+                    reject(earlyKey, reader, lineNumber, RejectReason.INVALID_FIELDS, null);
+                    return null; // no cuenta como parsed
+                }
+                if (!earlyKey && !prepareRecordKey(record, keys, dims)) { // fallback: si no se puede construir clave canónica, descartar
+                    reject(false, reader, lineNumber, RejectReason.NO_KEY, null);
+                    return null;
+                }
+                if (!keys.addPrepared()) {
+                    duplicatesSkipped++; rowsDuplicateSkippedCounter().increment();
+                    if (log.isTraceEnabled()) log.trace("Skipping duplicate logical fact key={} (late)", keys.describePrepared());
+                    return null;
+                }
+                return record;
+            } catch (Exception e) {
+                reject(earlyKey, reader, lineNumber, RejectReason.MALFORMED, shortMsg(e));
+                return null;
+            }
+        }
+
+        // El texto de la línea solo se copia mientras la cuarentena lo quiera
+        private void reject(boolean earlyKey, PipeDelimitedReader reader, int lineNumber, RejectReason reason, String detail) {
+            Reject reject = new Reject(lineNumber, reason, rejects.wantsLines() ? reader.lineString() : null, detail);
+            if (deferred != null && earlyKey) {
+                deferred.add(null, keys);
+                deferred.pendingRejects.add(reject);
+                return;
+            }
+            malformedLines++; malformedLinesCounter().increment(); rejectedCounter(reason).increment();
+            if (deferred != null) {
+                deferred.rejects.add(reject);
+            } else {
+                rejects.rejected(lineNumber, reason, reject.line(), detail);
+            }
+        }
+    }
+
+    private boolean prepareRecordKey(ProductionRow r, NaturalKeySet keys, DimensionLookup dims) {
+        return keys.prepare(r.getFechaContabilizacion(), dims.maquinaCode(r.getMaquinaId()),
+                dims.maquinistaCode(r.getMaquinistaId()), r.getNumeroLog());
     }
 
-    private Map<String, Integer> parseHeader(String line) {
-        Map<String, Integer> map = new HashMap<>();
+    private String[] parseHeader(String line) {
         String[] headers = line.split("\\|", -1);
         for (int i = 0; i < headers.length; i++) {
-            String cleanedHeader = headers[i].trim()
+            headers[i] = headers[i].trim()
                     .replace("á", "a").replace("é", "e")
                     .replace("í", "i").replace("ó", "o")
                     .replace("ú", "u").replace("°", "o");
-            map.put(cleanedHeader, i);
         }
-        return map;
+        return headers;
     }
 
-    private FactProduction parseDataLine(String line, Map<String, Integer> headerMap,
-                                         Map<String, BiConsumer<FactProduction, String>> setterMap) {
-        String[] fields = line.split("\\|", -1);
-        FactProduction record = new FactProduction();
-        headerMap.forEach((headerName, index) -> {
-            if (index < fields.length) {
-                String value = fields[index].trim();
-                if (!value.isEmpty()) {
-                    BiConsumer<FactProduction, String> consumer = setterMap.get(headerName);
-                    if (consumer != null) {
-                        try { consumer.accept(record, value); } catch (Exception e) {
-                            log.trace("Could not parse field '{}' with value '{}'. Error: {}", headerName, value, e.getMessage());
-                        }
-                    }
-                }
-            }
+    private HeaderBinding compileHeader(String headerLine, Map<String, FieldDecoder> decoderMap) {
+        ColumnBindingPlan plan = ColumnBindingPlan.compile(parseHeader(headerLine), decoderMap, REQUIRED_COLUMNS);
+        return new HeaderBinding(headerLine, plan,
+                plan.columnIndex("Fecha Cont."), plan.columnIndex("Maquina"),
+                plan.columnIndex("Maquinista"), plan.columnIndex("Numero Log."));
+    }
+
+    private void reportHeader(ColumnBindingPlan plan) {
+        if (!plan.missingRequiredColumns().isEmpty()) {
+            log.warn("Header is missing required columns {}; every data line will be rejected", plan.missingRequiredColumns());
+        }
+        if (!plan.unknownColumns().isEmpty()) {
+            log.info("Ignoring unknown header columns: {}", plan.unknownColumns());
+        }
+        if (plan.missingColumns().size() > plan.missingRequiredColumns().size()) {
+            log.info("Optional columns not present in header: {}", plan.missingColumns());
+        }
+    }
+
+    // Plan compilado más los índices de la clave natural, resueltos una vez por cabecera
+    private record HeaderBinding(String headerLine, ColumnBindingPlan plan,
+                                 int fechaIdx, int maquinaIdx, int maquinistaIdx, int logIdx) {}
+
+    private ProductionRow parseDataLine(PipeDelimitedReader reader, ColumnBindingPlan plan, ProductionRow reuse) {
+        ProductionRow record = reuse != null ? reuse : new ProductionRow();
+        record.reset();
+        plan.bind(record, reader, (index, e) -> {
+            if (log.isTraceEnabled()) log.trace("Could not parse field '{}' with value '{}'. Error: {}", plan.columnName(index), reader.fieldString(index), e.getMessage());
         });
-        if (record.getFechaContabilizacion() == null) {
+        if (record.getFechaContabilizacionDay() == ProductionRow.NULL_INT) {
             throw new IllegalArgumentException("Fecha Contabilizacion is required and could not be parsed.");
         }
-        if (record.getNumeroLog() == null) {
+        if (record.getNumeroLog() == ProductionRow.NULL_LONG) {
             throw new IllegalArgumentException("Numero Log is required and could not be parsed.");
         }
         return record;
     }
 
-    private Map<String, BiConsumer<FactProduction, String>> buildSetterMap(Map<String, DimMaquina> maquinaCache,
-                                                                           Map<Long, DimMaquinista> maquinistaCache,
-                                                                           List<DimMaquina> newMaquinas,
-                                                                           List<DimMaquinista> newMaquinistas) {
-        Map<String, BiConsumer<FactProduction, String>> map = new HashMap<>();
-        map.put("Status", (r, v) -> r.setStatusOrigen(v.replace("@", "").trim()));
-        map.put("Fecha Cont.", (r, v) -> r.setFechaContabilizacion(LocalDate.parse(v, DATE_FORMATTER)));
-        map.put("Hora", (r, v) -> r.setHoraContabilizacion(LocalTime.parse(v, TIME_FORMATTER)));
-        map.put("Fecha Notif", (r, v) -> r.setFechaNotificacion(LocalDate.parse(v, DATE_FORMATTER)));
-        map.put("Numero Log.", (r, v) -> r.setNumeroLog(safeParseLong(v)));
-        map.put("Documento", (r, v) -> r.setDocumento(safeParseLong(v)));
-        map.put("Material", (r, v) -> r.setMaterialSku(safeParseLong(v)));
-        map.put("Descripcion", FactProduction::setMaterialDescripcion);
-        map.put("No Pallet", (r, v) -> r.setNumeroPallet(safeParseInt(v)));
-        map.put("Cantidad", (r, v) -> r.setCantidad(safeParseBigDecimal(v.replace(",", "."))));
-        map.put("Peso Neto", (r, v) -> r.setPesoNeto(safeParseBigDecimal(v.replace(",", "."))));
-        map.put("Lista", FactProduction::setLista);
-        map.put("Version", FactProduction::setVersionProduccion);
-        map.put("Maquina", (r, v) -> r.setMaquina(findOrCreateMaquina(v, maquinaCache, newMaquinas)));
-        map.put("Maquinista", (r, v) -> r.setMaquinista(findOrCreateMaquinista(v, maquinistaCache, newMaquinistas)));
-        map.put("Ctro.Ctos.", (r, v) -> r.setCentroCostos(safeParseLong(v)));
-        map.put("Turno", FactProduction::setTurno);
-        map.put("Jornada", FactProduction::setJornada);
-        map.put("Usuario", FactProduction::setUsuarioSap);
-        map.put("Bodeguero", (r, v) -> r.setBodeguero("NaN".equalsIgnoreCase(v) ? null : v));
-        return map;
-    }
+    // Columnas que deben venir informadas para que el registro sea válido (ver isRecordValid)
+    private static final List<String> REQUIRED_COLUMNS = List.of(
+            "Fecha Cont.", "Maquina", "Numero Log.", "Hora", "Fecha Notif", "Material", "Cantidad", "Peso Neto", "Turno");
 
-    private DimMaquina findOrCreateMaquina(String codigoMaquina, Map<String, DimMaquina> cache, List<DimMaquina> newMaquinas) {
-        if (codigoMaquina == null || codigoMaquina.trim().isEmpty()) return null;
-        String codigo = codigoMaquina.trim();
-        DimMaquina existing = cache.get(codigo);
-        if (existing != null) return existing;
-        DimMaquina nueva = new DimMaquina();
-        nueva.setCodigoMaquina(codigo);
-        nueva.setNombreMaquina("Máquina " + codigo);
-        cache.put(codigo, nueva);
-        newMaquinas.add(nueva);
-        return nueva;
-    }
-
-    private DimMaquinista findOrCreateMaquinista(String codigoStr, Map<Long, DimMaquinista> cache, List<DimMaquinista> newMaquinistas) {
-        if (codigoStr == null || codigoStr.trim().isEmpty()) return null;
-        Long codigo = safeParseLong(codigoStr.trim());
-        if (codigo == null) return null;
-        DimMaquinista existing = cache.get(codigo);
-        if (existing != null) return existing;
-        DimMaquinista nuevo = new DimMaquinista();
-        nuevo.setCodigoMaquinista(codigo);
-        nuevo.setNombreCompleto("Maquinista " + codigo);
-        cache.put(codigo, nuevo);
-        newMaquinistas.add(nuevo);
-        return nuevo;
+    private Map<String, FieldDecoder> buildDecoderMap(SapValueParsers values, CodeDictionary machineCodes,
+                                                      CodeDictionary texts, DimensionLookup dims) {
+        Map<String, FieldDecoder> map = new HashMap<>();
+        map.put("Status", (r, l, i) -> r.setStatusOrigen(texts.code(texts.intern(stripStatusMarkers(l, i)))));
+        map.put("Fecha Cont.", (r, l, i) -> r.setFechaContabilizacionDay(parseDayField(l, i, values)));
+        map.put("Hora", (r, l, i) -> r.setHoraContabilizacionSecond(parseSecondField(l, i)));
+        map.put("Fecha Notif", (r, l, i) -> r.setFechaNotificacionDay(parseDayField(l, i, values)));
+        map.put("Numero Log.", (r, l, i) -> r.setNumeroLog(parseLongField(l, i)));
+        map.put("Documento", (r, l, i) -> r.setDocumento(parseLongField(l, i)));
+        map.put("Material", (r, l, i) -> r.setMaterialSku(parseLongField(l, i)));
+        map.put("Descripcion", (r, l, i) -> r.setMaterialDescripcion(l.fieldString(i)));
+        map.put("No Pallet", (r, l, i) -> r.setNumeroPallet(parseIntField(l, i)));
+        map.put("Cantidad", (r, l, i) -> r.setCantidadScaled(parseScaledField(l, i)));
+        map.put("Peso Neto", (r, l, i) -> r.setPesoNetoScaled(parseScaledField(l, i)));
+        map.put("Lista", (r, l, i) -> r.setLista(text(l, i, texts)));
+        map.put("Version", (r, l, i) -> r.setVersionProduccion(text(l, i, texts)));
+        map.put("Maquina", (r, l, i) -> r.setMaquinaId(dims.maquina(
+                machineCodes.code(machineCodes.intern(l.buffer(), l.fieldStart(i), l.fieldEnd(i))))));
+        map.put("Maquinista", (r, l, i) -> r.setMaquinistaId(dims.maquinista(parseLongField(l, i))));
+        map.put("Ctro.Ctos.", (r, l, i) -> r.setCentroCostos(parseLongField(l, i)));
+        map.put("Turno", (r, l, i) -> r.setTurno(text(l, i, texts)));
+        map.put("Jornada", (r, l, i) -> r.setJornada(text(l, i, texts)));
+        map.put("Usuario", (r, l, i) -> r.setUsuarioSap(text(l, i, texts)));
+        map.put("Bodeguero", (r, l, i) -> r.setBodeguero(isNaN(l, i) ? null : text(l, i, texts)));
+        return map;
     }
 
     private Long safeParseLong(String s) {
         if (s == null) return null;
         String trimmed = s.trim();
         if (trimmed.isEmpty()) return null;
-        // Ruta rápida: sólo dígitos
-        if (trimmed.chars().allMatch(Character::isDigit)) {
+        // Sólo dígitos: parse directo (overflow = valor inválido)
+        if (isAllDigits(trimmed)) {
             try { return Long.parseLong(trimmed); } catch (NumberFormatException ex) { return null; }
         }
         // Reemplazar coma decimal si viene en valores que deberían ser enteros (defensivo)
@@ -271,64 +711,105 @@ public class ParserService {
             try { return new java.math.BigDecimal(trimmed.replace(",", ".")).longValue(); } catch (Exception ex) { return null; }
         }
     }
-    private Integer safeParseInt(String s) {
-        try { return Integer.parseInt(s); } catch (NumberFormatException e) { return null; }
+    private static boolean isAllDigits(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return true;
     }
     private BigDecimal safeParseBigDecimal(String s) {
         try { return new BigDecimal(s); } catch (NumberFormatException e) { return null; }
     }
 
-    // Validación básica de campos NOT NULL esenciales de la entidad
-    private boolean isRecordValid(FactProduction r) {
-        return r.getFechaContabilizacion() != null &&
-                r.getMaquina() != null &&
-                r.getNumeroLog() != null &&
-                r.getHoraContabilizacion() != null &&
-                r.getFechaNotificacion() != null &&
-                r.getMaterialSku() != null &&
-                r.getCantidad() != null &&
-                r.getPesoNeto() != null &&
+    // Variantes sobre la vista de la línea: ruta rápida de SapValueParsers, fallback al parser general
+    private static LocalDate parseDateField(PipeDelimitedReader l, int i, SapValueParsers values) {
+        LocalDate fast = values.parseDate(l.buffer(), l.fieldStart(i), l.fieldEnd(i));
+        return fast != null ? fast : LocalDate.parse(l.field(i), DATE_FORMATTER);
+    }
+    private static int parseDayField(PipeDelimitedReader l, int i, SapValueParsers values) {
+        return Math.toIntExact(parseDateField(l, i, values).toEpochDay());
+    }
+    private static int parseSecondField(PipeDelimitedReader l, int i) {
+        int fast = SapValueParsers.parseSecondOfDay(l.buffer(), l.fieldStart(i), l.fieldEnd(i));
+        return fast >= 0 ? fast : LocalTime.parse(l.field(i), TIME_FORMATTER).toSecondOfDay();
+    }
+    private long parseLongField(PipeDelimitedReader l, int i) {
+        long fast = SapValueParsers.parseDigits(l.buffer(), l.fieldStart(i), l.fieldEnd(i));
+        if (fast != SapValueParsers.NOT_A_NUMBER) return fast;
+        Long slow = safeParseLong(l.fieldString(i));
+        return slow != null ? slow : ProductionRow.NULL_LONG;
+    }
+    private int parseIntField(PipeDelimitedReader l, int i) {
+        try { return Integer.parseInt(l.field(i), 0, l.fieldEnd(i) - l.fieldStart(i), 10); } catch (NumberFormatException e) { return ProductionRow.NULL_INT; }
+    }
+    private long parseScaledField(PipeDelimitedReader l, int i) {
+        long fast = SapValueParsers.parseScaled(l.buffer(), l.fieldStart(i), l.fieldEnd(i), ProductionRow.DECIMAL_SCALE);
+        return fast != SapValueParsers.NOT_A_NUMBER ? fast : ProductionRow.scale(safeParseBigDecimal(l.fieldString(i).replace(",", ".")));
+    }
+    private static String text(PipeDelimitedReader l, int i, CodeDictionary texts) {
+        return texts.code(texts.intern(l.buffer(), l.fieldStart(i), l.fieldEnd(i)));
+    }
+    private static String stripStatusMarkers(PipeDelimitedReader l, int i) {
+        char[] buf = l.buffer();
+        StringBuilder sb = new StringBuilder(l.fieldEnd(i) - l.fieldStart(i));
+        for (int p = l.fieldStart(i); p < l.fieldEnd(i); p++) {
+            if (buf[p] != '@') sb.append(buf[p]);
+        }
+        return sb.toString().trim();
+    }
+    private static boolean isNaN(PipeDelimitedReader l, int i) {
+        char[] buf = l.buffer();
+        int start = l.fieldStart(i);
+        return l.fieldEnd(i) - start == 3
+                && (buf[start] | 0x20) == 'n' && (buf[start + 1] | 0x20) == 'a' && (buf[start + 2] | 0x20) == 'n';
+    }
+
+    // Validación básica de campos NOT NULL esenciales de fact_production
+    private boolean isRecordValid(ProductionRow r) {
+        return r.getFechaContabilizacionDay() != ProductionRow.NULL_INT &&
+                r.getMaquinaId() != 0 &&
+                r.getNumeroLog() != ProductionRow.NULL_LONG &&
+                r.getHoraContabilizacionSecond() != ProductionRow.NULL_INT &&
+                r.getFechaNotificacionDay() != ProductionRow.NULL_INT &&
+                r.getMaterialSku() != ProductionRow.NULL_LONG &&
+                r.getCantidadScaled() != ProductionRow.NULL_LONG &&
+                r.getPesoNetoScaled() != ProductionRow.NULL_LONG &&
                 r.getTurno() != null;
     }
 
-    // Nuevo early key canónico: parse mínimo para construir clave final consistente
-    private String buildEarlyKeyCanonical(String line, Map<String, Integer> headerMap) {
-        if (headerMap.isEmpty()) return null;
-        String[] fields = line.split("\\|", -1);
-        Integer idxFecha = headerMap.get("Fecha Cont.");
-        Integer idxMaquina = headerMap.get("Maquina");
-        Integer idxMaquinista = headerMap.get("Maquinista");
-        Integer idxLog = headerMap.get("Numero Log.");
-        if (idxFecha == null || idxMaquina == null || idxLog == null) return null;
-        if (idxFecha >= fields.length || idxMaquina >= fields.length || idxLog >= fields.length) return null;
-        String rawFecha = fields[idxFecha].trim();
-        String rawMaquina = fields[idxMaquina].trim();
-        String rawLog = fields[idxLog].trim().replace(" ", "");
-        String rawMaqnis = (idxMaquinista != null && idxMaquinista < fields.length) ? fields[idxMaquinista].trim() : "";
-        if (rawFecha.isEmpty() || rawMaquina.isEmpty() || rawLog.isEmpty()) return null;
+    // Early key canónico: parse mínimo sobre la vista de la línea, deja la clave preparada en el set
+    private boolean prepareEarlyKey(PipeDelimitedReader reader, HeaderBinding binding, NaturalKeySet keys, SapValueParsers values) {
+        int idxFecha = binding.fechaIdx();
+        int idxMaquina = binding.maquinaIdx();
+        int idxMaquinista = binding.maquinistaIdx();
+        int idxLog = binding.logIdx();
+        if (idxFecha < 0 || idxMaquina < 0 || idxLog < 0) return false;
+        if (reader.isEmpty(idxFecha) || reader.isEmpty(idxMaquina) || reader.isEmpty(idxLog)) return false;
         LocalDate fecha;
-        try { fecha = LocalDate.parse(rawFecha, DATE_FORMATTER); } catch (Exception ex) { return null; }
-        Long numeroLog;
-        try { numeroLog = Long.parseLong(rawLog); } catch (Exception ex) { return null; }
-        Long maquinista = null;
-        if (!rawMaqnis.isEmpty()) {
-            try { maquinista = Long.parseLong(rawMaqnis); } catch (Exception ignore) { maquinista = null; }
+        try { fecha = parseDateField(reader, idxFecha, values); } catch (Exception ex) { return false; }
+        long numeroLog;
+        try { numeroLog = parseLongIgnoringSpaces(reader, idxLog); } catch (Exception ex) { return false; }
+        long maquinista = 0L;
+        if (idxMaquinista >= 0 && !reader.isEmpty(idxMaquinista)) {
+            int s = reader.fieldStart(idxMaquinista), e = reader.fieldEnd(idxMaquinista);
+            try { maquinista = Long.parseLong(reader.field(idxMaquinista), 0, e - s, 10); } catch (Exception ignore) { maquinista = 0L; }
         }
-        return canonicalKey(fecha, rawMaquina, maquinista, numeroLog);
+        keys.prepare(fecha, reader.buffer(), reader.fieldStart(idxMaquina), reader.fieldEnd(idxMaquina), maquinista, numeroLog);
+        return true;
     }
 
-    private String sanitizeForLog(String line) {
-        if (line == null) return "";
-        String trimmed = line.replaceAll("[\r\n]", " ");
-        // Reemplazar caracteres de control no imprimibles con '?'
-        StringBuilder sb = new StringBuilder();
-        int limit = Math.min(trimmed.length(), 200);
-        for (int i = 0; i < limit; i++) {
-            char c = trimmed.charAt(i);
-            if (Character.isISOControl(c) && !Character.isWhitespace(c)) sb.append('?'); else sb.append(c);
+    // Equivale a Long.parseLong(raw.replace(" ", "")) sin copiar el campo
+    private static long parseLongIgnoringSpaces(PipeDelimitedReader reader, int field) {
+        char[] buf = reader.buffer();
+        int start = reader.fieldStart(field), end = reader.fieldEnd(field);
+        for (int p = start; p < end; p++) {
+            if (buf[p] == ' ') {
+                return Long.parseLong(reader.fieldString(field).replace(" ", ""));
+            }
         }
-        if (trimmed.length() > 200) sb.append("…");
-        return sb.toString();
+        return Long.parseLong(reader.field(field), 0, end - start, 10);
     }
+
     private String shortMsg(Throwable t) { return t == null ? "" : (t.getMessage() != null ? t.getMessage() : t.getClass().getSimpleName()); }
 }
@@ -0,0 +1,253 @@
+package com.cambiaso.ioc.service;
+
+import com.cambiaso.ioc.persistence.entity.EtlJob;
+import com.cambiaso.ioc.persistence.repository.EtlJobRepository;
+import com.cambiaso.ioc.persistence.repository.QuarantineBulkRepository;
+import com.cambiaso.ioc.service.etl.RejectListener;
+import com.cambiaso.ioc.service.etl.RejectReason;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cuarentena de las líneas que el parser descarta: se guardan en {@code quarantined_records} asociadas al job, para
+ * revisarlas desde {@code GET /api/etl/jobs/{jobId}/rejects}.
+ *
+ * El parser nunca espera a la base: cada {@link Session} encola las líneas en una cola acotada
+ * ({@code etl.quarantine.queue-capacity}) que un hilo propio vuelca con inserts por lotes
+ * ({@code etl.quarantine.batch-size}). El volumen está limitado en dos puntos: cada job guarda a lo sumo
+ * {@code etl.quarantine.max-per-job} líneas (las demás solo se cuentan y el parser deja de copiarlas) y, si la cola
+ * está llena, la línea se descarta en vez de frenar el parseo. Un archivo con 100k líneas malas cuesta así unos
+ * pocos miles de inserts y un resumen en el log, no 100k WARN.
+ *
+ * Métricas: {@code etl.quarantine.written}, {@code etl.quarantine.dropped} (reason=job_limit|queue_full|write_error) y
+ * {@code etl.quarantine.queue}; los rechazos por motivo se cuentan en el parser ({@code etl.rows.rejected}).
+ */
+@Slf4j
+@Service
+public class QuarantineWriter {
+
+    private final QuarantineBulkRepository bulkRepository;
+    private final EtlJobRepository etlJobRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${etl.quarantine.enabled:true}")
+    private boolean enabled;
+    @Value("${etl.quarantine.queue-capacity:10000}")
+    private int queueCapacity;
+    @Value("${etl.quarantine.max-per-job:10000}")
+    private int maxPerJob;
+    @Value("${etl.quarantine.batch-size:500}")
+    private int batchSize;
+    @Value("${etl.quarantine.max-line-chars:2000}")
+    private int maxLineChars;
+
+    private BlockingQueue<QuarantineBulkRepository.Row> queue;
+    private final AtomicInteger pending = new AtomicInteger(); // encoladas y aún no escritas
+    private final Object writeLock = new Object();
+    private volatile boolean running;
+    private Thread writer;
+
+    public QuarantineWriter(QuarantineBulkRepository bulkRepository,
+                            EtlJobRepository etlJobRepository,
+                            MeterRegistry meterRegistry) {
+        this.bulkRepository = bulkRepository;
+        this.etlJobRepository = etlJobRepository;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public synchronized void start() {
+        if (running) return;
+        queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        Gauge.builder("etl.quarantine.queue", pending, AtomicInteger::get)
+                .description("Rejected ETL lines waiting to be written to quarantined_records")
+                .register(meterRegistry);
+        running = true;
+        writer = new Thread(this::writerLoop, "ETL-quarantine");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (!running) return;
+        running = false; // el hilo termina su lote en curso y sale en el siguiente poll
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * Abre la cuarentena de un job y borra la de una ejecución anterior (un job retomado o re-subido vuelve a parsear
+     * el archivo completo). Sin cuarentena ({@code etl.quarantine.enabled=false}) la sesión solo cuenta.
+     */
+    public Session open(UUID jobId) {
+        if (!enabled) {
+            return Session.countingOnly(jobId);
+        }
+        String fileName = etlJobRepository.findById(jobId).map(EtlJob::getFileName).orElse("unknown");
+        int cleared = bulkRepository.deleteByJob(jobId);
+        if (cleared > 0) {
+            log.debug("Cleared {} quarantined line(s) of a previous run of job {}", cleared, jobId);
+        }
+        return new Session(this, jobId, fileName, maxPerJob);
+    }
+
+    /** Escribe lo encolado hasta ahora y espera a que el hilo escritor termine su lote en curso. */
+    public void flush() {
+        synchronized (writeLock) {
+            List<QuarantineBulkRepository.Row> batch = new ArrayList<>();
+            while (queue.drainTo(batch, batchSize) > 0) {
+                write(batch);
+                batch.clear();
+            }
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (pending.get() > 0 && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private boolean offer(QuarantineBulkRepository.Row row) {
+        pending.incrementAndGet();
+        if (queue.offer(row)) return true;
+        pending.decrementAndGet();
+        return false;
+    }
+
+    private void writerLoop() {
+        List<QuarantineBulkRepository.Row> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                QuarantineBulkRepository.Row first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) continue;
+                synchronized (writeLock) {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    write(batch);
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void write(List<QuarantineBulkRepository.Row> batch) {
+        try {
+            bulkRepository.insertAll(batch);
+            meterRegistry.counter("etl.quarantine.written").increment(batch.size());
+        } catch (RuntimeException e) {
+            // La cuarentena es informativa: un fallo de la base no debe afectar a la carga
+            log.warn("Could not write {} quarantined line(s): {}", batch.size(), e.getMessage());
+            dropped("write_error").increment(batch.size());
+        } finally {
+            pending.addAndGet(-batch.size());
+        }
+    }
+
+    private Counter dropped(String reason) {
+        return meterRegistry.counter("etl.quarantine.dropped", "reason", reason);
+    }
+
+    /**
+     * Cuarentena de un job: recibe los rechazos del parser y los encola sin bloquear. Al cerrarla deja en el log un
+     * único resumen con los rechazos por motivo. Si el parseo se repite (reintento del modo streaming), las líneas ya
+     * vistas no se vuelven a guardar ni a contar.
+     */
+    public static final class Session implements RejectListener, AutoCloseable {
+        private final QuarantineWriter writer; // null = solo cuenta
+        private final UUID jobId;
+        private final String fileName;
+        private final int limit;
+        private final AtomicInteger kept = new AtomicInteger();
+        private final BitSet seen = new BitSet();
+        private final Map<RejectReason, Integer> byReason = new EnumMap<>(RejectReason.class);
+        private int overLimit;
+        private int queueFull;
+
+        private Session(QuarantineWriter writer, UUID jobId, String fileName, int limit) {
+            this.writer = writer;
+            this.jobId = jobId;
+            this.fileName = fileName;
+            this.limit = limit;
+        }
+
+        /** Sesión sin cuarentena: solo cuenta los rechazos para el resumen del log. */
+        public static Session countingOnly(UUID jobId) {
+            return new Session(null, jobId, null, 0);
+        }
+
+        @Override
+        public boolean wantsLines() {
+            return writer != null && kept.get() < limit;
+        }
+
+        @Override
+        public void rejected(int lineNumber, RejectReason reason, String line, String detail) {
+            if (lineNumber >= 0) {
+                if (seen.get(lineNumber)) return;
+                seen.set(lineNumber);
+            }
+            byReason.merge(reason, 1, Integer::sum);
+            if (writer == null) return;
+            if (line == null || kept.get() >= limit) {
+                overLimit++;
+                writer.dropped("job_limit").increment();
+                return;
+            }
+            String raw = line.length() > writer.maxLineChars ? line.substring(0, writer.maxLineChars) : line;
+            String details = detail != null ? detail : reason.name();
+            if (writer.offer(new QuarantineBulkRepository.Row(jobId, fileName, lineNumber, raw, reason.name(), details))) {
+                kept.incrementAndGet();
+            } else {
+                queueFull++;
+                writer.dropped("queue_full").increment();
+            }
+        }
+
+        /** Líneas rechazadas (distintas), por motivo. */
+        public Map<RejectReason, Integer> rejectedByReason() {
+            return Map.copyOf(byReason);
+        }
+
+        /** Líneas encoladas para {@code quarantined_records}. */
+        public int quarantined() {
+            return kept.get();
+        }
+
+        @Override
+        public void close() {
+            if (byReason.isEmpty()) return;
+            int total = byReason.values().stream().mapToInt(Integer::intValue).sum();
+            log.info("Job {}: {} line(s) rejected {}; quarantined={}, overLimit={}, queueFull={}",
+                    jobId, total, byReason, kept.get(), overLimit, queueFull);
+        }
+    }
+}
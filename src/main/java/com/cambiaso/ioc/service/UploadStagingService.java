@@ -0,0 +1,93 @@
+package com.cambiaso.ioc.service;
+
+import com.cambiaso.ioc.exception.FileValidationException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Etapa de ingesta de archivos ETL: copia el upload una sola vez a un archivo local de staging calculando el
+ * SHA-256 en el mismo recorrido, sin cargar el archivo completo en memoria.
+ *
+ * El job asíncrono lee luego desde el archivo de staging (vía {@link FileChannel}), que a diferencia del temporal
+ * de multipart del servlet sigue existiendo después de que la request termina. Quien procesa el archivo es
+ * responsable de llamar a {@link #discard(StagedUpload)} al terminar.
+ */
+@Slf4j
+@Service
+public class UploadStagingService {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final MeterRegistry meterRegistry;
+    private final Path stagingDir;
+
+    public UploadStagingService(MeterRegistry meterRegistry,
+                                @Value("${etl.staging.dir:${java.io.tmpdir}/ioc-etl-staging}") String stagingDir) {
+        this.meterRegistry = meterRegistry;
+        this.stagingDir = Path.of(stagingDir);
+    }
+
+    /** Archivo subido ya copiado a staging, con su hash SHA-256 (hex en minúsculas) y tamaño en bytes. */
+    public record StagedUpload(Path path, String sha256, long size, String originalFilename) {}
+
+    public StagedUpload stage(MultipartFile file) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Path target = null;
+        try {
+            Files.createDirectories(stagingDir);
+            target = Files.createTempFile(stagingDir, "upload-", ".txt");
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            long size;
+            try (InputStream in = new DigestInputStream(file.getInputStream(), digest);
+                 OutputStream out = Files.newOutputStream(target, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                size = in.transferTo(out);
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            meterRegistry.summary("etl.file.size").record(size);
+            log.debug("Staged upload '{}' ({} bytes) to {}", file.getOriginalFilename(), size, target);
+            return new StagedUpload(target, hash, size, file.getOriginalFilename());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            deleteQuietly(target);
+            meterRegistry.counter("etl.file.hash.errors", "error_type", e.getClass().getSimpleName()).increment();
+            throw new FileValidationException("Could not stage uploaded file: " + e.getMessage(), e);
+        } finally {
+            sample.stop(meterRegistry.timer("etl.upload.staging.duration"));
+        }
+    }
+
+    /** Stream de lectura secuencial sobre el archivo de staging (FileChannel, sin pasar por el heap completo). */
+    public InputStream openStream(StagedUpload upload) throws IOException {
+        FileChannel channel = FileChannel.open(upload.path(), StandardOpenOption.READ);
+        return Channels.newInputStream(channel);
+    }
+
+    public void discard(StagedUpload upload) {
+        if (upload != null) deleteQuietly(upload.path());
+    }
+
+    private void deleteQuietly(Path path) {
+        if (path == null) return;
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete staged upload {}: {}", path, e.getMessage());
+        }
+    }
+}
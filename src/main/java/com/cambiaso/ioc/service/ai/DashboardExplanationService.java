@@ -7,18 +7,24 @@ import com.cambiaso.ioc.dto.analytics.*;
 import com.cambiaso.ioc.exception.GeminiRateLimitException;
 import com.cambiaso.ioc.exception.GeminiTimeoutException;
 import com.cambiaso.ioc.persistence.repository.DashboardAnalyticsRepository;
+import com.cambiaso.ioc.service.DailyAnalyticsCache;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.core.io.Resource;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.sql.DataSource;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
@@ -29,7 +35,14 @@ import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -46,10 +59,12 @@ import java.util.stream.IntStream;
 public class DashboardExplanationService {
 
     private final DashboardAnalyticsRepository analyticsRepository;
+    private final DailyAnalyticsCache dailyAnalyticsCache;
     private final GeminiApiClient geminiClient;
     private final ObjectMapper objectMapper;
     private final CacheManager cacheManager;
     private final MeterRegistry meterRegistry;
+    private final DataSource dataSource;
 
     @Value("classpath:prompts/system-prompt.txt")
     private Resource systemPromptResource;
@@ -66,6 +81,15 @@ public class DashboardExplanationService {
     @Value("${ai.explanation.cache-name-current:aiExplanationsCurrent}")
     private String cacheNameCurrent;
 
+    @Value("${ai.explanation.analytics.fetch-mode:bundle}")
+    private String analyticsFetchMode; // bundle = una consulta; parallel = cinco consultas concurrentes; cached = resúmenes diarios cacheados (por nodo)
+
+    @Value("${ai.explanation.analytics.timeout-ms:15000}")
+    private long analyticsTimeoutMs; // plazo total de la fase de consultas en modo parallel
+
+    // Un hilo virtual por consulta: bloquearse en JDBC no ocupa hilos de plataforma
+    private final ExecutorService analyticsExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
     /**
      * Record interno para agrupar datos analíticos.
      */
@@ -82,7 +106,7 @@ public class DashboardExplanationService {
      *
      * Flujo de 8 fases:
      * 1. Verificar cache (key compuesta por dashboard + fechas + filtros)
-     * 2. Si miss: consultar datos agregados (5 queries SQL)
+     * 2. Si miss: consultar datos agregados (1 query SQL con las 5 secciones)
      * 3. Anonimizar PII si configurado
      * 4. Construir prompt estructurado con system + context + data
      * 5. Invocar Gemini API con timeout 90s
@@ -240,16 +264,99 @@ public class DashboardExplanationService {
     // ==================== MÉTODOS PRIVADOS ====================
 
     private AnalyticsData fetchAnalyticsData(DashboardExplanationRequest request) {
-        LocalDate fi = request.fechaInicio();
-        LocalDate ff = request.fechaFin();
+        if ("parallel".equalsIgnoreCase(analyticsFetchMode)) {
+            return fetchAnalyticsDataParallel(request.fechaInicio(), request.fechaFin());
+        }
+
+        // cached: solo los días no cacheados van a la base; bundle: una sola consulta en lugar de cinco
+        AnalyticsBundleDto bundle = "bundle".equalsIgnoreCase(analyticsFetchMode)
+            ? analyticsRepository.fetchAnalyticsBundle(request.fechaInicio(), request.fechaFin())
+            : dailyAnalyticsCache.fetchBundle(request.fechaInicio(), request.fechaFin());
 
         return new AnalyticsData(
-            analyticsRepository.fetchTotals(fi, ff),
-            analyticsRepository.fetchTopOperarios(fi, ff),
-            analyticsRepository.fetchDistribucionTurno(fi, ff),
-            analyticsRepository.fetchTopMaquinas(fi, ff),
-            analyticsRepository.fetchTendenciaDiaria(fi, ff)
+            bundle.totals(),
+            bundle.topOperarios(),
+            bundle.distribucionTurno(),
+            bundle.topMaquinas(),
+            bundle.tendenciaDiaria()
+        );
+    }
+
+    /**
+     * Ejecuta las cinco consultas en paralelo (un hilo virtual cada una) con un plazo común: la latencia es la de
+     * la consulta más lenta y no la suma. Si una falla o se agota el plazo se cancelan las demás y se propaga el
+     * error (QueryTimeoutException en el caso del plazo).
+     *
+     * Interrumpir el hilo no detiene una llamada JDBC bloqueada, así que cada consulta corre además en una
+     * transacción JDBC de solo lectura cuyo timeout es el plazo restante: JdbcTemplate lo aplica como
+     * Statement.setQueryTimeout y la base aborta la sentencia y libera la conexión. Se usa un
+     * DataSourceTransactionManager porque el de JPA no traslada el timeout a las sentencias de JdbcTemplate.
+     */
+    private AnalyticsData fetchAnalyticsDataParallel(LocalDate fi, LocalDate ff) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(analyticsTimeoutMs);
+        CompletionService<Object> completion = new ExecutorCompletionService<>(analyticsExecutor);
+        List<Future<Object>> futures = List.of(
+            completion.submit(() -> timedQuery("totals", deadline, () -> analyticsRepository.fetchTotals(fi, ff))),
+            completion.submit(() -> timedQuery("top_operarios", deadline, () -> analyticsRepository.fetchTopOperarios(fi, ff))),
+            completion.submit(() -> timedQuery("turnos", deadline, () -> analyticsRepository.fetchDistribucionTurno(fi, ff))),
+            completion.submit(() -> timedQuery("top_maquinas", deadline, () -> analyticsRepository.fetchTopMaquinas(fi, ff))),
+            completion.submit(() -> timedQuery("tendencia", deadline, () -> analyticsRepository.fetchTendenciaDiaria(fi, ff)))
         );
+        try {
+            // Se consumen en orden de término para detectar el primer fallo sin esperar a las anteriores
+            for (int i = 0; i < futures.size(); i++) {
+                Future<Object> done = completion.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    throw new QueryTimeoutException("Analytics queries exceeded " + analyticsTimeoutMs + " ms");
+                }
+                done.get();
+            }
+            return new AnalyticsData(
+                (TotalsDto) futures.get(0).get(),
+                castList(futures.get(1).get()),
+                castList(futures.get(2).get()),
+                castList(futures.get(3).get()),
+                castList(futures.get(4).get())
+            );
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while fetching analytics data", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException("Analytics query failed", e.getCause());
+        } finally {
+            futures.forEach(f -> f.cancel(true)); // no-op para las terminadas
+        }
+    }
+
+    private Object timedQuery(String query, long deadline, Supplier<?> action) {
+        TransactionTemplate tx = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        tx.setReadOnly(true);
+        tx.setTimeout(remainingSeconds(deadline));
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return tx.execute(status -> action.get());
+        } finally {
+            sample.stop(meterRegistry.timer("ai.explanation.duration", "phase", "queries", "query", query));
+        }
+    }
+
+    /** Plazo restante redondeado hacia arriba: el timeout de sentencia JDBC se expresa en segundos (mínimo 1). */
+    private static int remainingSeconds(long deadline) {
+        long remaining = deadline - System.nanoTime();
+        return (int) Math.max(1, (remaining + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> castList(Object value) {
+        return (List<T>) value;
+    }
+
+    @PreDestroy
+    void shutdownAnalyticsExecutor() {
+        analyticsExecutor.shutdownNow();
     }
 
     private AnalyticsData anonymizeData(AnalyticsData data) {
@@ -0,0 +1,95 @@
+package com.cambiaso.ioc.service.etl;
+
+import java.util.Arrays;
+
+/**
+ * Diccionario de códigos (p.ej. código de máquina) a ids enteros densos 0..n-1.
+ *
+ * Permite buscar un código directamente desde un rango de chars de {@link PipeDelimitedReader} sin construir un
+ * String; el String canónico solo se crea la primera vez que aparece cada código. No es thread-safe.
+ */
+public final class CodeDictionary {
+
+    private String[] codes = new String[16];
+    private int[] slots = new int[32]; // id + 1; 0 = libre
+    private int size;
+
+    /** Id del código en buf[start, end), registrándolo si es nuevo. */
+    public int intern(char[] buf, int start, int end) {
+        int h = hash(buf, start, end);
+        int mask = slots.length - 1;
+        for (int i = h & mask; ; i = (i + 1) & mask) {
+            int slot = slots[i];
+            if (slot == 0) {
+                return add(new String(buf, start, end - start), i);
+            }
+            if (matches(codes[slot - 1], buf, start, end)) return slot - 1;
+        }
+    }
+
+    /** Id del código, registrándolo si es nuevo. */
+    public int intern(String code) {
+        int h = hash(code);
+        int mask = slots.length - 1;
+        for (int i = h & mask; ; i = (i + 1) & mask) {
+            int slot = slots[i];
+            if (slot == 0) {
+                return add(code, i);
+            }
+            if (codes[slot - 1].equals(code)) return slot - 1;
+        }
+    }
+
+    /** Código canónico asociado al id. */
+    public String code(int id) {
+        return codes[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int add(String code, int slotIndex) {
+        if (size == codes.length) codes = Arrays.copyOf(codes, size * 2);
+        int id = size++;
+        codes[id] = code;
+        slots[slotIndex] = id + 1;
+        if (size * 2 > slots.length) rehash();
+        return id;
+    }
+
+    private void rehash() {
+        int[] grown = new int[slots.length * 2];
+        int mask = grown.length - 1;
+        for (int id = 0; id < size; id++) {
+            int i = hash(codes[id]) & mask;
+            while (grown[i] != 0) i = (i + 1) & mask;
+            grown[i] = id + 1;
+        }
+        slots = grown;
+    }
+
+    private static boolean matches(String code, char[] buf, int start, int end) {
+        int len = end - start;
+        if (code.length() != len) return false;
+        for (int k = 0; k < len; k++) {
+            if (code.charAt(k) != buf[start + k]) return false;
+        }
+        return true;
+    }
+
+    // Mismo valor que String.hashCode() para que ambas variantes de intern coincidan
+    private static int hash(char[] buf, int start, int end) {
+        int h = 0;
+        for (int k = start; k < end; k++) h = 31 * h + buf[k];
+        return spread(h);
+    }
+
+    private static int hash(String code) {
+        return spread(code.hashCode());
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,142 @@
+package com.cambiaso.ioc.service.etl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plan de binding compilado a partir de la línea de cabecera del export.
+ *
+ * Resuelve una sola vez qué {@link FieldDecoder} corresponde a cada posición de columna, de modo que cada fila
+ * se enlaza con un bucle indexado sin búsquedas por nombre. También deja resueltos los índices de las columnas
+ * que forman la clave natural y las columnas obligatorias, y registra qué cabeceras no se reconocieron
+ * y qué columnas conocidas faltan en el archivo.
+ */
+public final class ColumnBindingPlan {
+
+    private final FieldDecoder[] decoders;   // indexado por posición de columna; null = columna ignorada
+    private final String[] columnNames;
+    private final int[] requiredIndexes;     // -1 si la columna obligatoria no está en la cabecera
+    private final List<String> unknownColumns;
+    private final List<String> missingColumns;
+    private final List<String> missingRequiredColumns;
+
+    private ColumnBindingPlan(FieldDecoder[] decoders, String[] columnNames, int[] requiredIndexes,
+                              List<String> unknownColumns, List<String> missingColumns, List<String> missingRequiredColumns) {
+        this.decoders = decoders;
+        this.columnNames = columnNames;
+        this.requiredIndexes = requiredIndexes;
+        this.unknownColumns = unknownColumns;
+        this.missingColumns = missingColumns;
+        this.missingRequiredColumns = missingRequiredColumns;
+    }
+
+    /**
+     * Compila el plan.
+     *
+     * @param headers         nombres de columna ya normalizados, en el orden de la línea (índices de split)
+     * @param decoderByName   decodificador por nombre de columna conocido
+     * @param requiredColumns columnas que deben venir informadas en cada fila
+     */
+    public static ColumnBindingPlan compile(String[] headers, Map<String, FieldDecoder> decoderByName, List<String> requiredColumns) {
+        FieldDecoder[] decoders = new FieldDecoder[headers.length];
+        List<String> unknown = new ArrayList<>();
+        for (int i = 0; i < headers.length; i++) {
+            String name = headers[i];
+            if (name.isEmpty()) continue; // antes del primer '|' / después del último
+            FieldDecoder decoder = decoderByName.get(name);
+            if (decoder == null) {
+                unknown.add(name);
+                continue;
+            }
+            // Cabecera repetida: se conserva la última aparición (mismo criterio que el antiguo HashMap de cabecera)
+            for (int j = 0; j < i; j++) {
+                if (name.equals(headers[j])) decoders[j] = null;
+            }
+            decoders[i] = decoder;
+        }
+        List<String> missing = new ArrayList<>();
+        for (String known : decoderByName.keySet()) {
+            if (indexOf(headers, known) < 0) missing.add(known);
+        }
+        Collections.sort(missing);
+        int[] required = new int[requiredColumns.size()];
+        List<String> missingRequired = new ArrayList<>();
+        for (int r = 0; r < required.length; r++) {
+            required[r] = indexOf(headers, requiredColumns.get(r));
+            if (required[r] < 0) missingRequired.add(requiredColumns.get(r));
+        }
+        return new ColumnBindingPlan(decoders, headers.clone(), required,
+                List.copyOf(unknown), List.copyOf(missing), List.copyOf(missingRequired));
+    }
+
+    // Última aparición, igual que el mapa de cabecera original
+    private static int indexOf(String[] headers, String name) {
+        for (int i = headers.length - 1; i >= 0; i--) {
+            if (headers[i].equals(name)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Decodifica los campos no vacíos de la línea actual sobre el registro.
+     *
+     * @param errorHandler recibe (índice de columna, excepción) cuando un decodificador falla; el campo queda sin valor
+     */
+    public void bind(ProductionRow target, PipeDelimitedReader line, FieldErrorHandler errorHandler) {
+        int n = Math.min(decoders.length, line.fieldCount());
+        for (int i = 0; i < n; i++) {
+            FieldDecoder decoder = decoders[i];
+            if (decoder == null || line.isEmpty(i)) continue;
+            try {
+                decoder.decode(target, line, i);
+            } catch (Exception e) {
+                errorHandler.onError(i, e);
+            }
+        }
+    }
+
+    /** true si todas las columnas obligatorias existen en la cabecera y vienen informadas en la línea actual. */
+    public boolean hasRequiredFields(PipeDelimitedReader line) {
+        for (int idx : requiredIndexes) {
+            if (idx < 0 || line.isEmpty(idx)) return false;
+        }
+        return true;
+    }
+
+    /** Índice de la columna (última aparición) o -1 si la cabecera no la trae. */
+    public int columnIndex(String name) {
+        return indexOf(columnNames, name);
+    }
+
+    public String columnName(int index) {
+        return columnNames[index];
+    }
+
+    /** Cabeceras presentes en el archivo que no tienen decodificador. */
+    public List<String> unknownColumns() {
+        return unknownColumns;
+    }
+
+    /** Columnas conocidas que no aparecen en la cabecera. */
+    public List<String> missingColumns() {
+        return missingColumns;
+    }
+
+    /** Subconjunto de {@link #missingColumns()} que es obligatorio: ninguna fila podrá ser válida. */
+    public List<String> missingRequiredColumns() {
+        return missingRequiredColumns;
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnBindingPlan" + Arrays.toString(columnNames);
+    }
+
+    @FunctionalInterface
+    public interface FieldErrorHandler {
+        void onError(int field, Exception e);
+    }
+}
@@ -0,0 +1,11 @@
+package com.cambiaso.ioc.service.etl;
+
+/**
+ * Decodifica un campo de la línea actual de un {@link PipeDelimitedReader} directamente sobre el registro destino.
+ * Solo se invoca para campos no vacíos; las implementaciones leen los chars del buffer sin copiar el campo.
+ */
+@FunctionalInterface
+public interface FieldDecoder {
+
+    void decode(ProductionRow target, PipeDelimitedReader line, int field);
+}
@@ -0,0 +1,112 @@
+package com.cambiaso.ioc.service.etl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Divide un stream de bytes en bloques alineados a fin de línea ('\n') de aproximadamente {@code blockBytes},
+ * para parsearlos en paralelo.
+ *
+ * Cada bloque lleva el número de la primera línea que contiene y la última línea de cabecera (la que contiene
+ * {@code headerMarker}) vista en bloques anteriores, de modo que un bloque puede parsearse de forma independiente
+ * con la cabecera vigente. Solo apto para charsets de un byte por carácter (p.ej. Windows-1252), en los que
+ * '\n' nunca aparece dentro de un carácter multibyte. No es thread-safe.
+ */
+public final class LineBlockSplitter {
+
+    /** Bloque de líneas completas: {@code data[0, length)}. {@code headerLine} es null si aún no hubo cabecera. */
+    public record LineBlock(int index, byte[] data, int length, int firstLineNumber, String headerLine) {}
+
+    private final InputStream in;
+    private final int blockBytes;
+    private final Charset charset;
+    private final byte[] marker;
+
+    private byte[] buf;
+    private int len;
+    private boolean eof;
+    private int nextIndex;
+    private int nextLineNumber = 1;
+    private String headerInEffect;
+
+    public LineBlockSplitter(InputStream in, int blockBytes, Charset charset, String headerMarker) {
+        if (blockBytes <= 0) throw new IllegalArgumentException("blockBytes must be positive");
+        this.in = in;
+        this.blockBytes = blockBytes;
+        this.charset = charset;
+        this.marker = headerMarker.getBytes(charset);
+        this.buf = new byte[blockBytes];
+    }
+
+    /** Siguiente bloque, o null al terminar el stream. */
+    public LineBlock next() throws IOException {
+        int cut;
+        while (true) {
+            if (!eof && len < buf.length) {
+                int n = in.readNBytes(buf, len, buf.length - len);
+                len += n;
+                if (len < buf.length) eof = true;
+            }
+            if (eof) {
+                cut = len;
+                break;
+            }
+            cut = lastNewline(buf, len) + 1;
+            if (cut > 0) break;
+            // Línea más larga que el bloque: crecer y seguir leyendo
+            byte[] grown = new byte[buf.length * 2];
+            System.arraycopy(buf, 0, grown, 0, len);
+            buf = grown;
+        }
+        if (cut == 0) return null;
+
+        byte[] data = buf;
+        int remaining = len - cut;
+        buf = new byte[Math.max(blockBytes, remaining + 1)];
+        System.arraycopy(data, cut, buf, 0, remaining);
+        len = remaining;
+
+        LineBlock block = new LineBlock(nextIndex++, data, cut, nextLineNumber, headerInEffect);
+        scan(data, cut);
+        return block;
+    }
+
+    // Cuenta líneas y registra la última cabecera del bloque para los bloques siguientes
+    private void scan(byte[] data, int length) {
+        int newlines = 0;
+        int lastHeaderAt = -1;
+        byte first = marker[0];
+        for (int i = 0; i < length; i++) {
+            byte b = data[i];
+            if (b == '\n') {
+                newlines++;
+            } else if (b == first && regionMatches(data, i, length)) {
+                lastHeaderAt = i;
+            }
+        }
+        if (lastHeaderAt >= 0) {
+            int start = lastHeaderAt;
+            while (start > 0 && data[start - 1] != '\n') start--;
+            int end = lastHeaderAt;
+            while (end < length && data[end] != '\n' && data[end] != '\r') end++;
+            headerInEffect = new String(data, start, end - start, charset);
+        }
+        nextLineNumber += newlines;
+    }
+
+    private boolean regionMatches(byte[] data, int at, int length) {
+        if (at + marker.length > length) return false;
+        for (int k = 1; k < marker.length; k++) {
+            if (data[at + k] != marker[k]) return false;
+        }
+        return true;
+    }
+
+    private static int lastNewline(byte[] data, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (data[i] == '\n') return i;
+        }
+        return -1;
+    }
+}
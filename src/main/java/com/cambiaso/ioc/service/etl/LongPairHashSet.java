@@ -0,0 +1,89 @@
+package com.cambiaso.ioc.service.etl;
+
+/**
+ * Conjunto hash de pares (long, long) con direccionamiento abierto y sondeo lineal.
+ *
+ * Las claves se guardan intercaladas en un único long[] (16 bytes por entrada, sin objetos por elemento).
+ * El par (0, 0) se usa como marca de slot libre y se registra aparte. No es thread-safe.
+ */
+public final class LongPairHashSet {
+
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private long[] table;
+    private int mask;       // capacidad (en pares) - 1
+    private int resizeAt;
+    private int size;
+    private boolean hasZeroPair;
+
+    public LongPairHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        table = new long[capacity * 2];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /** @return true si el par no estaba presente */
+    public boolean add(long a, long b) {
+        if (a == 0 && b == 0) {
+            if (hasZeroPair) return false;
+            hasZeroPair = true;
+            size++;
+            return true;
+        }
+        for (int i = slot(a, b); ; i = (i + 1) & mask) {
+            long ka = table[2 * i], kb = table[2 * i + 1];
+            if (ka == 0 && kb == 0) {
+                table[2 * i] = a;
+                table[2 * i + 1] = b;
+                if (++size > resizeAt) grow();
+                return true;
+            }
+            if (ka == a && kb == b) return false;
+        }
+    }
+
+    public boolean contains(long a, long b) {
+        if (a == 0 && b == 0) return hasZeroPair;
+        for (int i = slot(a, b); ; i = (i + 1) & mask) {
+            long ka = table[2 * i], kb = table[2 * i + 1];
+            if (ka == 0 && kb == 0) return false;
+            if (ka == a && kb == b) return true;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void grow() {
+        long[] old = table;
+        allocate((mask + 1) * 2);
+        for (int i = 0; i < old.length; i += 2) {
+            long a = old[i], b = old[i + 1];
+            if (a == 0 && b == 0) continue;
+            int j = slot(a, b);
+            while (table[2 * j] != 0 || table[2 * j + 1] != 0) j = (j + 1) & mask;
+            table[2 * j] = a;
+            table[2 * j + 1] = b;
+        }
+    }
+
+    private int slot(long a, long b) {
+        return (int) mix(a * 0x9E3779B97F4A7C15L + b) & mask;
+    }
+
+    // Finalizador de MurmurHash3 (fmix64)
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93e8afec3bbL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,131 @@
+package com.cambiaso.ioc.service.etl;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Conjunto de claves naturales (fecha, maquina, maquinista, numeroLog) vistas durante un parseo.
+ *
+ * La clave se empaqueta en dos longs: {@code epochDay << 32 | idMaquina} y {@code maquinista << 40 | numeroLog},
+ * donde idMaquina es el id del código en un {@link CodeDictionary}. Los valores que no caben en ese layout
+ * (maquinista >= 2^23, numeroLog >= 2^40 o negativos) van a un conjunto de respaldo con la clave canónica en texto,
+ * así que la semántica es exactamente la del antiguo {@code HashSet<String>}: maquinista ausente equivale a 0.
+ *
+ * Uso: {@code prepare(...)} calcula la clave una vez y {@link #containsPrepared()} / {@link #addPrepared()}
+ * la consultan, lo que permite el early-skip y el late-skip sobre la misma clave sin recalcularla. No es thread-safe.
+ */
+public final class NaturalKeySet {
+
+    private static final long MAX_MAQUINISTA = (1L << 23) - 1;
+    private static final long MAX_NUMERO_LOG = (1L << 40) - 1;
+
+    private final CodeDictionary machines;
+    private final LongPairHashSet packed;
+    private final Set<String> overflow = new HashSet<>();
+
+    // Clave preparada
+    private long k1;
+    private long k2;
+    private String overflowKey;
+    private boolean prepared;
+
+    public NaturalKeySet(CodeDictionary machines, int expectedSize) {
+        this.machines = machines;
+        this.packed = new LongPairHashSet(expectedSize);
+    }
+
+    /** Prepara la clave con el código de máquina en buf[start, end) (ya recortado y no vacío). */
+    public void prepare(LocalDate fecha, char[] buf, int start, int end, long maquinista, long numeroLog) {
+        pack(fecha, machines.intern(buf, start, end), maquinista, numeroLog);
+    }
+
+    /**
+     * Prepara la clave desde los valores ya decodificados del registro.
+     *
+     * @return false si falta una parte obligatoria de la clave (fecha, máquina o numeroLog)
+     */
+    public boolean prepare(LocalDate fecha, String maquinaCodigo, Long maquinista, Long numeroLog) {
+        prepared = false;
+        if (fecha == null || maquinaCodigo == null || numeroLog == null) return false;
+        String maq = maquinaCodigo.trim();
+        if (maq.isEmpty()) return false;
+        pack(fecha, machines.intern(maq), maquinista == null ? 0L : maquinista, numeroLog);
+        return true;
+    }
+
+    private void pack(LocalDate fecha, int machineId, long maquinista, long numeroLog) {
+        long epochDay = fecha.toEpochDay();
+        if (epochDay == (int) epochDay
+                && maquinista >= 0 && maquinista <= MAX_MAQUINISTA
+                && numeroLog >= 0 && numeroLog <= MAX_NUMERO_LOG) {
+            k1 = (epochDay << 32) | (machineId & 0xFFFFFFFFL);
+            k2 = (maquinista << 40) | numeroLog;
+            overflowKey = null;
+        } else {
+            overflowKey = fecha.toString() + '|' + machines.code(machineId) + '|' + maquinista + '|' + numeroLog;
+        }
+        prepared = true;
+    }
+
+    /**
+     * Prepara una clave exportada por otro set (p.ej. el de otro hilo de parseo) con
+     * {@link #preparedHigh()}, {@link #preparedLow()} y {@link #preparedOverflowKey()}.
+     * El id de máquina se traduce del diccionario de origen al de este set.
+     */
+    public void prepareFrom(long high, long low, String overflowKey, CodeDictionary sourceMachines) {
+        if (overflowKey != null) {
+            this.overflowKey = overflowKey;
+        } else {
+            int machineId = machines.intern(sourceMachines.code((int) high));
+            k1 = (high & 0xFFFFFFFF00000000L) | (machineId & 0xFFFFFFFFL);
+            k2 = low;
+            this.overflowKey = null;
+        }
+        prepared = true;
+    }
+
+    /** Primer long de la clave preparada (solo significativo si {@link #preparedOverflowKey()} es null). */
+    public long preparedHigh() {
+        checkPrepared();
+        return k1;
+    }
+
+    /** Segundo long de la clave preparada (solo significativo si {@link #preparedOverflowKey()} es null). */
+    public long preparedLow() {
+        checkPrepared();
+        return k2;
+    }
+
+    /** Clave en texto si no cabe en el layout empaquetado, o null. */
+    public String preparedOverflowKey() {
+        checkPrepared();
+        return overflowKey;
+    }
+
+    public boolean containsPrepared() {
+        checkPrepared();
+        return overflowKey == null ? packed.contains(k1, k2) : overflow.contains(overflowKey);
+    }
+
+    /** @return true si la clave preparada no estaba presente */
+    public boolean addPrepared() {
+        checkPrepared();
+        return overflowKey == null ? packed.add(k1, k2) : overflow.add(overflowKey);
+    }
+
+    public int size() {
+        return packed.size() + overflow.size();
+    }
+
+    /** Clave preparada en formato canónico legible (solo para logs). */
+    public String describePrepared() {
+        if (!prepared) return "<none>";
+        if (overflowKey != null) return overflowKey;
+        return LocalDate.ofEpochDay(k1 >> 32) + "|" + machines.code((int) k1) + '|' + (k2 >>> 40) + '|' + (k2 & MAX_NUMERO_LOG);
+    }
+
+    private void checkPrepared() {
+        if (!prepared) throw new IllegalStateException("No key prepared");
+    }
+}
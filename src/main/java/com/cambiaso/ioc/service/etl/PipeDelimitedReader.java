@@ -0,0 +1,251 @@
+package com.cambiaso.ioc.service.etl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Lector de líneas para el export SAP delimitado por '|'.
+ *
+ * Lee el archivo sobre un buffer de chars reutilizable y, por cada línea, recorre los caracteres una sola vez
+ * para registrar los offsets de cada campo (ya recortados, con la misma semántica que {@code String.trim()}).
+ * Los campos se numeran igual que {@code line.split("\\|", -1)}: el índice 0 es lo que precede al primer '|'.
+ * Ni las líneas ni los campos se copian a {@link String} salvo que el llamador lo pida explícitamente.
+ *
+ * Los offsets solo son válidos hasta la siguiente llamada a {@link #nextLine()}. No es thread-safe.
+ */
+public final class PipeDelimitedReader implements Closeable {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final int INITIAL_FIELDS = 32;
+
+    private final Reader in;
+    private char[] buf;
+    private int bufLen;
+    private int pos;        // inicio de la próxima línea
+    private int scanFrom;   // desde dónde seguir buscando el fin de línea tras un refill
+    private boolean eof;
+
+    private int lineStart;
+    private int lineEnd;
+    private int lineNumber;
+
+    private int[] fieldStarts = new int[INITIAL_FIELDS];
+    private int[] fieldEnds = new int[INITIAL_FIELDS];
+    private int fieldCount;
+
+    private final FieldSlice slice = new FieldSlice();
+
+    public PipeDelimitedReader(Reader in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    public PipeDelimitedReader(Reader in, int bufferSize) {
+        this.in = in;
+        this.buf = new char[Math.max(bufferSize, 16)];
+    }
+
+    /**
+     * Avanza a la siguiente línea (terminada en \n, \r\n o \r, igual que {@code BufferedReader.readLine()}).
+     *
+     * @return false si no quedan líneas
+     */
+    public boolean nextLine() throws IOException {
+        while (true) {
+            for (int i = scanFrom; i < bufLen; i++) {
+                char c = buf[i];
+                if (c == '\n' || c == '\r') {
+                    if (c == '\r' && i + 1 >= bufLen && !eof) {
+                        scanFrom = i; // hace falta ver el siguiente char para saber si es \r\n
+                        break;
+                    }
+                    int next = i + 1;
+                    if (c == '\r' && next < bufLen && buf[next] == '\n') next++;
+                    acceptLine(i, next);
+                    return true;
+                }
+                scanFrom = i + 1;
+            }
+            if (eof) {
+                if (pos < bufLen) {
+                    acceptLine(bufLen, bufLen);
+                    return true;
+                }
+                return false;
+            }
+            fill();
+        }
+    }
+
+    private void acceptLine(int end, int next) {
+        lineStart = pos;
+        lineEnd = end;
+        pos = next;
+        scanFrom = next;
+        lineNumber++;
+        tokenize();
+    }
+
+    private void fill() throws IOException {
+        if (pos > 0) {
+            int remaining = bufLen - pos;
+            System.arraycopy(buf, pos, buf, 0, remaining);
+            scanFrom -= pos;
+            bufLen = remaining;
+            pos = 0;
+        }
+        if (bufLen == buf.length) {
+            char[] grown = new char[buf.length * 2];
+            System.arraycopy(buf, 0, grown, 0, bufLen);
+            buf = grown;
+        }
+        int n = in.read(buf, bufLen, buf.length - bufLen);
+        if (n < 0) {
+            eof = true;
+        } else {
+            bufLen += n;
+        }
+    }
+
+    private void tokenize() {
+        fieldCount = 0;
+        int start = lineStart;
+        for (int i = lineStart; i < lineEnd; i++) {
+            if (buf[i] == '|') {
+                addField(start, i);
+                start = i + 1;
+            }
+        }
+        addField(start, lineEnd);
+    }
+
+    private void addField(int start, int end) {
+        while (start < end && buf[start] <= ' ') start++;
+        while (end > start && buf[end - 1] <= ' ') end--;
+        if (fieldCount == fieldStarts.length) {
+            int[] s = new int[fieldCount * 2];
+            int[] e = new int[fieldCount * 2];
+            System.arraycopy(fieldStarts, 0, s, 0, fieldCount);
+            System.arraycopy(fieldEnds, 0, e, 0, fieldCount);
+            fieldStarts = s;
+            fieldEnds = e;
+        }
+        fieldStarts[fieldCount] = start;
+        fieldEnds[fieldCount] = end;
+        fieldCount++;
+    }
+
+    /** Número de línea (1-based) de la línea actual. */
+    public int lineNumber() {
+        return lineNumber;
+    }
+
+    /** Buffer subyacente; los offsets de {@link #fieldStart}/{@link #fieldEnd} apuntan aquí. */
+    public char[] buffer() {
+        return buf;
+    }
+
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    /** Offset (inclusive) del primer char no blanco del campo. */
+    public int fieldStart(int field) {
+        return fieldStarts[field];
+    }
+
+    /** Offset (exclusive) del último char no blanco del campo. */
+    public int fieldEnd(int field) {
+        return fieldEnds[field];
+    }
+
+    /** true si el campo no existe en la línea o está vacío tras recortar blancos. */
+    public boolean isEmpty(int field) {
+        return field >= fieldCount || fieldStarts[field] == fieldEnds[field];
+    }
+
+    /** Copia el campo recortado a un String (solo para columnas de texto que se almacenan). */
+    public String fieldString(int field) {
+        return new String(buf, fieldStarts[field], fieldEnds[field] - fieldStarts[field]);
+    }
+
+    /**
+     * Vista {@link CharSequence} reutilizable del campo, para APIs que aceptan CharSequence
+     * (p.ej. {@code DateTimeFormatter.parse}). Se invalida en la siguiente llamada a este método.
+     */
+    public CharSequence field(int field) {
+        return slice.reset(fieldStarts[field], fieldEnds[field]);
+    }
+
+    /** true si la línea (sin recortar) contiene el texto dado. */
+    public boolean lineContains(String text) {
+        int n = text.length();
+        int last = lineEnd - n;
+        outer:
+        for (int i = lineStart; i <= last; i++) {
+            for (int j = 0; j < n; j++) {
+                if (buf[i + j] != text.charAt(j)) continue outer;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /** true si la línea está vacía o solo contiene blancos. */
+    public boolean isBlankLine() {
+        for (int i = lineStart; i < lineEnd; i++) {
+            if (buf[i] > ' ') return false;
+        }
+        return true;
+    }
+
+    /** Primer char no blanco de la línea, o 0 si la línea está en blanco. */
+    public char firstNonBlankChar() {
+        for (int i = lineStart; i < lineEnd; i++) {
+            if (buf[i] > ' ') return buf[i];
+        }
+        return 0;
+    }
+
+    /** Copia la línea completa a un String (cabeceras y diagnóstico; no usar en el camino caliente). */
+    public String lineString() {
+        return new String(buf, lineStart, lineEnd - lineStart);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private final class FieldSlice implements CharSequence {
+        private int start;
+        private int end;
+
+        FieldSlice reset(int start, int end) {
+            this.start = start;
+            this.end = end;
+            return this;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= end - start) throw new IndexOutOfBoundsException(index);
+            return buf[start + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return new String(buf, start + from, to - from);
+        }
+
+        @Override
+        public String toString() {
+            return new String(buf, start, end - start);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.cambiaso.ioc.service.etl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bloque de filas de {@code fact_production} en formato columnar: un arreglo primitivo por columna (mismas
+ * representaciones y marcas de nulo que {@link ProductionRow}) y las columnas de texto de baja cardinalidad (turno,
+ * jornada, lista, versión, usuario, bodeguero, status) codificadas contra un diccionario propio del bloque.
+ *
+ * Es lo que el parser entrega a la sincronización: el rango de fechas, los días tocados, los content_hash y la carga
+ * masiva recorren las columnas en bucles simples, sin un objeto por fila. La capacidad es fija; el parser usa
+ * {@link #DEFAULT_ROWS} o el tamaño de bloque configurado si es menor. No es thread-safe.
+ */
+public final class ProductionBatch {
+
+    /** Filas por bloque del parser cuando el tamaño de bloque configurado es mayor. */
+    public static final int DEFAULT_ROWS = 65_536;
+
+    private static final int NO_TEXT = -1;
+
+    private final int capacity;
+    private int size;
+
+    private final long[] id;
+    private final int[] fechaDay;
+    private final long[] maquinaId;
+    private final long[] maquinistaId;
+    private final long[] numeroLog;
+    private final int[] horaSecond;
+    private final int[] fechaNotificacionDay;
+    private final long[] documento;
+    private final long[] materialSku;
+    private final String[] materialDescripcion;
+    private final int[] numeroPallet;
+    private final long[] cantidadScaled;
+    private final long[] pesoNetoScaled;
+    private final long[] centroCostos;
+    private final long[] contentHash;
+    // Códigos en texts; NO_TEXT = null
+    private final int[] lista;
+    private final int[] versionProduccion;
+    private final int[] turno;
+    private final int[] jornada;
+    private final int[] usuarioSap;
+    private final int[] bodeguero;
+    private final int[] statusOrigen;
+    private final CodeDictionary texts = new CodeDictionary();
+
+    public ProductionBatch(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        id = new long[capacity];
+        fechaDay = new int[capacity];
+        maquinaId = new long[capacity];
+        maquinistaId = new long[capacity];
+        numeroLog = new long[capacity];
+        horaSecond = new int[capacity];
+        fechaNotificacionDay = new int[capacity];
+        documento = new long[capacity];
+        materialSku = new long[capacity];
+        materialDescripcion = new String[capacity];
+        numeroPallet = new int[capacity];
+        cantidadScaled = new long[capacity];
+        pesoNetoScaled = new long[capacity];
+        centroCostos = new long[capacity];
+        contentHash = new long[capacity];
+        lista = new int[capacity];
+        versionProduccion = new int[capacity];
+        turno = new int[capacity];
+        jornada = new int[capacity];
+        usuarioSap = new int[capacity];
+        bodeguero = new int[capacity];
+        statusOrigen = new int[capacity];
+    }
+
+    /** Bloque con las filas dadas, en el mismo orden (capacidad = cantidad de filas). */
+    public static ProductionBatch of(List<ProductionRow> rows) {
+        ProductionBatch batch = new ProductionBatch(Math.max(1, rows.size()));
+        for (ProductionRow row : rows) batch.add(row);
+        return batch;
+    }
+
+    /** Copia la fila al final del bloque. @return índice de la fila */
+    public int add(ProductionRow row) {
+        if (size == capacity) {
+            throw new IllegalStateException("batch is full (" + capacity + " rows)");
+        }
+        int i = size++;
+        id[i] = row.getId();
+        fechaDay[i] = row.getFechaContabilizacionDay();
+        maquinaId[i] = row.getMaquinaId();
+        maquinistaId[i] = row.getMaquinistaId();
+        numeroLog[i] = row.getNumeroLog();
+        horaSecond[i] = row.getHoraContabilizacionSecond();
+        fechaNotificacionDay[i] = row.getFechaNotificacionDay();
+        documento[i] = row.getDocumento();
+        materialSku[i] = row.getMaterialSku();
+        materialDescripcion[i] = row.getMaterialDescripcion();
+        numeroPallet[i] = row.getNumeroPallet();
+        cantidadScaled[i] = row.getCantidadScaled();
+        pesoNetoScaled[i] = row.getPesoNetoScaled();
+        centroCostos[i] = row.getCentroCostos();
+        contentHash[i] = row.getContentHash();
+        lista[i] = encode(row.getLista());
+        versionProduccion[i] = encode(row.getVersionProduccion());
+        turno[i] = encode(row.getTurno());
+        jornada[i] = encode(row.getJornada());
+        usuarioSap[i] = encode(row.getUsuarioSap());
+        bodeguero[i] = encode(row.getBodeguero());
+        statusOrigen[i] = encode(row.getStatusOrigen());
+        return i;
+    }
+
+    /** Materializa la fila i (un objeto nuevo; los cambios no vuelven al bloque). */
+    public ProductionRow row(int i) {
+        ProductionRow row = new ProductionRow();
+        row.setId(id[i]);
+        row.setFechaContabilizacionDay(fechaDay[i]);
+        row.setMaquinaId(maquinaId[i]);
+        row.setMaquinistaId(maquinistaId[i]);
+        row.setNumeroLog(numeroLog[i]);
+        row.setHoraContabilizacionSecond(horaSecond[i]);
+        row.setFechaNotificacionDay(fechaNotificacionDay[i]);
+        row.setDocumento(documento[i]);
+        row.setMaterialSku(materialSku[i]);
+        row.setMaterialDescripcion(materialDescripcion[i]);
+        row.setNumeroPallet(numeroPallet[i]);
+        row.setCantidadScaled(cantidadScaled[i]);
+        row.setPesoNetoScaled(pesoNetoScaled[i]);
+        row.setCentroCostos(centroCostos[i]);
+        row.setContentHash(contentHash[i]);
+        row.setLista(lista(i));
+        row.setVersionProduccion(versionProduccion(i));
+        row.setTurno(turno(i));
+        row.setJornada(jornada(i));
+        row.setUsuarioSap(usuarioSap(i));
+        row.setBodeguero(bodeguero(i));
+        row.setStatusOrigen(statusOrigen(i));
+        return row;
+    }
+
+    public List<ProductionRow> toRows() {
+        List<ProductionRow> rows = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) rows.add(row(i));
+        return rows;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    /** Menor fecha de contabilización (epoch day), o {@link ProductionRow#NULL_INT} si el bloque está vacío. */
+    public int minDay() {
+        if (size == 0) return ProductionRow.NULL_INT;
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) min = Math.min(min, fechaDay[i]);
+        return min;
+    }
+
+    /** Mayor fecha de contabilización (epoch day), o {@link ProductionRow#NULL_INT} si el bloque está vacío. */
+    public int maxDay() {
+        if (size == 0) return ProductionRow.NULL_INT;
+        int max = Integer.MIN_VALUE;
+        for (int i = 0; i < size; i++) max = Math.max(max, fechaDay[i]);
+        return max;
+    }
+
+    /** Fechas de contabilización distintas del bloque (epoch day), en orden ascendente. */
+    public int[] distinctDays() {
+        if (size == 0) return new int[0];
+        int min = minDay();
+        long span = (long) maxDay() - min + 1;
+        if (span > 4L * size) {
+            int[] days = Arrays.copyOf(fechaDay, size);
+            Arrays.sort(days);
+            int n = 0;
+            for (int i = 0; i < days.length; i++) {
+                if (i == 0 || days[i] != days[i - 1]) days[n++] = days[i];
+            }
+            return Arrays.copyOf(days, n);
+        }
+        // Un export cubre pocos días: marca por desplazamiento desde min
+        boolean[] seen = new boolean[(int) span];
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            int offset = fechaDay[i] - min;
+            if (!seen[offset]) {
+                seen[offset] = true;
+                distinct++;
+            }
+        }
+        int[] days = new int[distinct];
+        int n = 0;
+        for (int offset = 0; offset < span; offset++) {
+            if (seen[offset]) days[n++] = min + offset;
+        }
+        return days;
+    }
+
+    /**
+     * Reemplaza los ids de dimensión provisionales (negativos, -(k + 1)) por los definitivos: el id -(k + 1) pasa a
+     * {@code maquinaIds[k]} / {@code maquinistaIds[k]}. Los ids positivos y 0 no cambian.
+     */
+    public void resolveProvisionalIds(long[] maquinaIds, long[] maquinistaIds) {
+        for (int i = 0; i < size; i++) {
+            long m = maquinaId[i];
+            if (m < 0) maquinaId[i] = maquinaIds[(int) -m - 1];
+            long mq = maquinistaId[i];
+            if (mq < 0) maquinistaId[i] = maquinistaIds[(int) -mq - 1];
+        }
+    }
+
+    /** Calcula el content_hash de todas las filas (ver {@link RowContentHash}). */
+    public void computeContentHashes() {
+        RowContentHash.fill(this);
+    }
+
+    public long id(int i) { return id[i]; }
+    public void setId(int i, long value) { id[i] = value; }
+    public int fechaDay(int i) { return fechaDay[i]; }
+    public long maquinaId(int i) { return maquinaId[i]; }
+    public long maquinistaId(int i) { return maquinistaId[i]; }
+    public long numeroLog(int i) { return numeroLog[i]; }
+    public int horaSecond(int i) { return horaSecond[i]; }
+    public int fechaNotificacionDay(int i) { return fechaNotificacionDay[i]; }
+    public long documento(int i) { return documento[i]; }
+    public long materialSku(int i) { return materialSku[i]; }
+    public String materialDescripcion(int i) { return materialDescripcion[i]; }
+    public int numeroPallet(int i) { return numeroPallet[i]; }
+    public long cantidadScaled(int i) { return cantidadScaled[i]; }
+    public long pesoNetoScaled(int i) { return pesoNetoScaled[i]; }
+    public long centroCostos(int i) { return centroCostos[i]; }
+    public long contentHash(int i) { return contentHash[i]; }
+    public String lista(int i) { return decode(lista[i]); }
+    public String versionProduccion(int i) { return decode(versionProduccion[i]); }
+    public String turno(int i) { return decode(turno[i]); }
+    public String jornada(int i) { return decode(jornada[i]); }
+    public String usuarioSap(int i) { return decode(usuarioSap[i]); }
+    public String bodeguero(int i) { return decode(bodeguero[i]); }
+    public String statusOrigen(int i) { return decode(statusOrigen[i]); }
+
+    // Acceso por código para RowContentHash: el hash de cada texto se calcula una vez por entrada del diccionario
+    int textCount() { return texts.size(); }
+    String text(int code) { return texts.code(code); }
+    int listaCode(int i) { return lista[i]; }
+    int versionProduccionCode(int i) { return versionProduccion[i]; }
+    int turnoCode(int i) { return turno[i]; }
+    int jornadaCode(int i) { return jornada[i]; }
+    int usuarioSapCode(int i) { return usuarioSap[i]; }
+    int bodegueroCode(int i) { return bodeguero[i]; }
+    int statusOrigenCode(int i) { return statusOrigen[i]; }
+    void setContentHash(int i, long value) { contentHash[i] = value; }
+
+    private int encode(String value) {
+        return value == null ? NO_TEXT : texts.intern(value);
+    }
+
+    private String decode(int code) {
+        return code == NO_TEXT ? null : texts.code(code);
+    }
+
+    @Override
+    public String toString() {
+        return "ProductionBatch{size=" + size + ", capacity=" + capacity + ", texts=" + texts.size() + '}';
+    }
+}
@@ -0,0 +1,153 @@
+package com.cambiaso.ioc.service.etl;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Fila de {@code fact_production} tal como la mueve el ETL (parser, deduplicación, sincronización y carga masiva),
+ * sin pasar por Hibernate: la entidad {@link com.cambiaso.ioc.persistence.entity.FactProduction} queda para lecturas.
+ *
+ * Todo se guarda en primitivos: fechas como epoch day, la hora como segundo del día, cantidad y peso como long con
+ * {@link #DECIMAL_SCALE} decimales (la escala de las columnas) y las dimensiones por id. Los valores ausentes se
+ * marcan con {@link #NULL_LONG} / {@link #NULL_INT}; maquinaId y maquinistaId usan 0 (sin maquinista = NULL, igual
+ * que en {@code uq_fact_prod_natural}). Los textos son los Strings canónicos del parseo, compartidos entre filas.
+ *
+ * Los accesores tipados ({@link #getFechaContabilizacion()}, {@link #getCantidad()}, ...) convierten en cada
+ * llamada: son para código fuera del camino caliente y para tests.
+ */
+@Getter
+@Setter
+public final class ProductionRow {
+
+    /** Marca de valor ausente en las columnas long. */
+    public static final long NULL_LONG = Long.MIN_VALUE;
+    /** Marca de valor ausente en las columnas int (fechas, hora, pallet). */
+    public static final int NULL_INT = Integer.MIN_VALUE;
+    /** Decimales de cantidad y peso_neto, igual que {@code numeric(18,4)}. */
+    public static final int DECIMAL_SCALE = 4;
+
+    private long id;                                   // 0 = sin asignar
+    private int fechaContabilizacionDay = NULL_INT;    // epoch day
+    private long maquinaId;                            // 0 = sin máquina
+    private long maquinistaId;                         // 0 = sin maquinista
+    private long numeroLog = NULL_LONG;
+    private int horaContabilizacionSecond = NULL_INT;  // segundo del día
+    private int fechaNotificacionDay = NULL_INT;       // epoch day
+    private long documento = NULL_LONG;
+    private long materialSku = NULL_LONG;
+    private String materialDescripcion;
+    private int numeroPallet = NULL_INT;
+    private long cantidadScaled = NULL_LONG;           // x 10^DECIMAL_SCALE
+    private long pesoNetoScaled = NULL_LONG;           // x 10^DECIMAL_SCALE
+    private String lista;
+    private String versionProduccion;
+    private long centroCostos = NULL_LONG;
+    private String turno;
+    private String jornada;
+    private String usuarioSap;
+    private String bodeguero;
+    private String statusOrigen;
+    private long contentHash = NULL_LONG;              // sin calcular
+
+    /** Vuelve todos los campos a su valor inicial, para reutilizar la instancia en la línea siguiente. */
+    public void reset() {
+        id = 0;
+        fechaContabilizacionDay = NULL_INT;
+        maquinaId = 0;
+        maquinistaId = 0;
+        numeroLog = NULL_LONG;
+        horaContabilizacionSecond = NULL_INT;
+        fechaNotificacionDay = NULL_INT;
+        documento = NULL_LONG;
+        materialSku = NULL_LONG;
+        materialDescripcion = null;
+        numeroPallet = NULL_INT;
+        cantidadScaled = NULL_LONG;
+        pesoNetoScaled = NULL_LONG;
+        lista = null;
+        versionProduccion = null;
+        centroCostos = NULL_LONG;
+        turno = null;
+        jornada = null;
+        usuarioSap = null;
+        bodeguero = null;
+        statusOrigen = null;
+        contentHash = NULL_LONG;
+    }
+
+    public LocalDate getFechaContabilizacion() {
+        return toDate(fechaContabilizacionDay);
+    }
+
+    public void setFechaContabilizacion(LocalDate fecha) {
+        fechaContabilizacionDay = fromDate(fecha);
+    }
+
+    public LocalTime getHoraContabilizacion() {
+        return horaContabilizacionSecond == NULL_INT ? null : LocalTime.ofSecondOfDay(horaContabilizacionSecond);
+    }
+
+    public void setHoraContabilizacion(LocalTime hora) {
+        horaContabilizacionSecond = hora == null ? NULL_INT : hora.toSecondOfDay();
+    }
+
+    public LocalDate getFechaNotificacion() {
+        return toDate(fechaNotificacionDay);
+    }
+
+    public void setFechaNotificacion(LocalDate fecha) {
+        fechaNotificacionDay = fromDate(fecha);
+    }
+
+    public BigDecimal getCantidad() {
+        return toDecimal(cantidadScaled);
+    }
+
+    public void setCantidad(BigDecimal cantidad) {
+        cantidadScaled = scale(cantidad);
+    }
+
+    public BigDecimal getPesoNeto() {
+        return toDecimal(pesoNetoScaled);
+    }
+
+    public void setPesoNeto(BigDecimal pesoNeto) {
+        pesoNetoScaled = scale(pesoNeto);
+    }
+
+    /**
+     * Valor a {@link #DECIMAL_SCALE} decimales (HALF_UP, como redondea PostgreSQL al guardar en numeric(18,4)),
+     * o {@link #NULL_LONG} si es null o no cabe en un long.
+     */
+    public static long scale(BigDecimal value) {
+        if (value == null) return NULL_LONG;
+        try {
+            return value.setScale(DECIMAL_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            return NULL_LONG;
+        }
+    }
+
+    private static BigDecimal toDecimal(long scaled) {
+        return scaled == NULL_LONG ? null : BigDecimal.valueOf(scaled, DECIMAL_SCALE);
+    }
+
+    private static LocalDate toDate(int epochDay) {
+        return epochDay == NULL_INT ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    private static int fromDate(LocalDate date) {
+        return date == null ? NULL_INT : Math.toIntExact(date.toEpochDay());
+    }
+
+    @Override
+    public String toString() {
+        return "ProductionRow{id=" + id + ", fecha=" + getFechaContabilizacion() + ", numeroLog=" + numeroLog
+                + ", maquinaId=" + maquinaId + ", maquinistaId=" + maquinistaId + '}';
+    }
+}
@@ -0,0 +1,111 @@
+package com.cambiaso.ioc.service.etl;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Estadísticas de una carga, acumuladas por el parser sobre cada bloque que emite (una pasada por las columnas del
+ * {@link ProductionBatch}, sin volver a recorrer los registros): rango de fechas y, por día de contabilización,
+ * cantidad de filas y sumas de cantidad y peso_neto. Es el resumen que se guarda en el job.
+ *
+ * Las sumas se llevan en la escala de {@link ProductionRow#DECIMAL_SCALE} y omiten los valores nulos. Los días se
+ * guardan en arreglos indexados por desplazamiento desde el primer día visto, que crecen según haga falta: un export
+ * cubre pocos días. No es thread-safe.
+ */
+public final class ProductionStats {
+
+    /** Totales de un día de contabilización. */
+    public record DayStats(LocalDate fecha, long rows, BigDecimal cantidad, BigDecimal pesoNeto) {}
+
+    private long rows;
+    private int minDay = Integer.MAX_VALUE;
+    private int maxDay = Integer.MIN_VALUE;
+    private int baseDay;                  // epoch day del índice 0
+    private long[] dayRows = new long[0];
+    private long[] dayCantidad = new long[0];
+    private long[] dayPesoNeto = new long[0];
+
+    /** Suma las filas del bloque. */
+    public void add(ProductionBatch batch) {
+        int n = batch.size();
+        if (n == 0) return;
+        ensureRange(batch.minDay(), batch.maxDay());
+        for (int i = 0; i < n; i++) {
+            int d = batch.fechaDay(i) - baseDay;
+            dayRows[d]++;
+            long cantidad = batch.cantidadScaled(i);
+            if (cantidad != ProductionRow.NULL_LONG) dayCantidad[d] += cantidad;
+            long peso = batch.pesoNetoScaled(i);
+            if (peso != ProductionRow.NULL_LONG) dayPesoNeto[d] += peso;
+        }
+        rows += n;
+    }
+
+    public long rows() {
+        return rows;
+    }
+
+    /** Menor fecha de contabilización, o null si no hubo filas. */
+    public LocalDate minDate() {
+        return rows == 0 ? null : LocalDate.ofEpochDay(minDay);
+    }
+
+    /** Mayor fecha de contabilización, o null si no hubo filas. */
+    public LocalDate maxDate() {
+        return rows == 0 ? null : LocalDate.ofEpochDay(maxDay);
+    }
+
+    /** Totales de los días con filas, en orden de fecha. */
+    public List<DayStats> days() {
+        List<DayStats> days = new ArrayList<>();
+        for (int d = 0; d < dayRows.length; d++) {
+            if (dayRows[d] == 0) continue;
+            days.add(new DayStats(LocalDate.ofEpochDay(baseDay + d), dayRows[d],
+                    BigDecimal.valueOf(dayCantidad[d], ProductionRow.DECIMAL_SCALE),
+                    BigDecimal.valueOf(dayPesoNeto[d], ProductionRow.DECIMAL_SCALE)));
+        }
+        return days;
+    }
+
+    private void ensureRange(int from, int to) {
+        int newMin = Math.min(minDay, from);
+        int newMax = Math.max(maxDay, to);
+        if (rows > 0 && newMin == minDay && newMax == maxDay) return;
+        int length = Math.toIntExact((long) newMax - newMin + 1);
+        int shift = rows == 0 ? 0 : baseDay - newMin;
+        dayRows = grow(dayRows, length, shift);
+        dayCantidad = grow(dayCantidad, length, shift);
+        dayPesoNeto = grow(dayPesoNeto, length, shift);
+        baseDay = newMin;
+        minDay = newMin;
+        maxDay = newMax;
+    }
+
+    private static long[] grow(long[] values, int length, int shift) {
+        long[] grown = new long[length];
+        System.arraycopy(values, 0, grown, shift, values.length);
+        return grown;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ProductionStats other)) return false;
+        return rows == other.rows && Objects.equals(days(), other.days());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(rows, days());
+    }
+
+    @Override
+    public String toString() {
+        return "ProductionStats{rows=" + rows + ", minDate=" + minDate() + ", maxDate=" + maxDate()
+                + ", days=" + Arrays.stream(dayRows).filter(r -> r > 0).count() + '}';
+    }
+}
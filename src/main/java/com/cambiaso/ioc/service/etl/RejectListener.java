@@ -0,0 +1,32 @@
+package com.cambiaso.ioc.service.etl;
+
+/**
+ * Destino de las líneas que el parser descarta (ver {@link RejectReason}); lo implementa la cuarentena del job.
+ * El parser lo invoca desde el hilo llamador, en orden de línea dentro de cada bloque.
+ */
+public interface RejectListener {
+
+    /** No guarda nada: los rechazos solo se cuentan en las métricas. */
+    RejectListener NONE = new RejectListener() {
+        @Override
+        public boolean wantsLines() {
+            return false;
+        }
+
+        @Override
+        public void rejected(int lineNumber, RejectReason reason, String line, String detail) {
+        }
+    };
+
+    /**
+     * Si todavía guarda el texto de las líneas. Cuando devuelve false el parser no copia la línea y entrega
+     * {@code line = null}; puede consultarse desde los hilos de parseo.
+     */
+    boolean wantsLines();
+
+    /**
+     * @param line   texto de la línea, o null si {@link #wantsLines()} era false
+     * @param detail mensaje del error, o null
+     */
+    void rejected(int lineNumber, RejectReason reason, String line, String detail);
+}
@@ -0,0 +1,21 @@
+package com.cambiaso.ioc.service.etl;
+
+/**
+ * Motivo por el que el parser descarta una línea de datos; es el {@code error_type} de {@code quarantined_records} y
+ * la etiqueta {@code reason} de la métrica {@code etl.rows.rejected}.
+ */
+public enum RejectReason {
+    /** Faltan columnas obligatorias en la línea (o en la cabecera vigente). */
+    MISSING_FIELDS,
+    /** Alguna columna obligatoria no se pudo interpretar. */
+    INVALID_FIELDS,
+    /** No se pudo armar la clave natural (fecha, máquina, maquinista, número de log). */
+    NO_KEY,
+    /** Línea que hizo fallar el parseo (por ejemplo, fecha o número de log ilegibles). */
+    MALFORMED;
+
+    /** Valor de la etiqueta de métricas. */
+    public String tag() {
+        return name().toLowerCase(java.util.Locale.ROOT);
+    }
+}
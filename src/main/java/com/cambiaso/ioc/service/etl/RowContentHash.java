@@ -0,0 +1,131 @@
+package com.cambiaso.ioc.service.etl;
+
+/**
+ * Hash de 64 bits del contenido de una fila de {@code fact_production}: todas las columnas salvo el id y la
+ * clave natural (fecha, máquina, maquinista, número de log). Se guarda en {@code content_hash} para que la
+ * sincronización merge detecte qué filas cambiaron sin releer las columnas de medida.
+ *
+ * El valor es estable entre ejecuciones (no depende de {@code Object.hashCode}) y los decimales se normalizan,
+ * de modo que 10.5 y 10.5000 producen el mismo hash. Se calcula sobre los primitivos de {@link ProductionRow} con la
+ * misma mezcla que se usaba sobre la entidad (LocalDate/LocalTime/BigDecimal), así que los hashes ya guardados
+ * siguen siendo válidos.
+ */
+public final class RowContentHash {
+
+    private static final long SEED = 0x6A09E667F3BCC909L;
+    private static final long NULL_MARK = 0x9E3779B97F4A7C15L;
+    private static final long MULT = 0xBF58476D1CE4E5B9L;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private RowContentHash() {
+    }
+
+    public static long of(ProductionRow row) {
+        long h = SEED;
+        h = mixInt(h, row.getHoraContabilizacionSecond(), NANOS_PER_SECOND);
+        h = mixInt(h, row.getFechaNotificacionDay(), 1);
+        h = mixLong(h, row.getDocumento());
+        h = mixLong(h, row.getMaterialSku());
+        h = mix(h, row.getMaterialDescripcion());
+        h = mixInt(h, row.getNumeroPallet(), 1);
+        h = mixScaled(h, row.getCantidadScaled());
+        h = mixScaled(h, row.getPesoNetoScaled());
+        h = mix(h, row.getLista());
+        h = mix(h, row.getVersionProduccion());
+        h = mixLong(h, row.getCentroCostos());
+        h = mix(h, row.getTurno());
+        h = mix(h, row.getJornada());
+        h = mix(h, row.getUsuarioSap());
+        h = mix(h, row.getBodeguero());
+        h = mix(h, row.getStatusOrigen());
+        return fmix64(h);
+    }
+
+    /**
+     * Calcula y guarda el hash de cada fila del bloque; igual a {@link #of(ProductionRow)} fila a fila, pero el texto
+     * de cada entrada del diccionario del bloque se procesa una sola vez.
+     */
+    static void fill(ProductionBatch batch) {
+        long[] textHashes = new long[batch.textCount()];
+        for (int code = 0; code < textHashes.length; code++) {
+            textHashes[code] = stringHash(batch.text(code));
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            long h = SEED;
+            h = mixInt(h, batch.horaSecond(i), NANOS_PER_SECOND);
+            h = mixInt(h, batch.fechaNotificacionDay(i), 1);
+            h = mixLong(h, batch.documento(i));
+            h = mixLong(h, batch.materialSku(i));
+            h = mix(h, batch.materialDescripcion(i));
+            h = mixInt(h, batch.numeroPallet(i), 1);
+            h = mixScaled(h, batch.cantidadScaled(i));
+            h = mixScaled(h, batch.pesoNetoScaled(i));
+            h = mixCode(h, batch.listaCode(i), textHashes);
+            h = mixCode(h, batch.versionProduccionCode(i), textHashes);
+            h = mixLong(h, batch.centroCostos(i));
+            h = mixCode(h, batch.turnoCode(i), textHashes);
+            h = mixCode(h, batch.jornadaCode(i), textHashes);
+            h = mixCode(h, batch.usuarioSapCode(i), textHashes);
+            h = mixCode(h, batch.bodegueroCode(i), textHashes);
+            h = mixCode(h, batch.statusOrigenCode(i), textHashes);
+            batch.setContentHash(i, fmix64(h));
+        }
+    }
+
+    private static long mixLong(long h, long value) {
+        return step(h, value == ProductionRow.NULL_LONG ? NULL_MARK : value);
+    }
+
+    // Fechas (epoch day), hora (segundo del día -> nanos del día, como LocalTime.toNanoOfDay) y pallet
+    private static long mixInt(long h, int value, long unit) {
+        return step(h, value == ProductionRow.NULL_INT ? NULL_MARK : value * unit);
+    }
+
+    // Decimal normalizado como BigDecimal.stripTrailingZeros: 10.5 y 10.5000 dan lo mismo; cero = (escala 0, 0)
+    private static long mixScaled(long h, long scaled) {
+        if (scaled == ProductionRow.NULL_LONG) return step(h, NULL_MARK);
+        long unscaled = scaled;
+        int scale = ProductionRow.DECIMAL_SCALE;
+        if (unscaled == 0) {
+            scale = 0;
+        } else {
+            while (unscaled % 10 == 0) {
+                unscaled /= 10;
+                scale--;
+            }
+        }
+        h = step(h, scale);
+        return step(h, unscaled);
+    }
+
+    private static long mix(long h, String value) {
+        return step(h, value == null ? NULL_MARK : stringHash(value));
+    }
+
+    // Texto codificado en el diccionario del bloque; código negativo = null
+    private static long mixCode(long h, int code, long[] textHashes) {
+        return step(h, code < 0 ? NULL_MARK : textHashes[code]);
+    }
+
+    private static long stringHash(String value) {
+        long s = 0xCBF29CE484222325L; // FNV-1a 64
+        for (int i = 0; i < value.length(); i++) {
+            s ^= value.charAt(i);
+            s *= 0x100000001B3L;
+        }
+        return s ^ value.length();
+    }
+
+    private static long step(long h, long v) {
+        return Long.rotateLeft((h ^ fmix64(v)) * MULT, 27);
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xFF51AFD7ED558CCDL;
+        k ^= k >>> 33;
+        k *= 0xC4CEB93FE1A85A53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
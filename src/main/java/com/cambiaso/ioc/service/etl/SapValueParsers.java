@@ -0,0 +1,168 @@
+package com.cambiaso.ioc.service.etl;
+
+import java.math.BigDecimal;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Decodificadores rápidos para los formatos fijos del export SAP, directamente sobre rangos de chars.
+ *
+ * <ul>
+ *   <li>Fechas {@code dd.MM.yyyy}: se reutiliza una instancia de {@link LocalDate} por día distinto.</li>
+ *   <li>Horas {@code HH:mm:ss}.</li>
+ *   <li>Decimales con coma o punto: unscaled long + scale, o escalados a una escala fija, sin Strings intermedios.</li>
+ *   <li>Enteros solo dígitos.</li>
+ * </ul>
+ *
+ * Cada método devuelve null (o {@link #NOT_A_NUMBER}) cuando la entrada no encaja en la ruta rápida; el llamador
+ * debe entonces usar el parser general (DateTimeFormatter / BigDecimal), que conserva la semántica original
+ * para entradas atípicas. Mantiene estado (caché de fechas): una instancia por parseo, no es thread-safe.
+ */
+public final class SapValueParsers {
+
+    /** Valor devuelto por {@link #parseDigits} cuando el campo no es un entero de solo dígitos. */
+    public static final long NOT_A_NUMBER = Long.MIN_VALUE;
+
+    private static final int DATE_CACHE_SIZE = 512; // potencia de 2; un export abarca pocos días distintos
+    private static final int MAX_LONG_DIGITS = 18;  // siempre cabe en un long sin overflow
+
+    private final int[] cachedDateKeys = new int[DATE_CACHE_SIZE];
+    private final LocalDate[] cachedDates = new LocalDate[DATE_CACHE_SIZE];
+
+    /** Fecha {@code dd.MM.yyyy} en buf[start, end), o null si no tiene ese formato exacto o no es una fecha válida. */
+    public LocalDate parseDate(char[] buf, int start, int end) {
+        if (end - start != 10 || buf[start + 2] != '.' || buf[start + 5] != '.') return null;
+        int day = twoDigits(buf, start);
+        int month = twoDigits(buf, start + 3);
+        int year = fourDigits(buf, start + 6);
+        if ((day | month | year) < 0 || year == 0) return null; // año 0 no existe con yyyy (year-of-era)
+        int key = year * 10_000 + month * 100 + day;
+        int slot = (key ^ (key >>> 9)) & (DATE_CACHE_SIZE - 1);
+        LocalDate cached = cachedDates[slot];
+        if (cached != null && cachedDateKeys[slot] == key) return cached;
+        LocalDate date;
+        try {
+            date = LocalDate.of(year, month, day);
+        } catch (DateTimeException e) {
+            return null; // p.ej. 31.02: el formatter decide (resolución SMART)
+        }
+        cachedDateKeys[slot] = key;
+        cachedDates[slot] = date;
+        return date;
+    }
+
+    /** Hora {@code HH:mm:ss} en buf[start, end), o null si no tiene ese formato exacto o está fuera de rango. */
+    public static LocalTime parseTime(char[] buf, int start, int end) {
+        if (end - start != 8 || buf[start + 2] != ':' || buf[start + 5] != ':') return null;
+        int hour = twoDigits(buf, start);
+        int minute = twoDigits(buf, start + 3);
+        int second = twoDigits(buf, start + 6);
+        if ((hour | minute | second) < 0 || hour > 23 || minute > 59 || second > 59) return null;
+        return LocalTime.of(hour, minute, second);
+    }
+
+    /** Hora {@code HH:mm:ss} en buf[start, end) como segundo del día, o -1 si no encaja (ver {@link #parseTime}). */
+    public static int parseSecondOfDay(char[] buf, int start, int end) {
+        if (end - start != 8 || buf[start + 2] != ':' || buf[start + 5] != ':') return -1;
+        int hour = twoDigits(buf, start);
+        int minute = twoDigits(buf, start + 3);
+        int second = twoDigits(buf, start + 6);
+        if ((hour | minute | second) < 0 || hour > 23 || minute > 59 || second > 59) return -1;
+        return hour * 3600 + minute * 60 + second;
+    }
+
+    /**
+     * Decimal con el mismo formato que {@link #parseDecimal}, escalado a {@code targetScale} decimales
+     * (redondeo HALF_UP), o {@link #NOT_A_NUMBER} si no encaja o no cabe en un long.
+     */
+    public static long parseScaled(char[] buf, int start, int end, int targetScale) {
+        int p = start;
+        boolean negative = false;
+        if (p < end && (buf[p] == '-' || buf[p] == '+')) {
+            negative = buf[p] == '-';
+            p++;
+        }
+        long unscaled = 0;
+        int digits = 0;
+        int scale = -1;
+        int roundDigit = 0; // primer decimal descartado
+        for (; p < end; p++) {
+            char c = buf[p];
+            if (c >= '0' && c <= '9') {
+                if (scale >= targetScale) {
+                    if (scale++ == targetScale) roundDigit = c - '0';
+                    continue;
+                }
+                if (++digits > MAX_LONG_DIGITS) return NOT_A_NUMBER;
+                unscaled = unscaled * 10 + (c - '0');
+                if (scale >= 0) scale++;
+            } else if ((c == ',' || c == '.') && scale < 0) {
+                scale = 0;
+            } else {
+                return NOT_A_NUMBER;
+            }
+        }
+        if (digits == 0) return NOT_A_NUMBER;
+        for (int s = Math.max(scale, 0); s < targetScale; s++) {
+            if (++digits > MAX_LONG_DIGITS) return NOT_A_NUMBER;
+            unscaled *= 10;
+        }
+        if (roundDigit >= 5) unscaled++;
+        return negative ? -unscaled : unscaled;
+    }
+
+    /**
+     * Decimal con separador ',' o '.' (como máximo uno) y signo opcional, o null si no encaja
+     * (exponentes, separadores de miles, más de 18 dígitos...). Conserva la escala: "10,500" -> 10.500.
+     */
+    public static BigDecimal parseDecimal(char[] buf, int start, int end) {
+        int p = start;
+        boolean negative = false;
+        if (p < end && (buf[p] == '-' || buf[p] == '+')) {
+            negative = buf[p] == '-';
+            p++;
+        }
+        long unscaled = 0;
+        int digits = 0;
+        int scale = -1; // -1 = aún sin separador
+        for (; p < end; p++) {
+            char c = buf[p];
+            if (c >= '0' && c <= '9') {
+                if (++digits > MAX_LONG_DIGITS) return null;
+                unscaled = unscaled * 10 + (c - '0');
+                if (scale >= 0) scale++;
+            } else if ((c == ',' || c == '.') && scale < 0) {
+                scale = 0;
+            } else {
+                return null;
+            }
+        }
+        if (digits == 0) return null;
+        return BigDecimal.valueOf(negative ? -unscaled : unscaled, Math.max(scale, 0));
+    }
+
+    /** Entero de solo dígitos (hasta 18) en buf[start, end), o {@link #NOT_A_NUMBER}. */
+    public static long parseDigits(char[] buf, int start, int end) {
+        int len = end - start;
+        if (len == 0 || len > MAX_LONG_DIGITS) return NOT_A_NUMBER;
+        long v = 0;
+        for (int p = start; p < end; p++) {
+            char c = buf[p];
+            if (c < '0' || c > '9') return NOT_A_NUMBER;
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+
+    private static int twoDigits(char[] buf, int at) {
+        int d1 = buf[at] - '0', d2 = buf[at + 1] - '0';
+        if (d1 < 0 || d1 > 9 || d2 < 0 || d2 > 9) return -1;
+        return d1 * 10 + d2;
+    }
+
+    private static int fourDigits(char[] buf, int at) {
+        int hi = twoDigits(buf, at), lo = twoDigits(buf, at + 2);
+        return (hi | lo) < 0 ? -1 : hi * 100 + lo;
+    }
+}
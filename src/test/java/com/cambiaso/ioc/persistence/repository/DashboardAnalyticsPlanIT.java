@@ -0,0 +1,211 @@
+package com.cambiaso.ioc.persistence.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Regresión de planes (PostgreSQL via Testcontainers) para las consultas de DashboardAnalyticsRepository.
+ *
+ * Siembra ~8 años de historia, aplica sql/fact_production_daily.sql, sql/fact_production_analytics_indexes.sql y
+ * sql/analytics_materialized_views.sql y ejecuta cada consulta del repositorio bajo {@code EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON)}. Falla si el plan
+ * recorre fact_production o fact_production_daily con Seq Scan, o si un Sort / HashAggregate se derrama a disco.
+ */
+@Testcontainers
+@SpringBootTest
+@ActiveProfiles("pgtest")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class DashboardAnalyticsPlanIT {
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void registerProps(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.datasource.driver-class-name", () -> "org.postgresql.Driver");
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "update");
+    }
+
+    private static final LocalDate HISTORY_START = LocalDate.of(2017, 1, 1);
+    private static final LocalDate HISTORY_END = LocalDate.of(2024, 12, 31);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private FactProductionDailyRepository dailyRepository;
+    @Autowired
+    private AnalyticsMaterializedViewRepository matviewRepository;
+
+    private PlanRecordingJdbcTemplate recorder;
+    private DashboardAnalyticsRepository repository;
+
+    @BeforeAll
+    void seed() throws Exception {
+        jdbcTemplate.execute("INSERT INTO dim_maquina (codigo_maquina, nombre_maquina, created_at, updated_at) "
+                + "SELECT 'M-' || g, 'Maquina ' || g, now(), now() FROM generate_series(1, 4) g");
+        jdbcTemplate.execute("INSERT INTO dim_maquinista (codigo_maquinista, nombre_completo, created_at, updated_at) "
+                + "SELECT 1000 + g, 'Operador ' || g, now(), now() FROM generate_series(1, 5) g");
+        // 300 filas por día repartidas en 4 máquinas x 5 maquinistas x 3 turnos (el rollup queda 5 veces menor)
+        jdbcTemplate.update("""
+                INSERT INTO fact_production (id, fecha_contabilizacion, maquina_fk, maquinista_fk, numero_log,
+                    hora_contabilizacion, fecha_notificacion, material_sku, cantidad, peso_neto, turno)
+                WITH m AS (SELECT array_agg(id ORDER BY id) AS ids FROM dim_maquina),
+                     q AS (SELECT array_agg(id ORDER BY id) AS ids FROM dim_maquinista)
+                SELECT row_number() OVER (), d::date, m.ids[n % 4 + 1], q.ids[(n / 4) % 5 + 1],
+                       n, time '08:00' + make_interval(secs => n), d::date, 6000000000 + (n % 50),
+                       (n % 97) + 1, ((n % 89) + 1) * 1.5, (ARRAY['A', 'B', 'C'])[(n / 20) % 3 + 1]
+                FROM m, q, generate_series(?::date, ?::date, interval '1 day') d, generate_series(0, 299) n
+                """, HISTORY_START, HISTORY_END);
+        jdbcTemplate.execute(Files.readString(Path.of("sql/fact_production_daily.sql")));
+        jdbcTemplate.execute(Files.readString(Path.of("sql/fact_production_analytics_indexes.sql"))
+                .replaceAll("(?m)^VACUUM.*$", "")); // VACUUM no puede ir en el mismo bloque implícito
+        jdbcTemplate.execute("VACUUM (ANALYZE) fact_production");
+        jdbcTemplate.execute("VACUUM (ANALYZE) fact_production_daily");
+        jdbcTemplate.execute(Files.readString(Path.of("sql/analytics_materialized_views.sql")));
+        jdbcTemplate.execute("ANALYZE dim_maquina");
+        jdbcTemplate.execute("ANALYZE dim_maquinista");
+    }
+
+    @BeforeEach
+    void setUp() {
+        recorder = new PlanRecordingJdbcTemplate(jdbcTemplate);
+        repository = new DashboardAnalyticsRepository(recorder, dailyRepository, matviewRepository);
+    }
+
+    @ParameterizedTest
+    @EnumSource(DashboardAnalyticsRepository.Source.class)
+    @DisplayName("Las consultas de un mes no hacen Seq Scan ni derraman a disco")
+    void oneMonthQueriesUseIndexes(DashboardAnalyticsRepository.Source source) {
+        LocalDate inicio = LocalDate.of(2024, 6, 1);
+        LocalDate fin = LocalDate.of(2024, 6, 30);
+
+        repository.fetchTotals(inicio, fin, source);
+        repository.fetchTopOperarios(inicio, fin, source);
+        repository.fetchDistribucionTurno(inicio, fin, source);
+        repository.fetchTopMaquinas(inicio, fin, source);
+        repository.fetchTendenciaDiaria(inicio, fin, source);
+        repository.fetchAnalyticsBundle(inicio, fin, source);
+
+        assertThat(recorder.plans).hasSize(6);
+        recorder.plans.forEach(DashboardAnalyticsPlanIT::assertHealthyPlan);
+    }
+
+    @Test
+    @DisplayName("Las consultas de 12 meses sobre el rollup no hacen Seq Scan ni derraman a disco")
+    void twelveMonthRollupQueriesUseIndexes() {
+        DashboardAnalyticsRepository.Source source = DashboardAnalyticsRepository.Source.ROLLUP;
+        LocalDate inicio = LocalDate.of(2024, 1, 1);
+        LocalDate fin = LocalDate.of(2024, 12, 31);
+
+        repository.fetchTotals(inicio, fin, source);
+        repository.fetchTopOperarios(inicio, fin, source);
+        repository.fetchDistribucionTurno(inicio, fin, source);
+        repository.fetchTopMaquinas(inicio, fin, source);
+        repository.fetchTendenciaDiaria(inicio, fin, source);
+        repository.fetchAnalyticsBundle(inicio, fin, source);
+
+        assertThat(recorder.plans).hasSize(6);
+        recorder.plans.forEach(DashboardAnalyticsPlanIT::assertHealthyPlan);
+    }
+
+    private static void assertHealthyPlan(RecordedPlan recorded) {
+        List<String> problems = new ArrayList<>();
+        collectProblems(recorded.plan().path(0).path("Plan"), problems);
+        assertThat(problems).as("plan for:%n%s%n%s", recorded.sql(), recorded.plan().toPrettyString()).isEmpty();
+    }
+
+    private static void collectProblems(JsonNode node, List<String> problems) {
+        String type = node.path("Node Type").asText();
+        String relation = node.path("Relation Name").asText("");
+        if ("Seq Scan".equals(type) && relation.startsWith("fact_production")) {
+            problems.add("Seq Scan on " + relation);
+        }
+        if ("Disk".equals(node.path("Sort Space Type").asText())) {
+            problems.add("Sort spilled to disk (" + node.path("Sort Space Used").asText() + " kB)");
+        }
+        if (node.path("HashAgg Batches").asInt(1) > 1 || node.path("Disk Usage").asLong(0) > 0) {
+            problems.add(type + " spilled to disk");
+        }
+        for (JsonNode child : node.path("Plans")) {
+            collectProblems(child, problems);
+        }
+    }
+
+    private record RecordedPlan(String sql, JsonNode plan) { }
+
+    /**
+     * Ejecuta cada consulta dos veces: primero bajo EXPLAIN (ANALYZE, BUFFERS) para guardar el plan real y luego
+     * normalmente, para que el repositorio siga devolviendo resultados.
+     */
+    private static class PlanRecordingJdbcTemplate extends NamedParameterJdbcTemplate {
+
+        final List<RecordedPlan> plans = new ArrayList<>();
+        private final NamedParameterJdbcTemplate plain; // sin interceptar, para el propio EXPLAIN
+
+        PlanRecordingJdbcTemplate(JdbcTemplate jdbcTemplate) {
+            super(jdbcTemplate);
+            this.plain = new NamedParameterJdbcTemplate(jdbcTemplate);
+        }
+
+        private void explain(String sql, Map<String, ?> params) {
+            String json = plain.queryForObject("EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON) " + sql, params, String.class);
+            try {
+                plans.add(new RecordedPlan(sql, MAPPER.readTree(json)));
+            } catch (Exception e) {
+                throw new IllegalStateException("Unreadable plan for: " + sql, e);
+            }
+        }
+
+        @Override
+        public <T> T queryForObject(String sql, Map<String, ?> paramMap, RowMapper<T> rowMapper) {
+            explain(sql, paramMap);
+            return super.queryForObject(sql, paramMap, rowMapper);
+        }
+
+        @Override
+        public <T> List<T> query(String sql, Map<String, ?> paramMap, RowMapper<T> rowMapper) {
+            explain(sql, paramMap);
+            return super.query(sql, paramMap, rowMapper);
+        }
+
+        @Override
+        public void query(String sql, Map<String, ?> paramMap, RowCallbackHandler rch) {
+            explain(sql, paramMap);
+            super.query(sql, paramMap, rch);
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package com.cambiaso.ioc.persistence.repository;
 
 import com.cambiaso.ioc.dto.analytics.*;
+import com.cambiaso.ioc.persistence.entity.DimMaquina;
+import com.cambiaso.ioc.persistence.entity.DimMaquinista;
+import com.cambiaso.ioc.service.DataSyncService;
+import com.cambiaso.ioc.service.etl.ProductionRow;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,7 +13,11 @@ import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -27,6 +35,14 @@ class DashboardAnalyticsRepositoryTest {
 
     @Autowired
     private DashboardAnalyticsRepository repository;
+    @Autowired
+    private DataSyncService dataSyncService;
+    @Autowired
+    private FactProductionRepository factProductionRepository;
+    @Autowired
+    private DimMaquinaRepository dimMaquinaRepository;
+    @Autowired
+    private DimMaquinistaRepository dimMaquinistaRepository;
 
     @Test
     @DisplayName("fetchTotals debe retornar totales para rango válido")
@@ -320,4 +336,110 @@ class DashboardAnalyticsRepositoryTest {
             repository.fetchTendenciaDiaria(inicio, fin);
         });
     }
+
+    @Test
+    @DisplayName("El rollup diario que mantiene el ETL da los mismos agregados que los hechos crudos")
+    void rollup_matchesRawAggregates() {
+        // Given - dos cargas del ETL; la segunda reemplaza parte de la primera
+        loadJune2025();
+
+        LocalDate inicio = LocalDate.of(2025, 6, 1);
+        LocalDate fin = LocalDate.of(2025, 6, 30);
+        var rollup = DashboardAnalyticsRepository.Source.ROLLUP;
+        var raw = DashboardAnalyticsRepository.Source.RAW;
+
+        // Then
+        TotalsDto totals = repository.fetchTotals(inicio, fin, rollup);
+        assertEquals(60L, totals.totalRegistros());
+        assertEquals(repository.fetchTotals(inicio, fin, raw).totalRegistros(), totals.totalRegistros());
+        assertEquals(0, repository.fetchTotals(inicio, fin, raw).totalUnidades().compareTo(totals.totalUnidades()));
+        assertEquals(repository.fetchTopOperarios(inicio, fin, raw).toString(), repository.fetchTopOperarios(inicio, fin, rollup).toString());
+        assertEquals(repository.fetchTopMaquinas(inicio, fin, raw).toString(), repository.fetchTopMaquinas(inicio, fin, rollup).toString());
+        assertEquals(repository.fetchDistribucionTurno(inicio, fin, raw).toString(), repository.fetchDistribucionTurno(inicio, fin, rollup).toString());
+        assertEquals(repository.fetchTendenciaDiaria(inicio, fin, raw).toString(), repository.fetchTendenciaDiaria(inicio, fin, rollup).toString());
+    }
+
+    @Test
+    @DisplayName("Sin vistas materializadas (H2) la fuente MATVIEW lee el rollup")
+    void matview_fallsBackToRollupWhenViewsAreMissing() {
+        // Given
+        loadJune2025();
+
+        LocalDate inicio = LocalDate.of(2025, 6, 1);
+        LocalDate fin = LocalDate.of(2025, 6, 30);
+        var matview = DashboardAnalyticsRepository.Source.MATVIEW;
+        var rollup = DashboardAnalyticsRepository.Source.ROLLUP;
+
+        // Then
+        assertEquals(repository.fetchTotals(inicio, fin, rollup), repository.fetchTotals(inicio, fin, matview));
+        assertEquals(repository.fetchTopMaquinas(inicio, fin, rollup), repository.fetchTopMaquinas(inicio, fin, matview));
+        assertEquals(repository.fetchTendenciaDiaria(inicio, fin, rollup), repository.fetchTendenciaDiaria(inicio, fin, matview));
+        assertEquals(repository.fetchAnalyticsBundle(inicio, fin, rollup), repository.fetchAnalyticsBundle(inicio, fin, matview));
+    }
+
+    @Test
+    @DisplayName("fetchAnalyticsBundle devuelve en una consulta lo mismo que los cinco métodos individuales")
+    void fetchAnalyticsBundle_matchesIndividualQueries() {
+        // Given
+        loadJune2025();
+        LocalDate inicio = LocalDate.of(2025, 6, 1);
+        LocalDate fin = LocalDate.of(2025, 6, 30);
+
+        for (DashboardAnalyticsRepository.Source source : DashboardAnalyticsRepository.Source.values()) {
+            // When
+            AnalyticsBundleDto bundle = repository.fetchAnalyticsBundle(inicio, fin, source);
+
+            // Then
+            TotalsDto totals = repository.fetchTotals(inicio, fin, source);
+            assertEquals(totals.totalRegistros(), bundle.totals().totalRegistros(), source.name());
+            assertEquals(0, totals.totalUnidades().compareTo(bundle.totals().totalUnidades()), source.name());
+            assertEquals(0, totals.pesoNetoTotal().compareTo(bundle.totals().pesoNetoTotal()), source.name());
+            assertEquals(repository.fetchTopOperarios(inicio, fin, source).toString(), bundle.topOperarios().toString(), source.name());
+            assertEquals(new HashSet<>(repository.fetchDistribucionTurno(inicio, fin, source)), new HashSet<>(bundle.distribucionTurno()), source.name());
+            assertEquals(repository.fetchTopMaquinas(inicio, fin, source).toString(), bundle.topMaquinas().toString(), source.name());
+            assertEquals(repository.fetchTendenciaDiaria(inicio, fin, source).toString(), bundle.tendenciaDiaria().toString(), source.name());
+        }
+        AnalyticsBundleDto empty = repository.fetchAnalyticsBundle(LocalDate.of(2025, 8, 1), LocalDate.of(2025, 8, 31));
+        assertEquals(0L, empty.totals().totalRegistros());
+        assertTrue(empty.topOperarios().isEmpty() && empty.tendenciaDiaria().isEmpty());
+    }
+
+    private void loadJune2025() {
+        factProductionRepository.deleteAll();
+        DimMaquina maquina = new DimMaquina();
+        maquina.setCodigoMaquina("M-ROLLUP");
+        maquina.setNombreMaquina("Maquina rollup");
+        maquina = dimMaquinaRepository.saveAndFlush(maquina);
+        DimMaquinista maquinista = new DimMaquinista();
+        maquinista.setCodigoMaquinista(9911L);
+        maquinista.setNombreCompleto("Operador Rollup");
+        maquinista = dimMaquinistaRepository.saveAndFlush(maquinista);
+
+        List<ProductionRow> first = new ArrayList<>();
+        List<ProductionRow> second = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            LocalDate fecha = LocalDate.of(2025, 6, 1 + i % 30);
+            first.add(fact(fecha, i, maquina, i % 2 == 0 ? maquinista : null, i % 3 == 0 ? "A" : "B"));
+            if (fecha.getDayOfMonth() > 15) {
+                second.add(fact(fecha, 1000 + i, maquina, maquinista, "C"));
+            }
+        }
+        dataSyncService.syncWithDeleteInsert(LocalDate.of(2025, 6, 1), LocalDate.of(2025, 6, 30), first);
+        dataSyncService.syncWithDeleteInsert(LocalDate.of(2025, 6, 16), LocalDate.of(2025, 6, 30), second);
+    }
+
+    private ProductionRow fact(LocalDate fecha, long log, DimMaquina maquina, DimMaquinista maquinista, String turno) {
+        ProductionRow fp = new ProductionRow();
+        fp.setFechaContabilizacion(fecha);
+        fp.setMaquinaId(maquina.getId());
+        fp.setMaquinistaId(maquinista != null ? maquinista.getId() : 0);
+        fp.setNumeroLog(log);
+        fp.setHoraContabilizacion(LocalTime.of(6, 0));
+        fp.setFechaNotificacion(fecha);
+        fp.setMaterialSku(1L);
+        fp.setCantidad(new BigDecimal("2.5000").add(BigDecimal.valueOf(log % 7)));
+        fp.setPesoNeto(new BigDecimal("1.0000"));
+        fp.setTurno(turno);
+        return fp;
+    }
 }
@@ -0,0 +1,204 @@
+package com.cambiaso.ioc.persistence.repository;
+
+import com.cambiaso.ioc.persistence.entity.DimMaquina;
+import com.cambiaso.ioc.persistence.entity.DimMaquinista;
+import com.cambiaso.ioc.persistence.entity.FactProduction;
+import com.cambiaso.ioc.service.DataSyncService;
+import com.cambiaso.ioc.service.etl.ProductionBatch;
+import com.cambiaso.ioc.service.etl.ProductionRow;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+@DisplayName("FactProductionBulkRepository Tests")
+class FactProductionBulkRepositoryTest {
+
+    @Autowired
+    private FactProductionBulkRepository bulkRepository;
+    @Autowired
+    private FactProductionRepository factProductionRepository;
+    @Autowired
+    private DimMaquinaRepository dimMaquinaRepository;
+    @Autowired
+    private DimMaquinistaRepository dimMaquinistaRepository;
+    @Autowired
+    private DataSyncService dataSyncService;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private DimMaquina maquina;
+    private DimMaquinista maquinista;
+
+    @BeforeEach
+    void setUp() {
+        factProductionRepository.deleteAll();
+        // La BD en memoria es compartida entre contextos de test y create-drop reinicia la secuencia, mientras el
+        // optimizador pooled de Hibernate de este contexto conserva su bloque en memoria: se salta por encima.
+        jdbcTemplate.execute("ALTER SEQUENCE fact_production_id_seq RESTART WITH 1000001");
+        maquina = new DimMaquina();
+        maquina.setCodigoMaquina("M-BULK");
+        maquina.setNombreMaquina("Maquina bulk");
+        maquina = dimMaquinaRepository.saveAndFlush(maquina);
+        maquinista = new DimMaquinista();
+        maquinista.setCodigoMaquinista(4711L);
+        maquinista.setNombreCompleto("Operador Bulk");
+        maquinista = dimMaquinistaRepository.saveAndFlush(maquinista);
+    }
+
+    private ProductionRow fact(LocalDate date, long log) {
+        ProductionRow fp = new ProductionRow();
+        fp.setFechaContabilizacion(date);
+        fp.setMaquinaId(maquina.getId());
+        fp.setNumeroLog(log);
+        fp.setHoraContabilizacion(LocalTime.of(7, 30, 15));
+        fp.setFechaNotificacion(date);
+        fp.setMaterialSku(123L);
+        fp.setCantidad(new BigDecimal("10.5000"));
+        fp.setPesoNeto(new BigDecimal("1.2500"));
+        fp.setTurno("A");
+        return fp;
+    }
+
+    private FactProduction entity(LocalDate date, long log) {
+        FactProduction fp = new FactProduction();
+        fp.setFechaContabilizacion(date);
+        fp.setMaquina(maquina);
+        fp.setNumeroLog(log);
+        fp.setHoraContabilizacion(LocalTime.of(7, 30, 15));
+        fp.setFechaNotificacion(date);
+        fp.setMaterialSku(123L);
+        fp.setCantidad(new BigDecimal("10.5000"));
+        fp.setPesoNeto(new BigDecimal("1.2500"));
+        fp.setTurno("A");
+        return fp;
+    }
+
+    @Test
+    @DisplayName("insertAll persiste todas las columnas y asigna ids únicos")
+    void insertAll_persistsRowsWithIds() {
+        List<ProductionRow> records = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            records.add(fact(LocalDate.of(2025, 3, 1 + i % 28), i));
+        }
+        ProductionRow full = records.get(0);
+        full.setMaquinistaId(maquinista.getId());
+        full.setDocumento(99L);
+        full.setMaterialDescripcion("Caja \"grande\", 12u");
+        full.setNumeroPallet(7);
+        full.setLista("L1");
+        full.setVersionProduccion("V01");
+        full.setCentroCostos(5000L);
+        full.setJornada("D");
+        full.setUsuarioSap("JPEREZ");
+        full.setBodeguero("BOD1");
+        full.setStatusOrigen("OK");
+
+        int inserted = bulkRepository.insertAll(records);
+        entityManager.clear();
+
+        assertThat(inserted).isEqualTo(250);
+        assertThat(factProductionRepository.count()).isEqualTo(250);
+        Set<Long> ids = new HashSet<>();
+        records.forEach(r -> ids.add(r.getId()));
+        assertThat(ids).hasSize(250).doesNotContain(0L);
+
+        FactProduction loaded = factProductionRepository.findById(full.getId()).orElseThrow();
+        assertThat(loaded.getMaquinista().getId()).isEqualTo(maquinista.getId());
+        assertThat(loaded.getMaterialDescripcion()).isEqualTo("Caja \"grande\", 12u");
+        assertThat(loaded.getHoraContabilizacion()).isEqualTo(LocalTime.of(7, 30, 15));
+        assertThat(loaded.getCantidad()).isEqualByComparingTo("10.5");
+        assertThat(loaded.getStatusOrigen()).isEqualTo("OK");
+        assertThat(factProductionRepository.findById(records.get(1).getId()).orElseThrow().getMaquinista()).isNull();
+    }
+
+    @Test
+    @DisplayName("ids de la carga bulk no colisionan con los que asigna Hibernate")
+    void insertAll_idsDoNotCollideWithJpa() {
+        List<ProductionRow> bulk = List.of(fact(LocalDate.of(2025, 4, 1), 1), fact(LocalDate.of(2025, 4, 1), 2));
+        bulkRepository.insertAll(bulk);
+        List<FactProduction> jpa = factProductionRepository.saveAllAndFlush(
+                List.of(entity(LocalDate.of(2025, 4, 2), 1), entity(LocalDate.of(2025, 4, 2), 2)));
+        bulkRepository.insertAll(List.of(fact(LocalDate.of(2025, 4, 3), 1)));
+        entityManager.clear();
+
+        assertThat(factProductionRepository.count()).isEqualTo(5);
+        Set<Long> ids = new HashSet<>();
+        bulk.forEach(r -> ids.add(r.getId()));
+        jpa.forEach(r -> ids.add(r.getId()));
+        assertThat(ids).hasSize(4);
+    }
+
+    @Test
+    @DisplayName("DataSyncService con loader=copy mantiene la semántica delete-insert")
+    void syncWithDeleteInsert_usesBulkLoader() {
+        factProductionRepository.saveAllAndFlush(List.of(entity(LocalDate.of(2025, 5, 10), 1), entity(LocalDate.of(2025, 5, 20), 2)));
+        Object previous = ReflectionTestUtils.getField(dataSyncService, "syncLoader");
+        ReflectionTestUtils.setField(dataSyncService, "syncLoader", "copy");
+        try {
+            dataSyncService.syncWithDeleteInsert(LocalDate.of(2025, 5, 1), LocalDate.of(2025, 5, 31),
+                    List.of(fact(LocalDate.of(2025, 5, 15), 3)));
+        } finally {
+            ReflectionTestUtils.setField(dataSyncService, "syncLoader", previous);
+        }
+        entityManager.clear();
+
+        List<FactProduction> all = factProductionRepository.findAll();
+        assertThat(all).hasSize(1);
+        assertThat(all.get(0).getNumeroLog()).isEqualTo(3L);
+    }
+
+    @Test
+    @DisplayName("forEachKeyInRange informa content_hash NULL como null y no como 0")
+    void forEachKeyInRange_reportsNullHashPerColumn() {
+        LocalDate day = LocalDate.of(2025, 6, 3);
+        FactProduction legacy = entity(day, 1); // cargada antes de content_hash: hash NULL
+        FactProduction hashed = entity(day, 2);
+        hashed.setContentHash(12345L);
+        factProductionRepository.saveAllAndFlush(List.of(legacy, hashed));
+
+        Map<Long, Long> hashes = new HashMap<>();
+        bulkRepository.forEachKeyInRange(day, day, (id, fecha, maquinaFk, maquinistaFk, numeroLog, contentHash) ->
+                hashes.put(id, contentHash));
+
+        assertThat(hashes).hasSize(2).containsEntry(legacy.getId(), null).containsEntry(hashed.getId(), 12345L);
+    }
+
+    @Test
+    @DisplayName("fila CSV para COPY: nulos sin comillas, texto entre comillas con escape")
+    void appendCsvRow_formatsNullsAndQuotes() {
+        ProductionRow fp = fact(LocalDate.of(2025, 1, 2), 42);
+        fp.setId(101L);
+        fp.setMaterialDescripcion("A \"B\", C");
+        fp.setLista("");
+        StringBuilder sb = new StringBuilder();
+
+        FactProductionBulkRepository.appendCsvRow(sb, ProductionBatch.of(List.of(fp)), 0);
+
+        assertThat(sb.toString()).isEqualTo("101,2025-01-02," + maquina.getId()
+                + ",,42,07:30:15,2025-01-02,,123,\"A \"\"B\"\", C\",,10.5000,1.2500,\"\",,,\"A\",,,,,\n");
+    }
+}
@@ -7,6 +7,7 @@ import com.cambiaso.ioc.persistence.entity.FactProduction;
 import com.cambiaso.ioc.persistence.repository.DimMaquinaRepository;
 import com.cambiaso.ioc.persistence.repository.DimMaquinistaRepository;
 import com.cambiaso.ioc.persistence.repository.FactProductionRepository;
+import com.cambiaso.ioc.service.etl.ProductionRow;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -92,11 +93,11 @@ class AdvisoryLockSerializationTest {
         jdbcTemplate.execute("DELETE FROM dim_maquina");
     }
 
-    private FactProduction build(LocalDate date, long nLog) {
-        FactProduction f = new FactProduction();
+    private ProductionRow build(LocalDate date, long nLog) {
+        ProductionRow f = new ProductionRow();
         f.setFechaContabilizacion(date);
-        f.setMaquina(maquina);
-        f.setMaquinista(maquinista);
+        f.setMaquinaId(maquina.getId());
+        f.setMaquinistaId(maquinista.getId());
         f.setNumeroLog(nLog);
         f.setHoraContabilizacion(LocalTime.of(7,30,0));
         f.setFechaNotificacion(date.plusDays(1));
@@ -112,8 +113,8 @@ class AdvisoryLockSerializationTest {
     @DisplayName("Advisory lock: serie sin mezcla (gana uno de los lotes) y un hilo espera el delay")
     void advisoryLockBlocksSecondAndLastBatchWins() throws Exception {
         LocalDate date = LocalDate.of(2025, 9, 1);
-        List<FactProduction> batchA = List.of(build(date, 5001L), build(date,5002L));
-        List<FactProduction> batchB = List.of(build(date, 6001L), build(date,6002L));
+        List<ProductionRow> batchA = List.of(build(date, 5001L), build(date,5002L));
+        List<ProductionRow> batchB = List.of(build(date, 6001L), build(date,6002L));
 
         ExecutorService pool = Executors.newFixedThreadPool(2);
         CountDownLatch startLatch = new CountDownLatch(1);
@@ -157,6 +158,65 @@ class AdvisoryLockSerializationTest {
                 .isTrue();
     }
 
+    @Test
+    @DisplayName("Rangos distintos que se solapan se serializan (comparten un mes)")
+    void overlappingDifferentRangesAreSerialized() throws Exception {
+        LocalDate d1 = LocalDate.of(2025, 9, 1);
+        LocalDate d2 = LocalDate.of(2025, 9, 2);
+        LocalDate d3 = LocalDate.of(2025, 9, 3);
+
+        long[] durations = runConcurrently(
+                () -> dataSyncService.syncWithDeleteInsert(d1, d2, List.of(build(d1, 5101L), build(d2, 5102L))),
+                () -> dataSyncService.syncWithDeleteInsert(d2, d3, List.of(build(d2, 6101L), build(d3, 6102L))));
+
+        assertThat(Math.max(durations[0], durations[1]))
+                .as("La segunda carga debe esperar el lock del mes (>=800ms). durA=%d durB=%d", durations[0], durations[1])
+                .isGreaterThanOrEqualTo(800);
+        assertThat(factProductionRepository.findAll().stream().filter(f -> f.getFechaContabilizacion().equals(d2)).count())
+                .as("El día compartido queda con las filas de una sola de las cargas")
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Cargas de meses disjuntos corren en paralelo")
+    void disjointMonthsRunInParallel() throws Exception {
+        LocalDate sep = LocalDate.of(2025, 9, 10);
+        LocalDate oct = LocalDate.of(2025, 10, 10);
+
+        long[] durations = runConcurrently(
+                () -> dataSyncService.syncWithDeleteInsert(sep, sep, List.of(build(sep, 5201L))),
+                () -> dataSyncService.syncWithDeleteInsert(oct, oct, List.of(build(oct, 6201L))));
+
+        assertThat(Math.max(durations[0], durations[1]))
+                .as("Ninguna carga debe esperar a la otra (<800ms). durA=%d durB=%d", durations[0], durations[1])
+                .isLessThan(800);
+        assertThat(factProductionRepository.findAll()).hasSize(2);
+    }
+
+    // Ejecuta ambas tareas a la vez y devuelve la duración de cada una en ms
+    private long[] runConcurrently(Runnable a, Runnable b) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        long[] durations = new long[2];
+        Future<?> fa = pool.submit(() -> {
+            await(startLatch);
+            Instant start = Instant.now();
+            a.run();
+            durations[0] = Duration.between(start, Instant.now()).toMillis();
+        });
+        Future<?> fb = pool.submit(() -> {
+            await(startLatch);
+            Instant start = Instant.now();
+            b.run();
+            durations[1] = Duration.between(start, Instant.now()).toMillis();
+        });
+        startLatch.countDown();
+        fa.get();
+        fb.get();
+        pool.shutdown();
+        return durations;
+    }
+
     private void await(CountDownLatch latch) {
         try { latch.await(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
     }
@@ -0,0 +1,109 @@
+package com.cambiaso.ioc.service;
+
+import com.cambiaso.ioc.persistence.repository.AnalyticsMaterializedViewRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@DisplayName("AnalyticsViewRefreshService Tests")
+class AnalyticsViewRefreshServiceTest {
+
+    private AnalyticsMaterializedViewRepository repository;
+    private SimpleMeterRegistry meterRegistry;
+    private AnalyticsViewRefreshService service;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(AnalyticsMaterializedViewRepository.class);
+        when(repository.isAvailable()).thenReturn(true);
+        meterRegistry = new SimpleMeterRegistry();
+        service = new AnalyticsViewRefreshService(repository, meterRegistry);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "debounceMs", 200L);
+        ReflectionTestUtils.setField(service, "maxWaitMs", 5000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdownScheduler();
+    }
+
+    @Test
+    @DisplayName("Jobs finishing close together share a single refresh")
+    void requestsWithinDebounceAreCoalesced() throws Exception {
+        CountDownLatch refreshed = new CountDownLatch(1);
+        doAnswer(inv -> {
+            refreshed.countDown();
+            return null;
+        }).when(repository).refreshAll();
+
+        service.requestRefresh();
+        service.requestRefresh();
+        service.requestRefresh();
+        assertThat(service.stalenessSeconds()).isGreaterThanOrEqualTo(0.0);
+        verify(repository, never()).refreshAll(); // el ETL no espera al refresh
+
+        assertThat(refreshed.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(400); // margen para un segundo refresh (no debería ocurrir)
+
+        verify(repository, times(1)).refreshAll();
+        assertThat(service.stalenessSeconds()).isZero();
+        assertThat(meterRegistry.timer("analytics.matview.refresh.duration", "result", "success").count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("A steady stream of requests is refreshed once max-wait elapses")
+    void maxWaitBoundsTheDelay() throws Exception {
+        ReflectionTestUtils.setField(service, "maxWaitMs", 300L);
+        CountDownLatch refreshed = new CountDownLatch(1);
+        doAnswer(inv -> {
+            refreshed.countDown();
+            return null;
+        }).when(repository).refreshAll();
+
+        long deadline = System.currentTimeMillis() + 1000;
+        while (System.currentTimeMillis() < deadline && refreshed.getCount() > 0) {
+            service.requestRefresh(); // cada pedido posterga el debounce de 200 ms
+            Thread.sleep(50);
+        }
+
+        assertThat(refreshed.getCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("A failed refresh is recorded and leaves the views stale")
+    void failedRefreshKeepsViewsStale() throws Exception {
+        ReflectionTestUtils.setField(service, "debounceMs", 0L);
+        doThrow(new IllegalStateException("lock timeout")).when(repository).refreshAll();
+
+        service.requestRefresh();
+        service.refreshNow();
+
+        assertThat(meterRegistry.timer("analytics.matview.refresh.duration", "result", "failure").count()).isGreaterThanOrEqualTo(1);
+        Thread.sleep(20);
+        assertThat(service.stalenessSeconds()).isPositive();
+        assertThat(meterRegistry.get("analytics.matview.staleness").gauge().value()).isPositive();
+    }
+
+    @Test
+    @DisplayName("Nothing is scheduled when the views do not exist")
+    void missingViewsAreIgnored() throws Exception {
+        when(repository.isAvailable()).thenReturn(false);
+        ReflectionTestUtils.setField(service, "debounceMs", 0L);
+
+        service.requestRefresh();
+        Thread.sleep(100);
+
+        verify(repository, never()).refreshAll();
+        assertThat(service.stalenessSeconds()).isZero();
+    }
+}
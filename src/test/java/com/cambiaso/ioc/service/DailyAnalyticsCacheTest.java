@@ -0,0 +1,190 @@
+package com.cambiaso.ioc.service;
+
+import com.cambiaso.ioc.config.CacheConfig;
+import com.cambiaso.ioc.dto.analytics.AnalyticsBundleDto;
+import com.cambiaso.ioc.persistence.entity.DimMaquina;
+import com.cambiaso.ioc.persistence.entity.DimMaquinista;
+import com.cambiaso.ioc.persistence.repository.DashboardAnalyticsRepository;
+import com.cambiaso.ioc.persistence.repository.DimMaquinaRepository;
+import com.cambiaso.ioc.persistence.repository.DimMaquinistaRepository;
+import com.cambiaso.ioc.persistence.repository.FactProductionRepository;
+import com.cambiaso.ioc.service.etl.ProductionRow;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * La invalidación ocurre tras el commit de la carga, así que esta clase no es @Transactional y limpia sus datos
+ * al terminar.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@DisplayName("DailyAnalyticsCache Tests")
+class DailyAnalyticsCacheTest {
+
+    @Autowired
+    private DailyAnalyticsCache dailyAnalyticsCache;
+    @Autowired
+    private DashboardAnalyticsRepository analyticsRepository;
+    @Autowired
+    private DataSyncService dataSyncService;
+    @Autowired
+    private FactProductionRepository factProductionRepository;
+    @Autowired
+    private DimMaquinaRepository dimMaquinaRepository;
+    @Autowired
+    private DimMaquinistaRepository dimMaquinistaRepository;
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private DimMaquina maquinaA;
+    private DimMaquina maquinaB;
+    private DimMaquinista maquinista;
+
+    @BeforeEach
+    void setUp() {
+        factProductionRepository.deleteAll();
+        jdbcTemplate.update("DELETE FROM fact_production_daily");
+        // Ver FactProductionBulkRepositoryTest: evita solapar el bloque en memoria de Hibernate tras un create-drop
+        jdbcTemplate.execute("ALTER SEQUENCE fact_production_id_seq RESTART WITH 3000001");
+        cacheManager.getCache(CacheConfig.DAILY_ANALYTICS_CACHE).clear();
+        maquinaA = saveMaquina("M-DAY-A");
+        maquinaB = saveMaquina("M-DAY-B");
+        maquinista = new DimMaquinista();
+        maquinista.setCodigoMaquinista(7301L);
+        maquinista.setNombreCompleto("Operador Cache");
+        maquinista = dimMaquinistaRepository.saveAndFlush(maquinista);
+    }
+
+    @AfterEach
+    void tearDown() {
+        factProductionRepository.deleteAll();
+        jdbcTemplate.update("DELETE FROM fact_production_daily");
+        dimMaquinaRepository.deleteAll(List.of(maquinaA, maquinaB));
+        dimMaquinistaRepository.delete(maquinista);
+    }
+
+    private DimMaquina saveMaquina(String codigo) {
+        DimMaquina m = new DimMaquina();
+        m.setCodigoMaquina(codigo);
+        m.setNombreMaquina("Maquina " + codigo);
+        return dimMaquinaRepository.saveAndFlush(m);
+    }
+
+    private ProductionRow fact(LocalDate date, long log, DimMaquina maquina, String cantidad) {
+        ProductionRow fp = new ProductionRow();
+        fp.setFechaContabilizacion(date);
+        fp.setMaquinaId(maquina.getId());
+        fp.setMaquinistaId(log % 2 == 0 ? maquinista.getId() : 0);
+        fp.setNumeroLog(log);
+        fp.setHoraContabilizacion(LocalTime.NOON);
+        fp.setFechaNotificacion(date);
+        fp.setMaterialSku(123L);
+        fp.setCantidad(new BigDecimal(cantidad));
+        fp.setPesoNeto(BigDecimal.ONE);
+        fp.setTurno(log % 3 == 0 ? "A" : "B");
+        return fp;
+    }
+
+    private void loadMarch2023() {
+        List<ProductionRow> rows = new ArrayList<>();
+        for (int i = 0; i < 62; i++) {
+            rows.add(fact(LocalDate.of(2023, 3, 1 + i % 31), i, i % 4 == 0 ? maquinaB : maquinaA, (i + 1) + ".5"));
+        }
+        dataSyncService.syncWithDeleteInsert(LocalDate.of(2023, 3, 1), LocalDate.of(2023, 3, 31), rows);
+    }
+
+    private double misses() {
+        return meterRegistry.counter("analytics.daily.cache", "result", "miss").count();
+    }
+
+    private static void assertSameBundle(AnalyticsBundleDto actual, AnalyticsBundleDto expected) {
+        assertThat(actual.totals().totalRegistros()).isEqualTo(expected.totals().totalRegistros());
+        assertThat(actual.totals().totalUnidades()).isEqualByComparingTo(expected.totals().totalUnidades());
+        assertThat(actual.totals().pesoNetoTotal()).isEqualByComparingTo(expected.totals().pesoNetoTotal());
+        assertThat(actual.topMaquinas()).extracting(m -> m.maquinaCodigo() + "=" + m.totalUnidades().stripTrailingZeros().toPlainString() + "/" + m.numRegistros())
+                .containsExactlyElementsOf(expected.topMaquinas().stream()
+                        .map(m -> m.maquinaCodigo() + "=" + m.totalUnidades().stripTrailingZeros().toPlainString() + "/" + m.numRegistros()).toList());
+        assertThat(actual.topOperarios()).extracting(o -> o.codigoMaquinista() + "=" + o.totalUnidades().stripTrailingZeros().toPlainString())
+                .containsExactlyElementsOf(expected.topOperarios().stream()
+                        .map(o -> o.codigoMaquinista() + "=" + o.totalUnidades().stripTrailingZeros().toPlainString()).toList());
+        assertThat(actual.distribucionTurno()).extracting(t -> t.turno() + "=" + t.totalUnidades().stripTrailingZeros().toPlainString())
+                .containsExactlyElementsOf(expected.distribucionTurno().stream()
+                        .map(t -> t.turno() + "=" + t.totalUnidades().stripTrailingZeros().toPlainString()).toList());
+        assertThat(actual.tendenciaDiaria()).extracting(p -> p.fecha() + "=" + p.totalUnidades().stripTrailingZeros().toPlainString())
+                .containsExactlyElementsOf(expected.tendenciaDiaria().stream()
+                        .map(p -> p.fecha() + "=" + p.totalUnidades().stripTrailingZeros().toPlainString()).toList());
+    }
+
+    @Test
+    @DisplayName("Overlapping ranges reuse cached days and match the database aggregates")
+    void overlappingRangesShareCachedDays() {
+        loadMarch2023();
+        LocalDate from = LocalDate.of(2023, 3, 1);
+
+        double before = misses();
+        AnalyticsBundleDto thirty = dailyAnalyticsCache.fetchBundle(from, LocalDate.of(2023, 3, 30));
+        assertThat(misses() - before).isEqualTo(30);
+
+        before = misses();
+        AnalyticsBundleDto thirtyOne = dailyAnalyticsCache.fetchBundle(from, LocalDate.of(2023, 3, 31));
+        assertThat(misses() - before).isEqualTo(1); // solo el día nuevo va a la base
+
+        assertSameBundle(thirty, analyticsRepository.fetchAnalyticsBundle(from, LocalDate.of(2023, 3, 30)));
+        assertSameBundle(thirtyOne, analyticsRepository.fetchAnalyticsBundle(from, LocalDate.of(2023, 3, 31)));
+        assertThat(thirtyOne.totals().totalRegistros()).isEqualTo(62L);
+    }
+
+    @Test
+    @DisplayName("A sync invalidates exactly the rewritten days after commit")
+    void syncInvalidatesRewrittenDays() {
+        loadMarch2023();
+        LocalDate from = LocalDate.of(2023, 3, 1);
+        LocalDate to = LocalDate.of(2023, 3, 31);
+        dailyAnalyticsCache.fetchBundle(from, to);
+
+        LocalDate mar15 = LocalDate.of(2023, 3, 15);
+        dataSyncService.syncWithDeleteInsert(mar15, mar15, List.of(fact(mar15, 1000, maquinaB, "5000")));
+
+        double before = misses();
+        AnalyticsBundleDto after = dailyAnalyticsCache.fetchBundle(from, to);
+        assertThat(misses() - before).isEqualTo(1);
+        assertSameBundle(after, analyticsRepository.fetchAnalyticsBundle(from, to));
+        assertThat(after.topMaquinas().get(0).maquinaCodigo()).isEqualTo("M-DAY-B");
+    }
+
+    @Test
+    @DisplayName("Today and future days are never cached")
+    void currentDaysAreNotCached() {
+        LocalDate today = LocalDate.now();
+        LocalDate from = today.minusDays(2);
+        LocalDate to = today.plusDays(1);
+        dataSyncService.syncWithDeleteInsert(from, today, List.of(
+                fact(from, 1, maquinaA, "10"), fact(today, 2, maquinaA, "20")));
+
+        dailyAnalyticsCache.fetchBundle(from, to);
+        double before = misses();
+        AnalyticsBundleDto again = dailyAnalyticsCache.fetchBundle(from, to);
+        assertThat(misses() - before).isEqualTo(2); // hoy y mañana vuelven a la base
+        assertSameBundle(again, analyticsRepository.fetchAnalyticsBundle(from, to));
+    }
+}
@@ -6,6 +6,7 @@ import com.cambiaso.ioc.persistence.entity.FactProduction;
 import com.cambiaso.ioc.persistence.repository.DimMaquinaRepository;
 import com.cambiaso.ioc.persistence.repository.DimMaquinistaRepository;
 import com.cambiaso.ioc.persistence.repository.FactProductionRepository;
+import com.cambiaso.ioc.service.etl.ProductionRow;
 import org.junit.jupiter.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -95,11 +96,11 @@ class DataSyncConcurrencyIT {
         jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS uq_fact_prod_natural ON fact_production (fecha_contabilizacion, maquina_fk, COALESCE(maquinista_fk,0), numero_log)");
     }
 
-    private FactProduction build(LocalDate date, long numeroLog) {
-        FactProduction fp = new FactProduction();
+    private ProductionRow build(LocalDate date, long numeroLog) {
+        ProductionRow fp = new ProductionRow();
         fp.setFechaContabilizacion(date);
-        fp.setMaquina(maquina);
-        fp.setMaquinista(maquinista);
+        fp.setMaquinaId(maquina.getId());
+        fp.setMaquinistaId(maquinista.getId());
         fp.setNumeroLog(numeroLog);
         fp.setHoraContabilizacion(LocalTime.of(8,0,0));
         fp.setFechaNotificacion(date.plusDays(1));
@@ -116,8 +117,8 @@ class DataSyncConcurrencyIT {
     @DisplayName("Advisory lock serializa syncs solapados: no mezcla datasets ni duplica filas")
     void advisoryLockSerializesOverlappingRanges() throws Exception {
         LocalDate date = LocalDate.of(2025,8,30);
-        List<FactProduction> batch1 = List.of(build(date, 111L), build(date,112L));
-        List<FactProduction> batch2 = List.of(build(date, 113L), build(date,114L));
+        List<ProductionRow> batch1 = List.of(build(date, 111L), build(date,112L));
+        List<ProductionRow> batch2 = List.of(build(date, 113L), build(date,114L));
 
         ExecutorService exec = Executors.newFixedThreadPool(2);
         CountDownLatch startLatch = new CountDownLatch(1);
@@ -159,7 +160,7 @@ class DataSyncConcurrencyIT {
         // Desactivar lock por reflexión para permitir carrera
         disableLock();
         LocalDate date = LocalDate.of(2025,8,31);
-        List<FactProduction> batch = List.of(build(date, 200L), build(date,201L));
+        List<ProductionRow> batch = List.of(build(date, 200L), build(date,201L));
 
         ExecutorService exec = Executors.newFixedThreadPool(2);
         CountDownLatch latch = new CountDownLatch(1);
@@ -180,13 +181,13 @@ class DataSyncConcurrencyIT {
         try { latch.await(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
     }
 
-    private List<FactProduction> deepCopy(List<FactProduction> original) {
-        List<FactProduction> copy = new ArrayList<>();
-        for (FactProduction o : original) {
-            FactProduction c = new FactProduction();
+    private List<ProductionRow> deepCopy(List<ProductionRow> original) {
+        List<ProductionRow> copy = new ArrayList<>();
+        for (ProductionRow o : original) {
+            ProductionRow c = new ProductionRow();
             c.setFechaContabilizacion(o.getFechaContabilizacion());
-            c.setMaquina(maquina); // reattach managed dimension
-            c.setMaquinista(maquinista);
+            c.setMaquinaId(maquina.getId());
+            c.setMaquinistaId(maquinista.getId());
             c.setNumeroLog(o.getNumeroLog());
             c.setHoraContabilizacion(o.getHoraContabilizacion());
             c.setFechaNotificacion(o.getFechaNotificacion());
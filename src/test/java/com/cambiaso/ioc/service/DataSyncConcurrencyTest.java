@@ -6,6 +6,7 @@ import com.cambiaso.ioc.persistence.entity.FactProduction;
 import com.cambiaso.ioc.persistence.repository.DimMaquinaRepository;
 import com.cambiaso.ioc.persistence.repository.DimMaquinistaRepository;
 import com.cambiaso.ioc.persistence.repository.FactProductionRepository;
+import com.cambiaso.ioc.service.etl.ProductionRow;
 import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -140,11 +141,11 @@ class DataSyncConcurrencyTest {
         }
     }
 
-    private FactProduction build(LocalDate date, long numeroLog) {
-        FactProduction fp = new FactProduction();
+    private ProductionRow build(LocalDate date, long numeroLog) {
+        ProductionRow fp = new ProductionRow();
         fp.setFechaContabilizacion(date);
-        fp.setMaquina(maquina);
-        fp.setMaquinista(maquinista);
+        fp.setMaquinaId(maquina.getId());
+        fp.setMaquinistaId(maquinista.getId());
         fp.setNumeroLog(numeroLog);
         fp.setHoraContabilizacion(LocalTime.of(8,0,0));
         fp.setFechaNotificacion(date.plusDays(1));
@@ -168,10 +169,10 @@ class DataSyncConcurrencyTest {
     void idempotentSequentialWithoutLock() {
         disableLock();
         LocalDate date = LocalDate.of(2025,8,31);
-        List<FactProduction> batch1 = List.of(build(date, 200L), build(date,201L));
+        List<ProductionRow> batch1 = List.of(build(date, 200L), build(date,201L));
         dataSyncService.syncWithDeleteInsert(date, date, batch1);
         // Re-crear nuevas instancias (IDs anteriores quedarían stale tras DELETE)
-        List<FactProduction> batch2 = List.of(build(date, 200L), build(date,201L));
+        List<ProductionRow> batch2 = List.of(build(date, 200L), build(date,201L));
         dataSyncService.syncWithDeleteInsert(date, date, batch2);
         List<Long> logs = factProductionRepository.findAll().stream()
                 .filter(fp -> fp.getFechaContabilizacion().equals(date))
@@ -188,7 +189,7 @@ class DataSyncConcurrencyTest {
         enableSyncTestSleep(300L); // induce overlap after delete before inserts
 
         LocalDate date = LocalDate.of(2025,9,1);
-        List<FactProduction> batch = List.of(build(date, 1000L), build(date,1001L), build(date,1002L));
+        List<ProductionRow> batch = List.of(build(date, 1000L), build(date,1001L), build(date,1002L));
 
         double attemptsBefore = meterRegistry.counter("etl.sync.attempts").count();
         double collisionsBefore = meterRegistry.counter("etl.sync.collisions").count();
@@ -0,0 +1,101 @@
+package com.cambiaso.ioc.service;
+
+import com.cambiaso.ioc.persistence.entity.DimMaquina;
+import com.cambiaso.ioc.persistence.entity.FactProduction;
+import com.cambiaso.ioc.persistence.repository.DimMaquinaRepository;
+import com.cambiaso.ioc.persistence.repository.FactProductionBulkRepository;
+import com.cambiaso.ioc.persistence.repository.FactProductionRepository;
+import com.cambiaso.ioc.service.etl.ProductionRow;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * La carga vía staging ejecuta DDL (CREATE/DROP de la tabla de staging), que en H2 confirma la transacción
+ * en curso; por eso esta clase no es @Transactional y limpia sus datos al terminar.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@DisplayName("DataSyncService staging load Tests")
+class DataSyncServiceStagingTest {
+
+    @Autowired
+    private DataSyncService dataSyncService;
+    @Autowired
+    private FactProductionRepository factProductionRepository;
+    @Autowired
+    private FactProductionBulkRepository bulkRepository;
+    @Autowired
+    private DimMaquinaRepository dimMaquinaRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private DimMaquina maquina;
+
+    @BeforeEach
+    void setUp() {
+        factProductionRepository.deleteAll();
+        // Ver FactProductionBulkRepositoryTest: evita solapar el bloque en memoria de Hibernate tras un create-drop
+        jdbcTemplate.execute("ALTER SEQUENCE fact_production_id_seq RESTART WITH 2000001");
+        maquina = new DimMaquina();
+        maquina.setCodigoMaquina("M-STAGE");
+        maquina.setNombreMaquina("Maquina staging");
+        maquina = dimMaquinaRepository.saveAndFlush(maquina);
+    }
+
+    @AfterEach
+    void tearDown() {
+        factProductionRepository.deleteAll();
+        dimMaquinaRepository.delete(maquina);
+    }
+
+    private ProductionRow fact(LocalDate date, long log) {
+        ProductionRow fp = new ProductionRow();
+        fp.setFechaContabilizacion(date);
+        fp.setMaquinaId(maquina.getId());
+        fp.setNumeroLog(log);
+        fp.setHoraContabilizacion(LocalTime.NOON);
+        fp.setFechaNotificacion(date);
+        fp.setMaterialSku(123L);
+        fp.setCantidad(BigDecimal.TEN);
+        fp.setPesoNeto(BigDecimal.ONE);
+        fp.setTurno("A");
+        return fp;
+    }
+
+    @Test
+    @DisplayName("Should swap the window from staging, dropping invalid and duplicate rows")
+    void syncViaStaging_shouldReplaceWindowWithCleansedRows() {
+        LocalDate jan10 = LocalDate.of(2025, 1, 10);
+        bulkRepository.insertAll(List.of(fact(jan10, 1), fact(jan10, 2), fact(LocalDate.of(2025, 2, 1), 3)));
+
+        ProductionRow noTurno = fact(jan10, 6);
+        noTurno.setTurno(null);
+        ProductionRow duplicate = fact(jan10, 4);
+        duplicate.setCantidad(new BigDecimal("99"));
+        DataSyncService.SyncResult result = dataSyncService.syncViaStaging(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 31),
+                List.of(fact(jan10, 4), fact(LocalDate.of(2025, 1, 11), 5), duplicate, noTurno));
+
+        assertThat(result.deleted()).isEqualTo(2);
+        assertThat(result.inserted()).isEqualTo(2);
+        List<FactProduction> all = factProductionRepository.findAll();
+        assertThat(all).extracting(FactProduction::getNumeroLog).containsExactlyInAnyOrder(3L, 4L, 5L);
+        assertThat(all).filteredOn(f -> f.getNumeroLog() == 4L).singleElement()
+                .satisfies(f -> assertThat(f.getCantidad()).isEqualByComparingTo("10"));
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.tables WHERE LOWER(table_name) LIKE 'fact_production_stage_%'", Integer.class))
+                .isZero();
+    }
+}
@@ -4,21 +4,35 @@ import com.cambiaso.ioc.persistence.entity.DimMaquina;
 import com.cambiaso.ioc.persistence.entity.FactProduction;
 import com.cambiaso.ioc.persistence.repository.DimMaquinaRepository;
 import com.cambiaso.ioc.persistence.repository.FactProductionRepository;
+import com.cambiaso.ioc.service.etl.ProductionBatch;
+import com.cambiaso.ioc.service.etl.ProductionRow;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.time.YearMonth;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 @SpringBootTest
 @ActiveProfiles("test")
@@ -35,6 +49,12 @@ class DataSyncServiceTest {
     @Autowired
     private DimMaquinaRepository dimMaquinaRepository;
 
+    @SpyBean
+    private EtlRangeLockManager rangeLockManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     private DimMaquina maquina;
 
     @BeforeEach
@@ -64,6 +84,20 @@ class DataSyncServiceTest {
         return fact;
     }
 
+    private ProductionRow createRow(LocalDate date) {
+        ProductionRow row = new ProductionRow();
+        row.setFechaContabilizacion(date);
+        row.setMaquinaId(maquina.getId());
+        row.setNumeroLog(1L);
+        row.setHoraContabilizacion(LocalTime.NOON);
+        row.setFechaNotificacion(date);
+        row.setMaterialSku(123L);
+        row.setCantidad(BigDecimal.TEN);
+        row.setPesoNeto(BigDecimal.ONE);
+        row.setTurno("A");
+        return row;
+    }
+
     @Test
     @DisplayName("Should replace existing data in date range")
     void syncWithDeleteInsert_shouldReplaceExistingData() {
@@ -74,7 +108,7 @@ class DataSyncServiceTest {
         assertThat(factProductionRepository.count()).isEqualTo(2);
 
         // Act: sync new data for January
-        FactProduction newRecord = createFactProduction(LocalDate.of(2025, 1, 15));
+        ProductionRow newRecord = createRow(LocalDate.of(2025, 1, 15));
         dataSyncService.syncWithDeleteInsert(
                 LocalDate.of(2025, 1, 1),
                 LocalDate.of(2025, 1, 31),
@@ -108,6 +142,157 @@ class DataSyncServiceTest {
         assertThat(allFacts.get(0).getFechaContabilizacion()).isEqualTo(LocalDate.of(2025, 2, 15));
     }
 
+    @Test
+    @DisplayName("Streaming sync should replace touched days and empty gaps inside the streamed range")
+    void syncStreaming_shouldReplaceStreamedWindow() {
+        // Arrange: existing data inside (Jan 10, Jan 12) and outside (Feb 1) the streamed window
+        factProductionRepository.saveAllAndFlush(List.of(
+                createFactProduction(LocalDate.of(2025, 1, 10)),
+                createFactProduction(LocalDate.of(2025, 1, 12)),
+                createFactProduction(LocalDate.of(2025, 2, 1))));
+
+        // Act: two chunks covering Jan 10 and Jan 14 (Jan 12 has no rows in the new file)
+        Integer emitted = dataSyncService.syncStreaming(sink -> {
+            sink.accept(ProductionBatch.of(List.of(createRow(LocalDate.of(2025, 1, 14)))));
+            sink.accept(ProductionBatch.of(List.of(createRow(LocalDate.of(2025, 1, 10)))));
+            return 2;
+        });
+
+        // Assert
+        assertThat(emitted).isEqualTo(2);
+        assertThat(factProductionRepository.findAll())
+                .extracting(FactProduction::getFechaContabilizacion)
+                .containsExactlyInAnyOrder(LocalDate.of(2025, 1, 10), LocalDate.of(2025, 1, 14), LocalDate.of(2025, 2, 1));
+    }
+
+    @Test
+    @DisplayName("Merge sync should insert new, update changed, keep unchanged and delete missing rows")
+    void syncMerge_shouldApplyDifferentialChanges() {
+        // Arrange: a first load of logs 1..3 on Jan 10 (content_hash is filled by the sync itself)
+        LocalDate day = LocalDate.of(2025, 1, 10);
+        dataSyncService.syncMerge(day, day, List.of(withLog(day, 1), withLog(day, 2), withLog(day, 3)));
+        Long unchangedId = idOfLog(1L);
+        Long updatedId = idOfLog(2L);
+
+        // Act: log 1 identical, log 2 with a new quantity, log 3 gone, log 4 new
+        ProductionRow changed = withLog(day, 2);
+        changed.setCantidad(new BigDecimal("99"));
+        DataSyncService.SyncResult result = dataSyncService.syncMerge(day, day,
+                List.of(withLog(day, 1), changed, withLog(day, 4)));
+
+        // Assert
+        assertThat(result).isEqualTo(new DataSyncService.SyncResult(1, 1, 1, 1));
+        assertThat(factProductionRepository.findAll())
+                .extracting(FactProduction::getNumeroLog)
+                .containsExactlyInAnyOrder(1L, 2L, 4L);
+        assertThat(idOfLog(1L)).isEqualTo(unchangedId);
+        assertThat(idOfLog(2L)).isEqualTo(updatedId);
+        assertThat(factProductionRepository.findById(updatedId).orElseThrow().getCantidad()).isEqualByComparingTo("99");
+    }
+
+    @Test
+    @DisplayName("Merge sync should update rows loaded before content_hash existed")
+    void syncMerge_shouldRewriteRowsWithoutHash() {
+        LocalDate day = LocalDate.of(2025, 3, 5);
+        FactProduction legacy = createFactProduction(day);
+        legacy.setNumeroLog(7L);
+        factProductionRepository.saveAndFlush(legacy);
+
+        DataSyncService.SyncResult result = dataSyncService.syncMerge(day, day, List.of(withLog(day, 7)));
+
+        assertThat(result).isEqualTo(new DataSyncService.SyncResult(0, 1, 0, 0));
+        assertThat(dataSyncService.syncMerge(day, day, List.of(withLog(day, 7))))
+                .isEqualTo(new DataSyncService.SyncResult(0, 0, 1, 0));
+    }
+
+    private ProductionRow withLog(LocalDate date, long log) {
+        ProductionRow row = createRow(date);
+        row.setNumeroLog(log);
+        return row;
+    }
+
+    private Long idOfLog(Long log) {
+        return factProductionRepository.findAll().stream()
+                .filter(f -> log.equals(f.getNumeroLog()))
+                .findFirst().orElseThrow().getId();
+    }
+
+    @Test
+    @DisplayName("Streaming sync should lock a whole month skipped by the file before emptying it")
+    void syncStreaming_shouldLockSkippedMonthsBeforeDeletingGaps() {
+        factProductionRepository.saveAllAndFlush(List.of(createFactProduction(LocalDate.of(2025, 2, 15))));
+        ReflectionTestUtils.setField(dataSyncService, "etlLockEnabled", true);
+        try {
+            // The file has rows for Jan 31 and Mar 1 only: all of February is a gap
+            dataSyncService.syncStreaming(sink -> {
+                sink.accept(ProductionBatch.of(List.of(createRow(LocalDate.of(2025, 1, 31)), createRow(LocalDate.of(2025, 3, 1)))));
+                return null;
+            });
+        } finally {
+            ReflectionTestUtils.setField(dataSyncService, "etlLockEnabled", false);
+        }
+
+        verify(rangeLockManager).lockMonths(argThat(months -> months.contains(YearMonth.of(2025, 2))), anyString());
+        assertThat(factProductionRepository.findAll())
+                .extracting(FactProduction::getFechaContabilizacion)
+                .containsExactlyInAnyOrder(LocalDate.of(2025, 1, 31), LocalDate.of(2025, 3, 1));
+    }
+
+    @Test
+    @DisplayName("Streaming sync should lock the pre-scanned months in order before writing any chunk")
+    void syncStreaming_shouldLockScannedMonthsUpFront() {
+        double lateBefore = meterRegistry.counter("etl.sync.streaming.late.month.locks").count();
+        ReflectionTestUtils.setField(dataSyncService, "etlLockEnabled", true);
+        try {
+            // File order Mar -> Jan; the scan reports both, so Jan..Mar is locked once and ascending
+            DataSyncService.StreamingResult<Integer> streamed = dataSyncService.syncStreaming(
+                    () -> List.of(YearMonth.of(2025, 3), YearMonth.of(2025, 1)),
+                    sink -> {
+                        sink.accept(ProductionBatch.of(List.of(createRow(LocalDate.of(2025, 3, 3)))));
+                        sink.accept(ProductionBatch.of(List.of(createRow(LocalDate.of(2025, 1, 5)))));
+                        return 2;
+                    });
+            assertThat(streamed.result()).isEqualTo(2);
+            assertThat(streamed.lockWaitMs()).isGreaterThanOrEqualTo(0);
+            assertThat(meterRegistry.counter("etl.sync.streaming.late.month.locks").count()).isEqualTo(lateBefore);
+
+            // A month the scan missed is still locked, late, and counted
+            dataSyncService.syncStreaming(() -> List.of(YearMonth.of(2025, 5)), sink -> {
+                sink.accept(ProductionBatch.of(List.of(createRow(LocalDate.of(2025, 5, 2)), createRow(LocalDate.of(2025, 4, 30)))));
+                return null;
+            });
+        } finally {
+            ReflectionTestUtils.setField(dataSyncService, "etlLockEnabled", false);
+        }
+
+        InOrder inOrder = inOrder(rangeLockManager);
+        inOrder.verify(rangeLockManager).lockStreamingLoads();
+        inOrder.verify(rangeLockManager).lockMonths(eq(List.of(YearMonth.of(2025, 1), YearMonth.of(2025, 2), YearMonth.of(2025, 3))), anyString());
+        verify(rangeLockManager, never()).lockMonths(eq(List.of(YearMonth.of(2025, 3))), anyString());
+        verify(rangeLockManager).lockMonths(eq(List.of(YearMonth.of(2025, 4))), anyString());
+        assertThat(meterRegistry.counter("etl.sync.streaming.late.month.locks").count()).isEqualTo(lateBefore + 1);
+    }
+
+    @Test
+    @DisplayName("Streaming sync should re-run the producer after a deadlock")
+    void syncStreaming_shouldRetryOnDeadlock() {
+        int[] calls = {0};
+
+        Integer emitted = dataSyncService.syncStreaming(sink -> {
+            if (calls[0]++ == 0) {
+                throw new IllegalStateException("lock failed", new SQLException("ERROR: deadlock detected", "40P01"));
+            }
+            sink.accept(ProductionBatch.of(List.of(createRow(LocalDate.of(2025, 4, 2)))));
+            return 1;
+        });
+
+        assertThat(emitted).isEqualTo(1);
+        assertThat(calls[0]).isEqualTo(2);
+        assertThat(factProductionRepository.findAll())
+                .extracting(FactProduction::getFechaContabilizacion)
+                .containsExactly(LocalDate.of(2025, 4, 2));
+    }
+
     @Test
     @DisplayName("Should rollback on insert failure")
     void syncWithDeleteInsert_whenInsertFails_shouldRollbackDelete() {
@@ -120,7 +305,7 @@ class DataSyncServiceTest {
         assertThat(initialCount).isEqualTo(1);
 
         // Act & Assert: create a record that violates NOT NULL constraints
-        FactProduction invalidRecord = createFactProduction(LocalDate.of(2025, 2, 15));
+        ProductionRow invalidRecord = createRow(LocalDate.of(2025, 2, 15));
         invalidRecord.setTurno(null); // nullable = false - will cause constraint violation
 
         // The service should catch the constraint violation and wrap it in DataSyncException
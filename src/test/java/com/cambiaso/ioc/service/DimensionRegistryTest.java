@@ -0,0 +1,104 @@
+package com.cambiaso.ioc.service;
+
+import com.cambiaso.ioc.persistence.repository.DimensionKeyRepository;
+import com.cambiaso.ioc.persistence.repository.FactProductionBulkRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Sin transacción de test: el registro confirma sus altas en una transacción propia
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({DimensionKeyRepository.class, FactProductionBulkRepository.class, DimensionRegistry.class, DimensionRegistryTest.TestConfig.class})
+@DisplayName("DimensionRegistry Tests")
+class DimensionRegistryTest {
+
+    static class TestConfig {
+        @Bean
+        MeterRegistry meterRegistry() { return new SimpleMeterRegistry(); }
+    }
+
+    @Autowired private DimensionRegistry registry;
+    @Autowired private MeterRegistry meterRegistry;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM dim_maquina WHERE codigo_maquina LIKE 'REG-%'");
+        jdbcTemplate.update("DELETE FROM dim_maquinista WHERE codigo_maquinista >= 990000");
+    }
+
+    @Test
+    @DisplayName("Registering a member twice returns the same id and inserts it once")
+    void registrationIsIdempotent() {
+        double before = meterRegistry.counter("etl.dim.new.maquina").count();
+
+        Map<String, Long> first = registry.registerMaquinas(List.of("REG-1", "REG-2"));
+        Map<String, Long> second = registry.registerMaquinas(List.of("REG-2", "REG-3"));
+
+        assertThat(second.get("REG-2")).isEqualTo(first.get("REG-2"));
+        assertThat(registry.maquinaId("REG-1")).isEqualTo(first.get("REG-1"));
+        assertThat(registry.maquinaId("REG-3")).isEqualTo(second.get("REG-3"));
+        assertThat(meterRegistry.counter("etl.dim.new.maquina").count() - before).isEqualTo(3);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM dim_maquina WHERE codigo_maquina LIKE 'REG-%'",
+                Long.class)).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Two jobs registering the same new member at once get the same id")
+    void concurrentRegistrationDoesNotRace() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Long>> results = List.of(
+                    pool.submit(() -> { start.await(); return registry.registerMaquinistas(List.of(990001L)).get(990001L); }),
+                    pool.submit(() -> { start.await(); return registry.registerMaquinistas(List.of(990001L)).get(990001L); }));
+            start.countDown();
+
+            Long a = results.get(0).get(10, TimeUnit.SECONDS);
+            Long b = results.get(1).get(10, TimeUnit.SECONDS);
+            assertThat(a).isNotNull().isEqualTo(b);
+            assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM dim_maquinista WHERE codigo_maquinista = 990001",
+                    Long.class)).isEqualTo(1);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("refresh picks up members added by another node and drops deleted ones")
+    void refreshFollowsTheTable() {
+        registry.refresh();
+        jdbcTemplate.update("INSERT INTO dim_maquina (codigo_maquina, nombre_maquina, created_at, updated_at)"
+                + " VALUES ('REG-X', 'Máquina REG-X', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)");
+        assertThat(registry.maquinaId("REG-X")).isNull();
+
+        registry.refresh();
+        Long id = registry.maquinaId("REG-X");
+        assertThat(id).isEqualTo(jdbcTemplate.queryForObject(
+                "SELECT id FROM dim_maquina WHERE codigo_maquina = 'REG-X'", Long.class));
+
+        jdbcTemplate.update("DELETE FROM dim_maquina WHERE codigo_maquina = 'REG-X'");
+        registry.refresh();
+        assertThat(registry.maquinaId("REG-X")).isNull();
+    }
+}
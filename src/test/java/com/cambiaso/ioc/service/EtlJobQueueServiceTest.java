@@ -0,0 +1,185 @@
+package com.cambiaso.ioc.service;
+
+import com.cambiaso.ioc.exception.EtlQueueRejectedException;
+import com.cambiaso.ioc.persistence.entity.EtlJob;
+import com.cambiaso.ioc.persistence.repository.EtlJobRepository;
+import com.cambiaso.ioc.service.UploadStagingService.StagedUpload;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@DataJpaTest
+@Import({EtlJobService.class, EtlJobQueueService.class, EtlJobResumer.class, EtlJobQueueServiceTest.TestConfig.class})
+@DisplayName("EtlJobQueueService Tests")
+class EtlJobQueueServiceTest {
+
+    static class TestConfig {
+        @Bean
+        MeterRegistry meterRegistry() { return new SimpleMeterRegistry(); }
+    }
+
+    private static final long SMALL = 1024;
+    private static final long LARGE = 50L * 1024 * 1024;
+
+    @MockBean private EtlProcessingService etlProcessingService;
+
+    @Autowired private EtlJobQueueService queue;
+    @Autowired private EtlJobRepository etlJobRepository;
+    @Autowired private MeterRegistry meterRegistry;
+
+    @TempDir Path stagingDir;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(queue, "nodeId", "node-a");
+        ReflectionTestUtils.setField(queue, "capacity", 50);
+        ReflectionTestUtils.setField(queue, "perUserLimit", 5);
+        ReflectionTestUtils.setField(queue, "smallFileBytes", 5L * 1024 * 1024);
+        ReflectionTestUtils.setField(queue, "agingMs", 600_000L);
+        ReflectionTestUtils.setField(queue, "retryAfterSeconds", 30L);
+    }
+
+    @Test
+    @DisplayName("Workers favour users with fewer running jobs, then small files")
+    void claimOrderIsFairAndFavoursSmallFiles() {
+        long waitsBefore = meterRegistry.timer("etl.queue.wait").count();
+        saveJob("user-a", "INICIADO", SMALL, OffsetDateTime.now().minusMinutes(5));
+        EtlJob busyUserSmall = saveJob("user-a", "EN_COLA", SMALL, OffsetDateTime.now().minusMinutes(3));
+        EtlJob idleUserLarge = saveJob("user-b", "EN_COLA", LARGE, OffsetDateTime.now().minusMinutes(2));
+        EtlJob idleUserSmall = saveJob("user-c", "EN_COLA", SMALL, OffsetDateTime.now().minusMinutes(1));
+
+        assertThat(queue.claimNext()).get().extracting(EtlJob::getJobId).isEqualTo(idleUserSmall.getJobId());
+        assertThat(queue.claimNext()).get().extracting(EtlJob::getJobId).isEqualTo(idleUserLarge.getJobId());
+        assertThat(queue.claimNext()).get().extracting(EtlJob::getJobId).isEqualTo(busyUserSmall.getJobId());
+        assertThat(queue.claimNext()).isEmpty();
+
+        EtlJob claimed = etlJobRepository.findById(idleUserSmall.getJobId()).orElseThrow();
+        assertThat(claimed.getStatus()).isEqualTo("INICIADO");
+        assertThat(claimed.getStartedAt()).isNotNull();
+        assertThat(meterRegistry.timer("etl.queue.wait").count() - waitsBefore).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("A large file that waited longer than aging-ms is no longer passed over by small files")
+    void agedLargeFileIsNotStarved() {
+        EtlJob agedLarge = saveJob("user-a", "EN_COLA", LARGE, OffsetDateTime.now().minusMinutes(20));
+        saveJob("user-a", "EN_COLA", SMALL, OffsetDateTime.now());
+
+        assertThat(queue.claimNext()).get().extracting(EtlJob::getJobId).isEqualTo(agedLarge.getJobId());
+    }
+
+    @Test
+    @DisplayName("Jobs queued on another node are left to that node")
+    void otherNodesJobsAreIgnored() {
+        EtlJob foreign = saveJob("user-a", "EN_COLA", SMALL, OffsetDateTime.now());
+        foreign.setQueueNode("node-b");
+        etlJobRepository.saveAndFlush(foreign);
+
+        assertThat(queue.claimNext()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Submissions beyond the per-user limit get 429 and beyond capacity get 503")
+    void submitAppliesBackpressure() throws Exception {
+        ReflectionTestUtils.setField(queue, "capacity", 2);
+        ReflectionTestUtils.setField(queue, "perUserLimit", 1);
+
+        EtlJob first = queue.submit(stage("a1"), "user-a");
+        assertThat(first.getStatus()).isEqualTo("EN_COLA");
+        assertThat(first.getQueueNode()).isEqualTo("node-a");
+
+        assertThatThrownBy(() -> queue.submit(stage("a2"), "user-a"))
+                .isInstanceOfSatisfying(EtlQueueRejectedException.class, ex -> {
+                    assertThat(ex.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+                    assertThat(ex.getRetryAfterSeconds()).isEqualTo(30);
+                });
+
+        queue.submit(stage("b1"), "user-b");
+        assertThatThrownBy(() -> queue.submit(stage("c1"), "user-c"))
+                .isInstanceOfSatisfying(EtlQueueRejectedException.class,
+                        ex -> assertThat(ex.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+
+        assertThat(meterRegistry.get("etl.queue.depth").gauge().value()).isEqualTo(2.0);
+        assertThat(meterRegistry.counter("etl.queue.rejected", "reason", "user_limit").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("etl.queue.rejected", "reason", "queue_full").count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("A worker runs the claimed job on its own thread, or fails it if the staged file is gone")
+    void runNextProcessesOrFailsTheJob() throws Exception {
+        EtlJob job = queue.submit(stage("present"), "user-a");
+        assertThat(queue.runNext()).isTrue();
+        verify(etlProcessingService).processStagedFile(any(StagedUpload.class), eq("user-a"), eq(job.getJobId()));
+
+        StagedUpload missing = stage("missing");
+        EtlJob orphan = queue.submit(missing, "user-b");
+        Files.delete(missing.path());
+        assertThat(queue.runNext()).isTrue();
+        verify(etlProcessingService, never()).processStagedFile(any(StagedUpload.class), eq("user-b"), any());
+        assertThat(etlJobRepository.findById(orphan.getJobId()).orElseThrow().getStatus()).isEqualTo("FALLO");
+
+        assertThat(queue.runNext()).isFalse();
+    }
+
+    @Test
+    @DisplayName("A failed job can be uploaded again and goes back to the queue as the same job")
+    void failedJobIsResubmitted() throws Exception {
+        EtlJob failed = saveJob("user-a", "FALLO", SMALL, OffsetDateTime.now().minusHours(1));
+        failed.setDetails("Watchdog timeout");
+        failed.setCheckpointPhase("SYNC");
+        etlJobRepository.saveAndFlush(failed);
+
+        StagedUpload upload = stage("again");
+        EtlJob requeued = queue.resubmit(failed, upload, "user-b");
+
+        assertThat(requeued.getJobId()).isEqualTo(failed.getJobId());
+        assertThat(requeued.getStatus()).isEqualTo("EN_COLA");
+        assertThat(requeued.getUserId()).isEqualTo("user-b");
+        assertThat(requeued.getStagedPath()).isEqualTo(upload.path().toString());
+        assertThat(requeued.getFinishedAt()).isNull();
+        assertThat(requeued.getCheckpointPhase()).isNull();
+        assertThat(queue.claimNext()).get().extracting(EtlJob::getJobId).isEqualTo(failed.getJobId());
+    }
+
+    private StagedUpload stage(String name) throws Exception {
+        Path file = Files.writeString(stagingDir.resolve(name + ".txt"), "header\n");
+        return new StagedUpload(file, "hash-" + name, Files.size(file), name + ".txt");
+    }
+
+    private EtlJob saveJob(String userId, String status, long size, OffsetDateTime queuedAt) {
+        EtlJob job = new EtlJob();
+        job.setJobId(UUID.randomUUID());
+        job.setFileName("file.txt");
+        job.setFileHash(UUID.randomUUID().toString());
+        job.setUserId(userId);
+        job.setStatus(status);
+        job.setCreatedAt(queuedAt);
+        job.setQueuedAt(queuedAt);
+        job.setFileSize(size);
+        job.setStagedPath(stagingDir.resolve("unused.txt").toString());
+        job.setQueueNode("node-a");
+        return etlJobRepository.saveAndFlush(job);
+    }
+}
@@ -0,0 +1,121 @@
+package com.cambiaso.ioc.service;
+
+import com.cambiaso.ioc.persistence.entity.EtlJob;
+import com.cambiaso.ioc.persistence.repository.EtlJobRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@TestPropertySource(properties = "etl.jobs.resume.max-attempts=2")
+@Import({EtlJobResumer.class, EtlJobResumerTest.TestConfig.class})
+@DisplayName("EtlJobResumer Tests")
+class EtlJobResumerTest {
+
+    static class TestConfig {
+        @Bean
+        MeterRegistry meterRegistry() { return new SimpleMeterRegistry(); }
+    }
+
+    @Autowired private EtlJobResumer resumer;
+    @Autowired private EtlJobRepository etlJobRepository;
+
+    @TempDir Path stagingDir;
+
+    @Test
+    @DisplayName("A job interrupted mid-sync goes back to the queue with its last phase in the details")
+    void interruptedJobIsRequeued() throws Exception {
+        EtlJob job = saveJob("node-a", "SINCRONIZANDO", null, stagedFile("a"));
+        job.setCheckpointPhase("SYNC");
+        job.setStartedAt(OffsetDateTime.now().minusMinutes(40));
+        etlJobRepository.saveAndFlush(job);
+
+        assertThat(resumer.resumeInterrupted("node-a")).isEqualTo(1);
+
+        EtlJob resumed = etlJobRepository.findById(job.getJobId()).orElseThrow();
+        assertThat(resumed.getStatus()).isEqualTo("EN_COLA");
+        assertThat(resumed.getResumeAttempts()).isEqualTo(1);
+        assertThat(resumed.getStartedAt()).isNull();
+        assertThat(resumed.getDetails()).contains("attempt 1").contains("interrupted in SYNC");
+        assertThat(Files.exists(Path.of(resumed.getStagedPath()))).isTrue();
+    }
+
+    @Test
+    @DisplayName("Jobs cut by the watchdog during an outage are resumed; ordinary failures are not")
+    void onlyWatchdogFailuresAreResumed() throws Exception {
+        EtlJob timedOut = saveJob("node-a", "FALLO", "Watchdog timeout", stagedFile("b"));
+        EtlJob parseError = saveJob("node-a", "FALLO", "Malformed header", stagedFile("c"));
+
+        assertThat(resumer.resumeInterrupted("node-a")).isEqualTo(1);
+
+        assertThat(etlJobRepository.findById(timedOut.getJobId()).orElseThrow().getStatus()).isEqualTo("EN_COLA");
+        assertThat(etlJobRepository.findById(timedOut.getJobId()).orElseThrow().getFinishedAt()).isNull();
+        assertThat(etlJobRepository.findById(parseError.getJobId()).orElseThrow().getStatus()).isEqualTo("FALLO");
+    }
+
+    @Test
+    @DisplayName("A job whose staged upload is gone, or that keeps being interrupted, is failed")
+    void unrecoverableJobsAreFailed() throws Exception {
+        Path gone = stagedFile("d");
+        EtlJob missing = saveJob("node-a", "PROCESANDO", null, gone);
+        Files.delete(gone);
+        Path looping = stagedFile("e");
+        EtlJob exhausted = saveJob("node-a", "INICIADO", null, looping);
+        exhausted.setResumeAttempts(2);
+        etlJobRepository.saveAndFlush(exhausted);
+
+        assertThat(resumer.resumeInterrupted("node-a")).isZero();
+
+        EtlJob failedMissing = etlJobRepository.findById(missing.getJobId()).orElseThrow();
+        assertThat(failedMissing.getStatus()).isEqualTo("FALLO");
+        assertThat(failedMissing.getFinishedAt()).isNotNull();
+        assertThat(etlJobRepository.findById(exhausted.getJobId()).orElseThrow().getDetails()).contains("giving up");
+        assertThat(Files.exists(looping)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Jobs of other nodes are left alone")
+    void otherNodesAreIgnored() throws Exception {
+        EtlJob foreign = saveJob("node-b", "PROCESANDO", null, stagedFile("f"));
+
+        assertThat(resumer.resumeInterrupted("node-a")).isZero();
+        assertThat(etlJobRepository.findById(foreign.getJobId()).orElseThrow().getStatus()).isEqualTo("PROCESANDO");
+    }
+
+    private Path stagedFile(String name) throws Exception {
+        return Files.write(stagingDir.resolve(name + ".txt"), new byte[100]);
+    }
+
+    private EtlJob saveJob(String node, String status, String details, Path staged) {
+        EtlJob job = new EtlJob();
+        job.setJobId(UUID.randomUUID());
+        job.setFileName("file.txt");
+        job.setFileHash(UUID.randomUUID().toString());
+        job.setUserId("user-a");
+        job.setStatus(status);
+        job.setDetails(details);
+        job.setCreatedAt(OffsetDateTime.now().minusHours(1));
+        job.setQueuedAt(OffsetDateTime.now().minusHours(1));
+        if ("FALLO".equals(status)) {
+            job.setFinishedAt(OffsetDateTime.now().minusMinutes(10));
+        }
+        job.setStagedPath(staged.toString());
+        job.setFileSize(100L);
+        job.setQueueNode(node);
+        return etlJobRepository.saveAndFlush(job);
+    }
+}
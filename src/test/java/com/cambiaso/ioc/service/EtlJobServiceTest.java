@@ -2,6 +2,9 @@ package com.cambiaso.ioc.service;
 
 import com.cambiaso.ioc.persistence.entity.EtlJob;
 import com.cambiaso.ioc.persistence.repository.EtlJobRepository;
+import com.cambiaso.ioc.service.etl.ProductionBatch;
+import com.cambiaso.ioc.service.etl.ProductionRow;
+import com.cambiaso.ioc.service.etl.ProductionStats;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -11,8 +14,10 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.OffsetDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -156,63 +161,28 @@ class EtlJobServiceTest {
             assertThatThrownBy(() -> etlJobService.updateJobDateRange(nonExistentId, LocalDate.now(), LocalDate.now().plusDays(1))).isInstanceOf(IllegalArgumentException.class)
               .hasMessageContaining("Job not found with ID: " + nonExistentId);
         }
-    }
-
-    @Nested
-    class WindowLockGuardTests {
-
-        @Test
-        void isWindowLocked_shouldReturnFalseWhenNoActiveJobs() {
-            boolean isLocked = etlJobService.isWindowLocked(UUID.randomUUID(), LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 31));
-            assertThat(isLocked).isFalse();
-        }
 
         @Test
-        void isWindowLocked_shouldReturnTrueForOverlappingDateRange() {
-            // Arrange: an active job in January
-            EtlJob activeJob = etlJobService.createJob("active.txt", "active_hash", "user1");
-            etlJobService.updateJobDateRange(activeJob.getJobId(), LocalDate.of(2025, 1, 10), LocalDate.of(2025, 1, 20));
-            etlJobService.updateJobStatus(activeJob.getJobId(), "PROCESANDO", null);
-
-            // Act & Assert: check for a new job that overlaps (must use a different jobId)
-            boolean isLocked = etlJobService.isWindowLocked(UUID.randomUUID(), LocalDate.of(2025, 1, 15), LocalDate.of(2025, 1, 25));
-            assertThat(isLocked).isTrue();
-        }
-
-        @Test
-        void isWindowLocked_shouldReturnFalseForNonOverlappingDateRange() {
-            // Arrange: an active job in January
-            EtlJob activeJob = etlJobService.createJob("active.txt", "active_hash", "user1");
-            etlJobService.updateJobDateRange(activeJob.getJobId(), LocalDate.of(2025, 1, 10), LocalDate.of(2025, 1, 20));
-            etlJobService.updateJobStatus(activeJob.getJobId(), "PROCESANDO", null);
-
-            // Act & Assert: check for a new job in February
-            boolean isLocked = etlJobService.isWindowLocked(UUID.randomUUID(), LocalDate.of(2025, 2, 1), LocalDate.of(2025, 2, 28));
-            assertThat(isLocked).isFalse();
-        }
+        @DisplayName("Should store the date range and the per-day load summary")
+        void updateJobStats_shouldStoreRangeAndSummary() {
+            EtlJob job = etlJobService.createJob("test.txt", "hash123", "user1");
+            ProductionRow a = new ProductionRow();
+            a.setFechaContabilizacion(LocalDate.of(2025, 1, 2));
+            a.setCantidad(new BigDecimal("1.5"));
+            ProductionRow b = new ProductionRow();
+            b.setFechaContabilizacion(LocalDate.of(2025, 1, 3));
+            b.setPesoNeto(BigDecimal.TEN);
+            ProductionStats stats = new ProductionStats();
+            stats.add(ProductionBatch.of(List.of(a, b)));
 
-        @Test
-        void isWindowLocked_shouldReturnFalseForJobWithFinishedStatus() {
-            // Arrange: a finished job in January
-            EtlJob finishedJob = etlJobService.createJob("finished.txt", "finished_hash", "user1");
-            etlJobService.updateJobDateRange(finishedJob.getJobId(), LocalDate.of(2025, 1, 10), LocalDate.of(2025, 1, 20));
-            etlJobService.updateJobStatus(finishedJob.getJobId(), "EXITO", "Completed");
-
-            // Act & Assert: check for a new job in the same range
-            boolean isLocked = etlJobService.isWindowLocked(UUID.randomUUID(), LocalDate.of(2025, 1, 15), LocalDate.of(2025, 1, 25));
-            assertThat(isLocked).isFalse();
-        }
+            etlJobService.updateJobStats(job.getJobId(), stats);
 
-        @Test
-        void isWindowLocked_shouldNotBlockItself() {
-            // Arrange: an active job in January
-            EtlJob activeJob = etlJobService.createJob("active.txt", "active_hash", "user1");
-            etlJobService.updateJobDateRange(activeJob.getJobId(), LocalDate.of(2025, 1, 10), LocalDate.of(2025, 1, 20));
-            etlJobService.updateJobStatus(activeJob.getJobId(), "PROCESANDO", null);
-
-            // Act & Assert: check if the job blocks itself (it shouldn't)
-            boolean isLocked = etlJobService.isWindowLocked(activeJob.getJobId(), LocalDate.of(2025, 1, 15), LocalDate.of(2025, 1, 25));
-            assertThat(isLocked).isFalse();
+            EtlJob updated = etlJobRepository.findById(job.getJobId()).orElseThrow();
+            assertThat(updated.getMinDate()).isEqualTo(LocalDate.of(2025, 1, 2));
+            assertThat(updated.getMaxDate()).isEqualTo(LocalDate.of(2025, 1, 3));
+            assertThat(updated.getLoadSummary()).isEqualTo(
+                    "[{\"fecha\":\"2025-01-02\",\"rows\":1,\"cantidad\":1.5000,\"pesoNeto\":0.0000},"
+                    + "{\"fecha\":\"2025-01-03\",\"rows\":1,\"cantidad\":0.0000,\"pesoNeto\":10.0000}]");
         }
     }
 }
@@ -2,10 +2,14 @@ package com.cambiaso.ioc.service;
 
 import com.cambiaso.ioc.persistence.entity.DimMaquina;
 import com.cambiaso.ioc.persistence.entity.EtlJob;
-import com.cambiaso.ioc.persistence.entity.FactProduction;
 import com.cambiaso.ioc.persistence.repository.DimMaquinaRepository;
 import com.cambiaso.ioc.persistence.repository.EtlJobRepository;
+import com.cambiaso.ioc.persistence.repository.FactProductionBulkRepository;
+import com.cambiaso.ioc.persistence.repository.FactProductionDailyRepository;
+import com.cambiaso.ioc.persistence.repository.FactProductionPartitionRepository;
+import com.cambiaso.ioc.persistence.repository.FactProductionStagingRepository;
 import com.cambiaso.ioc.persistence.repository.FactProductionRepository;
+import com.cambiaso.ioc.service.etl.ProductionRow;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
@@ -14,6 +18,7 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -39,7 +44,8 @@ import static org.assertj.core.api.Assertions.assertThat;
         "etl.retry.unique.enabled=false",
         "spring.jpa.hibernate.ddl-auto=create-drop"
 })
-@Import({EtlJobService.class, DataSyncService.class, EtlJobWatchdog.class, EtlJobWatchdogTest.TestConfig.class})
+@Import({EtlJobService.class, DataSyncService.class, FactProductionBulkRepository.class, EtlRangeLockManager.class,
+        EtlJobWatchdog.class, EtlJobWatchdogTest.TestConfig.class})
 class EtlJobWatchdogTest {
 
     static class TestConfig {
@@ -49,6 +55,12 @@ class EtlJobWatchdogTest {
         TransactionTemplate transactionTemplate(PlatformTransactionManager ptm) { return new TransactionTemplate(ptm); }
     }
 
+    // Colaboradores de DataSyncService que estos tests no ejercitan (staging, particiones, rollup y caché analítica)
+    @MockBean private FactProductionStagingRepository factProductionStagingRepository;
+    @MockBean private FactProductionPartitionRepository factProductionPartitionRepository;
+    @MockBean private FactProductionDailyRepository factProductionDailyRepository;
+    @MockBean private DailyAnalyticsCache dailyAnalyticsCache;
+
     @Autowired private EtlJobService etlJobService;
     @Autowired private EtlJobRepository etlJobRepository;
     @Autowired private EtlJobWatchdog watchdog;
@@ -120,9 +132,9 @@ class EtlJobWatchdogTest {
     void windowAndBatchSummaries() {
         LocalDate d1 = LocalDate.of(2025,1,1);
         LocalDate d5 = LocalDate.of(2025,1,5); // 5 días inclusivos
-        FactProduction f1 = buildFact(d1, 10L);
-        FactProduction f2 = buildFact(LocalDate.of(2025,1,3), 11L);
-        FactProduction f3 = buildFact(d5, 12L);
+        ProductionRow f1 = buildFact(d1, 10L);
+        ProductionRow f2 = buildFact(LocalDate.of(2025,1,3), 11L);
+        ProductionRow f3 = buildFact(d5, 12L);
         dataSyncService.syncWithDeleteInsert(d1,d5,List.of(f1,f2,f3));
 
         var windowSummary = meterRegistry.find("etl.sync.window.days").summary();
@@ -136,10 +148,10 @@ class EtlJobWatchdogTest {
         assertThat(windowSummary.totalAmount()).isGreaterThanOrEqualTo(5.0);
     }
 
-    private FactProduction buildFact(LocalDate date, long numeroLog) {
-        FactProduction fp = new FactProduction();
+    private ProductionRow buildFact(LocalDate date, long numeroLog) {
+        ProductionRow fp = new ProductionRow();
         fp.setFechaContabilizacion(date);
-        fp.setMaquina(maquina);
+        fp.setMaquinaId(maquina.getId());
         fp.setNumeroLog(numeroLog);
         fp.setHoraContabilizacion(LocalTime.of(8,0));
         fp.setFechaNotificacion(date.plusDays(1));
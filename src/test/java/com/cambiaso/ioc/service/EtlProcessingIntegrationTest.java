@@ -62,6 +62,8 @@ class EtlProcessingIntegrationTest {
     @Autowired
     private EtlJobService etlJobService;
     @Autowired
+    private UploadStagingService uploadStagingService;
+    @Autowired
     private EtlJobRepository etlJobRepository;
     @Autowired
     private FactProductionRepository factProductionRepository;
@@ -92,9 +94,10 @@ class EtlProcessingIntegrationTest {
     }
 
     private UUID submitJob(MockMultipartFile file, String user) {
-        String fileHash = etlProcessingService.calculateFileHash(file); // Usa el mismo método que el controller
-        EtlJob job = etlJobService.createJob(file.getOriginalFilename(), fileHash, user);
-        etlProcessingService.processFile(file, user, job.getJobId());
+        // Misma ingesta que el controller: staging + hash en una pasada, luego el procesamiento del worker
+        UploadStagingService.StagedUpload staged = uploadStagingService.stage(file);
+        EtlJob job = etlJobService.createJob(file.getOriginalFilename(), staged.sha256(), user);
+        etlProcessingService.processStagedFile(staged, user, job.getJobId());
         return job.getJobId();
     }
 
@@ -1,22 +1,29 @@
 package com.cambiaso.ioc.service;
 
 import com.cambiaso.ioc.dto.NotificationPayload;
-import com.cambiaso.ioc.persistence.entity.FactProduction;
+import com.cambiaso.ioc.service.etl.ProductionBatch;
+import com.cambiaso.ioc.service.etl.ProductionRow;
+import com.cambiaso.ioc.service.etl.ProductionStats;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.math.BigDecimal;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.time.YearMonth;
 import java.util.List;
+import java.util.TreeSet;
 import java.util.UUID;
 import java.io.IOException;
 
@@ -40,23 +47,31 @@ class EtlProcessingServiceTest {
     @Mock
     private ParserService parserService;
 
+    @Mock
+    private UploadStagingService uploadStagingService;
+
+    @Mock
+    private AnalyticsViewRefreshService analyticsViewRefreshService;
+
     @InjectMocks
     private EtlProcessingService etlProcessingService;
 
     private UUID testJobId;
     private String testUserId;
-    private MockMultipartFile testFile;
-    private List<FactProduction> mockRecords;
+    private byte[] testContent;
+    private UploadStagingService.StagedUpload testUpload;
+    private List<ProductionRow> mockRecords;
 
     @BeforeEach
-    void setUp() {
+    void setUp() throws IOException {
         testJobId = UUID.randomUUID();
         testUserId = "test-user";
-        testFile = new MockMultipartFile("test.txt", "test.txt", "text/plain",
-                "| @08@  |30.08.2025  |08:29:15|01.09.2025  |2922290|6760161400|48,000|105,6|".getBytes());
+        testContent = "| @08@  |30.08.2025  |08:29:15|01.09.2025  |2922290|6760161400|48,000|105,6|".getBytes();
+        testUpload = staged(testContent);
+        ReflectionTestUtils.setField(etlProcessingService, "heartbeatIntervalMs", 60_000L);
 
-        // Create mock FactProduction records for tests
-        FactProduction mockRecord = new FactProduction();
+        // Create mock ProductionRow records for tests
+        ProductionRow mockRecord = new ProductionRow();
         mockRecord.setFechaContabilizacion(LocalDate.of(2025, 8, 30));
         mockRecord.setNumeroLog(2922290L);
         mockRecord.setHoraContabilizacion(LocalTime.of(8, 29, 15));
@@ -69,110 +84,133 @@ class EtlProcessingServiceTest {
         mockRecords = List.of(mockRecord);
     }
 
+    // Upload ya copiado a staging; cada apertura devuelve un stream nuevo, como el archivo real
+    private UploadStagingService.StagedUpload staged(byte[] content) throws IOException {
+        UploadStagingService.StagedUpload upload = new UploadStagingService.StagedUpload(
+                Path.of("staging", "upload-test.txt"), "hash", content.length, "test.txt");
+        lenient().when(uploadStagingService.openStream(upload)).thenAnswer(inv -> new ByteArrayInputStream(content));
+        return upload;
+    }
+
+    // Resultado del parser con las estadísticas que acumula mientras emite los bloques
+    private static ParserService.ParsedFile parsed(List<ProductionRow> records) {
+        ProductionStats stats = new ProductionStats();
+        if (!records.isEmpty()) stats.add(ProductionBatch.of(records));
+        return new ParserService.ParsedFile(records, new ParserService.ParseSummary(records.size(), records.size(), 0, 0,
+                stats.minDate(), stats.maxDate(), stats));
+    }
+
     @Nested
-    @DisplayName("File Hash Calculation Tests")
-    class FileHashTests {
+    @DisplayName("Staged File Processing Tests")
+    class StagedProcessingTests {
 
         @Test
-        @DisplayName("Should calculate consistent hash for same file content")
-        void calculateFileHash_sameContent_shouldReturnSameHash() {
-            MockMultipartFile file1 = new MockMultipartFile("file1.txt", "test.txt", "text/plain",
-                "| @08@  |30.08.2025  |08:29:15|01.09.2025  |2922290|6760161400|48,000|105,6|".getBytes());
-            MockMultipartFile file2 = new MockMultipartFile("file2.txt", "different-name.txt", "text/plain",
-                "| @08@  |30.08.2025  |08:29:15|01.09.2025  |2922290|6760161400|48,000|105,6|".getBytes());
-
-            String hash1 = etlProcessingService.calculateFileHash(file1);
-            String hash2 = etlProcessingService.calculateFileHash(file2);
-
-            assertThat(hash1).isEqualTo(hash2);
-            assertThat(hash1).hasSize(64); // SHA-256 produces 64-character hex string
-        }
+        @DisplayName("Should successfully process file through all stages")
+        void processStagedFile_validFile_shouldCompleteSuccessfully() throws IOException {
+            // Arrange
+            when(parserService.parseFile(any(InputStream.class), any())).thenReturn(parsed(mockRecords));
+            when(dataSyncService.sync(any(LocalDate.class), any(LocalDate.class), eq(mockRecords)))
+                    .thenReturn(new DataSyncService.SyncResult(mockRecords.size(), 0, 0, -1));
 
-        @Test
-        @DisplayName("Should calculate different hashes for different content")
-        void calculateFileHash_differentContent_shouldReturnDifferentHashes() {
-            MockMultipartFile file1 = new MockMultipartFile("file1.txt", "test.txt", "text/plain",
-                "| @08@  |30.08.2025  |08:29:15|01.09.2025  |2922290|6760161400|48,000|105,6|".getBytes());
-            MockMultipartFile file2 = new MockMultipartFile("file2.txt", "test.txt", "text/plain",
-                "| @09@  |30.08.2025  |08:22:36|01.09.2025  |2922278|6602030100|87,000|99,6|".getBytes());
+            // Act
+            etlProcessingService.processStagedFile(testUpload, testUserId, testJobId);
 
-            String hash1 = etlProcessingService.calculateFileHash(file1);
-            String hash2 = etlProcessingService.calculateFileHash(file2);
+            // Assert
+            verify(parserService).parseFile(any(InputStream.class), any());
+            verify(etlJobService).updateJobStats(eq(testJobId), argThat(stats -> stats.rows() == 1
+                    && LocalDate.of(2025, 8, 30).equals(stats.minDate())));
+            verify(dataSyncService).sync(any(LocalDate.class), any(LocalDate.class), eq(mockRecords));
+            verify(etlJobService).updateJobStatus(eq(testJobId), eq("EXITO"), contains("ETL process completed successfully"));
+            verify(analyticsViewRefreshService).requestRefresh();
 
-            assertThat(hash1).isNotEqualTo(hash2);
+            verify(notificationService, times(3)).notifyUser(eq(testUserId), eq(testJobId), any(NotificationPayload.class));
+            verify(uploadStagingService).discard(testUpload);
         }
 
         @Test
-        @DisplayName("Should handle empty files gracefully")
-        void calculateFileHash_emptyFile_shouldNotThrow() {
-            MockMultipartFile emptyFile = new MockMultipartFile("empty.txt", "empty.txt", "text/plain", new byte[0]);
+        @DisplayName("Should report the range lock wait in the job details")
+        void processStagedFile_reportsLockWait() throws IOException {
+            // Arrange
+            when(parserService.parseFile(any(InputStream.class), any())).thenReturn(parsed(mockRecords));
+            when(dataSyncService.sync(any(LocalDate.class), any(LocalDate.class), eq(mockRecords)))
+                    .thenReturn(new DataSyncService.SyncResult(mockRecords.size(), 0, 0, -1, 1250L));
 
-            String hash = etlProcessingService.calculateFileHash(emptyFile);
+            // Act
+            etlProcessingService.processStagedFile(testUpload, testUserId, testJobId);
 
-            assertThat(hash).isNotNull();
-            assertThat(hash).hasSize(64);
+            // Assert
+            verify(etlJobService).updateJobStatus(eq(testJobId), eq("EXITO"), contains("lock wait 1250 ms"));
         }
-    }
-
-    @Nested
-    @DisplayName("Async Processing Tests")
-    class AsyncProcessingTests {
 
         @Test
-        @DisplayName("Should successfully process file through all stages")
-        void processFile_validFile_shouldCompleteSuccessfully() throws InterruptedException, IOException {
+        @DisplayName("Should pre-scan the file months and report the lock wait when streaming")
+        void processStagedFile_streaming_reportsLockWait() throws IOException {
             // Arrange
-            when(parserService.parse(any(InputStream.class))).thenReturn(mockRecords);
-            when(etlJobService.isWindowLocked(eq(testJobId), any(LocalDate.class), any(LocalDate.class))).thenReturn(false);
+            ReflectionTestUtils.setField(etlProcessingService, "streamingEnabled", true);
+            when(parserService.scanMonths(any(InputStream.class))).thenReturn(new TreeSet<>(List.of(YearMonth.of(2025, 8))));
+            when(dataSyncService.syncStreaming(any(DataSyncService.MonthScanner.class), any())).thenAnswer(inv -> {
+                assertThat(((DataSyncService.MonthScanner) inv.getArgument(0)).scan()).containsExactly(YearMonth.of(2025, 8));
+                return new DataSyncService.StreamingResult<>(parsed(mockRecords).summary(), 730L);
+            });
 
             // Act
-            etlProcessingService.processFile(testFile, testUserId, testJobId);
-
-            // Allow async processing to complete
-            Thread.sleep(100);
+            etlProcessingService.processStagedFile(testUpload, testUserId, testJobId);
 
             // Assert
-            verify(parserService).parse(any(InputStream.class));
-            verify(etlJobService).updateJobDateRange(eq(testJobId), any(LocalDate.class), any(LocalDate.class));
-            verify(etlJobService).isWindowLocked(eq(testJobId), any(LocalDate.class), any(LocalDate.class));
-            verify(dataSyncService).syncWithDeleteInsert(any(LocalDate.class), any(LocalDate.class), eq(mockRecords));
-            verify(etlJobService).updateJobStatus(eq(testJobId), eq("EXITO"), contains("ETL process completed successfully"));
-
-            verify(notificationService, times(3)).notifyUser(eq(testUserId), eq(testJobId), any(NotificationPayload.class));
+            verify(parserService).scanMonths(any(InputStream.class));
+            verify(etlJobService).updateJobStatus(eq(testJobId), eq("EXITO"), contains("Synced 1 records (lock wait 730 ms)"));
         }
 
         @Test
-        @DisplayName("Should handle window lock conflict gracefully")
-        void processFile_windowLocked_shouldFailGracefully() throws InterruptedException, IOException {
-            // Arrange
-            when(parserService.parse(any(InputStream.class))).thenReturn(mockRecords);
-            when(etlJobService.isWindowLocked(eq(testJobId), any(LocalDate.class), any(LocalDate.class))).thenReturn(true);
+        @DisplayName("Should record each phase before running it")
+        void processStagedFile_recordsPhases() throws IOException {
+            // Arrange: the parser drains the stream like the real one
+            when(parserService.parseFile(any(InputStream.class), any())).thenAnswer(inv -> {
+                ((InputStream) inv.getArgument(0)).readAllBytes();
+                return parsed(mockRecords);
+            });
+            when(dataSyncService.sync(any(LocalDate.class), any(LocalDate.class), eq(mockRecords)))
+                    .thenReturn(new DataSyncService.SyncResult(mockRecords.size(), 0, 0, -1));
 
             // Act
-            etlProcessingService.processFile(testFile, testUserId, testJobId);
-
-            // Allow async processing to complete
-            Thread.sleep(100);
+            etlProcessingService.processStagedFile(testUpload, testUserId, testJobId);
+
+            // Assert: one progress write per phase; the heartbeat interval has not elapsed
+            InOrder inOrder = inOrder(etlJobService, parserService, dataSyncService);
+            inOrder.verify(etlJobService).recordProgress(testJobId, "PARSE");
+            inOrder.verify(parserService).parseFile(any(InputStream.class), any());
+            inOrder.verify(etlJobService).recordProgress(testJobId, "SYNC");
+            inOrder.verify(dataSyncService).sync(any(LocalDate.class), any(LocalDate.class), eq(mockRecords));
+            inOrder.verify(etlJobService).updateJobStatus(eq(testJobId), eq("EXITO"), anyString());
+            verify(etlJobService, times(2)).recordProgress(eq(testJobId), anyString());
+        }
 
-            // Assert
-            verify(etlJobService).updateJobStatus(eq(testJobId), eq("FALLO"), contains("Another ETL job is processing this date range"));
-            verify(notificationService).notifyUser(eq(testUserId), eq(testJobId),
-                    argThat(payload -> "FALLO".equals(payload.getStatus())));
+        @Test
+        @DisplayName("Should send a heartbeat while the file is being read")
+        void processStagedFile_heartbeatWhileReading() throws IOException {
+            ReflectionTestUtils.setField(etlProcessingService, "heartbeatIntervalMs", 0L);
+            when(parserService.parseFile(any(InputStream.class), any())).thenAnswer(inv -> {
+                InputStream in = inv.getArgument(0);
+                while (in.read(new byte[8]) > 0) { }
+                return parsed(List.of());
+            });
+
+            etlProcessingService.processStagedFile(testUpload, testUserId, testJobId);
+
+            // One write for the phase plus one per read
+            verify(etlJobService, atLeast(3)).recordProgress(testJobId, "PARSE");
         }
 
         @Test
         @DisplayName("Should handle unexpected errors gracefully")
-        void processFile_unexpectedError_shouldFailGracefully() throws InterruptedException, IOException {
+        void processStagedFile_unexpectedError_shouldFailGracefully() throws IOException {
             // Arrange
-            when(parserService.parse(any(InputStream.class))).thenReturn(mockRecords);
+            when(parserService.parseFile(any(InputStream.class), any())).thenReturn(parsed(mockRecords));
             doThrow(new RuntimeException("Database connection failed"))
-                    .when(etlJobService).updateJobDateRange(any(UUID.class), any(LocalDate.class), any(LocalDate.class));
+                    .when(etlJobService).updateJobStats(any(UUID.class), any(ProductionStats.class));
 
             // Act
-            etlProcessingService.processFile(testFile, testUserId, testJobId);
-
-            // Allow async processing to complete
-            Thread.sleep(100);
+            etlProcessingService.processStagedFile(testUpload, testUserId, testJobId);
 
             // Assert
             verify(etlJobService).updateJobStatus(eq(testJobId), eq("FALLO"), contains("Database connection failed"));
@@ -185,16 +223,14 @@ class EtlProcessingServiceTest {
 
         @Test
         @DisplayName("Should send notifications at each processing stage")
-        void processFile_shouldSendNotificationsAtEachStage() throws InterruptedException, IOException {
+        void processStagedFile_shouldSendNotificationsAtEachStage() throws IOException {
             // Arrange
-            when(parserService.parse(any(InputStream.class))).thenReturn(mockRecords);
-            when(etlJobService.isWindowLocked(eq(testJobId), any(LocalDate.class), any(LocalDate.class))).thenReturn(false);
+            when(parserService.parseFile(any(InputStream.class), any())).thenReturn(parsed(mockRecords));
+            when(dataSyncService.sync(any(LocalDate.class), any(LocalDate.class), eq(mockRecords)))
+                    .thenReturn(new DataSyncService.SyncResult(mockRecords.size(), 0, 0, -1));
 
             // Act
-            etlProcessingService.processFile(testFile, testUserId, testJobId);
-
-            // Allow async processing to complete
-            Thread.sleep(100);
+            etlProcessingService.processStagedFile(testUpload, testUserId, testJobId);
 
             // Assert - verify notification sequence
             verify(notificationService).notifyUser(testUserId, testJobId,
@@ -207,17 +243,14 @@ class EtlProcessingServiceTest {
 
         @Test
         @DisplayName("Should send failure notification on error")
-        void processFile_onError_shouldSendFailureNotification() throws InterruptedException, IOException {
+        void processStagedFile_onError_shouldSendFailureNotification() throws IOException {
             // Arrange
-            when(parserService.parse(any(InputStream.class))).thenReturn(mockRecords);
+            when(parserService.parseFile(any(InputStream.class), any())).thenReturn(parsed(mockRecords));
             doThrow(new RuntimeException("Processing failed")).when(etlJobService)
-                    .updateJobDateRange(any(UUID.class), any(LocalDate.class), any(LocalDate.class));
+                    .updateJobStats(any(UUID.class), any(ProductionStats.class));
 
             // Act
-            etlProcessingService.processFile(testFile, testUserId, testJobId);
-
-            // Allow async processing to complete
-            Thread.sleep(100);
+            etlProcessingService.processStagedFile(testUpload, testUserId, testJobId);
 
             // Assert
             verify(notificationService).notifyUser(eq(testUserId), eq(testJobId),
@@ -231,32 +264,32 @@ class EtlProcessingServiceTest {
     class EdgeCaseTests {
 
         @Test
-        @DisplayName("Should handle null file gracefully")
-        void processFile_nullFile_shouldHandleGracefully() throws InterruptedException {
-            // Act
-            etlProcessingService.processFile(null, testUserId, testJobId);
+        @DisplayName("Should fail the job when the staged file cannot be read")
+        void processStagedFile_unreadableUpload_shouldFailAndDiscard() throws IOException {
+            // Arrange
+            when(uploadStagingService.openStream(testUpload)).thenThrow(new IOException("staged upload is gone"));
 
-            // Allow async processing to complete
-            Thread.sleep(100);
+            // Act
+            etlProcessingService.processStagedFile(testUpload, testUserId, testJobId);
 
             // Assert
-            verify(etlJobService).updateJobStatus(eq(testJobId), eq("FALLO"), anyString());
+            verify(etlJobService).updateJobStatus(eq(testJobId), eq("FALLO"), contains("staged upload is gone"));
+            verify(uploadStagingService).discard(testUpload);
+            verifyNoInteractions(dataSyncService);
         }
 
         @Test
         @DisplayName("Should handle very large files")
-        void processFile_largeFile_shouldProcess() throws InterruptedException, IOException {
+        void processStagedFile_largeFile_shouldProcess() throws IOException {
             // Arrange - Create a large file (1MB) with valid TXT format
             String largeContent = "| @08@  |30.08.2025  |08:29:15|01.09.2025  |2922290|6760161400|48,000|105,6|\n".repeat(10000);
-            MockMultipartFile largeFile = new MockMultipartFile("large.txt", "large.txt", "text/plain", largeContent.getBytes());
-            when(parserService.parse(any(InputStream.class))).thenReturn(mockRecords);
-            when(etlJobService.isWindowLocked(eq(testJobId), any(LocalDate.class), any(LocalDate.class))).thenReturn(false);
+            UploadStagingService.StagedUpload largeUpload = staged(largeContent.getBytes());
+            when(parserService.parseFile(any(InputStream.class), any())).thenReturn(parsed(mockRecords));
+            when(dataSyncService.sync(any(LocalDate.class), any(LocalDate.class), eq(mockRecords)))
+                    .thenReturn(new DataSyncService.SyncResult(mockRecords.size(), 0, 0, -1));
 
             // Act
-            etlProcessingService.processFile(largeFile, testUserId, testJobId);
-
-            // Allow async processing to complete
-            Thread.sleep(200);
+            etlProcessingService.processStagedFile(largeUpload, testUserId, testJobId);
 
             // Assert
             verify(etlJobService).updateJobStatus(eq(testJobId), eq("EXITO"), contains("ETL process completed successfully"));
@@ -264,20 +297,18 @@ class EtlProcessingServiceTest {
 
         @Test
         @DisplayName("Should handle empty file gracefully")
-        void processFile_emptyFileContent_shouldFinishAsSuccess() throws InterruptedException, IOException {
+        void processStagedFile_emptyFileContent_shouldFinishAsSuccess() throws IOException {
             // Arrange - parser returns empty list for empty file
-            when(parserService.parse(any(InputStream.class))).thenReturn(List.of());
+            when(parserService.parseFile(any(InputStream.class), any())).thenReturn(parsed(List.of()));
 
             // Act
-            etlProcessingService.processFile(testFile, testUserId, testJobId);
-
-            // Allow async processing to complete
-            Thread.sleep(100);
+            etlProcessingService.processStagedFile(testUpload, testUserId, testJobId);
 
             // Assert
             verify(etlJobService).updateJobStatus(eq(testJobId), eq("EXITO"), contains("No data rows found to sync"));
             verify(notificationService).notifyUser(eq(testUserId), eq(testJobId),
                     argThat(payload -> "EXITO".equals(payload.getStatus())));
+            verifyNoInteractions(analyticsViewRefreshService);
         }
     }
 }
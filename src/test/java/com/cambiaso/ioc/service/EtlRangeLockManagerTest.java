@@ -0,0 +1,98 @@
+package com.cambiaso.ioc.service;
+
+import com.cambiaso.ioc.persistence.repository.FactProductionBulkRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import jakarta.persistence.Query;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@DisplayName("EtlRangeLockManager Tests")
+class EtlRangeLockManagerTest {
+
+    private EntityManager entityManager;
+    private Query query;
+    private SimpleMeterRegistry meterRegistry;
+    private FactProductionBulkRepository bulkRepository;
+    private EtlRangeLockManager lockManager;
+
+    @BeforeEach
+    void setUp() {
+        entityManager = mock(EntityManager.class);
+        query = mock(Query.class);
+        when(entityManager.createNativeQuery(anyString())).thenReturn(query);
+        when(query.setParameter(anyInt(), any())).thenReturn(query);
+        meterRegistry = new SimpleMeterRegistry();
+        bulkRepository = mock(FactProductionBulkRepository.class);
+        when(bulkRepository.isPostgres()).thenReturn(true);
+        lockManager = new EtlRangeLockManager(entityManager, meterRegistry, bulkRepository);
+    }
+
+    @Test
+    @DisplayName("Overlapping ranges share at least one month bucket; disjoint months share none")
+    void bucketsFollowMonths() {
+        List<YearMonth> a = EtlRangeLockManager.monthBuckets(LocalDate.of(2025, 1, 20), LocalDate.of(2025, 3, 2));
+        List<YearMonth> b = EtlRangeLockManager.monthBuckets(LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 31));
+        List<YearMonth> c = EtlRangeLockManager.monthBuckets(LocalDate.of(2025, 4, 1), LocalDate.of(2025, 4, 30));
+
+        assertThat(a).containsExactly(YearMonth.of(2025, 1), YearMonth.of(2025, 2), YearMonth.of(2025, 3));
+        assertThat(a).containsAnyElementsOf(b);
+        assertThat(a).doesNotContainAnyElementsOf(c);
+        assertThat(EtlRangeLockManager.monthBuckets(LocalDate.of(2024, 12, 31), LocalDate.of(2025, 1, 1)))
+                .containsExactly(YearMonth.of(2024, 12), YearMonth.of(2025, 1));
+    }
+
+    @Test
+    @DisplayName("Month locks are taken once each, in ascending order, and the wait is recorded")
+    void locksAreTakenInAscendingOrder() {
+        Duration waited = lockManager.lockMonths(
+                List.of(YearMonth.of(2025, 3), YearMonth.of(2024, 11), YearMonth.of(2025, 3)), "test");
+
+        InOrder inOrder = inOrder(query);
+        inOrder.verify(query).setParameter(2, EtlRangeLockManager.bucketOf(YearMonth.of(2024, 11)));
+        inOrder.verify(query).setParameter(2, EtlRangeLockManager.bucketOf(YearMonth.of(2025, 3)));
+        verify(query, times(2)).getSingleResult();
+        verify(query, times(2)).setParameter(1, EtlRangeLockManager.LOCK_NAMESPACE);
+        assertThat(waited.isNegative()).isFalse();
+        assertThat(meterRegistry.timer("etl.lock.wait").count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Without advisory lock support (not PostgreSQL) the locks are skipped without querying")
+    void unsupportedDatabaseSkipsLocks() {
+        when(bulkRepository.isPostgres()).thenReturn(false);
+
+        Duration waited = lockManager.lockRange(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 6, 30));
+
+        assertThat(waited).isZero();
+        assertThat(lockManager.lockStreamingLoads()).isZero();
+        verify(entityManager, never()).createNativeQuery(anyString());
+        assertThat(meterRegistry.find("etl.lock.wait").timer()).isNull();
+    }
+
+    @Test
+    @DisplayName("On PostgreSQL a failed lock (deadlock, lock timeout) is propagated, not skipped")
+    void lockFailureOnPostgresIsPropagated() {
+        PersistenceException deadlock = new PersistenceException("ERROR: deadlock detected");
+        when(query.getSingleResult()).thenThrow(deadlock);
+
+        assertThatThrownBy(() -> lockManager.lockRange(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 6, 30)))
+                .isSameAs(deadlock);
+        verify(query, times(1)).getSingleResult();
+        assertThat(meterRegistry.find("etl.lock.wait").timer()).isNull();
+    }
+}
@@ -0,0 +1,160 @@
+package com.cambiaso.ioc.service;
+
+import com.cambiaso.ioc.persistence.entity.DimMaquina;
+import com.cambiaso.ioc.persistence.repository.DimMaquinaRepository;
+import com.cambiaso.ioc.persistence.repository.FactProductionPartitionRepository;
+import com.cambiaso.ioc.persistence.repository.FactProductionRepository;
+import com.cambiaso.ioc.service.etl.ProductionRow;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests (PostgreSQL via Testcontainers) for sql/fact_production_partitioning.sql:
+ * 1. Analytics range filters are pruned to the month partitions they touch.
+ * 2. A whole-month reload truncates the month partition and leaves other months untouched.
+ */
+@Testcontainers
+@SpringBootTest
+@ActiveProfiles("pgtest")
+class FactProductionPartitioningIT {
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void registerProps(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.datasource.driver-class-name", () -> "org.postgresql.Driver");
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "update");
+        registry.add("etl.sync.partition-aware.enabled", () -> "true");
+    }
+
+    private static boolean migrated;
+
+    @Autowired
+    private DataSyncService dataSyncService;
+    @Autowired
+    private DimMaquinaRepository dimMaquinaRepository;
+    @Autowired
+    private FactProductionRepository factProductionRepository;
+    @Autowired
+    private FactProductionPartitionRepository partitionRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private DimMaquina maquina;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        if (!migrated) {
+            // Hibernate (ddl-auto=update) creó fact_production como tabla simple: se aplica la migración real
+            jdbcTemplate.execute(Files.readString(Path.of("sql/fact_production_partitioning.sql")));
+            ReflectionTestUtils.setField(partitionRepository, "partitioned", null);
+            migrated = true;
+        }
+        factProductionRepository.deleteAll();
+        maquina = dimMaquinaRepository.findAll().stream().findFirst().orElseGet(() -> {
+            DimMaquina m = new DimMaquina();
+            m.setCodigoMaquina("M-PART");
+            m.setNombreMaquina("Maquina particiones");
+            return dimMaquinaRepository.save(m);
+        });
+    }
+
+    private ProductionRow build(LocalDate date, long numeroLog) {
+        ProductionRow fp = new ProductionRow();
+        fp.setFechaContabilizacion(date);
+        fp.setMaquinaId(maquina.getId());
+        fp.setNumeroLog(numeroLog);
+        fp.setHoraContabilizacion(LocalTime.of(8, 0, 0));
+        fp.setFechaNotificacion(date);
+        fp.setMaterialSku(6000123456L);
+        fp.setCantidad(new BigDecimal("10.0000"));
+        fp.setPesoNeto(new BigDecimal("15.5000"));
+        fp.setTurno("A");
+        return fp;
+    }
+
+    private List<ProductionRow> month(int year, int month, long logBase) {
+        List<ProductionRow> rows = new ArrayList<>();
+        LocalDate first = LocalDate.of(year, month, 1);
+        for (int d = 0; d < first.lengthOfMonth(); d++) {
+            rows.add(build(first.plusDays(d), logBase + d));
+        }
+        return rows;
+    }
+
+    @Test
+    @DisplayName("Range filters of the analytics queries only scan the matching month partitions")
+    void analyticsRangeIsPruned() {
+        dataSyncService.syncWithDeleteInsert(LocalDate.of(2025, 5, 1), LocalDate.of(2025, 7, 31), concat(
+                month(2025, 5, 1000), month(2025, 6, 2000), month(2025, 7, 3000)));
+        jdbcTemplate.execute("ANALYZE fact_production");
+        assertThat(partitionRepository.isPartitioned()).isTrue();
+
+        String plan = String.join("\n", jdbcTemplate.queryForList(
+                "EXPLAIN SELECT COUNT(*), COALESCE(SUM(fp.cantidad), 0) FROM fact_production fp "
+                        + "WHERE fp.fecha_contabilizacion BETWEEN ? AND ?", String.class,
+                LocalDate.of(2025, 6, 1), LocalDate.of(2025, 6, 30)));
+
+        assertThat(plan).contains("fact_production_p2025_06")
+                .doesNotContain("fact_production_p2025_05")
+                .doesNotContain("fact_production_p2025_07")
+                .doesNotContain("fact_production_default");
+    }
+
+    @Test
+    @DisplayName("Whole-month reload truncates the month partition and keeps neighbouring months")
+    void wholeMonthReloadTruncatesPartition() {
+        dataSyncService.syncWithDeleteInsert(LocalDate.of(2025, 6, 1), LocalDate.of(2025, 7, 31), concat(
+                month(2025, 6, 2000), month(2025, 7, 3000)));
+        double truncatedBefore = meterRegistry.counter("etl.sync.partition.truncated").count();
+
+        dataSyncService.syncWithDeleteInsert(LocalDate.of(2025, 6, 1), LocalDate.of(2025, 6, 30),
+                List.of(build(LocalDate.of(2025, 6, 15), 1L)));
+
+        assertThat(meterRegistry.counter("etl.sync.partition.truncated").count()).isEqualTo(truncatedBefore + 1);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM fact_production_p2025_06", Long.class)).isEqualTo(1L);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM fact_production_p2025_07", Long.class)).isEqualTo(31L);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM fact_production_default", Long.class)).isZero();
+    }
+
+    private static List<ProductionRow> concat(List<ProductionRow> a, List<ProductionRow> b) {
+        List<ProductionRow> all = new ArrayList<>(a);
+        all.addAll(b);
+        return all;
+    }
+
+    private static List<ProductionRow> concat(List<ProductionRow> a, List<ProductionRow> b, List<ProductionRow> c) {
+        return concat(concat(a, b), c);
+    }
+}
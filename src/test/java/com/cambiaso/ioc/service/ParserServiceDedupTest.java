@@ -1,6 +1,6 @@
 package com.cambiaso.ioc.service;
 
-import com.cambiaso.ioc.persistence.entity.FactProduction;
+import com.cambiaso.ioc.service.etl.ProductionRow;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -32,15 +32,15 @@ class ParserServiceDedupTest {
         String duplicated = header + "\n" + line + "\n" + line + "\n"; // duplicado
         InputStream is = new ByteArrayInputStream(duplicated.getBytes(StandardCharsets.ISO_8859_1));
 
-        List<FactProduction> records = parserService.parse(is);
+        List<ProductionRow> records = parserService.parse(is);
 
         assertThat(records)
                 .as("Debe existir solo un registro tras deduplicación")
                 .hasSize(1);
 
-        FactProduction fp = records.getFirst();
+        ProductionRow fp = records.getFirst();
         assertThat(fp.getNumeroLog()).isEqualTo(1234567L);
-        assertThat(fp.getMaquina()).isNotNull();
+        assertThat(fp.getMaquinaId()).isNotZero();
     }
 }
 
@@ -1,6 +1,6 @@
 package com.cambiaso.ioc.service;
 
-import com.cambiaso.ioc.persistence.entity.FactProduction;
+import com.cambiaso.ioc.service.etl.ProductionRow;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -32,7 +32,7 @@ class ParserServiceLeadingZerosDedupTest {
         String content = header + "\n" + lineA + "\n" + lineB + "\n";
         InputStream is = new ByteArrayInputStream(content.getBytes(StandardCharsets.ISO_8859_1));
 
-        List<FactProduction> records = parserService.parse(is);
+        List<ProductionRow> records = parserService.parse(is);
 
         assertThat(records)
                 .as("Las dos lineas representan el mismo Numero Log lógico tras normalización")
@@ -0,0 +1,138 @@
+package com.cambiaso.ioc.service;
+
+import com.cambiaso.ioc.service.etl.ProductionRow;
+import com.cambiaso.ioc.service.etl.RejectListener;
+import com.cambiaso.ioc.service.etl.RejectReason;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+/**
+ * El parseo paralelo por bloques debe producir exactamente lo mismo que el secuencial:
+ * mismos registros en el mismo orden, mismos contadores y los mismos ids de dimensión.
+ */
+class ParserServiceParallelTest {
+
+    private static final String HEADER = "| Status|Fecha Cont. |Hora    |Fecha Notif |Numero Log.|Material |Maquina |Maquinista|Cantidad |Peso Neto|Turno  |";
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @SuppressWarnings("unchecked")
+    private ParserService newParser(boolean parallel) {
+        // Solo M001 existe; las demás se registran con un id derivado del código (igual en ambos parseos)
+        DimensionRegistry registry = mock(DimensionRegistry.class);
+        when(registry.maquinaId(any())).thenAnswer(inv -> "M001".equals(inv.getArgument(0)) ? 1L : null);
+        when(registry.maquinistaId(anyLong())).thenReturn(null);
+        when(registry.registerMaquinas(anyCollection())).thenAnswer(inv -> ((Collection<String>) inv.getArgument(0))
+                .stream().collect(Collectors.toMap(Function.identity(), c -> 100 + Long.parseLong(c.substring(1)))));
+        when(registry.registerMaquinistas(anyCollection())).thenAnswer(inv -> ((Collection<Long>) inv.getArgument(0))
+                .stream().collect(Collectors.toMap(Function.identity(), c -> 100_000 + c)));
+        ParserService parser = new ParserService(registry, new SimpleMeterRegistry(), pool);
+        ReflectionTestUtils.setField(parser, "parallelEnabled", parallel);
+        ReflectionTestUtils.setField(parser, "parallelBlockBytes", 512);
+        ReflectionTestUtils.setField(parser, "parallelMaxInFlight", 3);
+        return parser;
+    }
+
+    private static String line(int n, String fecha, String hora) {
+        return String.format("| @08@  |%s  |%s|31.08.2025  |    %07d|6000123456|M00%d    |%d      |%d,500    |15,5   |A      |\r\n",
+                fecha, hora, n, 1 + n % 5, 9000 + n % 7, n);
+    }
+
+    private static String line(int n) {
+        return line(n, String.format("%02d.08.2025", 1 + n % 28), "08:00:00");
+    }
+
+    private static byte[] sampleFile() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Reporte de producción\r\n").append(HEADER).append("\r\n").append("-------------\r\n");
+        for (int i = 0; i < 600; i++) {
+            if (i > 0 && i % 150 == 0) sb.append(HEADER).append("\r\n"); // cabecera repetida (salto de página)
+            sb.append(line(i));
+            if (i % 37 == 0 && i >= 30) sb.append(line(i - 30));              // duplicado exacto lejano
+            if (i % 43 == 0 && i >= 25) {                                       // rechazo con clave ya vista -> duplicado
+                sb.append(line(i - 25, String.format("%02d.08.2025", 1 + (i - 25) % 28), ""));
+            }
+            if (i % 41 == 0) sb.append(line(10_000 + i, "05.08.2025", ""));    // rechazo con clave nueva -> malformada
+            if (i % 53 == 0) sb.append(line(20_000 + i, "xx.08.2025", "08:00:00")); // sin clave temprana
+        }
+        sb.append("|* total |\r\n");
+        return sb.toString().getBytes(Charset.forName("Windows-1252"));
+    }
+
+    private static RejectListener collect(List<String> rejects) {
+        return new RejectListener() {
+            @Override
+            public boolean wantsLines() {
+                return true;
+            }
+
+            @Override
+            public void rejected(int lineNumber, RejectReason reason, String line, String detail) {
+                assertThat(line).startsWith("|");
+                rejects.add(lineNumber + ":" + reason);
+            }
+        };
+    }
+
+    private static List<String> describe(List<ProductionRow> records) {
+        return records.stream()
+                .map(r -> r.getFechaContabilizacion() + "|" + r.getMaquinaId() + "|"
+                        + r.getMaquinistaId() + "|" + r.getNumeroLog() + "|" + r.getCantidad())
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void parallelParseMatchesSequentialParse() throws Exception {
+        byte[] file = sampleFile();
+        List<ProductionRow> sequential = new ArrayList<>();
+        List<ProductionRow> parallel = new ArrayList<>();
+
+        List<String> sequentialRejects = new ArrayList<>();
+        List<String> parallelRejects = new ArrayList<>();
+
+        ParserService.ParseSummary seq = newParser(false).parse(new ByteArrayInputStream(file), 100,
+                batch -> sequential.addAll(batch.toRows()), collect(sequentialRejects));
+        ParserService.ParseSummary par = newParser(true).parse(new ByteArrayInputStream(file), 100,
+                batch -> parallel.addAll(batch.toRows()), collect(parallelRejects));
+
+        assertThat(par).isEqualTo(seq);
+        assertThat(seq.duplicatesSkipped()).isPositive();
+        assertThat(seq.malformedLines()).isPositive();
+        assertThat(describe(parallel)).containsExactlyElementsOf(describe(sequential));
+
+        // Las mismas líneas rechazadas, con el mismo motivo (el orden entre bloques puede variar)
+        assertThat(sequentialRejects).hasSize(seq.malformedLines());
+        assertThat(parallelRejects).containsExactlyInAnyOrderElementsOf(sequentialRejects);
+
+        // Ningún id provisional llega al sink, aunque el código lo hayan visto primero varios hilos
+        assertThat(parallel).allSatisfy(r -> {
+            assertThat(r.getMaquinaId()).isPositive();
+            assertThat(r.getMaquinistaId()).isPositive();
+        });
+        assertThat(parallel.stream().map(ProductionRow::getMaquinaId).distinct()).hasSize(5);
+        assertThat(parallel.stream().map(ProductionRow::getMaquinistaId).distinct()).hasSize(7);
+    }
+}
@@ -1,6 +1,10 @@
 package com.cambiaso.ioc.service;
 
-import com.cambiaso.ioc.persistence.entity.FactProduction;
+import com.cambiaso.ioc.service.etl.ProductionBatch;
+import com.cambiaso.ioc.service.etl.ProductionRow;
+import com.cambiaso.ioc.service.etl.ProductionStats;
+import com.cambiaso.ioc.service.etl.RejectListener;
+import com.cambiaso.ioc.service.etl.RejectReason;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,6 +19,7 @@ import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.time.YearMonth;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -32,7 +37,7 @@ class ParserServiceTest {
         //InputStream inputStream = new ClassPathResource("sample-data.txt").getInputStream();
         InputStream inputStream = new ClassPathResource("real-acortado.txt").getInputStream();
         // Act
-        List<FactProduction> records = parserService.parse(inputStream);
+        List<ProductionRow> records = parserService.parse(inputStream);
 
         // Assert
         assertThat(records).hasSize(8);
@@ -43,7 +48,7 @@ class ParserServiceTest {
         System.out.println("---------------------------");
 
         // Verify first record in detail
-        FactProduction firstRecord = records.getFirst();
+        ProductionRow firstRecord = records.getFirst();
         assertThat(firstRecord.getFechaContabilizacion()).isEqualTo(LocalDate.of(2025, 8, 30));
         assertThat(firstRecord.getHoraContabilizacion()).isEqualTo(LocalTime.of(8, 29, 15));
         assertThat(firstRecord.getNumeroLog()).isEqualTo(2922290L);
@@ -54,11 +59,47 @@ class ParserServiceTest {
         assertThat(firstRecord.getBodeguero()).isNull();
 
         // Verify second record
-        FactProduction secondRecord = records.get(1);
+        ProductionRow secondRecord = records.get(1);
         assertThat(secondRecord.getNumeroLog()).isEqualTo(2922281L);
         assertThat(secondRecord.getBodeguero()).isNull();
     }
 
+    @Test
+    void whenParseInChunks_thenEmitsBoundedChunksWithSameRecords() throws IOException {
+        List<ProductionBatch> chunks = new java.util.ArrayList<>();
+
+        ParserService.ParseSummary summary = parserService.parse(
+                new ClassPathResource("real-acortado.txt").getInputStream(), 3, chunks::add);
+
+        assertThat(chunks).hasSize(3);
+        assertThat(chunks).allSatisfy(chunk -> assertThat(chunk.size()).isLessThanOrEqualTo(3));
+        assertThat(chunks.stream().mapToInt(ProductionBatch::size).sum()).isEqualTo(8);
+        assertThat(summary.recordsParsed()).isEqualTo(8);
+        assertThat(summary.minDate()).isEqualTo(LocalDate.of(2025, 8, 1));
+        assertThat(summary.maxDate()).isEqualTo(LocalDate.of(2025, 8, 30));
+        assertThat(chunks.getFirst().numeroLog(0)).isEqualTo(2922290L);
+        assertThat(summary.stats().rows()).isEqualTo(8);
+        assertThat(summary.stats().days().stream().mapToLong(ProductionStats.DayStats::rows).sum()).isEqualTo(8);
+        assertThat(summary.stats().days().getFirst().fecha()).isEqualTo(summary.minDate());
+    }
+
+    @Test
+    void whenScanMonths_thenReturnsMonthsOfEveryParsedRecord() throws IOException {
+        String header = "| Status|Fecha Cont. |Hora    |";
+        String content = header + "\n"
+                + "| @08@  |03.10.2025  |08:00:00|\n"
+                + "|-------------------------------|\n"
+                + "| @08@  |28.08.2025  |09:00:00|\n"
+                + "| @08@  |not-a-date  |10:00:00|\n";
+
+        assertThat(parserService.scanMonths(new ByteArrayInputStream(content.getBytes(StandardCharsets.ISO_8859_1))))
+                .containsExactly(YearMonth.of(2025, 8), YearMonth.of(2025, 10));
+
+        List<ProductionRow> records = parserService.parse(new ClassPathResource("real-acortado.txt").getInputStream());
+        assertThat(parserService.scanMonths(new ClassPathResource("real-acortado.txt").getInputStream()))
+                .containsAll(records.stream().map(r -> YearMonth.from(r.getFechaContabilizacion())).toList());
+    }
+
     @Test
     void whenLineHasMalformedNumber_shouldSkipAndContinue() throws IOException {
         // Arrange
@@ -67,11 +108,25 @@ class ParserServiceTest {
         String content = header + "\n" + badData;
         InputStream inputStream = new ByteArrayInputStream(content.getBytes(StandardCharsets.ISO_8859_1));
 
+        List<String> rejects = new java.util.ArrayList<>();
+        RejectListener listener = new RejectListener() {
+            @Override
+            public boolean wantsLines() {
+                return true;
+            }
+
+            @Override
+            public void rejected(int lineNumber, RejectReason reason, String line, String detail) {
+                rejects.add(lineNumber + "|" + reason + "|" + line);
+            }
+        };
+
         // Act
-        List<FactProduction> records = parserService.parse(inputStream);
+        List<ProductionRow> records = parserService.parseFile(inputStream, listener).records();
 
         // Assert
         assertThat(records).isEmpty(); // The line is skipped due to the critical error
+        assertThat(rejects).containsExactly("2|" + RejectReason.MISSING_FIELDS + "|" + badData);
     }
 
     @Test
@@ -90,7 +145,7 @@ class ParserServiceTest {
 
         // Act
         long startTime = System.currentTimeMillis();
-        List<FactProduction> records = parserService.parse(inputStream);
+        List<ProductionRow> records = parserService.parse(inputStream);
         long endTime = System.currentTimeMillis();
 
         // Assert
@@ -0,0 +1,108 @@
+package com.cambiaso.ioc.service;
+
+import com.cambiaso.ioc.persistence.entity.EtlJob;
+import com.cambiaso.ioc.persistence.entity.QuarantinedRecord;
+import com.cambiaso.ioc.persistence.repository.EtlJobRepository;
+import com.cambiaso.ioc.persistence.repository.QuarantineBulkRepository;
+import com.cambiaso.ioc.persistence.repository.QuarantinedRecordRepository;
+import com.cambiaso.ioc.service.etl.RejectReason;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Sin transacción de test: el hilo escritor confirma sus inserts por su cuenta
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({QuarantineBulkRepository.class, QuarantineWriter.class, QuarantineWriterTest.TestConfig.class})
+@TestPropertySource(properties = {"etl.quarantine.max-per-job=3", "etl.quarantine.batch-size=2", "etl.quarantine.max-line-chars=10"})
+@DisplayName("QuarantineWriter Tests")
+class QuarantineWriterTest {
+
+    static class TestConfig {
+        @Bean
+        MeterRegistry meterRegistry() { return new SimpleMeterRegistry(); }
+    }
+
+    @Autowired private QuarantineWriter writer;
+    @Autowired private QuarantinedRecordRepository quarantinedRecordRepository;
+    @Autowired private EtlJobRepository etlJobRepository;
+    @Autowired private MeterRegistry meterRegistry;
+
+    private UUID jobId;
+
+    @BeforeEach
+    void createJob() {
+        jobId = UUID.randomUUID();
+        etlJobRepository.save(EtlJob.builder().jobId(jobId).fileName("prod.txt").fileHash("hash-" + jobId)
+                .userId("user1").status("INICIADO").build());
+    }
+
+    @AfterEach
+    void cleanUp() {
+        quarantinedRecordRepository.deleteAll();
+        etlJobRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Rejected lines are written for the job up to the per-job limit, in line order")
+    void writesRejectsUpToTheJobLimit() {
+        try (QuarantineWriter.Session session = writer.open(jobId)) {
+            session.rejected(7, RejectReason.MALFORMED, "| 7 | bad date and more", "Fecha Contabilizacion is required");
+            session.rejected(3, RejectReason.MISSING_FIELDS, "| 3 |", null);
+            session.rejected(3, RejectReason.MISSING_FIELDS, "| 3 |", null); // reintento del parseo: ya vista
+            session.rejected(9, RejectReason.NO_KEY, "| 9 |", null);
+            assertThat(session.wantsLines()).isFalse();
+            session.rejected(12, RejectReason.NO_KEY, null, null);
+
+            assertThat(session.quarantined()).isEqualTo(3);
+            assertThat(session.rejectedByReason()).isEqualTo(Map.of(
+                    RejectReason.MALFORMED, 1, RejectReason.MISSING_FIELDS, 1, RejectReason.NO_KEY, 2));
+        }
+        writer.flush();
+
+        var page = quarantinedRecordRepository.findByEtlJob_JobId(jobId, PageRequest.of(0, 2, Sort.by("lineNumber")));
+        assertThat(page.getTotalElements()).isEqualTo(3);
+        assertThat(page.getContent()).extracting(QuarantinedRecord::getLineNumber).containsExactly(3, 7);
+        QuarantinedRecord malformed = page.getContent().get(1);
+        assertThat(malformed.getFileName()).isEqualTo("prod.txt");
+        assertThat(malformed.getErrorType()).isEqualTo("MALFORMED");
+        assertThat(malformed.getErrorDetails()).isEqualTo("Fecha Contabilizacion is required");
+        assertThat(malformed.getRawLine()).isEqualTo("| 7 | bad ");
+        assertThat(page.getContent().get(0).getErrorDetails()).isEqualTo("MISSING_FIELDS");
+        assertThat(meterRegistry.counter("etl.quarantine.dropped", "reason", "job_limit").count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Opening the quarantine again replaces the lines of the previous run")
+    void reopeningClearsThePreviousRun() {
+        try (QuarantineWriter.Session first = writer.open(jobId)) {
+            first.rejected(1, RejectReason.NO_KEY, "| 1 |", null);
+            first.rejected(2, RejectReason.NO_KEY, "| 2 |", null);
+        }
+        writer.flush();
+
+        try (QuarantineWriter.Session second = writer.open(jobId)) {
+            second.rejected(2, RejectReason.NO_KEY, "| 2 |", null);
+        }
+        writer.flush();
+
+        assertThat(quarantinedRecordRepository.countByEtlJob_JobId(jobId)).isEqualTo(1);
+    }
+}
@@ -0,0 +1,60 @@
+package com.cambiaso.ioc.service;
+
+import com.cambiaso.ioc.service.UploadStagingService.StagedUpload;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UploadStagingServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void stageSpoolsUploadAndComputesHashInOnePass() throws Exception {
+        byte[] content = "| @08@  |30.08.2025  |08:29:15|\n".repeat(5000).getBytes(StandardCharsets.ISO_8859_1);
+        MockMultipartFile file = new MockMultipartFile("file", "data.txt", "text/plain", content);
+        UploadStagingService service = new UploadStagingService(new SimpleMeterRegistry(), tempDir.resolve("staging").toString());
+
+        StagedUpload staged = service.stage(file);
+
+        String expectedHash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        assertThat(staged.sha256()).isEqualTo(expectedHash);
+        assertThat(staged.size()).isEqualTo(content.length);
+        assertThat(staged.originalFilename()).isEqualTo("data.txt");
+        try (InputStream in = service.openStream(staged)) {
+            assertThat(in.readAllBytes()).isEqualTo(content);
+        }
+
+        service.discard(staged);
+        assertThat(Files.exists(staged.path())).isFalse();
+    }
+
+    @Test
+    void hashDependsOnContentOnly() {
+        UploadStagingService service = new UploadStagingService(new SimpleMeterRegistry(), tempDir.toString());
+        byte[] line = "| @08@  |30.08.2025  |08:29:15|".getBytes(StandardCharsets.UTF_8);
+
+        StagedUpload a = service.stage(new MockMultipartFile("file", "a.txt", "text/plain", line));
+        StagedUpload b = service.stage(new MockMultipartFile("file", "other-name.txt", "text/plain", line));
+        StagedUpload c = service.stage(new MockMultipartFile("file", "a.txt", "text/plain", "| @09@  |".getBytes(StandardCharsets.UTF_8)));
+        StagedUpload empty = service.stage(new MockMultipartFile("file", "empty.txt", "text/plain", new byte[0]));
+
+        assertThat(a.sha256()).isEqualTo(b.sha256()).hasSize(64);
+        assertThat(c.sha256()).isNotEqualTo(a.sha256());
+        assertThat(empty.sha256()).hasSize(64);
+        assertThat(empty.size()).isZero();
+        List.of(a, b, c, empty).forEach(service::discard);
+    }
+}
@@ -8,20 +8,31 @@ import com.cambiaso.ioc.exception.GeminiApiException;
 import com.cambiaso.ioc.exception.GeminiRateLimitException;
 import com.cambiaso.ioc.exception.GeminiTimeoutException;
 import com.cambiaso.ioc.persistence.repository.DashboardAnalyticsRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.cache.CacheManager;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
 import static org.mockito.Mockito.*;
 
 /**
@@ -50,6 +61,9 @@ class DashboardExplanationServiceTest extends AbstractIntegrationTest {
     @Autowired
     private CacheManager cacheManager;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @BeforeEach
     void setup() {
         // Limpiar caches relevantes antes de cada test
@@ -60,6 +74,8 @@ class DashboardExplanationServiceTest extends AbstractIntegrationTest {
         if (cacheManager.getCache("aiExplanationsCurrent") != null) {
             cacheManager.getCache("aiExplanationsCurrent").clear();
         }
+        // Estos tests simulan la consulta combinada del repositorio (DailyAnalyticsCache tiene sus propios tests)
+        ReflectionTestUtils.setField(service, "analyticsFetchMode", "bundle");
     }
 
     @Test
@@ -73,31 +89,25 @@ class DashboardExplanationServiceTest extends AbstractIntegrationTest {
         );
 
         // Mock repository responses
-        when(analyticsRepository.fetchTotals(any(), any()))
-            .thenReturn(new TotalsDto(100L, new BigDecimal("5000"), new BigDecimal("25000")));
-
-        when(analyticsRepository.fetchTopOperarios(any(), any()))
-            .thenReturn(List.of(
-                new TopOperarioDto("Juan Pérez", 12345L, new BigDecimal("1500"), 30),
-                new TopOperarioDto("María García", 12346L, new BigDecimal("1200"), 25)
-            ));
-
-        when(analyticsRepository.fetchDistribucionTurno(any(), any()))
-            .thenReturn(List.of(
-                new TurnoDistributionDto("Día", new BigDecimal("3000"), 60),
-                new TurnoDistributionDto("Noche", new BigDecimal("2000"), 40)
-            ));
-
-        when(analyticsRepository.fetchTopMaquinas(any(), any()))
-            .thenReturn(List.of(
-                new TopMachineDto("Máquina A", "MA-001", new BigDecimal("2500"), 50),
-                new TopMachineDto("Máquina B", "MA-002", new BigDecimal("2000"), 40)
-            ));
-
-        when(analyticsRepository.fetchTendenciaDiaria(any(), any()))
-            .thenReturn(List.of(
-                new DailyTrendPoint(LocalDate.of(2025, 6, 1), new BigDecimal("150"), 3),
-                new DailyTrendPoint(LocalDate.of(2025, 6, 2), new BigDecimal("160"), 4)
+        when(analyticsRepository.fetchAnalyticsBundle(any(), any()))
+            .thenReturn(new AnalyticsBundleDto(
+                new TotalsDto(100L, new BigDecimal("5000"), new BigDecimal("25000")),
+                List.of(
+                    new TopOperarioDto("Juan Pérez", 12345L, new BigDecimal("1500"), 30),
+                    new TopOperarioDto("María García", 12346L, new BigDecimal("1200"), 25)
+                ),
+                List.of(
+                    new TurnoDistributionDto("Día", new BigDecimal("3000"), 60),
+                    new TurnoDistributionDto("Noche", new BigDecimal("2000"), 40)
+                ),
+                List.of(
+                    new TopMachineDto("Máquina A", "MA-001", new BigDecimal("2500"), 50),
+                    new TopMachineDto("Máquina B", "MA-002", new BigDecimal("2000"), 40)
+                ),
+                List.of(
+                    new DailyTrendPoint(LocalDate.of(2025, 6, 1), new BigDecimal("150"), 3),
+                    new DailyTrendPoint(LocalDate.of(2025, 6, 2), new BigDecimal("160"), 4)
+                )
             ));
 
         // Mock Gemini response
@@ -137,11 +147,8 @@ class DashboardExplanationServiceTest extends AbstractIntegrationTest {
         assertEquals(1500, response.tokensUsados());
 
         // Verify interactions
-        verify(analyticsRepository).fetchTotals(any(), any());
-        verify(analyticsRepository).fetchTopOperarios(any(), any());
-        verify(analyticsRepository).fetchDistribucionTurno(any(), any());
-        verify(analyticsRepository).fetchTopMaquinas(any(), any());
-        verify(analyticsRepository).fetchTendenciaDiaria(any(), any());
+        verify(analyticsRepository).fetchAnalyticsBundle(any(), any());
+        verify(analyticsRepository, never()).fetchTotals(any(), any());
         verify(geminiClient).callGemini(anyString());
     }
 
@@ -435,12 +442,9 @@ class DashboardExplanationServiceTest extends AbstractIntegrationTest {
         );
 
         // Mock con datos vacíos
-        when(analyticsRepository.fetchTotals(any(), any()))
-            .thenReturn(new TotalsDto(0L, BigDecimal.ZERO, BigDecimal.ZERO));
-        when(analyticsRepository.fetchTopOperarios(any(), any())).thenReturn(List.of());
-        when(analyticsRepository.fetchDistribucionTurno(any(), any())).thenReturn(List.of());
-        when(analyticsRepository.fetchTopMaquinas(any(), any())).thenReturn(List.of());
-        when(analyticsRepository.fetchTendenciaDiaria(any(), any())).thenReturn(List.of());
+        when(analyticsRepository.fetchAnalyticsBundle(any(), any()))
+            .thenReturn(new AnalyticsBundleDto(new TotalsDto(0L, BigDecimal.ZERO, BigDecimal.ZERO),
+                List.of(), List.of(), List.of(), List.of()));
 
         String mockResponse = """
             {
@@ -462,18 +466,170 @@ class DashboardExplanationServiceTest extends AbstractIntegrationTest {
         assertEquals(1, response.alertas().size());
     }
 
+    @Test
+    void explainDashboard_parallelFetch_runsQueriesConcurrently() {
+        // Given - cada consulta espera a que las cinco hayan empezado: solo termina si corren en paralelo
+        DashboardExplanationRequest request = new DashboardExplanationRequest(
+            5, LocalDate.of(2025, 6, 1), LocalDate.of(2025, 6, 30), Map.of());
+        CountDownLatch allStarted = new CountDownLatch(5);
+        Runnable barrier = () -> {
+            allStarted.countDown();
+            try {
+                assertTrue(allStarted.await(5, TimeUnit.SECONDS), "queries did not run concurrently");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        when(analyticsRepository.fetchTotals(any(), any())).thenAnswer(inv -> {
+            barrier.run();
+            return new TotalsDto(100L, new BigDecimal("5000"), new BigDecimal("25000"));
+        });
+        when(analyticsRepository.fetchTopOperarios(any(), any())).thenAnswer(inv -> {
+            barrier.run();
+            return List.of(new TopOperarioDto("Test", 123L, new BigDecimal("1000"), 10));
+        });
+        when(analyticsRepository.fetchDistribucionTurno(any(), any())).thenAnswer(inv -> {
+            barrier.run();
+            return List.of(new TurnoDistributionDto("Día", new BigDecimal("5000"), 100));
+        });
+        when(analyticsRepository.fetchTopMaquinas(any(), any())).thenAnswer(inv -> {
+            barrier.run();
+            return List.of(new TopMachineDto("Máquina A", "MA-001", new BigDecimal("2500"), 50));
+        });
+        when(analyticsRepository.fetchTendenciaDiaria(any(), any())).thenAnswer(inv -> {
+            barrier.run();
+            return List.of(new DailyTrendPoint(LocalDate.of(2025, 6, 1), new BigDecimal("150"), 3));
+        });
+        when(geminiClient.callGemini(anyString())).thenReturn("""
+            {"resumenEjecutivo": "OK", "keyPoints": ["a"], "insightsAccionables": [], "alertas": []}
+            """);
+        when(geminiClient.estimateTokens(anyString())).thenReturn(100);
+
+        ReflectionTestUtils.setField(service, "analyticsFetchMode", "parallel");
+        try {
+            // When
+            DashboardExplanationResponse response = service.explainDashboard(request);
+
+            // Then
+            assertEquals("OK", response.resumenEjecutivo());
+            verify(analyticsRepository, never()).fetchAnalyticsBundle(any(), any());
+            verify(geminiClient).callGemini(contains("Máquina A"));
+        } finally {
+            ReflectionTestUtils.setField(service, "analyticsFetchMode", "bundle");
+        }
+    }
+
+    @Test
+    void explainDashboard_parallelFetch_failureCancelsSiblings() {
+        // Given - una consulta falla mientras las demás siguen bloqueadas
+        DashboardExplanationRequest request = new DashboardExplanationRequest(
+            5, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31), Map.of());
+        AtomicInteger interrupted = new AtomicInteger();
+        CountDownLatch blockedStarted = new CountDownLatch(4);
+        CountDownLatch cancelled = new CountDownLatch(4);
+        org.mockito.stubbing.Answer<Object> blockUntilCancelled = inv -> {
+            blockedStarted.countDown();
+            try {
+                Thread.sleep(30_000);
+            } catch (InterruptedException e) {
+                interrupted.incrementAndGet();
+            } finally {
+                cancelled.countDown();
+            }
+            return List.of();
+        };
+        when(analyticsRepository.fetchTotals(any(), any())).thenAnswer(inv -> {
+            assertTrue(blockedStarted.await(5, TimeUnit.SECONDS));
+            throw new IllegalStateException("boom");
+        });
+        when(analyticsRepository.fetchTopOperarios(any(), any())).thenAnswer(blockUntilCancelled);
+        when(analyticsRepository.fetchDistribucionTurno(any(), any())).thenAnswer(blockUntilCancelled);
+        when(analyticsRepository.fetchTopMaquinas(any(), any())).thenAnswer(blockUntilCancelled);
+        when(analyticsRepository.fetchTendenciaDiaria(any(), any())).thenAnswer(blockUntilCancelled);
+
+        ReflectionTestUtils.setField(service, "analyticsFetchMode", "parallel");
+        try {
+            // When/Then
+            IllegalStateException ex = assertThrows(IllegalStateException.class, () -> service.explainDashboard(request));
+            assertEquals("boom", ex.getMessage());
+            assertTrue(cancelled.await(5, TimeUnit.SECONDS), "sibling queries were not cancelled");
+            assertEquals(4, interrupted.get());
+            verify(geminiClient, never()).callGemini(anyString());
+
+            // El plazo común también cancela: ninguna consulta termina antes de 200 ms
+            ReflectionTestUtils.setField(service, "analyticsTimeoutMs", 200L);
+            doAnswer(blockUntilCancelled).when(analyticsRepository).fetchTotals(any(), any());
+            assertThrows(QueryTimeoutException.class, () -> service.explainDashboard(request));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+        } finally {
+            ReflectionTestUtils.setField(service, "analyticsFetchMode", "bundle");
+            ReflectionTestUtils.setField(service, "analyticsTimeoutMs", 15000L);
+        }
+    }
+
+    @Test
+    void explainDashboard_parallelFetch_deadlineStopsRunningStatements() {
+        // Given - una consulta se bloquea más allá del plazo y las demás ejecutan SQL que no termina solo
+        DashboardExplanationRequest request = new DashboardExplanationRequest(
+            5, LocalDate.of(2024, 2, 1), LocalDate.of(2024, 2, 29), Map.of());
+        HikariPoolMXBean pool = ((HikariDataSource) jdbcTemplate.getDataSource()).getHikariPoolMXBean();
+        int baseline = pool.getActiveConnections(); // la transacción del propio test
+        AtomicInteger started = new AtomicInteger();
+        Queue<Throwable> siblingOutcomes = new ConcurrentLinkedQueue<>();
+        org.mockito.stubbing.Answer<Object> runawayStatement = inv -> {
+            started.incrementAndGet();
+            try {
+                // Interrumpir el hilo no cancela la sentencia; solo el timeout de la transacción la detiene
+                jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM SYSTEM_RANGE(1, 100000) a, SYSTEM_RANGE(1, 100000) b", Long.class);
+            } catch (RuntimeException e) {
+                siblingOutcomes.add(e);
+            }
+            return List.of();
+        };
+        when(analyticsRepository.fetchTotals(any(), any())).thenAnswer(inv -> {
+            Thread.sleep(30_000);
+            return null;
+        });
+        when(analyticsRepository.fetchTopOperarios(any(), any())).thenAnswer(runawayStatement);
+        when(analyticsRepository.fetchDistribucionTurno(any(), any())).thenAnswer(runawayStatement);
+        when(analyticsRepository.fetchTopMaquinas(any(), any())).thenAnswer(runawayStatement);
+        when(analyticsRepository.fetchTendenciaDiaria(any(), any())).thenAnswer(runawayStatement);
+
+        ReflectionTestUtils.setField(service, "analyticsFetchMode", "parallel");
+        ReflectionTestUtils.setField(service, "analyticsTimeoutMs", 300L);
+        try {
+            // When/Then - las sentencias en curso se abortan y devuelven su conexión al pool
+            assertThrows(QueryTimeoutException.class, () -> service.explainDashboard(request));
+            long waitUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (pool.getActiveConnections() > baseline && System.nanoTime() < waitUntil) {
+                Thread.sleep(50);
+            }
+            assertEquals(baseline, pool.getActiveConnections(), "sibling statements kept their connections");
+            assertTrue(started.get() > 0);
+            assertEquals(started.get(), siblingOutcomes.size());
+            siblingOutcomes.forEach(e -> assertInstanceOf(QueryTimeoutException.class, e));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+        } finally {
+            ReflectionTestUtils.setField(service, "analyticsFetchMode", "bundle");
+            ReflectionTestUtils.setField(service, "analyticsTimeoutMs", 15000L);
+        }
+    }
+
     // Helper method
     private void mockRepositoryData() {
-        when(analyticsRepository.fetchTotals(any(), any()))
-            .thenReturn(new TotalsDto(100L, new BigDecimal("5000"), new BigDecimal("25000")));
-        when(analyticsRepository.fetchTopOperarios(any(), any()))
-            .thenReturn(List.of(new TopOperarioDto("Test", 123L, new BigDecimal("1000"), 10)));
-        when(analyticsRepository.fetchDistribucionTurno(any(), any()))
-            .thenReturn(List.of(new TurnoDistributionDto("Día", new BigDecimal("5000"), 100)));
-        when(analyticsRepository.fetchTopMaquinas(any(), any()))
-            .thenReturn(List.of(new TopMachineDto("Máquina A", "MA-001", new BigDecimal("2500"), 50)));
-        when(analyticsRepository.fetchTendenciaDiaria(any(), any()))
-            .thenReturn(List.of(new DailyTrendPoint(LocalDate.now(), new BigDecimal("150"), 3)));
+        when(analyticsRepository.fetchAnalyticsBundle(any(), any()))
+            .thenReturn(new AnalyticsBundleDto(
+                new TotalsDto(100L, new BigDecimal("5000"), new BigDecimal("25000")),
+                List.of(new TopOperarioDto("Test", 123L, new BigDecimal("1000"), 10)),
+                List.of(new TurnoDistributionDto("Día", new BigDecimal("5000"), 100)),
+                List.of(new TopMachineDto("Máquina A", "MA-001", new BigDecimal("2500"), 50)),
+                List.of(new DailyTrendPoint(LocalDate.now(), new BigDecimal("150"), 3))
+            ));
     }
 }
 
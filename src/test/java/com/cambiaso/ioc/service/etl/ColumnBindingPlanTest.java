@@ -0,0 +1,49 @@
+package com.cambiaso.ioc.service.etl;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ColumnBindingPlanTest {
+
+    private static final Map<String, FieldDecoder> DECODERS = Map.of(
+            "Turno", (r, l, i) -> r.setTurno(l.fieldString(i)),
+            "Lista", (r, l, i) -> r.setLista(l.fieldString(i)),
+            "Jornada", (r, l, i) -> { throw new IllegalStateException("boom"); });
+
+    @Test
+    void compileReportsUnknownAndMissingColumnsOnce() {
+        ColumnBindingPlan plan = ColumnBindingPlan.compile(
+                new String[]{"", "Turno", "Extra", "Jornada", ""}, DECODERS, List.of("Turno", "Lista"));
+
+        assertThat(plan.unknownColumns()).containsExactly("Extra");
+        assertThat(plan.missingColumns()).containsExactly("Lista");
+        assertThat(plan.missingRequiredColumns()).containsExactly("Lista");
+        assertThat(plan.columnIndex("Jornada")).isEqualTo(3);
+        assertThat(plan.columnIndex("Lista")).isEqualTo(-1);
+    }
+
+    @Test
+    void bindDecodesByPositionAndKeepsLastDuplicateHeader() throws IOException {
+        ColumnBindingPlan plan = ColumnBindingPlan.compile(
+                new String[]{"", "Turno", "Lista", "Turno", "Jornada", ""}, DECODERS, List.of("Lista"));
+        List<Integer> failed = new ArrayList<>();
+
+        try (PipeDelimitedReader line = new PipeDelimitedReader(new StringReader("| A | L1 | B | J |"))) {
+            line.nextLine();
+            ProductionRow record = new ProductionRow();
+            plan.bind(record, line, (field, e) -> failed.add(field));
+
+            assertThat(record.getTurno()).isEqualTo("B");
+            assertThat(record.getLista()).isEqualTo("L1");
+            assertThat(failed).containsExactly(4);
+            assertThat(plan.hasRequiredFields(line)).isTrue();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.cambiaso.ioc.service.etl;
+
+import com.cambiaso.ioc.service.etl.LineBlockSplitter.LineBlock;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LineBlockSplitterTest {
+
+    private static final Charset CP1252 = Charset.forName("Windows-1252");
+    private static final String CONTENT = "título\r\n|Fecha Cont.|Máquina|A|\r\n|01.08.2025|M1|\r\n"
+            + "|" + "x".repeat(70) + "|\r\n|Fecha Cont.|Máquina|B|\r\n|02.08.2025|M2|\r\n|03.08.2025|M3|";
+
+    private static List<LineBlock> split(int blockBytes) throws IOException {
+        LineBlockSplitter splitter = new LineBlockSplitter(
+                new ByteArrayInputStream(CONTENT.getBytes(CP1252)), blockBytes, CP1252, "Fecha Cont.");
+        List<LineBlock> blocks = new ArrayList<>();
+        LineBlock block;
+        while ((block = splitter.next()) != null) blocks.add(block);
+        return blocks;
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {8, 20, 33, 64, 4096})
+    void blocksAreLineAlignedAndCarryLineNumberAndHeader(int blockBytes) throws IOException {
+        List<LineBlock> blocks = split(blockBytes);
+
+        StringBuilder before = new StringBuilder();
+        for (int i = 0; i < blocks.size(); i++) {
+            LineBlock b = blocks.get(i);
+            String text = new String(b.data(), 0, b.length(), CP1252);
+            assertThat(b.index()).isEqualTo(i);
+            if (i < blocks.size() - 1) assertThat(text).endsWith("\n");
+            assertThat(b.firstLineNumber()).isEqualTo(1 + before.chars().filter(c -> c == '\n').count());
+            assertThat(b.headerLine()).isEqualTo(lastHeader(before.toString()));
+            before.append(text);
+        }
+        assertThat(before.toString()).isEqualTo(CONTENT);
+    }
+
+    private static String lastHeader(String text) {
+        String last = null;
+        for (String line : text.split("\r\n")) {
+            if (line.contains("Fecha Cont.")) last = line;
+        }
+        return last;
+    }
+}
@@ -0,0 +1,66 @@
+package com.cambiaso.ioc.service.etl;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NaturalKeySetTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 8, 30);
+
+    @Test
+    void charRangeAndRecordValuesProduceTheSameKey() {
+        NaturalKeySet keys = new NaturalKeySet(new CodeDictionary(), 4);
+        char[] line = "| M001 |".toCharArray();
+
+        keys.prepare(DAY, line, 2, 6, 9001L, 123L);
+        assertThat(keys.addPrepared()).isTrue();
+
+        assertThat(keys.prepare(DAY, " M001", 9001L, 123L)).isTrue();
+        assertThat(keys.containsPrepared()).isTrue();
+        assertThat(keys.addPrepared()).isFalse();
+        assertThat(keys.describePrepared()).isEqualTo("2025-08-30|M001|9001|123");
+    }
+
+    @Test
+    void missingMaquinistaEqualsZeroAndMissingPartsAreRejected() {
+        NaturalKeySet keys = new NaturalKeySet(new CodeDictionary(), 4);
+
+        assertThat(keys.prepare(DAY, "M1", null, 5L)).isTrue();
+        assertThat(keys.addPrepared()).isTrue();
+        assertThat(keys.prepare(DAY, "M1", 0L, 5L)).isTrue();
+        assertThat(keys.addPrepared()).isFalse();
+
+        assertThat(keys.prepare(null, "M1", 0L, 5L)).isFalse();
+        assertThat(keys.prepare(DAY, "  ", 0L, 5L)).isFalse();
+        assertThat(keys.prepare(DAY, "M1", 0L, null)).isFalse();
+    }
+
+    @Test
+    void valuesOutsideThePackedLayoutFallBackToTextKeys() {
+        NaturalKeySet keys = new NaturalKeySet(new CodeDictionary(), 4);
+
+        assertThat(keys.prepare(DAY, "M1", 1L << 30, -7L)).isTrue();
+        assertThat(keys.addPrepared()).isTrue();
+        assertThat(keys.describePrepared()).isEqualTo("2025-08-30|M1|1073741824|-7");
+        assertThat(keys.prepare(DAY, "M1", 1L << 30, -7L)).isTrue();
+        assertThat(keys.addPrepared()).isFalse();
+        assertThat(keys.size()).isEqualTo(1);
+    }
+
+    @Test
+    void longPairSetGrowsAndKeepsZeroPair() {
+        LongPairHashSet set = new LongPairHashSet(2);
+        for (long i = 0; i < 10_000; i++) {
+            assertThat(set.add(i, i * 31)).isTrue();
+        }
+        for (long i = 0; i < 10_000; i++) {
+            assertThat(set.contains(i, i * 31)).isTrue();
+            assertThat(set.add(i, i * 31)).isFalse();
+        }
+        assertThat(set.contains(1, 0)).isFalse();
+        assertThat(set.size()).isEqualTo(10_000);
+    }
+}
@@ -0,0 +1,53 @@
+package com.cambiaso.ioc.service.etl;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PipeDelimitedReaderTest {
+
+    @Test
+    void fieldsMatchSplitAndTrimSemantics() throws IOException {
+        String line = "| 01.08.2025 |  M01|| 123 |";
+        try (PipeDelimitedReader reader = new PipeDelimitedReader(new StringReader(line))) {
+            assertThat(reader.nextLine()).isTrue();
+            String[] expected = line.split("\\|", -1);
+            assertThat(reader.fieldCount()).isEqualTo(expected.length);
+            for (int i = 0; i < expected.length; i++) {
+                assertThat(reader.fieldString(i)).isEqualTo(expected[i].trim());
+                assertThat(reader.field(i).toString()).isEqualTo(expected[i].trim());
+            }
+            assertThat(reader.isEmpty(0)).isTrue();
+            assertThat(reader.isEmpty(3)).isTrue();
+            assertThat(reader.isEmpty(99)).isTrue();
+            assertThat(reader.nextLine()).isFalse();
+        }
+    }
+
+    @Test
+    void handlesMixedLineTerminatorsAcrossBufferRefills() throws IOException {
+        // Buffer mínimo para forzar refill, compactación y crecimiento a mitad de línea
+        String content = "a|b\r\nccccccccccccccccccccccccccccccc|d\n\n  --- |x\rlast";
+        try (PipeDelimitedReader reader = new PipeDelimitedReader(new StringReader(content), 16)) {
+            assertThat(reader.nextLine()).isTrue();
+            assertThat(reader.lineString()).isEqualTo("a|b");
+            assertThat(reader.nextLine()).isTrue();
+            assertThat(reader.fieldString(0)).hasSize(31);
+            assertThat(reader.fieldString(1)).isEqualTo("d");
+            assertThat(reader.nextLine()).isTrue();
+            assertThat(reader.isBlankLine()).isTrue();
+            assertThat(reader.fieldCount()).isEqualTo(1);
+            assertThat(reader.nextLine()).isTrue();
+            assertThat(reader.firstNonBlankChar()).isEqualTo('-');
+            assertThat(reader.lineContains("--- |")).isTrue();
+            assertThat(reader.lineContains("|y")).isFalse();
+            assertThat(reader.nextLine()).isTrue();
+            assertThat(reader.lineString()).isEqualTo("last");
+            assertThat(reader.lineNumber()).isEqualTo(5);
+            assertThat(reader.nextLine()).isFalse();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.cambiaso.ioc.service.etl;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProductionBatchTest {
+
+    private static ProductionRow row(LocalDate fecha, long numeroLog, String turno) {
+        ProductionRow fp = new ProductionRow();
+        fp.setFechaContabilizacion(fecha);
+        fp.setNumeroLog(numeroLog);
+        fp.setHoraContabilizacion(LocalTime.of(8, 0, 15));
+        fp.setMaquinaId(7L);
+        fp.setMaterialSku(123L);
+        fp.setMaterialDescripcion("Caja");
+        fp.setCantidad(new BigDecimal("10.5"));
+        fp.setTurno(turno);
+        fp.setLista("");
+        return fp;
+    }
+
+    @Test
+    void roundTripsRowsIncludingNullsAndEncodedTexts() {
+        ProductionRow a = row(LocalDate.of(2025, 1, 10), 1L, "A");
+        ProductionRow b = row(LocalDate.of(2025, 1, 11), 2L, null);
+        b.setPesoNeto(BigDecimal.ONE);
+
+        ProductionBatch batch = ProductionBatch.of(List.of(a, b));
+
+        assertThat(batch.size()).isEqualTo(2);
+        assertThat(batch.isFull()).isTrue();
+        assertThat(batch.turno(0)).isEqualTo("A");
+        assertThat(batch.turno(1)).isNull();
+        assertThat(batch.lista(1)).isEmpty();
+        assertThat(batch.jornada(0)).isNull();
+        assertThat(batch.pesoNetoScaled(0)).isEqualTo(ProductionRow.NULL_LONG);
+        assertThat(batch.row(1)).usingRecursiveComparison().isEqualTo(b);
+        assertThat(batch.toRows()).usingRecursiveFieldByFieldElementComparator().containsExactly(a, b);
+    }
+
+    @Test
+    void rejectsRowsBeyondCapacity() {
+        ProductionBatch batch = new ProductionBatch(1);
+        batch.add(row(LocalDate.of(2025, 1, 10), 1L, "A"));
+
+        assertThatThrownBy(() -> batch.add(row(LocalDate.of(2025, 1, 10), 2L, "A")))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void tracksDateRangeAndDistinctDays() {
+        ProductionBatch empty = new ProductionBatch(4);
+        assertThat(empty.minDay()).isEqualTo(ProductionRow.NULL_INT);
+        assertThat(empty.distinctDays()).isEmpty();
+
+        // Pocos días cercanos: marca por desplazamiento
+        ProductionBatch near = ProductionBatch.of(List.of(
+                row(LocalDate.of(2025, 1, 12), 1L, "A"),
+                row(LocalDate.of(2025, 1, 10), 2L, "A"),
+                row(LocalDate.of(2025, 1, 12), 3L, "B")));
+        assertThat(near.minDay()).isEqualTo(LocalDate.of(2025, 1, 10).toEpochDay());
+        assertThat(near.maxDay()).isEqualTo(LocalDate.of(2025, 1, 12).toEpochDay());
+        assertThat(near.distinctDays()).containsExactly(
+                (int) LocalDate.of(2025, 1, 10).toEpochDay(), (int) LocalDate.of(2025, 1, 12).toEpochDay());
+
+        // Días muy separados: orden y compactación
+        ProductionBatch far = ProductionBatch.of(List.of(
+                row(LocalDate.of(2030, 6, 1), 1L, "A"),
+                row(LocalDate.of(2020, 1, 1), 2L, "A"),
+                row(LocalDate.of(2030, 6, 1), 3L, "A")));
+        assertThat(far.distinctDays()).containsExactly(
+                (int) LocalDate.of(2020, 1, 1).toEpochDay(), (int) LocalDate.of(2030, 6, 1).toEpochDay());
+    }
+
+    @Test
+    void resolvesProvisionalDimensionIds() {
+        ProductionRow pending = row(LocalDate.of(2025, 1, 10), 1L, "A");
+        pending.setMaquinaId(-2L);
+        pending.setMaquinistaId(-1L);
+        ProductionRow known = row(LocalDate.of(2025, 1, 10), 2L, "A");
+
+        ProductionBatch batch = ProductionBatch.of(List.of(pending, known));
+        batch.resolveProvisionalIds(new long[] {50L, 51L}, new long[] {900L});
+
+        assertThat(batch.maquinaId(0)).isEqualTo(51L);
+        assertThat(batch.maquinistaId(0)).isEqualTo(900L);
+        assertThat(batch.maquinaId(1)).isEqualTo(7L);
+        assertThat(batch.maquinistaId(1)).isZero();
+    }
+
+    @Test
+    void contentHashesMatchRowByRowHashing() {
+        ProductionRow a = row(LocalDate.of(2025, 1, 10), 1L, "A");
+        ProductionRow b = row(LocalDate.of(2025, 1, 10), 2L, null);
+        b.setJornada("A");
+        b.setBodeguero("X");
+
+        ProductionBatch batch = ProductionBatch.of(List.of(a, b));
+        batch.computeContentHashes();
+
+        assertThat(batch.contentHash(0)).isEqualTo(RowContentHash.of(a));
+        assertThat(batch.contentHash(1)).isEqualTo(RowContentHash.of(b));
+    }
+}
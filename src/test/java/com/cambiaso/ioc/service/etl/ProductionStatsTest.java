@@ -0,0 +1,64 @@
+package com.cambiaso.ioc.service.etl;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductionStatsTest {
+
+    private static ProductionRow row(LocalDate fecha, String cantidad, String pesoNeto) {
+        ProductionRow fp = new ProductionRow();
+        fp.setFechaContabilizacion(fecha);
+        fp.setCantidad(cantidad == null ? null : new BigDecimal(cantidad));
+        fp.setPesoNeto(pesoNeto == null ? null : new BigDecimal(pesoNeto));
+        return fp;
+    }
+
+    @Test
+    void emptyStatsHaveNoRange() {
+        ProductionStats stats = new ProductionStats();
+        stats.add(new ProductionBatch(4));
+
+        assertThat(stats.rows()).isZero();
+        assertThat(stats.minDate()).isNull();
+        assertThat(stats.maxDate()).isNull();
+        assertThat(stats.days()).isEmpty();
+    }
+
+    @Test
+    void accumulatesPerDayTotalsAcrossBatches() {
+        LocalDate d10 = LocalDate.of(2025, 1, 10);
+        LocalDate d12 = LocalDate.of(2025, 1, 12);
+        LocalDate d05 = LocalDate.of(2025, 1, 5);
+        ProductionStats stats = new ProductionStats();
+
+        stats.add(ProductionBatch.of(List.of(row(d10, "1.5", "2"), row(d12, "3", null), row(d10, null, "0.25"))));
+        // El segundo bloque extiende el rango hacia atrás
+        stats.add(ProductionBatch.of(List.of(row(d05, "4", "4"), row(d12, "1", "1"))));
+
+        assertThat(stats.rows()).isEqualTo(5);
+        assertThat(stats.minDate()).isEqualTo(d05);
+        assertThat(stats.maxDate()).isEqualTo(d12);
+        assertThat(stats.days()).containsExactly(
+                new ProductionStats.DayStats(d05, 1, new BigDecimal("4.0000"), new BigDecimal("4.0000")),
+                new ProductionStats.DayStats(d10, 2, new BigDecimal("1.5000"), new BigDecimal("2.2500")),
+                new ProductionStats.DayStats(d12, 2, new BigDecimal("4.0000"), new BigDecimal("1.0000")));
+    }
+
+    @Test
+    void equalityDependsOnTotalsNotOnBatching() {
+        LocalDate d1 = LocalDate.of(2025, 3, 1);
+        LocalDate d2 = LocalDate.of(2025, 3, 2);
+        ProductionStats together = new ProductionStats();
+        together.add(ProductionBatch.of(List.of(row(d1, "1", "1"), row(d2, "2", "2"))));
+        ProductionStats split = new ProductionStats();
+        split.add(ProductionBatch.of(List.of(row(d2, "2", "2"))));
+        split.add(ProductionBatch.of(List.of(row(d1, "1", "1"))));
+
+        assertThat(split).isEqualTo(together).hasSameHashCodeAs(together);
+    }
+}
@@ -0,0 +1,77 @@
+package com.cambiaso.ioc.service.etl;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RowContentHashTest {
+
+    private static ProductionRow row() {
+        ProductionRow fp = new ProductionRow();
+        fp.setFechaContabilizacion(LocalDate.of(2025, 1, 10));
+        fp.setNumeroLog(1L);
+        fp.setHoraContabilizacion(LocalTime.of(8, 0));
+        fp.setFechaNotificacion(LocalDate.of(2025, 1, 10));
+        fp.setMaterialSku(123L);
+        fp.setCantidad(new BigDecimal("10.5"));
+        fp.setPesoNeto(BigDecimal.ONE);
+        fp.setTurno("A");
+        return fp;
+    }
+
+    @Test
+    void ignoresKeyColumnsAndDecimalScale() {
+        ProductionRow a = row();
+        ProductionRow b = row();
+        b.setId(42L);
+        b.setNumeroLog(99L);
+        b.setFechaContabilizacion(LocalDate.of(2030, 1, 1));
+        b.setCantidad(new BigDecimal("10.5000"));
+        b.setPesoNeto(new BigDecimal("1.0000"));
+
+        assertThat(RowContentHash.of(b)).isEqualTo(RowContentHash.of(a));
+    }
+
+    @Test
+    void changesWithAnyPayloadColumn() {
+        long base = RowContentHash.of(row());
+
+        ProductionRow qty = row();
+        qty.setCantidad(new BigDecimal("10.6"));
+        ProductionRow text = row();
+        text.setLista("");
+        ProductionRow moved = row();
+        moved.setTurno(null);
+        moved.setJornada("A"); // mismo valor en otra columna
+
+        assertThat(RowContentHash.of(qty)).isNotEqualTo(base);
+        assertThat(RowContentHash.of(text)).isNotEqualTo(base);
+        assertThat(RowContentHash.of(moved)).isNotEqualTo(base);
+    }
+
+    @Test
+    void matchesHashesStoredByEntityBasedLoads() {
+        // Valores calculados con la versión anterior sobre FactProduction (LocalTime, BigDecimal, Long...)
+        ProductionRow full = new ProductionRow();
+        full.setHoraContabilizacion(LocalTime.of(8, 0, 15));
+        full.setFechaNotificacion(LocalDate.of(2025, 1, 10));
+        full.setDocumento(4500012345L);
+        full.setMaterialSku(6000123456L);
+        full.setMaterialDescripcion("PALLET 1200x1000");
+        full.setNumeroPallet(7);
+        full.setCantidad(new BigDecimal("1500"));
+        full.setPesoNeto(new BigDecimal("-12.3450"));
+        full.setTurno("A");
+        full.setStatusOrigen("08");
+        assertThat(RowContentHash.of(full)).isEqualTo(8545198481660157775L);
+
+        ProductionRow zeros = new ProductionRow();
+        zeros.setCantidad(BigDecimal.ZERO);
+        zeros.setPesoNeto(new BigDecimal("0.000"));
+        assertThat(RowContentHash.of(zeros)).isEqualTo(2060764197224398061L);
+    }
+}
@@ -0,0 +1,72 @@
+package com.cambiaso.ioc.service.etl;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SapValueParsersTest {
+
+    private static char[] chars(String s) {
+        return s.toCharArray();
+    }
+
+    @Test
+    void parsesDatesAndReusesInstancesPerDay() {
+        SapValueParsers parsers = new SapValueParsers();
+        char[] a = chars("30.08.2025");
+        char[] b = chars("x30.08.2025x");
+
+        LocalDate first = parsers.parseDate(a, 0, a.length);
+        assertThat(first).isEqualTo(LocalDate.of(2025, 8, 30));
+        assertThat(parsers.parseDate(b, 1, 11)).isSameAs(first);
+
+        assertThat(parsers.parseDate(chars("31.02.2025"), 0, 10)).isNull();
+        assertThat(parsers.parseDate(chars("1.8.2025"), 0, 8)).isNull();
+        assertThat(parsers.parseDate(chars("30-08-2025"), 0, 10)).isNull();
+    }
+
+    @Test
+    void parsesTimesOnlyInCanonicalRange() {
+        assertThat(SapValueParsers.parseTime(chars("08:05:59"), 0, 8)).isEqualTo(LocalTime.of(8, 5, 59));
+        assertThat(SapValueParsers.parseTime(chars("24:00:00"), 0, 8)).isNull();
+        assertThat(SapValueParsers.parseTime(chars("8:05:59"), 0, 7)).isNull();
+    }
+
+    @Test
+    void decimalsMatchBigDecimalOfCommaReplacedText() {
+        for (String raw : new String[]{"10,500", "15.5", "-0,25", "+3", "7,", "0,000"}) {
+            BigDecimal expected = new BigDecimal(raw.replace(",", "."));
+            BigDecimal actual = SapValueParsers.parseDecimal(chars(raw), 0, raw.length());
+            assertThat(actual).as(raw).isEqualTo(expected);
+            assertThat(actual.scale()).as(raw).isEqualTo(expected.scale());
+        }
+        assertThat(SapValueParsers.parseDecimal(chars("1.234,5"), 0, 7)).isNull();
+        assertThat(SapValueParsers.parseDecimal(chars("1E3"), 0, 3)).isNull();
+        assertThat(SapValueParsers.parseDecimal(chars(","), 0, 1)).isNull();
+    }
+
+    @Test
+    void scaledDecimalsMatchBigDecimalRoundedToTheColumnScale() {
+        for (String raw : new String[]{"10,500", "15.5", "-0,25", "+3", "7,", "0,000", "1,23456", "-1,23455", "0,00004"}) {
+            long expected = new BigDecimal(raw.replace(",", ".")).setScale(4, java.math.RoundingMode.HALF_UP)
+                    .unscaledValue().longValueExact();
+            assertThat(SapValueParsers.parseScaled(chars(raw), 0, raw.length(), 4)).as(raw).isEqualTo(expected);
+        }
+        assertThat(SapValueParsers.parseScaled(chars("1.234,5"), 0, 7, 4)).isEqualTo(SapValueParsers.NOT_A_NUMBER);
+        assertThat(SapValueParsers.parseScaled(chars("12345678901234567"), 0, 17, 4)).isEqualTo(SapValueParsers.NOT_A_NUMBER);
+        assertThat(SapValueParsers.parseSecondOfDay(chars("08:05:59"), 0, 8)).isEqualTo(LocalTime.of(8, 5, 59).toSecondOfDay());
+        assertThat(SapValueParsers.parseSecondOfDay(chars("24:00:00"), 0, 8)).isEqualTo(-1);
+    }
+
+    @Test
+    void digitsFastPathRejectsNonDigitsAndOverlongValues() {
+        assertThat(SapValueParsers.parseDigits(chars("0000123"), 0, 7)).isEqualTo(123L);
+        assertThat(SapValueParsers.parseDigits(chars("12a"), 0, 3)).isEqualTo(SapValueParsers.NOT_A_NUMBER);
+        assertThat(SapValueParsers.parseDigits(chars("1234567890123456789"), 0, 19)).isEqualTo(SapValueParsers.NOT_A_NUMBER);
+        assertThat(SapValueParsers.parseDigits(chars(""), 0, 0)).isEqualTo(SapValueParsers.NOT_A_NUMBER);
+    }
+}
@@ -41,11 +41,26 @@ CREATE TABLE IF NOT EXISTS fact_production (
     turno VARCHAR(10) NOT NULL,
     jornada VARCHAR(10),
     usuario_sap VARCHAR(100),
+    bodeguero VARCHAR(100),
+    status_origen VARCHAR(10),
+    content_hash BIGINT,
     PRIMARY KEY (id),
     CONSTRAINT fk_fact_production_maquina FOREIGN KEY (maquina_fk) REFERENCES dim_maquina(id),
     CONSTRAINT fk_fact_production_maquinista FOREIGN KEY (maquinista_fk) REFERENCES dim_maquinista(id)
 );
 
+-- Daily rollup of fact_production (sql/fact_production_daily.sql)
+CREATE TABLE IF NOT EXISTS fact_production_daily (
+    fecha_contabilizacion DATE NOT NULL,
+    maquina_fk BIGINT NOT NULL,
+    maquinista_fk BIGINT DEFAULT 0 NOT NULL,
+    turno VARCHAR(10) NOT NULL,
+    total_cantidad DECIMAL(20, 4) NOT NULL,
+    total_peso_neto DECIMAL(20, 4) NOT NULL,
+    num_registros BIGINT NOT NULL,
+    PRIMARY KEY (fecha_contabilizacion, maquina_fk, maquinista_fk, turno)
+);
+
 -- Create indexes for performance
 CREATE INDEX IF NOT EXISTS idx_fact_production_fecha ON fact_production(fecha_contabilizacion);
 CREATE INDEX IF NOT EXISTS idx_fact_production_maquina ON fact_production(maquina_fk);